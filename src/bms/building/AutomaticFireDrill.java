@@ -0,0 +1,384 @@
+package bms.building;
+
+import bms.exceptions.FireDrillException;
+import bms.floor.Floor;
+import bms.floor.FloorSnapshot;
+import bms.room.Room;
+import bms.room.RoomSnapshot;
+import bms.sensors.HazardSensor;
+import bms.sensors.Sensor;
+import bms.sensors.SensorChangeSet;
+import bms.util.FireDrill;
+import bms.util.TickListener;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Starts fire drills automatically when rooms become hazardous.
+ *
+ * A room is hazardous when the average level of its hazard sensors reaches
+ * the configured threshold, at which point a fire drill is started in the
+ * room. Once enough rooms on a floor are hazardous the whole floor is
+ * drilled, and once enough floors are drilled the whole building is, each
+ * through its FireDrill implementation. Drills started this way are left
+ * running until cancelled. A room stops being hazardous when its average
+ * drops below the threshold, and can then be drilled again. Floors and the
+ * building count as drilled while every one of their rooms is, so they are
+ * drilled again after a cancelled drill once another room becomes
+ * hazardous.
+ *
+ * The hazard total of each room is maintained in a primitive array, and only
+ * the rooms of sensors which changed are re-evaluated each tick. The time
+ * from the start of the tick in which a reading changed to the drill it
+ * caused is recorded for each drill.
+ *
+ * The trigger must be registered as a tick listener with the
+ * TimedItemManager that ticks the building's sensors, as returned by
+ * Building.getTimedItemManager().
+ */
+public class AutomaticFireDrill implements TickListener {
+
+    /** building being watched */
+    private final Building building;
+
+    /** average hazard level at which a room is drilled */
+    private final int roomThreshold;
+
+    /** number of hazardous rooms at which a floor is drilled */
+    private final int floorRoomCount;
+
+    /** number of drilled floors at which the building is drilled */
+    private final int buildingFloorCount;
+
+    /** building structure version the index was built at */
+    private long indexedVersion;
+
+    /** building snapshot version whose drill state was last read */
+    private long drillVersion;
+
+    /** floors of the building */
+    private Floor[] floors;
+
+    /** rooms of the building */
+    private Room[] rooms;
+
+    /** slot of each hazard sensor in the sensor arrays */
+    private final Map<Sensor, Integer> slotBySensor;
+
+    /** room of each hazard sensor slot */
+    private int[] sensorRoom;
+
+    /** last evaluated hazard level of each sensor slot */
+    private int[] sensorHazard;
+
+    /** total hazard level of each room's hazard sensors */
+    private int[] roomTotal;
+
+    /** number of hazard sensors in each room */
+    private int[] roomCount;
+
+    /** floor of each room */
+    private int[] roomFloor;
+
+    /** whether each room has been found hazardous */
+    private boolean[] roomHazardous;
+
+    /** number of hazardous rooms on each floor */
+    private int[] floorHazardousRooms;
+
+    /** whether each floor has been drilled */
+    private boolean[] floorDrilled;
+
+    /** number of floors drilled */
+    private int drilledFloors;
+
+    /** whether the building has been drilled */
+    private boolean buildingDrilled;
+
+    /** number of drills started, at any level */
+    private int drillCount;
+
+    /** total latency of all drills started after a tick */
+    private long totalLatencyNanos;
+
+    /** number of drills whose latency was measured */
+    private int measuredDrills;
+
+    /** latency of the most recent drill started after a tick */
+    private long lastLatencyNanos;
+
+    /** highest latency of any drill started after a tick */
+    private long maxLatencyNanos;
+
+    /** tick start time to measure latency from, or -1 when not in a tick */
+    private long tickStartNanos = -1;
+
+    /**
+     * Creates an automatic fire drill trigger for the given building and
+     * immediately drills any rooms which are already hazardous.
+     *
+     * @param building building to watch
+     * @param roomThreshold average hazard level, 1 to 100, at which a room
+     *                      is drilled
+     * @param floorRoomCount number of hazardous rooms on a floor at which the
+     *                       whole floor is drilled
+     * @param buildingFloorCount number of drilled floors at which the whole
+     *                           building is drilled
+     * @throws IllegalArgumentException if roomThreshold is not between 1 and
+     * 100, or either count is less than 1
+     */
+    public AutomaticFireDrill(Building building, int roomThreshold,
+                              int floorRoomCount, int buildingFloorCount)
+            throws IllegalArgumentException {
+        if (roomThreshold < 1 || roomThreshold > 100 || floorRoomCount < 1
+                || buildingFloorCount < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.building = building;
+        this.roomThreshold = roomThreshold;
+        this.floorRoomCount = floorRoomCount;
+        this.buildingFloorCount = buildingFloorCount;
+        slotBySensor = new IdentityHashMap<Sensor, Integer>();
+        rebuild();
+    }
+
+    /**
+     * Indexes the building's hazard sensors and evaluates every room.
+     */
+    private void rebuild() {
+        BuildingSnapshot snapshot = building.getSnapshot();
+        indexedVersion = snapshot.getStructureVersion();
+        List<FloorSnapshot> floorList = snapshot.getFloors();
+        floors = new Floor[floorList.size()];
+        int roomTotalCount = 0;
+        int sensorTotalCount = 0;
+        for (FloorSnapshot floor : floorList) {
+            for (RoomSnapshot room : floor.getRooms()) {
+                roomTotalCount++;
+                for (Sensor sensor : room.getSensors()) {
+                    if (sensor instanceof HazardSensor) {
+                        sensorTotalCount++;
+                    }
+                }
+            }
+        }
+
+        rooms = new Room[roomTotalCount];
+        roomTotal = new int[roomTotalCount];
+        roomCount = new int[roomTotalCount];
+        roomFloor = new int[roomTotalCount];
+        roomHazardous = new boolean[roomTotalCount];
+        floorHazardousRooms = new int[floors.length];
+        floorDrilled = new boolean[floors.length];
+        slotBySensor.clear();
+        sensorRoom = new int[sensorTotalCount];
+        sensorHazard = new int[sensorTotalCount];
+
+        int roomSlot = 0;
+        int sensorSlot = 0;
+        for (int f = 0; f < floors.length; f++) {
+            floors[f] = floorList.get(f).getFloor();
+            for (RoomSnapshot room : floorList.get(f).getRooms()) {
+                rooms[roomSlot] = room.getRoom();
+                roomFloor[roomSlot] = f;
+                for (Sensor sensor : room.getSensors()) {
+                    if (!(sensor instanceof HazardSensor)) {
+                        continue;
+                    }
+                    int level = ((HazardSensor) sensor).getHazardLevel();
+                    slotBySensor.put(sensor, sensorSlot);
+                    sensorRoom[sensorSlot] = roomSlot;
+                    sensorHazard[sensorSlot] = level;
+                    sensorSlot++;
+                    roomTotal[roomSlot] += level;
+                    roomCount[roomSlot]++;
+                }
+                roomSlot++;
+            }
+        }
+        readDrills(snapshot);
+        for (int r = 0; r < rooms.length; r++) {
+            evaluate(r);
+        }
+        drillVersion = building.getSnapshot().getVersion();
+    }
+
+    /**
+     * Marks as drilled the floors whose rooms are all drilling, and the
+     * building if all of its rooms are, so that drills cancelled since they
+     * were started can be started again.
+     */
+    private void readDrills(BuildingSnapshot snapshot) {
+        List<FloorSnapshot> floorList = snapshot.getFloors();
+        drilledFloors = 0;
+        boolean everyRoom = rooms.length > 0;
+        for (int f = 0; f < floors.length; f++) {
+            List<RoomSnapshot> floorRooms = floorList.get(f).getRooms();
+            boolean drilled = true;
+            for (int r = 0; r < floorRooms.size() && drilled; r++) {
+                drilled = floorRooms.get(r).fireDrillOngoing();
+            }
+            everyRoom &= drilled;
+            floorDrilled[f] = drilled && !floorRooms.isEmpty();
+            if (floorDrilled[f]) {
+                drilledFloors++;
+            }
+        }
+        buildingDrilled = everyRoom;
+    }
+
+    /**
+     * Applies the hazard changes of the sensors which changed in the tick,
+     * drilling any rooms which became hazardous.
+     *
+     * @param minute minute of the tick
+     * @param changes sensors whose readings changed
+     */
+    @Override
+    public void tickCompleted(int minute, SensorChangeSet changes) {
+        tickStartNanos = building.getTimedItemManager().getTickStartNanos();
+        try {
+            BuildingSnapshot snapshot = building.getSnapshot();
+            if (indexedVersion != snapshot.getStructureVersion()) {
+                rebuild();
+                return;
+            }
+            if (drillVersion != snapshot.getVersion()) {
+                readDrills(snapshot);
+            }
+            for (int i = 0; i < changes.size(); i++) {
+                Sensor sensor = changes.get(i);
+                Integer slotOfSensor = slotBySensor.get(sensor);
+                if (slotOfSensor == null) {
+                    continue;
+                }
+                int slot = slotOfSensor;
+                int level = ((HazardSensor) sensor).getHazardLevel();
+                int delta = level - sensorHazard[slot];
+                if (delta == 0) {
+                    continue;
+                }
+                sensorHazard[slot] = level;
+                roomTotal[sensorRoom[slot]] += delta;
+                evaluate(sensorRoom[slot]);
+            }
+            drillVersion = building.getSnapshot().getVersion();
+        } finally {
+            tickStartNanos = -1;
+        }
+    }
+
+    /**
+     * Drills the given room if it has become hazardous, escalating to its
+     * floor and the building as needed, or stops counting it as hazardous if
+     * it no longer is.
+     */
+    private void evaluate(int room) {
+        boolean hazardous = roomCount[room] > 0
+                && roomTotal[room] >= (long) roomThreshold * roomCount[room];
+        if (hazardous == roomHazardous[room]) {
+            return;
+        }
+        roomHazardous[room] = hazardous;
+        int floor = roomFloor[room];
+        if (!hazardous) {
+            floorHazardousRooms[floor]--;
+            return;
+        }
+        if (!rooms[room].fireDrillOngoing()) {
+            rooms[room].setFireDrill(true);
+            drillStarted();
+        }
+
+        floorHazardousRooms[floor]++;
+        if (floorDrilled[floor]
+                || floorHazardousRooms[floor] < floorRoomCount) {
+            return;
+        }
+        floorDrilled[floor] = true;
+        drilledFloors++;
+        start(floors[floor]);
+
+        if (!buildingDrilled && drilledFloors >= buildingFloorCount) {
+            buildingDrilled = true;
+            start(building);
+        }
+    }
+
+    private void start(FireDrill target) {
+        try {
+            target.fireDrill(null);
+        } catch (FireDrillException e) {
+            // a floor or building with a hazardous room always has rooms
+            throw new IllegalStateException(e);
+        }
+        drillStarted();
+    }
+
+    /**
+     * Counts a started drill, and measures its latency if it was caused by a
+     * tick.
+     */
+    private void drillStarted() {
+        drillCount++;
+        if (tickStartNanos < 0) {
+            return;
+        }
+        lastLatencyNanos = System.nanoTime() - tickStartNanos;
+        maxLatencyNanos = Math.max(maxLatencyNanos, lastLatencyNanos);
+        totalLatencyNanos += lastLatencyNanos;
+        measuredDrills++;
+    }
+
+    /**
+     * Returns the number of drills started, counting room, floor and
+     * building drills separately.
+     *
+     * @return number of drills started
+     */
+    public int getDrillCount() {
+        return drillCount;
+    }
+
+    /**
+     * Returns whether the building as a whole has been drilled.
+     *
+     * @return true if the building has been drilled
+     */
+    public boolean isBuildingDrilled() {
+        return buildingDrilled;
+    }
+
+    /**
+     * Returns the time between the start of the tick which caused the most
+     * recent drill and the drill starting.
+     *
+     * @return latency in nanoseconds, or 0 if no drill has been caused by a
+     * tick
+     */
+    public long getLastLatencyNanos() {
+        return lastLatencyNanos;
+    }
+
+    /**
+     * Returns the highest latency of any drill caused by a tick.
+     *
+     * @return latency in nanoseconds, or 0 if no drill has been caused by a
+     * tick
+     */
+    public long getMaxLatencyNanos() {
+        return maxLatencyNanos;
+    }
+
+    /**
+     * Returns the average latency of the drills caused by ticks.
+     *
+     * @return latency in nanoseconds, or 0 if no drill has been caused by a
+     * tick
+     */
+    public long getAverageLatencyNanos() {
+        return measuredDrills == 0 ? 0 : totalLatencyNanos / measuredDrills;
+    }
+}
@@ -1,14 +1,30 @@
 package bms.building;
 
 import bms.exceptions.DuplicateFloorException;
+import bms.exceptions.DuplicateRoomException;
+import bms.exceptions.DuplicateSensorException;
 import bms.exceptions.FireDrillException;
 import bms.exceptions.FloorTooSmallException;
+import bms.exceptions.InsufficientSpaceException;
 import bms.exceptions.NoFloorBelowException;
 import bms.floor.Floor;
+import bms.floor.FloorSnapshot;
+import bms.floor.Rectangle;
+import bms.jfr.FireDrillEvent;
+import bms.jfr.StructureChangeEvent;
+import bms.room.Room;
+import bms.room.RoomSnapshot;
 import bms.room.RoomType;
+import bms.sensors.Sensor;
+import bms.sensors.SensorConfig;
+import bms.sensors.TimedSensor;
 import bms.util.FireDrill;
+import bms.util.StructureListener;
+import bms.util.TimedItemManager;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Represents a building of floors, which in turn, contain rooms.
@@ -17,6 +33,17 @@ import java.util.List;
  *
  * A building can be evacuated, which causes all rooms on all floors within
  * the building to be evacuated.
+ *
+ * Every structural change to the building, its floors or its rooms publishes
+ * a new BuildingSnapshot, so that readers on other threads can see a
+ * consistent view of the building without locking.
+ *
+ * A building can be forked into an independent copy for what-if
+ * simulations. Forking records the current snapshot and the configuration
+ * and time elapsed of each sensor, which takes time proportional to the
+ * number of sensors. The fork's floors, rooms and sensors are all created
+ * the first time the fork is used, by which point its sensors have caught
+ * up with the minutes elapsed on the fork's own TimedItemManager.
  */
 public class Building implements FireDrill {
 
@@ -26,14 +53,208 @@ public class Building implements FireDrill {
     /** list containing all floors in a building */
     private List<Floor> floors;
 
+    /** latest published snapshot of the building */
+    private volatile BuildingSnapshot snapshot;
+
+    /** listener given to each floor, to replace its snapshot in this one */
+    private final StructureListener<FloorSnapshot> floorListener =
+            this::floorChanged;
+
+    /** manager ticking a fork's sensors, or null if this is not a fork */
+    private final TimedItemManager forkManager;
+
+    /** manager ticking the building's sensors */
+    private final TimedItemManager manager;
+
+    /** state a fork is copied from, or null once its floors exist */
+    private volatile ForkSource forkSource;
+
     /**
      * Creates a new empty building with no rooms.
      *
      * @param name name of this building, eg. "General Purpose South"
      */
     public Building(String name) {
+        this(name, null, null);
+    }
+
+    private Building(String name, TimedItemManager forkManager,
+                     ForkSource forkSource) {
         this.name = name;
+        this.forkManager = forkManager;
+        this.forkSource = forkSource;
+        manager = forkManager != null
+                ? forkManager : TimedItemManager.getInstance();
         floors = new ArrayList<Floor>();
+        snapshot = new BuildingSnapshot(this, 0, new FloorSnapshot[0]);
+    }
+
+    /**
+     * Returns a copy-on-write fork of the building, whose sensors are ticked
+     * by a new TimedItemManager rather than the current one.
+     *
+     * @return new fork of the building
+     * @see #fork(TimedItemManager)
+     */
+    public Building fork() {
+        return fork(TimedItemManager.createManager());
+    }
+
+    /**
+     * Returns a copy-on-write fork of the building, whose sensors are ticked
+     * by the given manager. Changes to the fork, and ticks of its manager,
+     * do not affect this building, and changes to this building after the
+     * fork do not affect the fork.
+     *
+     * Forking records this building's current snapshot and the
+     * configuration and time elapsed of each of its sensors, so this
+     * building's manager must not be ticking at that moment. The fork's
+     * floors, rooms and sensors are copied in full the first time it is
+     * read or changed, with each sensor advanced by the minutes the fork's
+     * manager has elapsed since the fork, without reading this building
+     * again. Sensor configurations are shared between equal sensors of the
+     * fork but are not interned with those of other sensors, so they are
+     * discarded along with the fork.
+     *
+     * @param manager manager to tick the fork's sensors
+     * @return new fork of the building
+     * @throws IllegalArgumentException if manager is null
+     * @throws IllegalStateException if a sensor is not a timed sensor taking
+     * its readings from an array, since it cannot be copied
+     */
+    public Building fork(TimedItemManager manager)
+            throws IllegalArgumentException, IllegalStateException {
+        if (manager == null) {
+            throw new IllegalArgumentException();
+        }
+        BuildingSnapshot forked = getSnapshot();
+        int count = 0;
+        for (FloorSnapshot floor : forked.getFloors()) {
+            for (RoomSnapshot room : floor.getRooms()) {
+                count += room.getSensors().size();
+            }
+        }
+        // sensors removed from this building later stop ticking, so their
+        // state at the fork cannot be worked out from their state afterwards
+        SensorConfig[] configs = new SensorConfig[count];
+        int[] timeElapsed = new int[count];
+        Map<SensorConfig, SensorConfig> pool =
+                new HashMap<SensorConfig, SensorConfig>();
+        int next = 0;
+        for (FloorSnapshot floor : forked.getFloors()) {
+            for (RoomSnapshot room : floor.getRooms()) {
+                for (Sensor sensor : room.getSensors()) {
+                    if (!(sensor instanceof TimedSensor)) {
+                        throw new IllegalStateException();
+                    }
+                    try {
+                        configs[next] =
+                                SensorConfig.of((TimedSensor) sensor, pool);
+                    } catch (IllegalArgumentException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    timeElapsed[next] =
+                            ((TimedSensor) sensor).getTimeElapsed();
+                    next++;
+                }
+            }
+        }
+        return new Building(name, manager, new ForkSource(forked, configs,
+                timeElapsed, manager.getMinutesElapsed()));
+    }
+
+    /**
+     * Returns the manager ticking this building's sensors if it is a fork.
+     *
+     * @return fork's manager, or null if this building is not a fork
+     */
+    public TimedItemManager getForkManager() {
+        return forkManager;
+    }
+
+    /**
+     * Returns the manager ticking this building's sensors: the fork's manager
+     * if this is a fork, otherwise the manager that was current when the
+     * building was created, with which its sensors are expected to have been
+     * registered.
+     *
+     * @return manager ticking the building's sensors
+     */
+    public TimedItemManager getTimedItemManager() {
+        return manager;
+    }
+
+    /**
+     * Returns the latest snapshot, first creating a fork's floors if they do
+     * not exist yet.
+     */
+    private BuildingSnapshot currentSnapshot() {
+        if (forkSource != null) {
+            synchronized (this) {
+                if (forkSource != null) {
+                    copyFrom(forkSource);
+                    forkSource = null;
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Creates a fork's floors, rooms and sensors from the snapshot it was
+     * forked from, registering the sensors with the fork's manager.
+     *
+     * Each room is given its sensors and fire drill status before joining
+     * its floor, and each floor is given all of its rooms at once, so the
+     * copy publishes one snapshot per floor rather than one per room and
+     * sensor. If the copy fails, every sensor created for it is deregistered
+     * again, so that a later attempt does not leave them ticking.
+     *
+     * @throws IllegalStateException if the snapshot could not be copied
+     */
+    private void copyFrom(ForkSource source) throws IllegalStateException {
+        int forkMinutes = forkManager.getMinutesElapsed() - source.forkMinute;
+        List<TimedSensor> created =
+                new ArrayList<TimedSensor>(source.configs.length);
+        int next = 0;
+        TimedItemManager previous = TimedItemManager.getThreadManager();
+        TimedItemManager.setThreadManager(forkManager);
+        try {
+            for (FloorSnapshot floorSnapshot : source.snapshot.getFloors()) {
+                Floor original = floorSnapshot.getFloor();
+                Floor floor = new Floor(original.getFloorNumber(),
+                        original.getWidth(), original.getLength());
+                List<Room> rooms = new ArrayList<Room>(
+                        floorSnapshot.getRooms().size());
+                for (RoomSnapshot roomSnapshot : floorSnapshot.getRooms()) {
+                    Room room = new Room(roomSnapshot.getRoomNumber(),
+                            roomSnapshot.getType(), roomSnapshot.getArea());
+                    for (int i = 0; i < roomSnapshot.getSensors().size(); i++) {
+                        TimedSensor sensor = source.configs[next].newSensor();
+                        created.add(sensor);
+                        sensor.elapseMinutes(
+                                source.timeElapsed[next++] + forkMinutes);
+                        room.addSensor(sensor);
+                    }
+                    room.updateFireDrill(roomSnapshot.fireDrillOngoing());
+                    rooms.add(room);
+                }
+                floor.addRooms(rooms);
+                floors.add(floor);
+                floor.setStructureListener(floorListener);
+                snapshot = snapshot.withFloor(floor.getSnapshot());
+            }
+        } catch (DuplicateRoomException | InsufficientSpaceException
+                | DuplicateSensorException | IllegalArgumentException e) {
+            for (TimedSensor sensor : created) {
+                sensor.deregister();
+            }
+            floors.clear();
+            snapshot = new BuildingSnapshot(this, 0, new FloorSnapshot[0]);
+            throw new IllegalStateException(e);
+        } finally {
+            TimedItemManager.setThreadManager(previous);
+        }
     }
 
     /**
@@ -44,41 +265,66 @@ public class Building implements FireDrill {
      * @return new list containing all floors in the building
      */
     public List<Floor> getFloors() {
-        return new ArrayList<Floor>(floors);
+        List<FloorSnapshot> floorSnapshots = currentSnapshot().getFloors();
+        List<Floor> result = new ArrayList<Floor>(floorSnapshots.size());
+        for (FloorSnapshot floor : floorSnapshots) {
+            result.add(floor.getFloor());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the latest snapshot of the building's structure.
+     * This is a single volatile read, and the snapshot it returns stays
+     * consistent however the building is changed afterwards.
+     *
+     * @return latest building snapshot
+     */
+    public BuildingSnapshot getSnapshot() {
+        return currentSnapshot();
+    }
+
+    /**
+     * Replaces a floor's snapshot in the building's snapshot when the floor
+     * changes, copying only the building's array of floor snapshots.
+     */
+    private synchronized void floorChanged(FloorSnapshot floor) {
+        snapshot = snapshot.withReplacedFloor(floor);
     }
 
     @Override
     public void fireDrill(RoomType roomType) throws FireDrillException {
+        FireDrillEvent event = new FireDrillEvent();
+        event.begin();
 
+        List<FloorSnapshot> floorSnapshots = getSnapshot().getFloors();
         boolean noRooms = true;
-        boolean noFloors = false;
 
-        //checking if the building has floors and/or any rooms.
-        if (getFloors().size() == 0) {
-            noFloors = true;
-        } else {
-            for (Floor floor : floors) {
-                if (floor.getRooms().size() != 0) {
-                    noRooms = false;
-                }
+        //checking if the building has any rooms, on any floor.
+        for (FloorSnapshot floor : floorSnapshots) {
+            if (floor.getRooms().size() != 0) {
+                noRooms = false;
             }
         }
 
-        // starting fire drills in required rooms
-        if (noRooms || noFloors) {
+        // starting fire drills in required rooms, a floor at a time
+        if (noRooms) {
             throw new FireDrillException();
         } else {
-            for (Floor floor : floors) {
-                for (int j = 0; j < floor.getRooms().size(); j++) {
-                    if (roomType == null) {
-                        floor.getRooms().get(j).setFireDrill(true);
-                    }
-                    else if (floor.getRooms().get(j).getType() == roomType) {
-                        floor.getRooms().get(j).setFireDrill(true);
+            for (FloorSnapshot floor : floorSnapshots) {
+                for (RoomSnapshot room : floor.getRooms()) {
+                    if (roomType == null || room.getType() == roomType) {
+                        event.roomsTouched++;
                     }
                 }
+                floor.getFloor().fireDrill(roomType);
             }
         }
+        if (event.shouldCommit()) {
+            event.building = name;
+            event.roomType = roomType == null ? null : roomType.name();
+            event.commit();
+        }
     }
 
     /**
@@ -86,10 +332,16 @@ public class Building implements FireDrill {
      * All rooms must have their fire alarm cancelled regardless of room type.
      */
     public void cancelFireDrill() {
-        for (Floor floor : floors) {
-            for (int j = 0; j < floor.getRooms().size(); j++) {
-                floor.getRooms().get(j).setFireDrill(false);
-            }
+        FireDrillEvent event = new FireDrillEvent();
+        event.begin();
+        for (FloorSnapshot floor : getSnapshot().getFloors()) {
+            event.roomsTouched += floor.getRooms().size();
+            floor.getFloor().cancelFireDrill();
+        }
+        if (event.shouldCommit()) {
+            event.building = name;
+            event.cancelled = true;
+            event.commit();
         }
     }
 
@@ -119,9 +371,30 @@ public class Building implements FireDrill {
      * @throws FloorTooSmallException if this is at level 2 or above and the
      * floor below is not big enough to support this new floor
      */
-    public void addFloor(Floor newFloor)
+    public synchronized void addFloor(Floor newFloor)
+            throws IllegalArgumentException, DuplicateFloorException,
+            NoFloorBelowException, FloorTooSmallException {
+        StructureChangeEvent event = new StructureChangeEvent();
+        event.begin();
+        try {
+            insertFloor(newFloor);
+            event.succeeded = true;
+        } finally {
+            if (event.shouldCommit()) {
+                event.operation = "addFloor";
+                event.floorNumber = newFloor.getFloorNumber();
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Checks and adds a floor to the building, as described by addFloor().
+     */
+    private void insertFloor(Floor newFloor)
             throws IllegalArgumentException, DuplicateFloorException,
             NoFloorBelowException, FloorTooSmallException {
+        currentSnapshot();
 
         // checking for IllegalArgument Conditions
         if (newFloor.getFloorNumber() == 0 || newFloor.getWidth() <
@@ -163,6 +436,41 @@ public class Building implements FireDrill {
             }
         }
         floors.add(newFloor);
+        newFloor.setStructureListener(floorListener);
+        snapshot = snapshot.withFloor(newFloor.getSnapshot());
+    }
+
+    /**
+     * Removes the floor with the given number from the building.
+     * The sensors in the floor's rooms are deregistered from the
+     * TimedItemManager so they are no longer ticked. The removed floor keeps
+     * its rooms.
+     *
+     * @param floorNumber number of the floor to remove
+     * @return the removed floor, or null if there was no such floor
+     * @throws NoFloorBelowException if there is a floor directly above the
+     * floor, which would be left with no floor below it
+     */
+    public synchronized Floor removeFloor(int floorNumber)
+            throws NoFloorBelowException {
+        Floor removed = getFloorByNumber(floorNumber);
+        if (removed == null) {
+            return null;
+        }
+        if (getFloorByNumber(floorNumber + 1) != null) {
+            throw new NoFloorBelowException();
+        }
+        floors.remove(removed);
+        removed.setStructureListener(null);
+        for (Room room : removed.getRooms()) {
+            for (Sensor sensor : room.getSensors()) {
+                if (sensor instanceof TimedSensor) {
+                    ((TimedSensor) sensor).deregister();
+                }
+            }
+        }
+        snapshot = snapshot.withoutFloor(removed);
+        return removed;
     }
 
     /**
@@ -174,11 +482,35 @@ public class Building implements FireDrill {
      * @return floor with the given number if found; null if not found
      */
     public Floor getFloorByNumber(int floorNumber) {
+        FloorSnapshot floor = getSnapshot().getFloorByNumber(floorNumber);
+        return floor == null ? null : floor.getFloor();
+    }
 
-        Floor result = null;
-        for (Floor floor : floors) {
-            if (floor.getFloorNumber() == floorNumber) {
-                result = floor;
+    /**
+     * Returns the rooms on the floors directly above and below the given room
+     * whose positions overlap it, such as rooms connected by a stairwell or
+     * sharing a ceiling. All floors share the same origin corner, as floors
+     * cannot overhang the floor below.
+     *
+     * @param floorNumber floor number of the room
+     * @param roomNumber room number of the room
+     * @return new list of rooms on the floor below, then the floor above
+     * @throws IllegalArgumentException if the room does not exist
+     */
+    public List<Room> getVerticallyAdjacentRooms(int floorNumber,
+                                                 int roomNumber)
+            throws IllegalArgumentException {
+        Floor floor = getFloorByNumber(floorNumber);
+        Rectangle placement = floor == null
+                ? null : floor.getRoomPlacement(roomNumber);
+        if (placement == null) {
+            throw new IllegalArgumentException();
+        }
+        List<Room> result = new ArrayList<Room>();
+        for (int otherNumber : new int[] {floorNumber - 1, floorNumber + 1}) {
+            Floor other = getFloorByNumber(otherNumber);
+            if (other != null) {
+                result.addAll(other.getRoomsOverlapping(placement));
             }
         }
         return result;
@@ -190,4 +522,33 @@ public class Building implements FireDrill {
                 getName() + "\", floors=" + getFloors().size();
     }
 
+    /**
+     * State recorded when a building is forked, from which the fork's floors
+     * are created when it is first used.
+     */
+    private static class ForkSource {
+
+        /** snapshot of the building forked */
+        private final BuildingSnapshot snapshot;
+
+        /**
+         * configuration of each sensor, in the order of the snapshot's
+         * floors, rooms and sensors
+         */
+        private final SensorConfig[] configs;
+
+        /** minutes elapsed on each sensor at the fork, in the same order */
+        private final int[] timeElapsed;
+
+        /** minutes elapsed on the fork's manager at the fork */
+        private final int forkMinute;
+
+        private ForkSource(BuildingSnapshot snapshot, SensorConfig[] configs,
+                           int[] timeElapsed, int forkMinute) {
+            this.snapshot = snapshot;
+            this.configs = configs;
+            this.timeElapsed = timeElapsed;
+            this.forkMinute = forkMinute;
+        }
+    }
 }
@@ -0,0 +1,153 @@
+package bms.building;
+
+import bms.floor.Floor;
+import bms.floor.FloorSnapshot;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable view of the structure of a building at one point in time:
+ * the snapshots of its floors, in the order the floors were added.
+ *
+ * Each structural change to a building publishes a new snapshot which copies
+ * only the path from the building to the room that changed, sharing every
+ * other floor and room snapshot with the previous version. Readers obtain a
+ * consistent snapshot with Building.getSnapshot(), a single volatile read,
+ * and never block the thread making changes.
+ *
+ * Alongside its version, which counts every change, a snapshot carries a
+ * structure version which only counts changes to the floors, rooms and
+ * sensors making up the building, not to fire drill statuses. Caches derived
+ * from the building's layout compare structure versions to tell whether
+ * they must be rebuilt.
+ */
+public final class BuildingSnapshot {
+
+    /** building this is a snapshot of */
+    private final Building building;
+
+    /** number of snapshots published by the building before this one */
+    private final long version;
+
+    /** number of structural changes made to the building before this one */
+    private final long structureVersion;
+
+    /** snapshots of the floors in the building */
+    private final FloorSnapshot[] floors;
+
+    BuildingSnapshot(Building building, long version, FloorSnapshot[] floors) {
+        this(building, version, 0, floors);
+    }
+
+    private BuildingSnapshot(Building building, long version,
+                             long structureVersion, FloorSnapshot[] floors) {
+        this.building = building;
+        this.version = version;
+        this.structureVersion = structureVersion;
+        this.floors = floors;
+    }
+
+    /**
+     * Returns the next version of this snapshot with the given floor
+     * snapshot added.
+     */
+    BuildingSnapshot withFloor(FloorSnapshot floor) {
+        FloorSnapshot[] next = Arrays.copyOf(floors, floors.length + 1);
+        next[floors.length] = floor;
+        return new BuildingSnapshot(building, version + 1,
+                structureVersion + 1, next);
+    }
+
+    /**
+     * Returns the next version of this snapshot with the floor of the given
+     * snapshot replaced by it, or this snapshot if there is no such floor.
+     */
+    BuildingSnapshot withReplacedFloor(FloorSnapshot floor) {
+        for (int i = 0; i < floors.length; i++) {
+            if (floors[i].getFloor() == floor.getFloor()) {
+                FloorSnapshot[] next = floors.clone();
+                next[i] = floor;
+                return new BuildingSnapshot(building, version + 1,
+                        floors[i].getStructureVersion()
+                                == floor.getStructureVersion()
+                                ? structureVersion : structureVersion + 1,
+                        next);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Returns the next version of this snapshot without the given floor, or
+     * this snapshot if there is no such floor.
+     */
+    BuildingSnapshot withoutFloor(Floor floor) {
+        for (int i = 0; i < floors.length; i++) {
+            if (floors[i].getFloor() == floor) {
+                FloorSnapshot[] next = new FloorSnapshot[floors.length - 1];
+                System.arraycopy(floors, 0, next, 0, i);
+                System.arraycopy(floors, i + 1, next, i, next.length - i);
+                return new BuildingSnapshot(building, version + 1,
+                        structureVersion + 1, next);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Returns the building this is a snapshot of.
+     *
+     * @return live building
+     */
+    public Building getBuilding() {
+        return building;
+    }
+
+    /**
+     * Returns the version of the snapshot, which increases by one with each
+     * structural change to the building.
+     *
+     * @return version number, starting at 0 for an empty building
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the structure version of the snapshot, which increases with
+     * each floor, room or sensor added to or removed from the building, but
+     * not with changes to fire drill statuses.
+     *
+     * @return structure version, starting at 0 for an empty building
+     */
+    public long getStructureVersion() {
+        return structureVersion;
+    }
+
+    /**
+     * Returns the snapshots of the floors in the building, in the order the
+     * floors were added.
+     *
+     * @return unmodifiable list of floor snapshots
+     */
+    public List<FloorSnapshot> getFloors() {
+        return Collections.unmodifiableList(Arrays.asList(floors));
+    }
+
+    /**
+     * Returns the snapshot of the floor with the given number.
+     *
+     * @param floorNumber number of the floor
+     * @return snapshot of the floor, or null if there was no such floor
+     */
+    public FloorSnapshot getFloorByNumber(int floorNumber) {
+        for (FloorSnapshot floor : floors) {
+            if (floor.getFloorNumber() == floorNumber) {
+                return floor;
+            }
+        }
+        return null;
+    }
+}
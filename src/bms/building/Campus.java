@@ -0,0 +1,288 @@
+package bms.building;
+
+import bms.exceptions.DuplicateBuildingException;
+import bms.exceptions.FireDrillException;
+import bms.floor.Floor;
+import bms.room.Room;
+import bms.room.RoomType;
+import bms.sensors.HazardSensor;
+import bms.sensors.OccupancySensor;
+import bms.sensors.Sensor;
+import bms.util.FireDrill;
+import bms.util.TimedItemManager;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Represents a campus of many buildings, each identified by its name.
+ *
+ * Fire drills can be carried out across every building at once, and the
+ * campus's hazard and occupancy figures are gathered from all buildings in
+ * parallel on a fork-join pool. The same pool is used to tick the buildings'
+ * sensors concurrently, on the managers the buildings are ticked by.
+ */
+public class Campus implements FireDrill {
+
+    /** number of buildings aggregated without splitting further */
+    private static final int BUILDINGS_PER_TASK = 4;
+
+    /** name of campus */
+    private final String name;
+
+    /** buildings in the order they were added */
+    private final List<Building> buildings;
+
+    /** buildings indexed by name */
+    private final Map<String, Building> buildingsByName;
+
+    /** pool on which aggregates are computed and sensors are ticked */
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a new campus with no buildings, using the common fork-join pool.
+     *
+     * @param name name of this campus, eg. "St Lucia"
+     */
+    public Campus(String name) {
+        this(name, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a new campus with no buildings, using the given pool for
+     * parallel work.
+     *
+     * @param name name of this campus
+     * @param pool pool to compute aggregates and tick sensors on
+     */
+    public Campus(String name, ForkJoinPool pool) {
+        this.name = name;
+        this.pool = pool;
+        buildings = new ArrayList<Building>();
+        buildingsByName = new HashMap<String, Building>();
+    }
+
+    /**
+     * Returns the name of the campus.
+     *
+     * @return name of this campus
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Adds a building to the campus.
+     *
+     * @param building building to add
+     * @throws DuplicateBuildingException if a building with the same name is
+     * already on the campus
+     */
+    public void addBuilding(Building building)
+            throws DuplicateBuildingException {
+        if (buildingsByName.containsKey(building.getName())) {
+            throw new DuplicateBuildingException();
+        }
+        buildingsByName.put(building.getName(), building);
+        buildings.add(building);
+    }
+
+    /**
+     * Returns the building with the given name.
+     *
+     * @param buildingName name of the building
+     * @return building with the given name, or null if there is none
+     */
+    public Building getBuilding(String buildingName) {
+        return buildingsByName.get(buildingName);
+    }
+
+    /**
+     * Returns a new list containing all the buildings on the campus, in the
+     * order they were added.
+     *
+     * @return new list containing all buildings on the campus
+     */
+    public List<Building> getBuildings() {
+        return new ArrayList<Building>(buildings);
+    }
+
+    /**
+     * Starts a fire drill in all rooms of the given type in every building
+     * which has rooms. If roomType is null, every room is included.
+     *
+     * @param roomType type of room to carry out fire drills on; null if fire
+     *                 drills are to be carried out in all rooms
+     * @throws FireDrillException if no building on the campus has any rooms
+     */
+    @Override
+    public void fireDrill(RoomType roomType) throws FireDrillException {
+        boolean anyRooms = false;
+        for (Building building : buildings) {
+            try {
+                building.fireDrill(roomType);
+                anyRooms = true;
+            } catch (FireDrillException e) {
+                // building has no rooms, so there is nothing to drill
+            }
+        }
+        if (!anyRooms) {
+            throw new FireDrillException();
+        }
+    }
+
+    /**
+     * Cancels any ongoing fire drill in every building on the campus.
+     */
+    public void cancelFireDrill() {
+        for (Building building : buildings) {
+            building.cancelFireDrill();
+        }
+    }
+
+    /**
+     * Returns the highest hazard level reported by any hazard sensor on the
+     * campus.
+     *
+     * @return maximum hazard level, or 0 if there are no hazard sensors
+     */
+    public int getMaxHazardLevel() {
+        return aggregate().maxHazard;
+    }
+
+    /**
+     * Returns the average hazard level reported by the hazard sensors on the
+     * campus.
+     *
+     * @return average hazard level, or 0 if there are no hazard sensors
+     */
+    public double getAverageHazardLevel() {
+        Aggregate total = aggregate();
+        return total.hazardCount == 0
+                ? 0 : (double) total.hazardSum / total.hazardCount;
+    }
+
+    /**
+     * Returns the number of people currently counted by the occupancy sensors
+     * on the campus.
+     *
+     * @return total occupancy reading
+     */
+    public long getOccupancy() {
+        return aggregate().occupancy;
+    }
+
+    /**
+     * Returns the total capacity of the rooms with occupancy sensors on the
+     * campus.
+     *
+     * @return total occupancy capacity
+     */
+    public long getOccupancyCapacity() {
+        return aggregate().capacity;
+    }
+
+    /**
+     * Elapses one minute on each timed item manager ticking the sensors of a
+     * building on the campus, ticking each manager's items concurrently on
+     * this campus's pool. A manager shared by several buildings is ticked
+     * once.
+     */
+    public void elapseOneMinute() {
+        Set<TimedItemManager> managers = Collections.newSetFromMap(
+                new IdentityHashMap<TimedItemManager, Boolean>());
+        for (Building building : buildings) {
+            if (managers.add(building.getTimedItemManager())) {
+                building.getTimedItemManager().elapseOneMinute(pool);
+            }
+        }
+    }
+
+    private Aggregate aggregate() {
+        Building[] snapshot = buildings.toArray(new Building[0]);
+        return pool.invoke(new AggregateTask(snapshot, 0, snapshot.length));
+    }
+
+    /**
+     * Hazard and occupancy totals over a set of buildings.
+     */
+    private static class Aggregate {
+        private long hazardSum;
+        private int hazardCount;
+        private int maxHazard;
+        private long occupancy;
+        private long capacity;
+
+        private void add(Building building) {
+            for (Floor floor : building.getFloors()) {
+                for (Room room : floor.getRooms()) {
+                    for (Sensor sensor : room.getSensors()) {
+                        if (sensor instanceof HazardSensor) {
+                            int level = ((HazardSensor) sensor)
+                                    .getHazardLevel();
+                            hazardSum += level;
+                            hazardCount++;
+                            maxHazard = Math.max(maxHazard, level);
+                        }
+                        if (sensor instanceof OccupancySensor) {
+                            occupancy += sensor.getCurrentReading();
+                            capacity += ((OccupancySensor) sensor)
+                                    .getCapacity();
+                        }
+                    }
+                }
+            }
+        }
+
+        private Aggregate merge(Aggregate other) {
+            hazardSum += other.hazardSum;
+            hazardCount += other.hazardCount;
+            maxHazard = Math.max(maxHazard, other.maxHazard);
+            occupancy += other.occupancy;
+            capacity += other.capacity;
+            return this;
+        }
+    }
+
+    /**
+     * Aggregates a range of buildings, splitting it in half until only a few
+     * buildings remain.
+     */
+    private static class AggregateTask extends RecursiveTask<Aggregate> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Building[] buildings;
+        private final int from;
+        private final int to;
+
+        AggregateTask(Building[] buildings, int from, int to) {
+            this.buildings = buildings;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Aggregate compute() {
+            if (to - from <= BUILDINGS_PER_TASK) {
+                Aggregate total = new Aggregate();
+                for (int i = from; i < to; i++) {
+                    total.add(buildings[i]);
+                }
+                return total;
+            }
+            int middle = (from + to) >>> 1;
+            AggregateTask upper = new AggregateTask(buildings, middle, to);
+            upper.fork();
+            Aggregate lower = new AggregateTask(buildings, from, middle)
+                    .compute();
+            return lower.merge(upper.join());
+        }
+    }
+}
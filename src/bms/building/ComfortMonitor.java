@@ -0,0 +1,310 @@
+package bms.building;
+
+import bms.floor.FloorSnapshot;
+import bms.room.Room;
+import bms.room.RoomSnapshot;
+import bms.sensors.ComfortSensor;
+import bms.sensors.Sensor;
+import bms.sensors.SensorChangeSet;
+import bms.util.TickListener;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Maintains cached comfort levels for every room and floor of a building,
+ * and for the building as a whole.
+ *
+ * The comfort level of each comfort sensor is held in a primitive array,
+ * together with running totals per room, per floor and for the building.
+ * After each tick, only the sensors whose readings changed are re-evaluated,
+ * and their difference applied to the totals, so querying any aggregate is a
+ * constant-time lookup. When the structure version of the building's
+ * snapshot shows it has changed shape, rooms and floors which were only
+ * removed have their sensors subtracted from the totals, leaving their slots
+ * unused; any other change, or more than half of the slots becoming unused,
+ * rebuilds the cache.
+ *
+ * The monitor must be registered as a tick listener with the TimedItemManager
+ * that ticks the building's sensors.
+ */
+public class ComfortMonitor implements TickListener {
+
+    /** building being monitored */
+    private final Building building;
+
+    /** building snapshot the cache reflects the structure of */
+    private BuildingSnapshot indexed;
+
+    /** number of slots whose sensors were removed from the building */
+    private int removedSlots;
+
+    /** slot of each monitored sensor */
+    private final Map<Sensor, Integer> slotBySensor;
+
+    /** comfort sensor in each slot */
+    private ComfortSensor[] sensors;
+
+    /** last evaluated comfort level of each slot */
+    private int[] sensorComfort;
+
+    /** index of the room containing each slot */
+    private int[] sensorRoom;
+
+    /** index of each room in the room arrays */
+    private final Map<Room, Integer> roomIndex;
+
+    /** total comfort of the sensors in each room */
+    private int[] roomTotal;
+
+    /** number of comfort sensors in each room */
+    private int[] roomCount;
+
+    /** index of the floor containing each room */
+    private int[] roomFloor;
+
+    /** floor number of each floor in the floor arrays */
+    private int[] floorNumbers;
+
+    /** whether each floor in the floor arrays has been removed */
+    private boolean[] floorRemoved;
+
+    /** total comfort of the sensors on each floor */
+    private long[] floorTotal;
+
+    /** number of comfort sensors on each floor */
+    private int[] floorCount;
+
+    /** total comfort of the sensors in the building */
+    private long buildingTotal;
+
+    /** number of comfort sensors in the building */
+    private int buildingCount;
+
+    /**
+     * Creates a comfort monitor for the given building.
+     *
+     * @param building building to monitor
+     */
+    public ComfortMonitor(Building building) {
+        this.building = building;
+        roomIndex = new IdentityHashMap<Room, Integer>();
+        slotBySensor = new IdentityHashMap<Sensor, Integer>();
+        rebuild();
+    }
+
+    /**
+     * Rebuilds the cache by evaluating every comfort sensor in the building.
+     */
+    private void rebuild() {
+        BuildingSnapshot snapshot = building.getSnapshot();
+        indexed = snapshot;
+        removedSlots = 0;
+        roomIndex.clear();
+        slotBySensor.clear();
+
+        int floorTotalCount = snapshot.getFloors().size();
+        floorNumbers = new int[floorTotalCount];
+        floorRemoved = new boolean[floorTotalCount];
+        floorTotal = new long[floorTotalCount];
+        floorCount = new int[floorTotalCount];
+        buildingTotal = 0;
+        buildingCount = 0;
+
+        int roomTotalCount = 0;
+        int sensorTotalCount = 0;
+        for (FloorSnapshot floor : snapshot.getFloors()) {
+            for (RoomSnapshot room : floor.getRooms()) {
+                roomTotalCount++;
+                for (Sensor sensor : room.getSensors()) {
+                    if (sensor instanceof ComfortSensor) {
+                        sensorTotalCount++;
+                    }
+                }
+            }
+        }
+
+        roomTotal = new int[roomTotalCount];
+        roomCount = new int[roomTotalCount];
+        roomFloor = new int[roomTotalCount];
+        sensors = new ComfortSensor[sensorTotalCount];
+        sensorComfort = new int[sensorTotalCount];
+        sensorRoom = new int[sensorTotalCount];
+
+        int floorSlot = 0;
+        int roomSlot = 0;
+        int sensorSlot = 0;
+        for (FloorSnapshot floor : snapshot.getFloors()) {
+            floorNumbers[floorSlot] = floor.getFloorNumber();
+            for (RoomSnapshot room : floor.getRooms()) {
+                roomIndex.put(room.getRoom(), roomSlot);
+                roomFloor[roomSlot] = floorSlot;
+                for (Sensor sensor : room.getSensors()) {
+                    if (!(sensor instanceof ComfortSensor)) {
+                        continue;
+                    }
+                    int comfort = ((ComfortSensor) sensor).getComfortLevel();
+                    sensors[sensorSlot] = (ComfortSensor) sensor;
+                    sensorComfort[sensorSlot] = comfort;
+                    sensorRoom[sensorSlot] = roomSlot;
+                    slotBySensor.put(sensor, sensorSlot);
+                    roomTotal[roomSlot] += comfort;
+                    roomCount[roomSlot]++;
+                    floorTotal[floorSlot] += comfort;
+                    floorCount[floorSlot]++;
+                    buildingTotal += comfort;
+                    buildingCount++;
+                    sensorSlot++;
+                }
+                roomSlot++;
+            }
+            floorSlot++;
+        }
+    }
+
+    /**
+     * Brings the cache up to date if the building has changed shape since it
+     * was built, subtracting removed rooms and floors where possible.
+     *
+     * @return true if the cache was rebuilt
+     */
+    private boolean ensureCurrent() {
+        BuildingSnapshot current = building.getSnapshot();
+        if (indexed.getStructureVersion() == current.getStructureVersion()) {
+            return false;
+        }
+        Removals removals = Removals.between(indexed, current);
+        if (removals == null) {
+            rebuild();
+            return true;
+        }
+        for (RoomSnapshot room : removals.getRooms()) {
+            remove(room);
+        }
+        for (FloorSnapshot floor : removals.getFloors()) {
+            for (int i = 0; i < floorNumbers.length; i++) {
+                if (floorNumbers[i] == floor.getFloorNumber()) {
+                    floorRemoved[i] = true;
+                }
+            }
+        }
+        indexed = current;
+        if (removedSlots * 2 > sensors.length) {
+            rebuild();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Subtracts a removed room's comfort sensors from the totals.
+     */
+    private void remove(RoomSnapshot room) {
+        Integer roomSlot = roomIndex.remove(room.getRoom());
+        if (roomSlot == null) {
+            return;
+        }
+        int floor = roomFloor[roomSlot];
+        for (Sensor sensor : room.getSensors()) {
+            Integer slot = slotBySensor.remove(sensor);
+            if (slot == null) {
+                continue;
+            }
+            floorTotal[floor] -= sensorComfort[slot];
+            floorCount[floor]--;
+            buildingTotal -= sensorComfort[slot];
+            buildingCount--;
+            sensors[slot] = null;
+            removedSlots++;
+        }
+        roomTotal[roomSlot] = 0;
+        roomCount[roomSlot] = 0;
+    }
+
+    /**
+     * Re-evaluates the comfort sensors whose readings changed in the tick.
+     *
+     * @param minute minute of the tick
+     * @param changes sensors whose readings changed
+     */
+    @Override
+    public void tickCompleted(int minute, SensorChangeSet changes) {
+        if (ensureCurrent()) {
+            return;
+        }
+        for (int i = 0; i < changes.size(); i++) {
+            Integer slotOfSensor = slotBySensor.get(changes.get(i));
+            if (slotOfSensor == null) {
+                continue;
+            }
+            int slot = slotOfSensor;
+            int comfort = sensors[slot].getComfortLevel();
+            int delta = comfort - sensorComfort[slot];
+            if (delta == 0) {
+                continue;
+            }
+            sensorComfort[slot] = comfort;
+            int room = sensorRoom[slot];
+            roomTotal[room] += delta;
+            floorTotal[roomFloor[room]] += delta;
+            buildingTotal += delta;
+        }
+    }
+
+    /**
+     * Returns the cached comfort level of the given room, which is the
+     * average of its comfort sensors' levels as of the latest tick.
+     *
+     * @param room room in the monitored building
+     * @return comfort level of the room, 0 to 100; or 0 if the room has no
+     * comfort sensors
+     * @throws IllegalArgumentException if the room is not in the building
+     */
+    public int getRoomComfort(Room room) throws IllegalArgumentException {
+        ensureCurrent();
+        Integer slot = roomIndex.get(room);
+        if (slot == null) {
+            throw new IllegalArgumentException();
+        }
+        return average(roomTotal[slot], roomCount[slot]);
+    }
+
+    /**
+     * Returns the cached comfort level of the given floor, which is the
+     * average of the levels of all comfort sensors on the floor.
+     *
+     * @param floorNumber number of the floor
+     * @return comfort level of the floor, 0 to 100; or 0 if the floor has no
+     * comfort sensors
+     * @throws IllegalArgumentException if the floor is not in the building
+     */
+    public int getFloorComfort(int floorNumber)
+            throws IllegalArgumentException {
+        ensureCurrent();
+        for (int i = 0; i < floorNumbers.length; i++) {
+            if (floorNumbers[i] == floorNumber && !floorRemoved[i]) {
+                return average(floorTotal[i], floorCount[i]);
+            }
+        }
+        throw new IllegalArgumentException();
+    }
+
+    /**
+     * Returns the cached comfort level of the building, which is the average
+     * of the levels of all comfort sensors in the building.
+     *
+     * @return comfort level of the building, 0 to 100; or 0 if the building
+     * has no comfort sensors
+     */
+    public int getBuildingComfort() {
+        ensureCurrent();
+        return average(buildingTotal, buildingCount);
+    }
+
+    private static int average(long total, int count) {
+        if (count == 0) {
+            return 0;
+        }
+        return Math.round((float) total / count);
+    }
+}
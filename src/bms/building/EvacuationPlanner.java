@@ -0,0 +1,482 @@
+package bms.building;
+
+import bms.floor.Floor;
+import bms.floor.FloorSnapshot;
+import bms.floor.Rectangle;
+import bms.room.Room;
+import bms.room.RoomSnapshot;
+import bms.sensors.HazardSensor;
+import bms.sensors.Sensor;
+import bms.sensors.SensorChangeSet;
+import bms.util.TickListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Plans evacuation routes from every room of a building to the outside.
+ *
+ * Rooms are connected to the rooms they share a wall with on the same floor,
+ * at a cost equal to the distance between their centres. On the ground floor,
+ * rooms touching the outer wall of the floor are exits. Every floor above is
+ * connected to the floor below by stairwells, each at a fixed point on the
+ * floors, so that the room containing the point on one floor leads to the
+ * room containing it on the floor below.
+ *
+ * Each floor holds a distance field giving, for every room, the length of the
+ * shortest route out of the building, computed with Dijkstra's algorithm
+ * seeded from the exits or from the stairwells' distances on the floor below.
+ * Rooms where any hazard sensor reports a level at or above the planner's
+ * threshold are impassable, though the occupants of such a room are still
+ * routed out of it through its best passable neighbour, exit or stairwell.
+ * When the planner is registered as a tick
+ * listener, only rooms whose sensors changed are re-checked, and only the
+ * floors from the lowest affected floor upwards are recomputed.
+ */
+public class EvacuationPlanner implements TickListener {
+
+    /** room index meaning the route leaves the building */
+    private static final int EXIT = -1;
+
+    /** room index meaning the route continues down a stairwell */
+    private static final int STAIRS = -2;
+
+    /** room index meaning there is no route */
+    private static final int NONE = -3;
+
+    /** building being planned */
+    private final Building building;
+
+    /** hazard level at or above which a room is impassable */
+    private final int hazardThreshold;
+
+    /** walking distance, in metres, of one flight of stairs */
+    private final double stairLength;
+
+    /** x coordinates of the stairwells */
+    private final List<Double> stairX;
+
+    /** y coordinates of the stairwells */
+    private final List<Double> stairY;
+
+    /** building structure version the plan was built at */
+    private long plannedVersion;
+
+    /** floors in ascending floor number order */
+    private Floor[] floors;
+
+    /** rooms of each floor */
+    private Room[][] rooms;
+
+    /** position of each room within its floor's arrays */
+    private final Map<Room, Integer> roomIndex;
+
+    /** indices of the rooms adjacent to each room, per floor */
+    private int[][][] neighbours;
+
+    /** distance to each adjacent room, per floor */
+    private double[][][] neighbourDistances;
+
+    /** cost of leaving the building directly from each room, or infinity */
+    private double[][] exitCosts;
+
+    /** stairwell room index on each floor, for each stairwell, or -1 */
+    private int[][] stairRooms;
+
+    /** whether each room is impassable, per floor */
+    private boolean[][] blocked;
+
+    /** distance out of the building from each room, per floor */
+    private double[][] distances;
+
+    /** next room on the route from each room, or EXIT, STAIRS or NONE */
+    private int[][] nextRooms;
+
+    /** floor and room position of each sensor */
+    private final Map<Sensor, Long> sensorLocations;
+
+    /**
+     * Creates a planner for the given building with a single stairwell at the
+     * floors' origin corner, and plans every route.
+     *
+     * @param building building to plan routes for
+     * @param hazardThreshold hazard level, 0 to 100, at or above which a room
+     *                        cannot be passed through
+     * @param stairLength walking distance in metres of one flight of stairs
+     * @throws IllegalArgumentException if stairLength is negative
+     */
+    public EvacuationPlanner(Building building, int hazardThreshold,
+                             double stairLength)
+            throws IllegalArgumentException {
+        if (stairLength < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.building = building;
+        this.hazardThreshold = hazardThreshold;
+        this.stairLength = stairLength;
+        stairX = new ArrayList<Double>();
+        stairY = new ArrayList<Double>();
+        stairX.add(0.0);
+        stairY.add(0.0);
+        roomIndex = new IdentityHashMap<Room, Integer>();
+        sensorLocations = new IdentityHashMap<Sensor, Long>();
+        rebuild();
+    }
+
+    /**
+     * Adds a stairwell at the given point, which connects the room containing
+     * the point on each floor to the room containing it on the floor below.
+     *
+     * @param x distance along the floors' width, in metres
+     * @param y distance along the floors' length, in metres
+     */
+    public void addStairwell(double x, double y) {
+        stairX.add(x);
+        stairY.add(y);
+        rebuild();
+    }
+
+    /**
+     * Rebuilds the room graph and recomputes every floor.
+     */
+    private void rebuild() {
+        BuildingSnapshot snapshot = building.getSnapshot();
+        plannedVersion = snapshot.getStructureVersion();
+        FloorSnapshot[] floorSnapshots =
+                snapshot.getFloors().toArray(new FloorSnapshot[0]);
+        Arrays.sort(floorSnapshots,
+                Comparator.comparingInt(FloorSnapshot::getFloorNumber));
+
+        int floorCount = floorSnapshots.length;
+        rooms = new Room[floorCount][];
+        neighbours = new int[floorCount][][];
+        neighbourDistances = new double[floorCount][][];
+        exitCosts = new double[floorCount][];
+        stairRooms = new int[floorCount][];
+        blocked = new boolean[floorCount][];
+        distances = new double[floorCount][];
+        nextRooms = new int[floorCount][];
+        roomIndex.clear();
+        sensorLocations.clear();
+
+        floors = new Floor[floorCount];
+        for (int f = 0; f < floorCount; f++) {
+            floors[f] = floorSnapshots[f].getFloor();
+            List<RoomSnapshot> roomSnapshots = floorSnapshots[f].getRooms();
+            rooms[f] = new Room[roomSnapshots.size()];
+            for (int r = 0; r < rooms[f].length; r++) {
+                rooms[f][r] = roomSnapshots.get(r).getRoom();
+                roomIndex.put(rooms[f][r], r);
+                for (Sensor sensor : roomSnapshots.get(r).getSensors()) {
+                    sensorLocations.put(sensor, ((long) f << 32) | r);
+                }
+            }
+        }
+
+        for (int f = 0; f < floorCount; f++) {
+            buildFloorGraph(f);
+        }
+        recomputeFrom(0);
+    }
+
+    private void buildFloorGraph(int f) {
+        Floor floor = floors[f];
+        int count = rooms[f].length;
+        neighbours[f] = new int[count][];
+        neighbourDistances[f] = new double[count][];
+        exitCosts[f] = new double[count];
+        blocked[f] = new boolean[count];
+        distances[f] = new double[count];
+        nextRooms[f] = new int[count];
+
+        for (int r = 0; r < count; r++) {
+            Room room = rooms[f][r];
+            Rectangle placement = floor.getRoomPlacement(room.getRoomNumber());
+            List<Room> adjacent = floor.getAdjacentRooms(room.getRoomNumber());
+            neighbours[f][r] = new int[adjacent.size()];
+            neighbourDistances[f][r] = new double[adjacent.size()];
+            for (int i = 0; i < adjacent.size(); i++) {
+                Rectangle other = floor.getRoomPlacement(
+                        adjacent.get(i).getRoomNumber());
+                neighbours[f][r][i] = roomIndex.get(adjacent.get(i));
+                neighbourDistances[f][r][i] = Math.hypot(
+                        placement.getCentreX() - other.getCentreX(),
+                        placement.getCentreY() - other.getCentreY());
+            }
+
+            exitCosts[f][r] = Double.POSITIVE_INFINITY;
+            if (f == 0) {
+                double toWall = Math.min(
+                        Math.min(placement.getCentreX(),
+                                floor.getWidth() - placement.getCentreX()),
+                        Math.min(placement.getCentreY(),
+                                floor.getLength() - placement.getCentreY()));
+                if (touchesOuterWall(floor, placement)) {
+                    exitCosts[f][r] = toWall;
+                }
+            }
+
+            blocked[f][r] = isHazardous(room);
+        }
+
+        stairRooms[f] = new int[stairX.size()];
+        for (int s = 0; s < stairX.size(); s++) {
+            Room stairRoom = floor.getRoomAt(stairX.get(s), stairY.get(s));
+            stairRooms[f][s] = stairRoom == null
+                    ? -1 : roomIndex.get(stairRoom);
+        }
+    }
+
+    private static boolean touchesOuterWall(Floor floor, Rectangle placement) {
+        double tolerance = 1e-6;
+        return placement.getX() <= tolerance
+                || placement.getY() <= tolerance
+                || placement.getX() + placement.getWidth()
+                >= floor.getWidth() - tolerance
+                || placement.getY() + placement.getLength()
+                >= floor.getLength() - tolerance;
+    }
+
+    private boolean isHazardous(Room room) {
+        for (Sensor sensor : room.getSensors()) {
+            if (sensor instanceof HazardSensor && ((HazardSensor) sensor)
+                    .getHazardLevel() >= hazardThreshold) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Recomputes the distance fields of the given floor and every floor above
+     * it, since routes from upper floors pass through lower ones.
+     */
+    private void recomputeFrom(int lowestFloor) {
+        for (int f = lowestFloor; f < floors.length; f++) {
+            computeFloor(f);
+        }
+    }
+
+    /**
+     * Runs Dijkstra's algorithm over one floor, seeded from its exits or from
+     * the distances of the stairwell rooms on the floor below.
+     */
+    private void computeFloor(int f) {
+        double[] distance = distances[f];
+        int[] next = nextRooms[f];
+        Arrays.fill(distance, Double.POSITIVE_INFINITY);
+        Arrays.fill(next, NONE);
+        PriorityQueue<double[]> queue = new PriorityQueue<double[]>(
+                Comparator.comparingDouble(entry -> entry[0]));
+
+        for (int r = 0; r < distance.length; r++) {
+            if (!blocked[f][r] && exitCosts[f][r] < distance[r]) {
+                distance[r] = exitCosts[f][r];
+                next[r] = EXIT;
+                queue.add(new double[] {distance[r], r});
+            }
+        }
+        if (f > 0) {
+            for (int s = 0; s < stairX.size(); s++) {
+                int room = stairRooms[f][s];
+                int below = stairRooms[f - 1][s];
+                if (room < 0 || below < 0 || blocked[f][room]
+                        || blocked[f - 1][below]) {
+                    continue;
+                }
+                double cost = distances[f - 1][below] + stairLength;
+                if (cost < distance[room]) {
+                    distance[room] = cost;
+                    next[room] = STAIRS;
+                    queue.add(new double[] {cost, room});
+                }
+            }
+        }
+
+        while (!queue.isEmpty()) {
+            double[] entry = queue.poll();
+            int room = (int) entry[1];
+            if (entry[0] > distance[room]) {
+                continue;
+            }
+            for (int i = 0; i < neighbours[f][room].length; i++) {
+                int neighbour = neighbours[f][room][i];
+                double cost = distance[room] + neighbourDistances[f][room][i];
+                if (!blocked[f][neighbour] && cost < distance[neighbour]) {
+                    distance[neighbour] = cost;
+                    next[neighbour] = room;
+                    queue.add(new double[] {cost, neighbour});
+                }
+            }
+        }
+
+        for (int r = 0; r < distance.length; r++) {
+            if (blocked[f][r]) {
+                routeOutOf(f, r);
+            }
+        }
+    }
+
+    /**
+     * Routes the occupants of an impassable room out through its best
+     * passable neighbour, exit or stairwell. No other route passes through
+     * the room.
+     */
+    private void routeOutOf(int f, int r) {
+        double best = exitCosts[f][r];
+        int next = best < Double.POSITIVE_INFINITY ? EXIT : NONE;
+        if (f > 0) {
+            for (int s = 0; s < stairX.size(); s++) {
+                int below = stairRooms[f - 1][s];
+                if (stairRooms[f][s] != r || below < 0
+                        || blocked[f - 1][below]) {
+                    continue;
+                }
+                double cost = distances[f - 1][below] + stairLength;
+                if (cost < best) {
+                    best = cost;
+                    next = STAIRS;
+                }
+            }
+        }
+        for (int i = 0; i < neighbours[f][r].length; i++) {
+            int neighbour = neighbours[f][r][i];
+            double cost = distances[f][neighbour]
+                    + neighbourDistances[f][r][i];
+            if (!blocked[f][neighbour] && cost < best) {
+                best = cost;
+                next = neighbour;
+            }
+        }
+        distances[f][r] = best;
+        nextRooms[f][r] = next;
+    }
+
+    /**
+     * Re-checks the rooms whose sensors changed, and recomputes routes from
+     * the lowest floor on which a room became passable or impassable.
+     *
+     * @param minute minute of the tick
+     * @param changes sensors whose readings changed
+     */
+    @Override
+    public void tickCompleted(int minute, SensorChangeSet changes) {
+        if (plannedVersion != building.getSnapshot().getStructureVersion()) {
+            rebuild();
+            return;
+        }
+        int lowestChanged = floors.length;
+        for (int i = 0; i < changes.size(); i++) {
+            Long location = sensorLocations.get(changes.get(i));
+            if (location == null) {
+                continue;
+            }
+            int f = (int) (location >>> 32);
+            int r = (int) location.longValue();
+            boolean hazardous = isHazardous(rooms[f][r]);
+            if (hazardous != blocked[f][r]) {
+                blocked[f][r] = hazardous;
+                lowestChanged = Math.min(lowestChanged, f);
+            }
+        }
+        recomputeFrom(lowestChanged);
+    }
+
+    private void ensureCurrent() {
+        if (plannedVersion != building.getSnapshot().getStructureVersion()) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Locates a room, returning its floor position in the high 32 bits and
+     * its room position in the low 32 bits.
+     */
+    private long locate(int floorNumber, int roomNumber)
+            throws IllegalArgumentException {
+        ensureCurrent();
+        for (int f = 0; f < floors.length; f++) {
+            if (floors[f].getFloorNumber() == floorNumber) {
+                Room room = floors[f].getRoomByNumber(roomNumber);
+                if (room == null) {
+                    break;
+                }
+                return ((long) f << 32) | roomIndex.get(room);
+            }
+        }
+        throw new IllegalArgumentException();
+    }
+
+    /**
+     * Returns the length of the shortest route out of the building from the
+     * given room.
+     *
+     * @param floorNumber floor number of the room
+     * @param roomNumber room number of the room
+     * @return route length in metres, or Double.POSITIVE_INFINITY if there is
+     * no safe route
+     * @throws IllegalArgumentException if the room does not exist
+     */
+    public double getRouteLength(int floorNumber, int roomNumber)
+            throws IllegalArgumentException {
+        long location = locate(floorNumber, roomNumber);
+        return distances[(int) (location >>> 32)][(int) location];
+    }
+
+    /**
+     * Returns the shortest route out of the building from the given room, as
+     * the sequence of rooms passed through, starting with the given room and
+     * ending with a ground floor room on the outer wall.
+     *
+     * @param floorNumber floor number of the room
+     * @param roomNumber room number of the room
+     * @return new list of rooms on the route, empty if there is no safe route
+     * @throws IllegalArgumentException if the room does not exist
+     */
+    public List<Room> getRoute(int floorNumber, int roomNumber)
+            throws IllegalArgumentException {
+        long location = locate(floorNumber, roomNumber);
+        int f = (int) (location >>> 32);
+        int r = (int) location;
+        List<Room> route = new ArrayList<Room>();
+        if (nextRooms[f][r] == NONE) {
+            return route;
+        }
+        while (true) {
+            route.add(rooms[f][r]);
+            int next = nextRooms[f][r];
+            if (next == EXIT) {
+                return route;
+            } else if (next == STAIRS) {
+                int stairwell = stairwellFrom(f, r);
+                f--;
+                r = stairRooms[f][stairwell];
+            } else {
+                r = next;
+            }
+        }
+    }
+
+    /**
+     * Returns the stairwell whose distance seeded the given stairwell room.
+     */
+    private int stairwellFrom(int f, int room) {
+        int best = -1;
+        double bestCost = Double.POSITIVE_INFINITY;
+        for (int s = 0; s < stairX.size(); s++) {
+            int below = stairRooms[f - 1][s];
+            if (stairRooms[f][s] == room && below >= 0
+                    && !blocked[f - 1][below]
+                    && distances[f - 1][below] + stairLength < bestCost) {
+                best = s;
+                bestCost = distances[f - 1][below] + stairLength;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,683 @@
+package bms.building;
+
+import bms.floor.FloorSnapshot;
+import bms.room.Room;
+import bms.room.RoomSnapshot;
+import bms.room.RoomType;
+import bms.sensors.OccupancySensor;
+import bms.sensors.Sensor;
+import bms.sensors.SensorChangeSet;
+import bms.util.TickListener;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Tracks the occupancy of a building's rooms against their capacity, as
+ * reported by their occupancy sensors.
+ *
+ * Occupancy is kept as a series for each room with an occupancy sensor, for
+ * each floor, for each room type and for the building. Each series holds its
+ * current occupancy, its peak over the current day, and its changes over the
+ * last fifteen minutes, from which the average over that window is derived.
+ * All series live in primitive arrays, and since occupancy only changes when
+ * a sensor's reading changes, each tick touches only the series of the rooms
+ * whose sensors changed.
+ *
+ * Rooms are also held in a heap ordered by utilisation, the ratio of
+ * occupancy to capacity, which is adjusted as readings change so that the
+ * most utilised rooms can be found without scanning every room.
+ *
+ * Rooms and floors which are removed from the building have their occupancy
+ * and capacity subtracted from the series containing them and leave the
+ * heap, without laying out the series again. Any other change of shape, or
+ * more than half of the room series being removed, lays them out afresh.
+ *
+ * The analytics must be registered as a tick listener with the
+ * TimedItemManager that ticks the building's sensors.
+ */
+public class OccupancyAnalytics implements TickListener {
+
+    /** number of minutes averaged over by the sliding window */
+    public static final int WINDOW_MINUTES = 15;
+
+    /** number of minutes in the day over which peaks are taken */
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    /**
+     * number of changes retained per series, which is enough to cover the
+     * window since changes are recorded at most once per minute
+     */
+    private static final int EVENTS = WINDOW_MINUTES + 1;
+
+    /** building being analysed */
+    private final Building building;
+
+    /** building snapshot the series reflect the structure of */
+    private BuildingSnapshot indexed;
+
+    /** number of room series whose rooms were removed from the building */
+    private int removedRooms;
+
+    /** minute of the most recent tick */
+    private int currentMinute;
+
+    /** room of each room series, in series order */
+    private Room[] rooms;
+
+    /** occupancy sensor of each room series */
+    private OccupancySensor[] sensors;
+
+    /** series of each room */
+    private final Map<Room, Integer> roomIndex;
+
+    /** series of each room's occupancy sensor */
+    private final Map<Sensor, Integer> seriesBySensor;
+
+    /** floor series of each room series */
+    private int[] roomFloor;
+
+    /** room type series of each room series */
+    private int[] roomTypeSeries;
+
+    /** floor number of each floor series, in series order after the rooms */
+    private int[] floorNumbers;
+
+    /** whether the floor of each floor series has been removed */
+    private boolean[] floorRemoved;
+
+    /** index of the first floor series */
+    private int firstFloor;
+
+    /** index of the first room type series */
+    private int firstType;
+
+    /** index of the building series */
+    private int buildingSeries;
+
+    /** current occupancy of each series */
+    private int[] occupancy;
+
+    /** total capacity of each series */
+    private int[] capacity;
+
+    /** peak occupancy of each series on the day in peakDay */
+    private int[] peak;
+
+    /** day on which each series' peak was reached */
+    private int[] peakDay;
+
+    /** minutes of each series' retained changes, EVENTS per series */
+    private int[] eventMinutes;
+
+    /** occupancies of each series' retained changes, EVENTS per series */
+    private int[] eventValues;
+
+    /** number of changes ever recorded for each series */
+    private int[] eventCount;
+
+    /** room series, arranged as a max-heap on utilisation */
+    private int[] heap;
+
+    /** number of room series in the heap */
+    private int heapSize;
+
+    /** position of each room series in the heap */
+    private int[] heapPosition;
+
+    /**
+     * Creates occupancy analytics for the given building, starting from the
+     * current readings of its occupancy sensors.
+     *
+     * @param building building to analyse
+     */
+    public OccupancyAnalytics(Building building) {
+        this.building = building;
+        roomIndex = new IdentityHashMap<Room, Integer>();
+        seriesBySensor = new IdentityHashMap<Sensor, Integer>();
+        currentMinute = building.getTimedItemManager().getMinutesElapsed();
+        rebuild();
+    }
+
+    /**
+     * Lays out the series for the building's current rooms and floors,
+     * carrying over the windows and peaks of any series which already
+     * existed.
+     */
+    private void rebuild() {
+        BuildingSnapshot snapshot = building.getSnapshot();
+        indexed = snapshot;
+        removedRooms = 0;
+        List<RoomSnapshot> roomList = new ArrayList<RoomSnapshot>();
+        List<Integer> roomFloorList = new ArrayList<Integer>();
+        List<FloorSnapshot> floors = snapshot.getFloors();
+        for (int f = 0; f < floors.size(); f++) {
+            for (RoomSnapshot room : floors.get(f).getRooms()) {
+                if (occupancySensor(room) != null) {
+                    roomList.add(room);
+                    roomFloorList.add(f);
+                }
+            }
+        }
+
+        Map<Room, Integer> oldRoomIndex = new IdentityHashMap<Room, Integer>(
+                roomIndex);
+        int[] oldFloorNumbers = floorNumbers;
+        boolean[] oldFloorRemoved = floorRemoved;
+        int oldFirstFloor = firstFloor;
+        int oldFirstType = firstType;
+        int[] oldPeak = peak;
+        int[] oldPeakDay = peakDay;
+        int[] oldEventMinutes = eventMinutes;
+        int[] oldEventValues = eventValues;
+        int[] oldEventCount = eventCount;
+
+        int roomCount = roomList.size();
+        firstFloor = roomCount;
+        firstType = firstFloor + floors.size();
+        buildingSeries = firstType + RoomType.values().length;
+        int seriesCount = buildingSeries + 1;
+
+        rooms = new Room[roomCount];
+        sensors = new OccupancySensor[roomCount];
+        roomFloor = new int[roomCount];
+        roomTypeSeries = new int[roomCount];
+        floorNumbers = new int[floors.size()];
+        floorRemoved = new boolean[floors.size()];
+        occupancy = new int[seriesCount];
+        capacity = new int[seriesCount];
+        peak = new int[seriesCount];
+        peakDay = new int[seriesCount];
+        eventMinutes = new int[seriesCount * EVENTS];
+        eventValues = new int[seriesCount * EVENTS];
+        eventCount = new int[seriesCount];
+        roomIndex.clear();
+        seriesBySensor.clear();
+
+        for (int f = 0; f < floors.size(); f++) {
+            floorNumbers[f] = floors.get(f).getFloorNumber();
+        }
+        for (int r = 0; r < roomCount; r++) {
+            rooms[r] = roomList.get(r).getRoom();
+            sensors[r] = occupancySensor(roomList.get(r));
+            roomIndex.put(rooms[r], r);
+            seriesBySensor.put(sensors[r], r);
+            roomFloor[r] = firstFloor + roomFloorList.get(r);
+            roomTypeSeries[r] = firstType + rooms[r].getType().ordinal();
+            int reading = sensors[r].getCurrentReading();
+            int roomCapacity = sensors[r].getCapacity();
+            occupancy[r] = reading;
+            capacity[r] = roomCapacity;
+            for (int s : new int[] {roomFloor[r], roomTypeSeries[r],
+                    buildingSeries}) {
+                occupancy[s] += reading;
+                capacity[s] += roomCapacity;
+            }
+        }
+
+        for (int s = 0; s < seriesCount; s++) {
+            int old = -1;
+            if (oldEventCount != null) {
+                if (s < firstFloor) {
+                    Integer oldRoom = oldRoomIndex.get(rooms[s]);
+                    old = oldRoom == null ? -1 : oldRoom;
+                } else if (s < firstType) {
+                    for (int f = 0; f < oldFloorNumbers.length; f++) {
+                        if (oldFloorNumbers[f] == floorNumbers[s - firstFloor]
+                                && !oldFloorRemoved[f]) {
+                            old = oldFirstFloor + f;
+                        }
+                    }
+                } else {
+                    old = oldFirstType + (s - firstType);
+                }
+            }
+            int value = occupancy[s];
+            if (old < 0) {
+                peak[s] = value;
+                peakDay[s] = currentMinute / MINUTES_PER_DAY;
+                eventMinutes[s * EVENTS] = currentMinute;
+                eventValues[s * EVENTS] = value;
+                eventCount[s] = 1;
+                continue;
+            }
+            peak[s] = oldPeak[old];
+            peakDay[s] = oldPeakDay[old];
+            eventCount[s] = oldEventCount[old];
+            System.arraycopy(oldEventMinutes, old * EVENTS,
+                    eventMinutes, s * EVENTS, EVENTS);
+            System.arraycopy(oldEventValues, old * EVENTS,
+                    eventValues, s * EVENTS, EVENTS);
+            occupancy[s] = latestValue(s);
+            record(s, value);
+        }
+
+        heap = new int[roomCount];
+        heapSize = roomCount;
+        heapPosition = new int[roomCount];
+        for (int r = 0; r < roomCount; r++) {
+            heap[r] = r;
+            heapPosition[r] = r;
+        }
+        for (int i = roomCount / 2 - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+    }
+
+    private static OccupancySensor occupancySensor(RoomSnapshot room) {
+        for (Sensor sensor : room.getSensors()) {
+            if (sensor instanceof OccupancySensor) {
+                return (OccupancySensor) sensor;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Applies the occupancy changes of the sensors which changed in the tick.
+     *
+     * @param minute minute of the tick
+     * @param changes sensors whose readings changed
+     */
+    @Override
+    public void tickCompleted(int minute, SensorChangeSet changes) {
+        currentMinute = minute;
+        if (ensureCurrent()) {
+            return;
+        }
+        for (int i = 0; i < changes.size(); i++) {
+            Integer series = seriesBySensor.get(changes.get(i));
+            if (series == null) {
+                continue;
+            }
+            int room = series;
+            int delta = sensors[room].getCurrentReading() - occupancy[room];
+            if (delta == 0) {
+                continue;
+            }
+            record(room, occupancy[room] + delta);
+            record(roomFloor[room], occupancy[roomFloor[room]] + delta);
+            record(roomTypeSeries[room],
+                    occupancy[roomTypeSeries[room]] + delta);
+            record(buildingSeries, occupancy[buildingSeries] + delta);
+
+            int position = heapPosition[room];
+            siftUp(position);
+            siftDown(heapPosition[room]);
+        }
+    }
+
+    /**
+     * Sets the occupancy of a series as of the current minute, updating its
+     * daily peak and recording the change in its window.
+     */
+    private void record(int series, int value) {
+        if (value == occupancy[series]) {
+            return;
+        }
+        int day = currentMinute / MINUTES_PER_DAY;
+        if (peakDay[series] != day) {
+            peak[series] = occupancy[series];
+            peakDay[series] = day;
+        }
+        peak[series] = Math.max(peak[series], value);
+        occupancy[series] = value;
+
+        int base = series * EVENTS;
+        int latest = base + (eventCount[series] - 1) % EVENTS;
+        if (eventMinutes[latest] == currentMinute) {
+            eventValues[latest] = value;
+            return;
+        }
+        int next = base + eventCount[series] % EVENTS;
+        eventMinutes[next] = currentMinute;
+        eventValues[next] = value;
+        eventCount[series]++;
+    }
+
+    private int latestValue(int series) {
+        return eventValues[series * EVENTS
+                + (eventCount[series] - 1) % EVENTS];
+    }
+
+    /**
+     * Returns the average occupancy of a series over the minutes of the
+     * window, taking the occupancy at the end of each minute.
+     */
+    private double windowAverage(int series) {
+        int base = series * EVENTS;
+        int retained = Math.min(eventCount[series], EVENTS);
+        int windowStart = currentMinute - WINDOW_MINUTES + 1;
+        int end = currentMinute;
+        long total = 0;
+        int oldestValue = 0;
+        for (int k = 0; k < retained && end >= windowStart; k++) {
+            int slot = base + (eventCount[series] - 1 - k) % EVENTS;
+            int start = Math.max(eventMinutes[slot], windowStart);
+            total += (long) (end - start + 1) * eventValues[slot];
+            end = start - 1;
+            oldestValue = eventValues[slot];
+        }
+        if (end >= windowStart) {
+            total += (long) (end - windowStart + 1) * oldestValue;
+        }
+        return (double) total / WINDOW_MINUTES;
+    }
+
+    private int dailyPeak(int series) {
+        if (peakDay[series] != currentMinute / MINUTES_PER_DAY) {
+            return occupancy[series];
+        }
+        return peak[series];
+    }
+
+    /**
+     * Returns whether room series a is more utilised than room series b.
+     */
+    private boolean moreUtilised(int a, int b) {
+        return (long) occupancy[a] * capacity[b]
+                > (long) occupancy[b] * capacity[a];
+    }
+
+    private void siftUp(int position) {
+        int room = heap[position];
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (!moreUtilised(room, heap[parent])) {
+                break;
+            }
+            heap[position] = heap[parent];
+            heapPosition[heap[position]] = position;
+            position = parent;
+        }
+        heap[position] = room;
+        heapPosition[room] = position;
+    }
+
+    private void siftDown(int position) {
+        int room = heap[position];
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize
+                    && moreUtilised(heap[child + 1], heap[child])) {
+                child++;
+            }
+            if (!moreUtilised(heap[child], room)) {
+                break;
+            }
+            heap[position] = heap[child];
+            heapPosition[heap[position]] = position;
+            position = child;
+        }
+        heap[position] = room;
+        heapPosition[room] = position;
+    }
+
+    /**
+     * Brings the series up to date if the building has changed shape since
+     * they were laid out, subtracting removed rooms and floors where
+     * possible.
+     *
+     * @return true if the series were laid out again
+     */
+    private boolean ensureCurrent() {
+        BuildingSnapshot current = building.getSnapshot();
+        if (indexed.getStructureVersion() == current.getStructureVersion()) {
+            return false;
+        }
+        Removals removals = Removals.between(indexed, current);
+        if (removals == null) {
+            rebuild();
+            return true;
+        }
+        for (RoomSnapshot room : removals.getRooms()) {
+            remove(room.getRoom());
+        }
+        for (FloorSnapshot floor : removals.getFloors()) {
+            for (int f = 0; f < floorNumbers.length; f++) {
+                if (floorNumbers[f] == floor.getFloorNumber()) {
+                    floorRemoved[f] = true;
+                }
+            }
+        }
+        indexed = current;
+        if (removedRooms * 2 > rooms.length) {
+            rebuild();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Subtracts a removed room's occupancy and capacity from the series
+     * containing it, and takes it out of the heap.
+     */
+    private void remove(Room room) {
+        Integer series = roomIndex.remove(room);
+        if (series == null) {
+            return;
+        }
+        int r = series;
+        seriesBySensor.remove(sensors[r]);
+        for (int s : new int[] {roomFloor[r], roomTypeSeries[r],
+                buildingSeries}) {
+            record(s, occupancy[s] - occupancy[r]);
+            capacity[s] -= capacity[r];
+        }
+
+        int position = heapPosition[r];
+        int last = heap[--heapSize];
+        if (position < heapSize) {
+            heap[position] = last;
+            heapPosition[last] = position;
+            siftUp(position);
+            siftDown(heapPosition[last]);
+        }
+        rooms[r] = null;
+        sensors[r] = null;
+        removedRooms++;
+    }
+
+    private int roomSeries(Room room) throws IllegalArgumentException {
+        ensureCurrent();
+        Integer series = roomIndex.get(room);
+        if (series == null) {
+            throw new IllegalArgumentException();
+        }
+        return series;
+    }
+
+    private int floorSeries(int floorNumber) throws IllegalArgumentException {
+        ensureCurrent();
+        for (int f = 0; f < floorNumbers.length; f++) {
+            if (floorNumbers[f] == floorNumber && !floorRemoved[f]) {
+                return firstFloor + f;
+            }
+        }
+        throw new IllegalArgumentException();
+    }
+
+    /**
+     * Returns the current occupancy of the given room.
+     *
+     * @param room room with an occupancy sensor in the analysed building
+     * @return current number of people in the room
+     * @throws IllegalArgumentException if the room is not in the building or
+     * has no occupancy sensor
+     */
+    public int getRoomOccupancy(Room room) throws IllegalArgumentException {
+        return occupancy[roomSeries(room)];
+    }
+
+    /**
+     * Returns the average occupancy of the given room over the last
+     * WINDOW_MINUTES minutes.
+     *
+     * @param room room with an occupancy sensor in the analysed building
+     * @return average number of people in the room
+     * @throws IllegalArgumentException if the room is not in the building or
+     * has no occupancy sensor
+     */
+    public double getRoomAverageOccupancy(Room room)
+            throws IllegalArgumentException {
+        return windowAverage(roomSeries(room));
+    }
+
+    /**
+     * Returns the highest occupancy of the given room so far today.
+     *
+     * @param room room with an occupancy sensor in the analysed building
+     * @return peak number of people in the room today
+     * @throws IllegalArgumentException if the room is not in the building or
+     * has no occupancy sensor
+     */
+    public int getRoomPeakOccupancy(Room room)
+            throws IllegalArgumentException {
+        return dailyPeak(roomSeries(room));
+    }
+
+    /**
+     * Returns the current utilisation of the given room, the ratio of its
+     * occupancy to its capacity.
+     *
+     * @param room room with an occupancy sensor in the analysed building
+     * @return utilisation of the room, greater than 1 if over capacity; or
+     * Double.POSITIVE_INFINITY if a room with no capacity is occupied
+     * @throws IllegalArgumentException if the room is not in the building or
+     * has no occupancy sensor
+     */
+    public double getRoomUtilisation(Room room)
+            throws IllegalArgumentException {
+        return utilisation(occupancy[roomSeries(room)],
+                capacity[roomSeries(room)]);
+    }
+
+    /**
+     * Returns the current occupancy of the given floor.
+     *
+     * @param floorNumber number of the floor
+     * @return current number of people on the floor
+     * @throws IllegalArgumentException if the floor is not in the building
+     */
+    public int getFloorOccupancy(int floorNumber)
+            throws IllegalArgumentException {
+        return occupancy[floorSeries(floorNumber)];
+    }
+
+    /**
+     * Returns the average occupancy of the given floor over the last
+     * WINDOW_MINUTES minutes.
+     *
+     * @param floorNumber number of the floor
+     * @return average number of people on the floor
+     * @throws IllegalArgumentException if the floor is not in the building
+     */
+    public double getFloorAverageOccupancy(int floorNumber)
+            throws IllegalArgumentException {
+        return windowAverage(floorSeries(floorNumber));
+    }
+
+    /**
+     * Returns the highest occupancy of the given floor so far today.
+     *
+     * @param floorNumber number of the floor
+     * @return peak number of people on the floor today
+     * @throws IllegalArgumentException if the floor is not in the building
+     */
+    public int getFloorPeakOccupancy(int floorNumber)
+            throws IllegalArgumentException {
+        return dailyPeak(floorSeries(floorNumber));
+    }
+
+    /**
+     * Returns the current occupancy of the building.
+     *
+     * @return current number of people in the building
+     */
+    public int getBuildingOccupancy() {
+        ensureCurrent();
+        return occupancy[buildingSeries];
+    }
+
+    /**
+     * Returns the average occupancy of the building over the last
+     * WINDOW_MINUTES minutes.
+     *
+     * @return average number of people in the building
+     */
+    public double getBuildingAverageOccupancy() {
+        ensureCurrent();
+        return windowAverage(buildingSeries);
+    }
+
+    /**
+     * Returns the highest occupancy of the building so far today.
+     *
+     * @return peak number of people in the building today
+     */
+    public int getBuildingPeakOccupancy() {
+        ensureCurrent();
+        return dailyPeak(buildingSeries);
+    }
+
+    /**
+     * Returns the peak utilisation today of all rooms of the given type taken
+     * together, the ratio of their combined peak occupancy to their combined
+     * capacity.
+     *
+     * @param roomType type of room
+     * @return peak utilisation of rooms of the type; 0 if there are none
+     */
+    public double getPeakUtilisation(RoomType roomType) {
+        ensureCurrent();
+        int series = firstType + roomType.ordinal();
+        return utilisation(dailyPeak(series), capacity[series]);
+    }
+
+    /**
+     * Returns the most utilised rooms, in decreasing order of utilisation.
+     * Only the top of the utilisation heap is visited, so this takes time
+     * proportional to k log k rather than to the number of rooms.
+     *
+     * @param k maximum number of rooms to return
+     * @return new list of at most k rooms with occupancy sensors
+     * @throws IllegalArgumentException if k is negative
+     */
+    public List<Room> getMostUtilisedRooms(int k)
+            throws IllegalArgumentException {
+        if (k < 0) {
+            throw new IllegalArgumentException();
+        }
+        ensureCurrent();
+        List<Room> result = new ArrayList<Room>();
+        if (heapSize == 0 || k == 0) {
+            return result;
+        }
+        PriorityQueue<Integer> frontier = new PriorityQueue<Integer>(
+                (a, b) -> moreUtilised(heap[a], heap[b]) ? -1
+                        : moreUtilised(heap[b], heap[a]) ? 1 : 0);
+        frontier.add(0);
+        while (result.size() < k && !frontier.isEmpty()) {
+            int position = frontier.poll();
+            result.add(rooms[heap[position]]);
+            for (int child = 2 * position + 1;
+                 child <= 2 * position + 2 && child < heapSize; child++) {
+                frontier.add(child);
+            }
+        }
+        return result;
+    }
+
+    private static double utilisation(int occupancy, int capacity) {
+        if (capacity == 0) {
+            return occupancy == 0 ? 0 : Double.POSITIVE_INFINITY;
+        }
+        return (double) occupancy / capacity;
+    }
+}
@@ -0,0 +1,106 @@
+package bms.building;
+
+import bms.floor.Floor;
+import bms.floor.FloorSnapshot;
+import bms.room.Room;
+import bms.room.RoomSnapshot;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The floors and rooms removed from a building between two of its
+ * snapshots, for caches which can subtract removed parts from their
+ * aggregates rather than rebuilding.
+ *
+ * Only floors whose snapshots differ in structure version are compared room
+ * by room, so finding the removals takes time proportional to the number of
+ * floors plus the rooms of the floors which changed.
+ */
+final class Removals {
+
+    /** snapshots of the floors removed */
+    private final List<FloorSnapshot> floors;
+
+    /** snapshots of the rooms removed, including those of removed floors */
+    private final List<RoomSnapshot> rooms;
+
+    private Removals() {
+        floors = new ArrayList<FloorSnapshot>();
+        rooms = new ArrayList<RoomSnapshot>();
+    }
+
+    /**
+     * Returns the floors and rooms removed between two snapshots of a
+     * building, provided nothing was added and no room's sensors changed.
+     *
+     * @param previous earlier snapshot
+     * @param current later snapshot of the same building
+     * @return removals, or null if the building changed in any other way
+     */
+    static Removals between(BuildingSnapshot previous,
+                            BuildingSnapshot current) {
+        Map<Floor, FloorSnapshot> remaining =
+                new IdentityHashMap<Floor, FloorSnapshot>();
+        for (FloorSnapshot floor : current.getFloors()) {
+            remaining.put(floor.getFloor(), floor);
+        }
+        Removals removals = new Removals();
+        for (FloorSnapshot before : previous.getFloors()) {
+            FloorSnapshot after = remaining.remove(before.getFloor());
+            if (after == null) {
+                removals.floors.add(before);
+                removals.rooms.addAll(before.getRooms());
+            } else if (after.getStructureVersion()
+                    != before.getStructureVersion()
+                    && !removals.addRemovedRooms(before, after)) {
+                return null;
+            }
+        }
+        return remaining.isEmpty() ? removals : null;
+    }
+
+    /**
+     * Adds the rooms of one floor snapshot missing from the other.
+     *
+     * @return false if a room was added or a room's sensors changed
+     */
+    private boolean addRemovedRooms(FloorSnapshot before,
+                                    FloorSnapshot after) {
+        Map<Room, RoomSnapshot> remaining =
+                new IdentityHashMap<Room, RoomSnapshot>();
+        for (RoomSnapshot room : after.getRooms()) {
+            remaining.put(room.getRoom(), room);
+        }
+        for (RoomSnapshot room : before.getRooms()) {
+            RoomSnapshot latest = remaining.remove(room.getRoom());
+            if (latest == null) {
+                rooms.add(room);
+            } else if (latest.getSensors() != room.getSensors()) {
+                return false;
+            }
+        }
+        return remaining.isEmpty();
+    }
+
+    /**
+     * Returns the snapshots of the floors removed.
+     *
+     * @return removed floors
+     */
+    List<FloorSnapshot> getFloors() {
+        return floors;
+    }
+
+    /**
+     * Returns the snapshots of the rooms removed, including the rooms of
+     * removed floors.
+     *
+     * @return removed rooms
+     */
+    List<RoomSnapshot> getRooms() {
+        return rooms;
+    }
+}
@@ -0,0 +1,398 @@
+package bms.building;
+
+import bms.floor.Floor;
+import bms.floor.FloorSnapshot;
+import bms.room.Room;
+import bms.room.RoomSnapshot;
+import bms.room.RoomType;
+import bms.sensors.Sensor;
+import bms.util.CompressedBitmap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Answers RoomQuery criteria over the rooms of a building by intersecting
+ * compressed bitmap indexes, rather than looping over every floor, room and
+ * sensor.
+ *
+ * Each room is given a small integer id, and the index keeps a bitmap of
+ * room ids for each room type, each sensor type present, each floor number,
+ * each power-of-two band of area, and for rooms with a fire drill in
+ * progress.
+ *
+ * The index is brought up to date at the start of each query by comparing
+ * the building's latest snapshot with the one last indexed. Since snapshots
+ * are copied only along the path to a change, unchanged floors and rooms are
+ * skipped by an identity check. Within a changed floor, the floor's log of
+ * recent room changes names the rooms which were added, removed, drilled or
+ * given a new sensor, so only those are visited and re-indexed; a floor is
+ * compared room by room only when its log no longer reaches back to the
+ * snapshot last indexed.
+ */
+public class RoomIndex {
+
+    /** building being indexed */
+    private final Building building;
+
+    /** building snapshot the index reflects, or null before the first query */
+    private BuildingSnapshot indexed;
+
+    /** floor snapshot indexed for each floor */
+    private Map<Floor, FloorSnapshot> floorSnapshots;
+
+    /** room snapshot indexed for each room */
+    private final Map<Room, RoomSnapshot> roomSnapshots;
+
+    /** id of each indexed room */
+    private final Map<Room, Integer> ids;
+
+    /** room with each id, or null if the id is free */
+    private Room[] rooms;
+
+    /** floor number of the room with each id */
+    private int[] roomFloor;
+
+    /** area of the room with each id */
+    private double[] roomArea;
+
+    /** ids freed by removed rooms, to be reused */
+    private int[] freeIds;
+
+    /** number of free ids */
+    private int freeCount;
+
+    /** number of ids ever allocated */
+    private int nextId;
+
+    /** ids of every indexed room */
+    private final CompressedBitmap all;
+
+    /** ids of rooms with a fire drill in progress */
+    private final CompressedBitmap drilled;
+
+    /** ids of rooms of each type, indexed by ordinal */
+    private final CompressedBitmap[] byType;
+
+    /** ids of rooms with each type of sensor, by simple class name */
+    private final Map<String, CompressedBitmap> bySensor;
+
+    /** ids of rooms on each floor, by floor number */
+    private final TreeMap<Integer, CompressedBitmap> byFloor;
+
+    /** ids of rooms in each band of area, by binary exponent of the area */
+    private final TreeMap<Integer, CompressedBitmap> byAreaBand;
+
+    /**
+     * Creates an index of the rooms of the given building.
+     *
+     * @param building building to index
+     */
+    public RoomIndex(Building building) {
+        this.building = building;
+        floorSnapshots = new IdentityHashMap<Floor, FloorSnapshot>();
+        roomSnapshots = new IdentityHashMap<Room, RoomSnapshot>();
+        ids = new IdentityHashMap<Room, Integer>();
+        rooms = new Room[16];
+        roomFloor = new int[16];
+        roomArea = new double[16];
+        freeIds = new int[16];
+        all = new CompressedBitmap();
+        drilled = new CompressedBitmap();
+        byType = new CompressedBitmap[RoomType.values().length];
+        for (int i = 0; i < byType.length; i++) {
+            byType[i] = new CompressedBitmap();
+        }
+        bySensor = new HashMap<String, CompressedBitmap>();
+        byFloor = new TreeMap<Integer, CompressedBitmap>();
+        byAreaBand = new TreeMap<Integer, CompressedBitmap>();
+    }
+
+    /**
+     * Returns the rooms matching the given query.
+     *
+     * @param query criteria rooms must meet
+     * @return matching rooms, in no particular order
+     */
+    public synchronized List<Room> find(RoomQuery query) {
+        List<Room> result = new ArrayList<Room>();
+        select(query).forEach(id -> result.add(rooms[id]));
+        return result;
+    }
+
+    /**
+     * Returns the number of rooms matching the given query.
+     *
+     * @param query criteria rooms must meet
+     * @return number of matching rooms
+     */
+    public synchronized int count(RoomQuery query) {
+        return select(query).getCardinality();
+    }
+
+    /**
+     * Returns the ids of the rooms matching the query, intersecting the
+     * smallest bitmaps first.
+     */
+    private CompressedBitmap select(RoomQuery query) {
+        refresh();
+        List<CompressedBitmap> required = new ArrayList<CompressedBitmap>();
+        if (query.getType() != null) {
+            required.add(byType[query.getType().ordinal()]);
+        }
+        for (String sensorType : query.getRequiredSensors()) {
+            required.add(bySensor.getOrDefault(sensorType,
+                    new CompressedBitmap()));
+        }
+        if (query.getLowestFloor() != Integer.MIN_VALUE
+                || query.getHighestFloor() != Integer.MAX_VALUE) {
+            required.add(floorRange(query.getLowestFloor(),
+                    query.getHighestFloor()));
+        }
+        if (query.getAreaAbove() != Double.NEGATIVE_INFINITY
+                || query.getAreaAtMost() != Double.POSITIVE_INFINITY) {
+            required.add(areaRange(query.getAreaAbove(),
+                    query.getAreaAtMost()));
+        }
+        if (Boolean.TRUE.equals(query.getFireDrill())) {
+            required.add(drilled);
+        }
+
+        required.sort(Comparator.comparingInt(
+                CompressedBitmap::getCardinality));
+        CompressedBitmap result = all;
+        for (CompressedBitmap bitmap : required) {
+            result = result.and(bitmap);
+            if (result.isEmpty()) {
+                return result;
+            }
+        }
+        for (String sensorType : query.getExcludedSensors()) {
+            CompressedBitmap excluded = bySensor.get(sensorType);
+            if (excluded != null) {
+                result = result.andNot(excluded);
+            }
+        }
+        if (Boolean.FALSE.equals(query.getFireDrill())) {
+            result = result.andNot(drilled);
+        }
+        return result;
+    }
+
+    private CompressedBitmap floorRange(int lowest, int highest) {
+        CompressedBitmap result = new CompressedBitmap();
+        if (lowest > highest) {
+            return result;
+        }
+        for (CompressedBitmap floor
+                : byFloor.subMap(lowest, true, highest, true).values()) {
+            result = result.or(floor);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the ids of rooms with an area in (above, atMost]. Bands lying
+     * wholly inside the range are taken as they are; bands straddling either
+     * end are filtered room by room.
+     */
+    private CompressedBitmap areaRange(double above, double atMost) {
+        CompressedBitmap result = new CompressedBitmap();
+        for (Map.Entry<Integer, CompressedBitmap> band
+                : byAreaBand.entrySet()) {
+            double low = Math.scalb(1.0, band.getKey());
+            double high = Math.scalb(1.0, band.getKey() + 1);
+            if (high <= above || low > atMost) {
+                continue;
+            }
+            if (low > above && high <= atMost) {
+                result = result.or(band.getValue());
+            } else {
+                CompressedBitmap filtered = new CompressedBitmap();
+                band.getValue().forEach(id -> {
+                    if (roomArea[id] > above && roomArea[id] <= atMost) {
+                        filtered.add(id);
+                    }
+                });
+                result = result.or(filtered);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Re-indexes the rooms of every floor whose snapshot has changed since
+     * the last query, and removes the rooms of floors no longer in the
+     * building.
+     */
+    private void refresh() {
+        BuildingSnapshot current = building.getSnapshot();
+        if (current == indexed) {
+            return;
+        }
+        Map<Floor, FloorSnapshot> seen =
+                new IdentityHashMap<Floor, FloorSnapshot>();
+        for (FloorSnapshot floor : current.getFloors()) {
+            seen.put(floor.getFloor(), floor);
+            FloorSnapshot previous = floorSnapshots.get(floor.getFloor());
+            if (previous != floor) {
+                floorChanged(previous, floor);
+            }
+        }
+        for (Map.Entry<Floor, FloorSnapshot> entry
+                : floorSnapshots.entrySet()) {
+            if (!seen.containsKey(entry.getKey())) {
+                floorChanged(entry.getValue(), null);
+            }
+        }
+        floorSnapshots = seen;
+        indexed = current;
+    }
+
+    /**
+     * Re-indexes the changed rooms of a floor.
+     *
+     * @param previous floor snapshot last indexed, or null if the floor is new
+     * @param current latest floor snapshot, or null if the floor was removed
+     */
+    private void floorChanged(FloorSnapshot previous, FloorSnapshot current) {
+        if (previous != null && current != null) {
+            // the last change to each room decides whether it is still on
+            // the floor, as a room may be removed and added again
+            Map<Room, RoomSnapshot> latest =
+                    new IdentityHashMap<Room, RoomSnapshot>();
+            if (current.getFloor().forEachChange(previous, current,
+                    (room, removed) -> latest.put(room.getRoom(),
+                            removed ? null : room))) {
+                for (Map.Entry<Room, RoomSnapshot> entry : latest.entrySet()) {
+                    roomChanged(entry.getKey(), entry.getValue(),
+                            previous.getFloorNumber(),
+                            current.getFloorNumber());
+                }
+                return;
+            }
+        }
+        Set<Room> present = Collections.newSetFromMap(
+                new IdentityHashMap<Room, Boolean>());
+        if (current != null) {
+            for (RoomSnapshot room : current.getRooms()) {
+                present.add(room.getRoom());
+                if (roomSnapshots.get(room.getRoom()) != room) {
+                    update(room, current.getFloorNumber());
+                }
+            }
+        }
+        if (previous != null) {
+            for (RoomSnapshot room : previous.getRooms()) {
+                Integer id = ids.get(room.getRoom());
+                // a room moved to another floor is already indexed there
+                if (!present.contains(room.getRoom()) && id != null
+                        && roomFloor[id] == previous.getFloorNumber()) {
+                    remove(room.getRoom(), id);
+                }
+            }
+        }
+    }
+
+    /**
+     * Re-indexes one room of a floor.
+     *
+     * @param room room which changed
+     * @param snapshot room's latest snapshot, or null if it left the floor
+     * @param previousFloor number the floor had when last indexed
+     * @param floorNumber number of the floor now
+     */
+    private void roomChanged(Room room, RoomSnapshot snapshot,
+                             int previousFloor, int floorNumber) {
+        if (snapshot != null) {
+            if (roomSnapshots.get(room) != snapshot) {
+                update(snapshot, floorNumber);
+            }
+            return;
+        }
+        Integer id = ids.get(room);
+        // a room moved to another floor is already indexed there
+        if (id != null && roomFloor[id] == previousFloor) {
+            remove(room, id);
+        }
+    }
+
+    private void update(RoomSnapshot snapshot, int floorNumber) {
+        Room room = snapshot.getRoom();
+        RoomSnapshot old = roomSnapshots.put(room, snapshot);
+        Integer id = ids.get(room);
+        if (id == null) {
+            id = allocate(room);
+            roomArea[id] = snapshot.getArea();
+            all.add(id);
+            byType[snapshot.getType().ordinal()].add(id);
+            byAreaBand.computeIfAbsent(Math.getExponent(snapshot.getArea()),
+                    band -> new CompressedBitmap()).add(id);
+            byFloor.computeIfAbsent(floorNumber,
+                    floor -> new CompressedBitmap()).add(id);
+        } else if (roomFloor[id] != floorNumber) {
+            byFloor.get(roomFloor[id]).remove(id);
+            byFloor.computeIfAbsent(floorNumber,
+                    floor -> new CompressedBitmap()).add(id);
+        }
+        roomFloor[id] = floorNumber;
+
+        if (snapshot.fireDrillOngoing()) {
+            drilled.add(id);
+        } else {
+            drilled.remove(id);
+        }
+        if (old != null) {
+            for (Sensor sensor : old.getSensors()) {
+                bySensor.get(sensor.getClass().getSimpleName()).remove(id);
+            }
+        }
+        for (Sensor sensor : snapshot.getSensors()) {
+            bySensor.computeIfAbsent(sensor.getClass().getSimpleName(),
+                    type -> new CompressedBitmap()).add(id);
+        }
+    }
+
+    private void remove(Room room, int id) {
+        RoomSnapshot old = roomSnapshots.remove(room);
+        ids.remove(room);
+        all.remove(id);
+        drilled.remove(id);
+        byType[old.getType().ordinal()].remove(id);
+        byAreaBand.get(Math.getExponent(roomArea[id])).remove(id);
+        byFloor.get(roomFloor[id]).remove(id);
+        for (Sensor sensor : old.getSensors()) {
+            bySensor.get(sensor.getClass().getSimpleName()).remove(id);
+        }
+        rooms[id] = null;
+        if (freeCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+        }
+        freeIds[freeCount++] = id;
+    }
+
+    private int allocate(Room room) {
+        int id;
+        if (freeCount > 0) {
+            id = freeIds[--freeCount];
+        } else {
+            id = nextId++;
+            if (id == rooms.length) {
+                rooms = Arrays.copyOf(rooms, id * 2);
+                roomFloor = Arrays.copyOf(roomFloor, id * 2);
+                roomArea = Arrays.copyOf(roomArea, id * 2);
+            }
+        }
+        rooms[id] = room;
+        ids.put(room, id);
+        return id;
+    }
+}
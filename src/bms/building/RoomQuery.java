@@ -0,0 +1,164 @@
+package bms.building;
+
+import bms.room.RoomType;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Criteria selecting rooms of a building, answered by a RoomIndex.
+ *
+ * A new query matches every room; each method narrows it further and
+ * returns the query, so that criteria can be chained, eg.
+ * {@code new RoomQuery().ofType(RoomType.LABORATORY).withAreaAbove(30)
+ * .withSensor("TemperatureSensor").withoutSensor("CarbonDioxideSensor")
+ * .onFloors(3, 10)}.
+ */
+public class RoomQuery {
+
+    /** type of room required, or null for any type */
+    private RoomType type;
+
+    /** simple class names of sensors the room must have */
+    private final Set<String> requiredSensors;
+
+    /** simple class names of sensors the room must not have */
+    private final Set<String> excludedSensors;
+
+    /** lowest and highest floor numbers allowed */
+    private int lowestFloor;
+    private int highestFloor;
+
+    /** exclusive lower and inclusive upper bounds on area */
+    private double areaAbove;
+    private double areaAtMost;
+
+    /** fire drill state required, or null for either state */
+    private Boolean fireDrill;
+
+    /**
+     * Creates a query matching every room.
+     */
+    public RoomQuery() {
+        requiredSensors = new LinkedHashSet<String>();
+        excludedSensors = new LinkedHashSet<String>();
+        lowestFloor = Integer.MIN_VALUE;
+        highestFloor = Integer.MAX_VALUE;
+        areaAbove = Double.NEGATIVE_INFINITY;
+        areaAtMost = Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Restricts the query to rooms of the given type.
+     *
+     * @param type type of room
+     * @return this query
+     */
+    public RoomQuery ofType(RoomType type) {
+        this.type = type;
+        return this;
+    }
+
+    /**
+     * Restricts the query to rooms with a sensor of the given type.
+     *
+     * @param sensorType simple class name of the sensor, eg. "NoiseSensor"
+     * @return this query
+     */
+    public RoomQuery withSensor(String sensorType) {
+        requiredSensors.add(sensorType);
+        return this;
+    }
+
+    /**
+     * Restricts the query to rooms without a sensor of the given type.
+     *
+     * @param sensorType simple class name of the sensor, eg. "NoiseSensor"
+     * @return this query
+     */
+    public RoomQuery withoutSensor(String sensorType) {
+        excludedSensors.add(sensorType);
+        return this;
+    }
+
+    /**
+     * Restricts the query to rooms on floors numbered from lowest to
+     * highest, inclusive.
+     *
+     * @param lowest lowest floor number
+     * @param highest highest floor number
+     * @return this query
+     */
+    public RoomQuery onFloors(int lowest, int highest) {
+        lowestFloor = lowest;
+        highestFloor = highest;
+        return this;
+    }
+
+    /**
+     * Restricts the query to rooms with an area greater than the given area.
+     *
+     * @param area area in square metres
+     * @return this query
+     */
+    public RoomQuery withAreaAbove(double area) {
+        areaAbove = area;
+        return this;
+    }
+
+    /**
+     * Restricts the query to rooms with an area no greater than the given
+     * area.
+     *
+     * @param area area in square metres
+     * @return this query
+     */
+    public RoomQuery withAreaAtMost(double area) {
+        areaAtMost = area;
+        return this;
+    }
+
+    /**
+     * Restricts the query to rooms with or without a fire drill in progress.
+     *
+     * @param ongoing whether a fire drill must be in progress
+     * @return this query
+     */
+    public RoomQuery withFireDrill(boolean ongoing) {
+        fireDrill = ongoing;
+        return this;
+    }
+
+    RoomType getType() {
+        return type;
+    }
+
+    Set<String> getRequiredSensors() {
+        return Collections.unmodifiableSet(requiredSensors);
+    }
+
+    Set<String> getExcludedSensors() {
+        return Collections.unmodifiableSet(excludedSensors);
+    }
+
+    int getLowestFloor() {
+        return lowestFloor;
+    }
+
+    int getHighestFloor() {
+        return highestFloor;
+    }
+
+    double getAreaAbove() {
+        return areaAbove;
+    }
+
+    double getAreaAtMost() {
+        return areaAtMost;
+    }
+
+    Boolean getFireDrill() {
+        return fireDrill;
+    }
+}
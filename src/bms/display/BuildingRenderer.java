@@ -0,0 +1,487 @@
+package bms.display;
+
+import bms.building.Building;
+import bms.building.BuildingSnapshot;
+import bms.floor.Floor;
+import bms.floor.FloorSnapshot;
+import bms.room.Room;
+import bms.room.RoomSnapshot;
+import bms.sensors.ArrayReadingSource;
+import bms.sensors.CarbonDioxideSensor;
+import bms.sensors.HazardSensor;
+import bms.sensors.NoiseSensor;
+import bms.sensors.OccupancySensor;
+import bms.sensors.ReadingSource;
+import bms.sensors.Sensor;
+import bms.sensors.TemperatureSensor;
+import bms.sensors.TimedSensor;
+
+import java.io.IOException;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes buildings, floors, rooms and sensors to an Appendable as either
+ * indented text (the format used by SimpleDisplay) or JSON.
+ *
+ * Output is streamed straight into the destination, which should be
+ * buffered, rather than being assembled into intermediate strings: text
+ * lines match the toString() of each element, but are written field by
+ * field. A renderer also remembers what it last rendered, so
+ * renderChanges() can write only the rooms whose sensors or fire drill
+ * status changed since. Rooms no longer in the building are forgotten on
+ * the next call to renderChanges().
+ */
+public class BuildingRenderer {
+
+    /**
+     * Output formats supported by the renderer.
+     */
+    public enum Format {
+        /** one line per element, indented with tabs by depth */
+        TEXT,
+        /** nested JSON objects */
+        JSON
+    }
+
+    /** destination of the output */
+    private final Appendable out;
+
+    /** format of the output */
+    private final Format format;
+
+    /** state of each room when it was last rendered */
+    private final Map<Room, RenderedRoom> renderedRooms;
+
+    /** number of calls to renderChanges(), used to find forgotten rooms */
+    private long pass;
+
+    /**
+     * Creates a renderer writing to the given destination.
+     *
+     * @param out destination of the output, such as a BufferedWriter or
+     *            StringBuilder
+     * @param format output format
+     */
+    public BuildingRenderer(Appendable out, Format format) {
+        this.out = out;
+        this.format = format;
+        renderedRooms = new IdentityHashMap<Room, RenderedRoom>();
+    }
+
+    /**
+     * Writes the building and every floor, room and sensor in it.
+     *
+     * @param building building to render
+     * @throws IOException if writing to the destination fails
+     */
+    public void renderBuilding(Building building) throws IOException {
+        BuildingSnapshot snapshot = building.getSnapshot();
+        if (format == Format.TEXT) {
+            appendBuildingLine(building, snapshot);
+            out.append('\n');
+            for (FloorSnapshot floor : snapshot.getFloors()) {
+                renderFloor(floor, 1);
+            }
+            return;
+        }
+        out.append("{\"name\":");
+        appendString(building.getName());
+        out.append(",\"floors\":[");
+        boolean first = true;
+        for (FloorSnapshot floor : snapshot.getFloors()) {
+            if (!first) {
+                out.append(',');
+            }
+            first = false;
+            renderFloor(floor, 1);
+        }
+        out.append("]}");
+    }
+
+    /**
+     * Writes a one-line summary of the building: its name, number of floors,
+     * whether any room has a fire drill ongoing, the highest hazard level
+     * reported by any sensor, and the total number of occupants.
+     *
+     * @param building building to summarise
+     * @throws IOException if writing to the destination fails
+     */
+    public void renderSummary(Building building) throws IOException {
+        BuildingSnapshot snapshot = building.getSnapshot();
+        int maxHazard = 0;
+        int occupancy = 0;
+        boolean fireDrill = false;
+        for (FloorSnapshot floor : snapshot.getFloors()) {
+            for (RoomSnapshot room : floor.getRooms()) {
+                maxHazard = Math.max(maxHazard, maxHazard(room));
+                occupancy += occupancy(room);
+                fireDrill |= room.fireDrillOngoing();
+            }
+        }
+        if (format == Format.TEXT) {
+            appendBuildingLine(building, snapshot);
+            out.append(", fireDrill=").append(String.valueOf(fireDrill))
+                    .append(", maxHazard=").append(String.valueOf(maxHazard))
+                    .append(", occupancy=").append(String.valueOf(occupancy))
+                    .append('\n');
+            return;
+        }
+        out.append("{\"name\":");
+        appendString(building.getName());
+        out.append(",\"floors\":")
+                .append(String.valueOf(snapshot.getFloors().size()))
+                .append(",\"fireDrill\":").append(String.valueOf(fireDrill))
+                .append(",\"maxHazard\":").append(String.valueOf(maxHazard))
+                .append(",\"occupancy\":").append(String.valueOf(occupancy))
+                .append('}');
+    }
+
+    /**
+     * Writes the floor and every room and sensor on it.
+     *
+     * @param floor floor to render
+     * @throws IOException if writing to the destination fails
+     */
+    public void renderFloor(Floor floor) throws IOException {
+        renderFloor(floor.getSnapshot(), 0);
+    }
+
+    private void renderFloor(FloorSnapshot snapshot, int depth)
+            throws IOException {
+        Floor floor = snapshot.getFloor();
+        if (format == Format.TEXT) {
+            indent(depth);
+            appendFloorLine(snapshot);
+            out.append('\n');
+            for (RoomSnapshot room : snapshot.getRooms()) {
+                renderRoom(room, depth + 1);
+            }
+            return;
+        }
+        out.append("{\"floor\":").append(String.valueOf(floor.getFloorNumber()))
+                .append(",\"width\":").append(String.valueOf(floor.getWidth()))
+                .append(",\"length\":")
+                .append(String.valueOf(floor.getLength()))
+                .append(",\"rooms\":[");
+        boolean first = true;
+        for (RoomSnapshot room : snapshot.getRooms()) {
+            if (!first) {
+                out.append(',');
+            }
+            first = false;
+            renderRoom(room, depth + 1);
+        }
+        out.append("]}");
+    }
+
+    /**
+     * Writes the room and every sensor in it.
+     *
+     * @param room room to render
+     * @throws IOException if writing to the destination fails
+     */
+    public void renderRoom(Room room) throws IOException {
+        renderRoom(room.getSnapshot(), 0);
+    }
+
+    private void renderRoom(RoomSnapshot room, int depth) throws IOException {
+        remember(room);
+        if (format == Format.TEXT) {
+            indent(depth);
+            out.append("Room #").append(String.valueOf(room.getRoomNumber()))
+                    .append(": type=").append(String.valueOf(room.getType()))
+                    .append(", area=");
+            appendFixed(room.getArea());
+            out.append("m^2, sensors=")
+                    .append(String.valueOf(room.getSensors().size()))
+                    .append('\n');
+            for (Sensor sensor : room.getSensors()) {
+                renderSensor(sensor, depth + 1);
+            }
+            return;
+        }
+        out.append("{\"room\":").append(String.valueOf(room.getRoomNumber()))
+                .append(",\"type\":");
+        appendString(String.valueOf(room.getType()));
+        out.append(",\"area\":").append(String.valueOf(room.getArea()))
+                .append(",\"fireDrill\":")
+                .append(String.valueOf(room.fireDrillOngoing()))
+                .append(",\"maxHazard\":")
+                .append(String.valueOf(maxHazard(room)))
+                .append(",\"occupancy\":")
+                .append(String.valueOf(occupancy(room)))
+                .append(",\"sensors\":[");
+        boolean first = true;
+        for (Sensor sensor : room.getSensors()) {
+            if (!first) {
+                out.append(',');
+            }
+            first = false;
+            renderSensor(sensor, depth + 1);
+        }
+        out.append("]}");
+    }
+
+    /**
+     * Writes the sensor.
+     *
+     * @param sensor sensor to render
+     * @throws IOException if writing to the destination fails
+     */
+    public void renderSensor(Sensor sensor) throws IOException {
+        renderSensor(sensor, 0);
+    }
+
+    private void renderSensor(Sensor sensor, int depth) throws IOException {
+        if (format == Format.TEXT) {
+            indent(depth);
+            appendSensorLine(sensor);
+            out.append('\n');
+            return;
+        }
+        out.append("{\"type\":");
+        appendString(sensor.getClass().getSimpleName());
+        out.append(",\"reading\":")
+                .append(String.valueOf(sensor.getCurrentReading()));
+        if (sensor instanceof HazardSensor) {
+            out.append(",\"hazard\":").append(String.valueOf(
+                    ((HazardSensor) sensor).getHazardLevel()));
+        }
+        out.append('}');
+    }
+
+    /**
+     * Writes only the rooms of the building that were added, or whose fire
+     * drill status or sensor readings changed, since this renderer last
+     * rendered them. Each room is written with all of its sensors.
+     *
+     * In text format, each changed room is preceded by its floor's line. In
+     * JSON format, the output is an object holding a "changes" array of
+     * objects with "floor" and "room" members.
+     *
+     * @param building building to render changes of
+     * @throws IOException if writing to the destination fails
+     */
+    public void renderChanges(Building building) throws IOException {
+        if (format == Format.JSON) {
+            out.append("{\"changes\":[");
+        }
+        pass++;
+        boolean first = true;
+        for (FloorSnapshot floor : building.getSnapshot().getFloors()) {
+            boolean floorWritten = false;
+            for (RoomSnapshot room : floor.getRooms()) {
+                if (!changedSinceRender(room)) {
+                    continue;
+                }
+                if (format == Format.TEXT) {
+                    if (!floorWritten) {
+                        appendFloorLine(floor);
+                        out.append('\n');
+                        floorWritten = true;
+                    }
+                    renderRoom(room, 1);
+                } else {
+                    if (!first) {
+                        out.append(',');
+                    }
+                    first = false;
+                    out.append("{\"floor\":")
+                            .append(String.valueOf(floor.getFloorNumber()))
+                            .append(",\"room\":");
+                    renderRoom(room, 1);
+                    out.append('}');
+                }
+            }
+        }
+        if (format == Format.JSON) {
+            out.append("]}");
+        }
+        renderedRooms.values().removeIf(rendered -> rendered.pass != pass);
+    }
+
+    /**
+     * Returns whether the room differs from when it was last rendered, and
+     * marks it as still in the building.
+     */
+    private boolean changedSinceRender(RoomSnapshot room) {
+        RenderedRoom rendered = renderedRooms.get(room.getRoom());
+        if (rendered == null) {
+            return true;
+        }
+        rendered.pass = pass;
+        if (rendered.fireDrill != room.fireDrillOngoing()
+                || rendered.sensors != room.getSensors()) {
+            return true;
+        }
+        for (int i = 0; i < rendered.readings.length; i++) {
+            if (rendered.readings[i]
+                    != room.getSensors().get(i).getCurrentReading()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Records the state of the room as rendered.
+     */
+    private void remember(RoomSnapshot room) {
+        RenderedRoom rendered = renderedRooms.get(room.getRoom());
+        if (rendered == null) {
+            rendered = new RenderedRoom();
+            renderedRooms.put(room.getRoom(), rendered);
+        }
+        List<Sensor> sensors = room.getSensors();
+        if (rendered.readings == null
+                || rendered.readings.length != sensors.size()) {
+            rendered.readings = new int[sensors.size()];
+        }
+        for (int i = 0; i < sensors.size(); i++) {
+            rendered.readings[i] = sensors.get(i).getCurrentReading();
+        }
+        rendered.sensors = sensors;
+        rendered.fireDrill = room.fireDrillOngoing();
+        rendered.pass = pass;
+    }
+
+    private void appendBuildingLine(Building building,
+                                    BuildingSnapshot snapshot)
+            throws IOException {
+        out.append("Building: name=\"").append(building.getName())
+                .append("\", floors=")
+                .append(String.valueOf(snapshot.getFloors().size()));
+    }
+
+    private void appendFloorLine(FloorSnapshot snapshot) throws IOException {
+        Floor floor = snapshot.getFloor();
+        out.append("Floor #").append(String.valueOf(floor.getFloorNumber()))
+                .append(": width=");
+        appendFixed(floor.getWidth());
+        out.append("m, length=");
+        appendFixed(floor.getLength());
+        out.append("m, rooms=")
+                .append(String.valueOf(snapshot.getRooms().size()));
+    }
+
+    /**
+     * Writes the same line as the sensor's toString(), field by field for
+     * the standard sensor types.
+     */
+    private void appendSensorLine(Sensor sensor) throws IOException {
+        Class<?> type = sensor.getClass();
+        if (type != CarbonDioxideSensor.class && type != NoiseSensor.class
+                && type != OccupancySensor.class
+                && type != TemperatureSensor.class) {
+            out.append(sensor.toString());
+            return;
+        }
+        TimedSensor timed = (TimedSensor) sensor;
+        out.append("TimedSensor: freq=")
+                .append(String.valueOf(timed.getUpdateFrequency()))
+                .append(", readings=");
+        ReadingSource source = timed.getReadingSource();
+        if (source instanceof ArrayReadingSource) {
+            ArrayReadingSource readings = (ArrayReadingSource) source;
+            for (int i = 0; i < readings.getReadingCount(); i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                out.append(String.valueOf(readings.getReading(i)));
+            }
+        } else {
+            out.append(source.toString());
+        }
+        out.append(", type=").append(type.getSimpleName());
+        if (sensor instanceof OccupancySensor) {
+            out.append(", capacity=").append(String.valueOf(
+                    ((OccupancySensor) sensor).getCapacity()));
+        } else if (sensor instanceof CarbonDioxideSensor) {
+            CarbonDioxideSensor carbonDioxide = (CarbonDioxideSensor) sensor;
+            out.append(", idealPPM=")
+                    .append(String.valueOf(carbonDioxide.getIdealValue()))
+                    .append(", varLimit=").append(String.valueOf(
+                            carbonDioxide.getVariationLimit()));
+        }
+    }
+
+    /**
+     * Writes a non-negative value with two decimal places, rounding halves
+     * up as String.format("%.2f") does for the shortest decimal form of the
+     * value.
+     */
+    private void appendFixed(double value) throws IOException {
+        double scaled = value * 100;
+        long hundredths = (long) Math.floor(scaled);
+        if (scaled - hundredths >= 0.5 - 4 * Math.ulp(scaled)) {
+            hundredths++;
+        }
+        out.append(String.valueOf(hundredths / 100)).append('.');
+        long fraction = hundredths % 100;
+        if (fraction < 10) {
+            out.append('0');
+        }
+        out.append(String.valueOf(fraction));
+    }
+
+    private void indent(int depth) throws IOException {
+        for (int i = 0; i < depth; i++) {
+            out.append('\t');
+        }
+    }
+
+    private void appendString(String value) throws IOException {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20) {
+                out.append(String.format("\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        out.append('"');
+    }
+
+    private static int maxHazard(RoomSnapshot room) {
+        int hazard = 0;
+        for (Sensor sensor : room.getSensors()) {
+            if (sensor instanceof HazardSensor) {
+                hazard = Math.max(hazard,
+                        ((HazardSensor) sensor).getHazardLevel());
+            }
+        }
+        return hazard;
+    }
+
+    private static int occupancy(RoomSnapshot room) {
+        for (Sensor sensor : room.getSensors()) {
+            if (sensor instanceof OccupancySensor) {
+                return sensor.getCurrentReading();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * What a renderer last wrote about a room.
+     */
+    private static class RenderedRoom {
+
+        /** the room's sensors when it was rendered */
+        private List<Sensor> sensors;
+
+        /** reading of each of those sensors when it was rendered */
+        private int[] readings;
+
+        /** fire drill status when the room was rendered */
+        private boolean fireDrill;
+
+        /** pass of renderChanges() in which the room was last seen */
+        private long pass;
+    }
+}
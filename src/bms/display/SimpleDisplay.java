@@ -7,6 +7,11 @@ import bms.room.Room;
 import bms.room.RoomType;
 import bms.sensors.*;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
 /**
  * A class to create and display a building managed by the BMS.
  * <p>
@@ -145,6 +150,9 @@ public class SimpleDisplay {
      * Outputs the given building to the console by calling the toString methods
      * in Building, Floor, Room and TimedSensor.
      *
+     * Output is written through a single buffered writer by a
+     * BuildingRenderer, rather than one println per element.
+     *
      * You can modify this method if you wish, but it is not necessary.
      *
      * @param building building to display
@@ -152,15 +160,13 @@ public class SimpleDisplay {
 
 
     private static void displayBuilding(Building building) {
-        System.out.println(building.toString());
-        for (Floor floor : building.getFloors()) {
-            System.out.println("\t" + floor.toString());
-            for (Room room : floor.getRooms()) {
-                System.out.println("\t\t" + room.toString());
-                for (Sensor sensor : room.getSensors()) {
-                    System.out.println("\t\t\t" + sensor.toString());
-                }
-            }
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out));
+        try {
+            new BuildingRenderer(out, BuildingRenderer.Format.TEXT)
+                    .renderBuilding(building);
+            out.flush();
+        } catch (IOException e) {
+            e.printStackTrace();
         }
     }
 
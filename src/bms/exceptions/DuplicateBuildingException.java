@@ -0,0 +1,18 @@
+package bms.exceptions;
+
+/**
+ * Exception thrown when a building is added to a campus that already contains
+ * a building with the same name.
+ */
+public class DuplicateBuildingException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs a normal DuplicateBuildingException with no
+     * error message or cause.
+     */
+    public DuplicateBuildingException() {
+        super();
+    }
+}
@@ -3,12 +3,21 @@ package bms.floor;
 import bms.exceptions.DuplicateRoomException;
 import bms.exceptions.FireDrillException;
 import bms.exceptions.InsufficientSpaceException;
+import bms.jfr.StructureChangeEvent;
 import bms.room.Room;
+import bms.room.RoomSnapshot;
 import bms.room.RoomType;
+import bms.sensors.Sensor;
+import bms.sensors.TimedSensor;
 import bms.util.FireDrill;
+import bms.util.StructureListener;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
 
 /**
  * Represents a floor of a building.
@@ -16,6 +25,16 @@ import java.util.List;
  * and a width and length.
  *
  * A floor can be evacuated (leading to all rooms on the floor to be evacuated).
+ *
+ * Each room added to a floor is given a rectangular position within the
+ * floor's width and length, which can be used for spatial queries such as
+ * finding the rooms near another room. Unlike snapshot reads, spatial
+ * queries take the floor's lock, since rooms may be repositioned as others
+ * are added or removed.
+ *
+ * Each change to the floor or one of its rooms publishes a new FloorSnapshot,
+ * which shares the snapshots of all unchanged rooms, and is passed on to the
+ * building containing the floor.
  */
 public class Floor implements FireDrill {
 
@@ -34,11 +53,43 @@ public class Floor implements FireDrill {
     /** constant describing the minimal allowable floor length */
     static int MIN_LENGTH = 5;
 
-    /** list containing all the rooms in a specific floor */
-    private List<Room> floorRooms;
+    /** number of recent room changes remembered; see forEachChange() */
+    private static final int CHANGE_LOG_SIZE = 256;
+
+    /** number of area units in one square metre */
+    private static final double UNITS_PER_SQUARE_METRE = 1_000_000;
+
+    /**
+     * how much area is available on a floor for other rooms, in millionths
+     * of a square metre
+     */
+    private final AtomicLong availableUnits;
+
+    /** rooms on the floor, including those still being added, by number */
+    private final ConcurrentMap<Integer, Room> roomsByNumber;
+
+    /** positions of the rooms on the floor, guarded by the floor's lock */
+    private FloorLayout layout;
+
+    /** latest published snapshot of the floor */
+    private volatile FloorSnapshot snapshot;
 
-    /** how much area is available on a floor for other rooms */
-    private double availableArea;
+    /** listener given each new snapshot, or null */
+    private volatile StructureListener<FloorSnapshot> structureListener;
+
+    /**
+     * snapshots of the rooms changed by recent floor snapshots, by change
+     * count modulo CHANGE_LOG_SIZE
+     */
+    private final RoomSnapshot[] changeLog =
+            new RoomSnapshot[CHANGE_LOG_SIZE];
+
+    /** whether each logged change removed its room */
+    private final boolean[] changeRemoved = new boolean[CHANGE_LOG_SIZE];
+
+    /** listener given to each room, to replace its snapshot in this floor's */
+    private final StructureListener<RoomSnapshot> roomListener =
+            this::roomChanged;
 
     /**
      * Creates a new floor with the given floor number.
@@ -52,14 +103,22 @@ public class Floor implements FireDrill {
         this.floorNumber = floorNumber;
         this.width = width;
         this.length = length;
-        floorRooms = new ArrayList<Room>();
-        availableArea = width * length;
+        availableUnits = new AtomicLong(toUnits(width * length));
+        roomsByNumber = new ConcurrentHashMap<Integer, Room>();
+        layout = new FloorLayout(width, length);
+        snapshot = new FloorSnapshot(this, new RoomSnapshot[0]);
     }
 
     /**
      * Adds a room to the floor.
      * The dimensions of the room are managed automatically. The length and
      * width of the room do not need to be specified, only the required space.
+     * The room is positioned on the floor by packing it alongside the rooms
+     * already present; see getRoomPlacement(int).
+     *
+     * Several threads may add rooms to the same floor at once. The room
+     * number is claimed and the room's area reserved without locking, so
+     * that rooms which are rejected never wait on rooms being placed.
      *
      * @param newRoom object representing the new room
      * @throws IllegalArgumentException if area is less than Room.getMinArea()
@@ -70,22 +129,244 @@ public class Floor implements FireDrill {
      */
     public void addRoom(Room newRoom)
             throws DuplicateRoomException, InsufficientSpaceException {
+        StructureChangeEvent event = new StructureChangeEvent();
+        event.begin();
+        try {
+            reserveRoom(newRoom);
+            event.succeeded = true;
+        } finally {
+            if (event.shouldCommit()) {
+                event.operation = "addRoom";
+                event.floorNumber = floorNumber;
+                event.roomNumber = newRoom.getRoomNumber();
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Adds several rooms to the floor, as if by addRoom(), but publishes a
+     * single new snapshot holding all of them. This lets a floor be built
+     * from rooms which already have their sensors without copying the
+     * floor's snapshot once per room.
+     *
+     * Either every room is added, or, if any room cannot be, none are.
+     *
+     * @param newRooms rooms to add, in order
+     * @throws IllegalArgumentException if any area is less than
+     * Room.getMinArea()
+     * @throws DuplicateRoomException if a room number on this floor is
+     * already taken, or given twice
+     * @throws InsufficientSpaceException if there is insufficient space
+     * available on the floor for all the rooms
+     */
+    public void addRooms(List<Room> newRooms)
+            throws DuplicateRoomException, InsufficientSpaceException {
+        StructureChangeEvent event = new StructureChangeEvent();
+        event.begin();
+        List<Room> claimed = new ArrayList<Room>(newRooms.size());
+        try {
+            for (Room newRoom : newRooms) {
+                claimRoom(newRoom);
+                claimed.add(newRoom);
+            }
+            placeRooms(claimed);
+            event.succeeded = true;
+        } finally {
+            if (!event.succeeded) {
+                for (Room room : claimed) {
+                    roomsByNumber.remove(room.getRoomNumber(), room);
+                    availableUnits.addAndGet(toUnits(room.getArea()));
+                }
+            }
+            if (event.shouldCommit()) {
+                event.operation = "addRooms";
+                event.floorNumber = floorNumber;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Claims the room's number and area, then places it, as described by
+     * addRoom().
+     */
+    private void reserveRoom(Room newRoom)
+            throws DuplicateRoomException, InsufficientSpaceException {
+        claimRoom(newRoom);
+        placeRoom(newRoom);
+    }
+
+    /**
+     * Claims the room's number and reserves its area, without placing it.
+     */
+    private void claimRoom(Room newRoom)
+            throws DuplicateRoomException, InsufficientSpaceException {
 
         if (newRoom.getArea() < Room.getMinArea()) {
             throw new IllegalArgumentException();
         }
 
-        for (Room floorRoom : floorRooms) {
-            if (newRoom.getRoomNumber() == floorRoom.getRoomNumber()) {
-                throw new DuplicateRoomException();
-            }
+        if (roomsByNumber.putIfAbsent(newRoom.getRoomNumber(), newRoom)
+                != null) {
+            throw new DuplicateRoomException();
+        }
 
-            if (newRoom.getArea() > availableArea) {
+        long required = toUnits(newRoom.getArea());
+        while (true) {
+            long available = availableUnits.get();
+            if (required > available) {
+                roomsByNumber.remove(newRoom.getRoomNumber(), newRoom);
                 throw new InsufficientSpaceException();
             }
+            if (availableUnits.compareAndSet(available,
+                    available - required)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Places a room whose number and area have been reserved, and publishes
+     * the floor's new snapshot.
+     */
+    private synchronized void placeRoom(Room newRoom) {
+        layout.place(newRoom);
+        newRoom.setStructureListener(roomListener);
+        publish(snapshot.withRoom(newRoom.getSnapshot()));
+    }
+
+    /**
+     * Places rooms whose numbers and areas have been reserved, and publishes
+     * one new snapshot of the floor holding all of them.
+     */
+    private synchronized void placeRooms(List<Room> newRooms) {
+        RoomSnapshot[] added = new RoomSnapshot[newRooms.size()];
+        for (int i = 0; i < added.length; i++) {
+            Room newRoom = newRooms.get(i);
+            layout.place(newRoom);
+            newRoom.setStructureListener(roomListener);
+            added[i] = newRoom.getSnapshot();
+        }
+        publish(snapshot.withRooms(added));
+    }
+
+    /**
+     * Removes the room with the given number from the floor.
+     * The room's area becomes available for other rooms, and its sensors
+     * are deregistered from the TimedItemManager so they are no longer
+     * ticked. The space the room occupied is reused when the floor's rooms
+     * are next repacked.
+     *
+     * @param roomNumber number of the room to remove
+     * @return the removed room, or null if there was no such room
+     */
+    public synchronized Room removeRoom(int roomNumber) {
+        RoomSnapshot removed = snapshot.getRoomByNumber(roomNumber);
+        if (removed == null) {
+            return null;
+        }
+        Room room = removed.getRoom();
+        layout.remove(room);
+        room.setStructureListener(null);
+        for (Sensor sensor : room.getSensors()) {
+            if (sensor instanceof TimedSensor) {
+                ((TimedSensor) sensor).deregister();
+            }
         }
-        floorRooms.add(newRoom);
-        availableArea = availableArea - newRoom.getArea();
+        publish(snapshot.withoutRoom(room));
+        roomsByNumber.remove(roomNumber, room);
+        availableUnits.addAndGet(toUnits(room.getArea()));
+        return room;
+    }
+
+    private static long toUnits(double area) {
+        return Math.round(area * UNITS_PER_SQUARE_METRE);
+    }
+
+    /**
+     * Replaces a room's snapshot in the floor's snapshot when the room
+     * changes, copying only the floor's array of room snapshots.
+     */
+    private synchronized void roomChanged(RoomSnapshot room) {
+        publish(snapshot.withReplacedRoom(room));
+    }
+
+    /**
+     * Publishes a new snapshot of the floor, logs its room changes and
+     * passes it on to the listener. Callers must hold the floor's lock.
+     */
+    private void publish(FloorSnapshot next) {
+        RoomSnapshot[] changed = next.getChanged();
+        long first = next.getChangeCount() - changed.length;
+        for (int i = Math.max(0, changed.length - CHANGE_LOG_SIZE);
+             i < changed.length; i++) {
+            int slot = (int) ((first + i) % CHANGE_LOG_SIZE);
+            changeLog[slot] = changed[i];
+            changeRemoved[slot] = next.isRemoval();
+        }
+        snapshot = next;
+        StructureListener<FloorSnapshot> listener = structureListener;
+        if (listener != null) {
+            listener.structureChanged(next);
+        }
+    }
+
+    /**
+     * Returns the latest snapshot of the floor's structure.
+     * This is a single volatile read, and is safe to call while another
+     * thread is changing the floor or its rooms.
+     *
+     * @return latest floor snapshot
+     */
+    public FloorSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Passes each room change made between two snapshots of the floor to the
+     * given visitor, in the order the changes were made: the room's new
+     * snapshot and false when a room was added or changed, or its last
+     * snapshot and true when it was removed. This lets a cache of the
+     * floor's rooms visit only the rooms which changed rather than comparing
+     * every room.
+     *
+     * Only the most recent changes are remembered. If some of the changes
+     * since the earlier snapshot have been forgotten, nothing is visited.
+     *
+     * @param since earlier snapshot of this floor
+     * @param until later snapshot of this floor
+     * @param visitor receives each changed room snapshot, and whether the
+     *                room was removed
+     * @return true if every change was visited, or false if the changes are
+     * no longer known
+     */
+    public synchronized boolean forEachChange(
+            FloorSnapshot since, FloorSnapshot until,
+            BiConsumer<RoomSnapshot, Boolean> visitor) {
+        if (since.getFloor() != this || until.getFloor() != this
+                || until.getChangeCount() < since.getChangeCount()
+                || snapshot.getChangeCount() - since.getChangeCount()
+                > CHANGE_LOG_SIZE) {
+            return false;
+        }
+        for (long change = since.getChangeCount();
+             change < until.getChangeCount(); change++) {
+            int slot = (int) (change % CHANGE_LOG_SIZE);
+            visitor.accept(changeLog[slot], changeRemoved[slot]);
+        }
+        return true;
+    }
+
+    /**
+     * Sets the listener given each new snapshot of the floor. This is used by
+     * the building containing the floor to keep its own snapshot up to date.
+     *
+     * @param listener listener to notify, or null
+     */
+    public void setStructureListener(
+            StructureListener<FloorSnapshot> listener) {
+        structureListener = listener;
     }
 
     /**
@@ -96,7 +377,12 @@ public class Floor implements FireDrill {
      * @return new list containing all rooms on the floor
      */
     public List<Room> getRooms() {
-        return new ArrayList<Room>(floorRooms);
+        List<RoomSnapshot> rooms = snapshot.getRooms();
+        List<Room> result = new ArrayList<Room>(rooms.size());
+        for (RoomSnapshot room : rooms) {
+            result.add(room.getRoom());
+        }
+        return result;
     }
 
     /**
@@ -166,14 +452,90 @@ public class Floor implements FireDrill {
      */
     public Room getRoomByNumber(int roomNumber) {
 
-        Room result = null;
-        for (Room floorRoom : floorRooms) {
-            if (floorRoom.getRoomNumber() == roomNumber) {
-                result = floorRoom;
-            }
+        RoomSnapshot result = snapshot.getRoomByNumber(roomNumber);
+        return result == null ? null : result.getRoom();
+    }
+
+    /**
+     * Returns the rectangle occupied by the room with the given number.
+     * Coordinates are in metres from the floor's origin corner, with x along
+     * the floor's width and y along its length. Rooms may be repositioned
+     * when later rooms cannot otherwise be fitted onto the floor.
+     *
+     * @param roomNumber number of the room
+     * @return room's position on the floor, or null if the room was not found
+     */
+    public synchronized Rectangle getRoomPlacement(int roomNumber) {
+        Room room = getRoomByNumber(roomNumber);
+        return room == null ? null : layout.getPlacement(room);
+    }
+
+    /**
+     * Returns the room containing the given point on the floor.
+     *
+     * @param x distance along the floor's width, in metres
+     * @param y distance along the floor's length, in metres
+     * @return room at the point, or null if the point is not in any room
+     */
+    public synchronized Room getRoomAt(double x, double y) {
+        return layout.roomAt(x, y);
+    }
+
+    /**
+     * Returns the rooms whose walls come within the given distance of the
+     * walls of the room with the given number, excluding that room.
+     *
+     * @param roomNumber number of the room to search around
+     * @param distance maximum distance between walls, in metres
+     * @return new list of nearby rooms, in no particular order
+     * @throws IllegalArgumentException if the room is not on this floor, or
+     * distance is negative
+     */
+    public synchronized List<Room> getRoomsWithin(int roomNumber,
+                                               double distance)
+            throws IllegalArgumentException {
+        Room room = getRoomByNumber(roomNumber);
+        if (room == null || distance < 0) {
+            throw new IllegalArgumentException();
         }
+        return layout.roomsWithin(room, distance);
+    }
 
-        return result;
+    /**
+     * Returns the rooms lying entirely within the given region of the floor.
+     *
+     * @param region region of the floor to search
+     * @return new list of rooms inside the region, in no particular order
+     */
+    public synchronized List<Room> getRoomsInside(Rectangle region) {
+        return layout.roomsInside(region);
+    }
+
+    /**
+     * Returns the rooms which overlap the given region of the floor.
+     *
+     * @param region region of the floor to search
+     * @return new list of rooms overlapping the region, in no particular order
+     */
+    public synchronized List<Room> getRoomsOverlapping(Rectangle region) {
+        return layout.roomsOverlapping(region);
+    }
+
+    /**
+     * Returns the rooms which share part of a wall with the room with the
+     * given number, and so can be walked to directly from it.
+     *
+     * @param roomNumber number of the room to search around
+     * @return new list of adjacent rooms, in no particular order
+     * @throws IllegalArgumentException if the room is not on this floor
+     */
+    public synchronized List<Room> getAdjacentRooms(int roomNumber)
+            throws IllegalArgumentException {
+        Room room = getRoomByNumber(roomNumber);
+        if (room == null) {
+            throw new IllegalArgumentException();
+        }
+        return layout.adjacentRooms(room);
     }
 
     /**
@@ -183,18 +545,13 @@ public class Floor implements FireDrill {
      * @return area of the floor that is currently occupied, in square metres
      */
     public float occupiedArea() {
-        return (float) (calculateArea() - availableArea);
+        return (float) (calculateArea()
+                - availableUnits.get() / UNITS_PER_SQUARE_METRE);
     }
 
     @Override
     public void fireDrill(RoomType roomType) {
-        for (Room floorRoom : floorRooms) {
-            if (roomType != null && floorRoom.getType() == roomType) {
-                floorRoom.setFireDrill(true);
-            } else if (roomType == null) {
-                floorRoom.setFireDrill(true);
-            }
-        }
+        setFireDrills(roomType, true);
     }
 
     /**
@@ -202,17 +559,36 @@ public class Floor implements FireDrill {
      * All rooms must have their fire alarm cancelled regardless of room type.
      */
     public void cancelFireDrill() {
-        for (Room floorRoom : floorRooms) {
-            floorRoom.setFireDrill(false);
+        setFireDrills(null, false);
+    }
+
+    /**
+     * Sets the fire drill status of every room of the given type, or of every
+     * room if roomType is null, and publishes a single snapshot of the floor
+     * for all of the changes.
+     */
+    private void setFireDrills(RoomType roomType, boolean fireDrill) {
+        boolean changed = false;
+        for (RoomSnapshot room : snapshot.getRooms()) {
+            if (roomType == null || room.getType() == roomType) {
+                changed |= room.getRoom().updateFireDrill(fireDrill);
+            }
+        }
+        if (changed) {
+            publishLatestRooms();
         }
     }
 
+    private synchronized void publishLatestRooms() {
+        publish(snapshot.withLatestRooms());
+    }
+
     @Override
     public String toString() {
         String strLength = String.format("%.2f", length);
         String strWidth = String.format("%.2f", width);
         return "Floor #" + getFloorNumber() + ": width=" + strWidth +
-                "m, length=" + strLength + "m, rooms=" + floorRooms.size();
+                "m, length=" + strLength + "m, rooms=" + snapshot.getRooms().size();
     }
 
 }
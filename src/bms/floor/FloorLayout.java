@@ -0,0 +1,390 @@
+package bms.floor;
+
+import bms.room.Room;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntConsumer;
+
+/**
+ * Positions the rooms of a floor as non-overlapping rectangles within the
+ * floor's width and length, and indexes them in a uniform grid for spatial
+ * queries.
+ *
+ * Rooms are packed onto shelves running along the floor's width, each room
+ * as close to square as its shelf allows. If a room cannot be placed on a
+ * shelf even though the floor has enough free area for it, every room is
+ * repacked onto shelves in order of decreasing shelf height, which wastes
+ * less space than the order the rooms were added in. Only if that fails are
+ * the other rooms repacked onto shelves and the new room placed as a
+ * full-width strip after them, and only if that fails too is every room laid
+ * out as a strip, which always fits when the total room area does not exceed
+ * the floor area. Later rooms are offered to shelves again either way.
+ */
+class FloorLayout {
+
+    /** target number of grid cells covering the floor */
+    private static final int TARGET_CELLS = 256;
+
+    /** width of the floor, along the x axis */
+    private final double width;
+
+    /** length of the floor, along the y axis */
+    private final double length;
+
+    /** rooms in the order they were placed */
+    private final Set<Room> rooms;
+
+    /** placement of each room */
+    private final Map<Room, Rectangle> placements;
+
+    /** y coordinate of each shelf */
+    private final List<Double> shelfY;
+
+    /** height of each shelf, along the y axis */
+    private final List<Double> shelfHeight;
+
+    /** x coordinate at which the next room on each shelf is placed */
+    private final List<Double> shelfCursor;
+
+    /** y coordinate at which the next shelf or strip starts */
+    private double nextY;
+
+    /** side length of each grid cell */
+    private final double cellSize;
+
+    /** number of grid columns, along the x axis */
+    private final int columns;
+
+    /** number of grid rows, along the y axis */
+    private final int rows;
+
+    /** rooms overlapping each grid cell, indexed by row * columns + column */
+    private final List<List<Room>> cells;
+
+    /**
+     * Creates an empty layout for a floor of the given size.
+     *
+     * @param width width of the floor
+     * @param length length of the floor
+     */
+    FloorLayout(double width, double length) {
+        this.width = width;
+        this.length = length;
+        rooms = new LinkedHashSet<Room>();
+        placements = new HashMap<Room, Rectangle>();
+        shelfY = new ArrayList<Double>();
+        shelfHeight = new ArrayList<Double>();
+        shelfCursor = new ArrayList<Double>();
+        nextY = 0;
+
+        cellSize = Math.max(1.0, Math.sqrt(width * length / TARGET_CELLS));
+        columns = Math.max(1, (int) Math.ceil(width / cellSize));
+        rows = Math.max(1, (int) Math.ceil(length / cellSize));
+        cells = new ArrayList<List<Room>>(columns * rows);
+        for (int i = 0; i < columns * rows; i++) {
+            cells.add(new ArrayList<Room>());
+        }
+    }
+
+    /**
+     * Places a room on the floor. The caller must already have checked that
+     * the floor has enough free area for the room.
+     *
+     * @param room room to place
+     * @return rectangle the room occupies
+     */
+    Rectangle place(Room room) {
+        rooms.add(room);
+        Rectangle placement = placeOnShelf(room.getArea());
+        if (placement != null) {
+            addPlacement(room, placement);
+            return placement;
+        }
+        if (!repackOnShelves(null)) {
+            placement = repackOnShelves(room)
+                    ? placeAsStrip(room.getArea()) : null;
+            if (placement != null) {
+                addPlacement(room, placement);
+            } else {
+                repackAsStrips();
+            }
+        }
+        return placements.get(room);
+    }
+
+    /**
+     * Removes a room from the floor, leaving its space unused until the
+     * layout is next repacked.
+     *
+     * @param room room to remove
+     */
+    void remove(Room room) {
+        Rectangle placement = placements.remove(room);
+        if (placement != null) {
+            rooms.remove(room);
+            forEachCell(placement, cell -> cells.get(cell).remove(room));
+        }
+    }
+
+    /**
+     * Finds space for a room of the given area on an existing or new shelf.
+     *
+     * @return the room's rectangle, or null if no shelf can hold it
+     */
+    private Rectangle placeOnShelf(double area) {
+        for (int i = 0; i < shelfY.size(); i++) {
+            double roomWidth = area / shelfHeight.get(i);
+            if (shelfCursor.get(i) + roomWidth <= width + Rectangle.EPSILON) {
+                Rectangle placement = new Rectangle(shelfCursor.get(i),
+                        shelfY.get(i), roomWidth, shelfHeight.get(i));
+                shelfCursor.set(i, shelfCursor.get(i) + roomWidth);
+                return placement;
+            }
+        }
+
+        double height = shelfHeight(area);
+        double remaining = length - nextY;
+        if (height > remaining + Rectangle.EPSILON) {
+            if (remaining <= Rectangle.EPSILON
+                    || area / remaining > width + Rectangle.EPSILON) {
+                return null;
+            }
+            height = remaining;
+        }
+        double roomWidth = area / height;
+        shelfY.add(nextY);
+        shelfHeight.add(height);
+        shelfCursor.add(roomWidth);
+        Rectangle placement = new Rectangle(0, nextY, roomWidth, height);
+        nextY += height;
+        return placement;
+    }
+
+    /**
+     * Places a room of the given area as a full-width strip after the last
+     * strip.
+     *
+     * @return the room's rectangle, or null if it does not fit
+     */
+    private Rectangle placeAsStrip(double area) {
+        double stripLength = area / width;
+        if (nextY + stripLength > length + Rectangle.EPSILON) {
+            return null;
+        }
+        Rectangle placement = new Rectangle(0, nextY, width,
+                Math.min(stripLength, length - nextY));
+        nextY += stripLength;
+        return placement;
+    }
+
+    /**
+     * Returns the height of a new shelf started by a room of the given area.
+     */
+    private double shelfHeight(double area) {
+        return area / Math.min(Math.sqrt(area), width);
+    }
+
+    /**
+     * Discards all placements and places every room except the given one
+     * onto shelves, tallest shelf first.
+     *
+     * @param excluded room to leave unplaced, or null to place every room
+     * @return true if every room was placed
+     */
+    private boolean repackOnShelves(Room excluded) {
+        clear();
+        List<Room> order = new ArrayList<Room>(rooms);
+        order.remove(excluded);
+        order.sort(Comparator.comparingDouble(
+                (Room room) -> shelfHeight(room.getArea())).reversed());
+        for (Room room : order) {
+            Rectangle placement = placeOnShelf(room.getArea());
+            if (placement == null) {
+                return false;
+            }
+            addPlacement(room, placement);
+        }
+        return true;
+    }
+
+    /**
+     * Discards all placements and places every room, in order, as a
+     * full-width strip.
+     */
+    private void repackAsStrips() {
+        clear();
+        for (Room room : rooms) {
+            double stripLength = room.getArea() / width;
+            Rectangle placement = new Rectangle(0, nextY, width,
+                    Math.max(0, Math.min(stripLength, length - nextY)));
+            nextY += stripLength;
+            addPlacement(room, placement);
+        }
+    }
+
+    private void clear() {
+        shelfY.clear();
+        shelfHeight.clear();
+        shelfCursor.clear();
+        placements.clear();
+        for (List<Room> cell : cells) {
+            cell.clear();
+        }
+        nextY = 0;
+    }
+
+    private void addPlacement(Room room, Rectangle placement) {
+        placements.put(room, placement);
+        forEachCell(placement, cell -> cells.get(cell).add(room));
+    }
+
+    /**
+     * Performs an action on the index of every grid cell the rectangle
+     * overlaps.
+     */
+    private void forEachCell(Rectangle rectangle,
+                             IntConsumer action) {
+        int firstColumn = column(rectangle.getX());
+        int lastColumn = column(rectangle.getX() + rectangle.getWidth());
+        int firstRow = row(rectangle.getY());
+        int lastRow = row(rectangle.getY() + rectangle.getLength());
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                action.accept(row * columns + column);
+            }
+        }
+    }
+
+    private int column(double x) {
+        return Math.max(0, Math.min(columns - 1, (int) (x / cellSize)));
+    }
+
+    private int row(double y) {
+        return Math.max(0, Math.min(rows - 1, (int) (y / cellSize)));
+    }
+
+    /**
+     * Returns the rectangle occupied by the given room.
+     *
+     * @param room room on this floor
+     * @return room's placement, or null if the room is not on the floor
+     */
+    Rectangle getPlacement(Room room) {
+        return placements.get(room);
+    }
+
+    /**
+     * Returns the room containing the given point.
+     *
+     * @param x x coordinate of the point
+     * @param y y coordinate of the point
+     * @return room at the point, or null if the point is not in any room
+     */
+    Room roomAt(double x, double y) {
+        for (Room room : cells.get(row(y) * columns + column(x))) {
+            if (placements.get(room).contains(x, y)) {
+                return room;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the rooms whose placements come within the given distance of
+     * the given room's placement, excluding the room itself.
+     *
+     * @param room room to search around
+     * @param distance maximum distance in metres
+     * @return rooms within the distance, in no particular order
+     */
+    List<Room> roomsWithin(Room room, double distance) {
+        Rectangle placement = placements.get(room);
+        Rectangle region = new Rectangle(placement.getX() - distance,
+                placement.getY() - distance,
+                placement.getWidth() + 2 * distance,
+                placement.getLength() + 2 * distance);
+        List<Room> result = new ArrayList<Room>();
+        for (Room candidate : candidates(region)) {
+            if (candidate != room && placements.get(candidate)
+                    .distanceTo(placement) <= distance + Rectangle.EPSILON) {
+                result.add(candidate);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the rooms whose placements lie entirely within the region.
+     *
+     * @param region region to search
+     * @return rooms inside the region, in no particular order
+     */
+    List<Room> roomsInside(Rectangle region) {
+        List<Room> result = new ArrayList<Room>();
+        for (Room candidate : candidates(region)) {
+            if (region.contains(placements.get(candidate))) {
+                result.add(candidate);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the rooms whose placements overlap the region.
+     *
+     * @param region region to search
+     * @return rooms overlapping the region, in no particular order
+     */
+    List<Room> roomsOverlapping(Rectangle region) {
+        List<Room> result = new ArrayList<Room>();
+        for (Room candidate : candidates(region)) {
+            if (region.overlaps(placements.get(candidate))) {
+                result.add(candidate);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the rooms sharing part of an edge with the given room.
+     *
+     * @param room room to search around
+     * @return adjacent rooms, in no particular order
+     */
+    List<Room> adjacentRooms(Room room) {
+        Rectangle placement = placements.get(room);
+        List<Room> result = new ArrayList<Room>();
+        for (Room candidate : roomsWithin(room, 0)) {
+            if (placements.get(candidate).isAdjacentTo(placement)) {
+                result.add(candidate);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the rooms in the grid cells covering the region, without
+     * duplicates.
+     */
+    private List<Room> candidates(Rectangle region) {
+        List<Room> result = new ArrayList<Room>();
+        Set<Room> seen = Collections.newSetFromMap(
+                new IdentityHashMap<Room, Boolean>());
+        forEachCell(region, cell -> {
+            for (Room room : cells.get(cell)) {
+                if (seen.add(room)) {
+                    result.add(room);
+                }
+            }
+        });
+        return result;
+    }
+}
@@ -0,0 +1,225 @@
+package bms.floor;
+
+import bms.room.Room;
+import bms.room.RoomSnapshot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable view of the structure of a floor at one point in time: the
+ * snapshots of its rooms, in the order the rooms were added.
+ *
+ * A new floor snapshot shares the snapshots of every room except the one
+ * which changed. Each snapshot also carries a structure version, which
+ * increases when a room is added or removed or a room's sensors change, but
+ * not when only a room's fire drill status changes.
+ *
+ * A snapshot also records the room snapshots which differ from those of the
+ * snapshot it was derived from, and a count of all such room changes, so
+ * that the floor can keep a log of recent changes; see
+ * Floor.forEachChange().
+ */
+public final class FloorSnapshot {
+
+    /** floor this is a snapshot of */
+    private final Floor floor;
+
+    /** snapshots of the rooms on the floor */
+    private final RoomSnapshot[] rooms;
+
+    /** number of structural changes made to the floor before this one */
+    private final long structureVersion;
+
+    /** number of room changes made to the floor, up to this snapshot */
+    private final long changeCount;
+
+    /**
+     * snapshots of the rooms changed since the previous snapshot, or of the
+     * room removed
+     */
+    private final RoomSnapshot[] changed;
+
+    /** whether the changed room was removed */
+    private final boolean removal;
+
+    FloorSnapshot(Floor floor, RoomSnapshot[] rooms) {
+        this(floor, rooms, 0, 0, rooms, false);
+    }
+
+    private FloorSnapshot(Floor floor, RoomSnapshot[] rooms,
+                          long structureVersion, long changeCount,
+                          RoomSnapshot[] changed, boolean removal) {
+        this.floor = floor;
+        this.rooms = rooms;
+        this.structureVersion = structureVersion;
+        this.changeCount = changeCount;
+        this.changed = changed;
+        this.removal = removal;
+    }
+
+    /**
+     * Returns a snapshot with the given room snapshot added after the rooms
+     * of this one.
+     */
+    FloorSnapshot withRoom(RoomSnapshot room) {
+        RoomSnapshot[] next = Arrays.copyOf(rooms, rooms.length + 1);
+        next[rooms.length] = room;
+        return new FloorSnapshot(floor, next, structureVersion + 1,
+                changeCount + 1, new RoomSnapshot[]{room}, false);
+    }
+
+    /**
+     * Returns a snapshot with the given room snapshots added after the rooms
+     * of this one, as a single structural change.
+     */
+    FloorSnapshot withRooms(RoomSnapshot[] added) {
+        RoomSnapshot[] next = Arrays.copyOf(rooms,
+                rooms.length + added.length);
+        System.arraycopy(added, 0, next, rooms.length, added.length);
+        return new FloorSnapshot(floor, next, structureVersion + 1,
+                changeCount + added.length, added, false);
+    }
+
+    /**
+     * Returns a snapshot with the room of the given snapshot's number
+     * replaced by it, or this snapshot if the floor has no such room.
+     */
+    FloorSnapshot withReplacedRoom(RoomSnapshot room) {
+        for (int i = 0; i < rooms.length; i++) {
+            if (rooms[i].getRoom() == room.getRoom()) {
+                RoomSnapshot[] next = rooms.clone();
+                next[i] = room;
+                return new FloorSnapshot(floor, next,
+                        rooms[i].getSensors() == room.getSensors()
+                                ? structureVersion : structureVersion + 1,
+                        changeCount + 1, new RoomSnapshot[]{room}, false);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Returns a snapshot holding the latest snapshot of each of its rooms, or
+     * this snapshot if none of them has changed.
+     */
+    FloorSnapshot withLatestRooms() {
+        RoomSnapshot[] next = null;
+        List<RoomSnapshot> latestRooms = new ArrayList<RoomSnapshot>();
+        boolean structural = false;
+        for (int i = 0; i < rooms.length; i++) {
+            RoomSnapshot latest = rooms[i].getRoom().getSnapshot();
+            if (latest != rooms[i]) {
+                if (next == null) {
+                    next = rooms.clone();
+                }
+                structural |= latest.getSensors() != rooms[i].getSensors();
+                next[i] = latest;
+                latestRooms.add(latest);
+            }
+        }
+        if (next == null) {
+            return this;
+        }
+        return new FloorSnapshot(floor, next,
+                structural ? structureVersion + 1 : structureVersion,
+                changeCount + latestRooms.size(),
+                latestRooms.toArray(new RoomSnapshot[0]), false);
+    }
+
+    /**
+     * Returns a snapshot without the given room, or this snapshot if the
+     * floor has no such room.
+     */
+    FloorSnapshot withoutRoom(Room room) {
+        for (int i = 0; i < rooms.length; i++) {
+            if (rooms[i].getRoom() == room) {
+                RoomSnapshot[] next = new RoomSnapshot[rooms.length - 1];
+                System.arraycopy(rooms, 0, next, 0, i);
+                System.arraycopy(rooms, i + 1, next, i, next.length - i);
+                return new FloorSnapshot(floor, next, structureVersion + 1,
+                        changeCount + 1, new RoomSnapshot[]{rooms[i]}, true);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Returns the number of room changes made to the floor up to this
+     * snapshot. Each room added, removed or republished counts as one.
+     */
+    long getChangeCount() {
+        return changeCount;
+    }
+
+    /**
+     * Returns the snapshots of the rooms changed since the previous
+     * snapshot, or of the room removed.
+     */
+    RoomSnapshot[] getChanged() {
+        return changed;
+    }
+
+    /**
+     * Returns whether the changed room was removed, rather than added or
+     * republished.
+     */
+    boolean isRemoval() {
+        return removal;
+    }
+
+    /**
+     * Returns the floor this is a snapshot of.
+     *
+     * @return live floor
+     */
+    public Floor getFloor() {
+        return floor;
+    }
+
+    /**
+     * Returns the structure version of the snapshot, which increases with
+     * each room added or removed and each change to a room's sensors.
+     *
+     * @return structure version, starting at 0 for an empty floor
+     */
+    public long getStructureVersion() {
+        return structureVersion;
+    }
+
+    /**
+     * Returns the floor number of the floor.
+     *
+     * @return floor number
+     */
+    public int getFloorNumber() {
+        return floor.getFloorNumber();
+    }
+
+    /**
+     * Returns the snapshots of the rooms on the floor, in the order the
+     * rooms were added.
+     *
+     * @return unmodifiable list of room snapshots
+     */
+    public List<RoomSnapshot> getRooms() {
+        return Collections.unmodifiableList(Arrays.asList(rooms));
+    }
+
+    /**
+     * Returns the snapshot of the room with the given number.
+     *
+     * @param roomNumber number of the room
+     * @return snapshot of the room, or null if there was no such room
+     */
+    public RoomSnapshot getRoomByNumber(int roomNumber) {
+        for (RoomSnapshot room : rooms) {
+            if (room.getRoomNumber() == roomNumber) {
+                return room;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,176 @@
+package bms.floor;
+
+/**
+ * An axis-aligned rectangle on a floor, in metres, measured from the floor's
+ * origin corner. The x axis runs along the floor's width and the y axis along
+ * its length.
+ */
+public class Rectangle {
+
+    /** tolerance used when comparing coordinates */
+    static final double EPSILON = 1e-9;
+
+    /** x coordinate of the corner nearest the origin */
+    private final double x;
+
+    /** y coordinate of the corner nearest the origin */
+    private final double y;
+
+    /** extent along the x axis */
+    private final double width;
+
+    /** extent along the y axis */
+    private final double length;
+
+    /**
+     * Creates a new rectangle.
+     *
+     * @param x x coordinate of the corner nearest the origin
+     * @param y y coordinate of the corner nearest the origin
+     * @param width extent along the x axis
+     * @param length extent along the y axis
+     * @throws IllegalArgumentException if width or length is negative
+     */
+    public Rectangle(double x, double y, double width, double length)
+            throws IllegalArgumentException {
+        if (width < 0 || length < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.length = length;
+    }
+
+    /**
+     * Returns the x coordinate of the corner nearest the origin.
+     *
+     * @return minimum x coordinate
+     */
+    public double getX() {
+        return x;
+    }
+
+    /**
+     * Returns the y coordinate of the corner nearest the origin.
+     *
+     * @return minimum y coordinate
+     */
+    public double getY() {
+        return y;
+    }
+
+    /**
+     * Returns the extent of the rectangle along the x axis.
+     *
+     * @return width in metres
+     */
+    public double getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the extent of the rectangle along the y axis.
+     *
+     * @return length in metres
+     */
+    public double getLength() {
+        return length;
+    }
+
+    /**
+     * Returns the x coordinate of the centre of the rectangle.
+     *
+     * @return centre x coordinate
+     */
+    public double getCentreX() {
+        return x + width / 2;
+    }
+
+    /**
+     * Returns the y coordinate of the centre of the rectangle.
+     *
+     * @return centre y coordinate
+     */
+    public double getCentreY() {
+        return y + length / 2;
+    }
+
+    /**
+     * Returns whether the given point lies within or on the edge of this
+     * rectangle.
+     *
+     * @param pointX x coordinate of the point
+     * @param pointY y coordinate of the point
+     * @return true if the point is inside the rectangle
+     */
+    public boolean contains(double pointX, double pointY) {
+        return pointX >= x - EPSILON && pointX <= x + width + EPSILON
+                && pointY >= y - EPSILON && pointY <= y + length + EPSILON;
+    }
+
+    /**
+     * Returns whether the given rectangle lies entirely within this one.
+     *
+     * @param other rectangle to check
+     * @return true if other is inside this rectangle
+     */
+    public boolean contains(Rectangle other) {
+        return contains(other.x, other.y)
+                && contains(other.x + other.width, other.y + other.length);
+    }
+
+    /**
+     * Returns whether the interiors of this rectangle and the given one
+     * overlap. Rectangles which only share an edge do not overlap.
+     *
+     * @param other rectangle to check
+     * @return true if the rectangles overlap
+     */
+    public boolean overlaps(Rectangle other) {
+        return x + width > other.x + EPSILON
+                && other.x + other.width > x + EPSILON
+                && y + length > other.y + EPSILON
+                && other.y + other.length > y + EPSILON;
+    }
+
+    /**
+     * Returns whether this rectangle and the given one share part of an edge
+     * without overlapping, such that a person could pass directly from one to
+     * the other.
+     *
+     * @param other rectangle to check
+     * @return true if the rectangles are side by side
+     */
+    public boolean isAdjacentTo(Rectangle other) {
+        if (overlaps(other) || distanceTo(other) > EPSILON) {
+            return false;
+        }
+        double sharedX = Math.min(x + width, other.x + other.width)
+                - Math.max(x, other.x);
+        double sharedY = Math.min(y + length, other.y + other.length)
+                - Math.max(y, other.y);
+        return sharedX > EPSILON || sharedY > EPSILON;
+    }
+
+    /**
+     * Returns the shortest distance between any point of this rectangle and
+     * any point of the given one.
+     *
+     * @param other rectangle to measure to
+     * @return distance in metres, 0 if the rectangles touch or overlap
+     */
+    public double distanceTo(Rectangle other) {
+        double dx = Math.max(0, Math.max(other.x - (x + width),
+                x - (other.x + other.width)));
+        double dy = Math.max(0, Math.max(other.y - (y + length),
+                y - (other.y + other.length)));
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Rectangle: x=%.2f, y=%.2f, width=%.2f, "
+                + "length=%.2f", x, y, width, length);
+    }
+}
@@ -0,0 +1,39 @@
+package bms.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event spanning a building's fireDrill() or
+ * cancelFireDrill().
+ *
+ * Disabled unless a recording enables it, for example with the bms.jfc
+ * settings profile.
+ */
+@Name("bms.FireDrill")
+@Label("Fire Drill")
+@Category({"Building Management", "Fire Drill"})
+@Description("Fire drill started or cancelled across a building")
+@Enabled(false)
+public class FireDrillEvent extends Event {
+
+    /** name of the building */
+    @Label("Building")
+    public String building;
+
+    /** type of room drilled, or null for every room */
+    @Label("Room Type")
+    public String roomType;
+
+    /** whether the drill was being cancelled rather than started */
+    @Label("Cancelled")
+    public boolean cancelled;
+
+    /** number of rooms whose fire drill status was set */
+    @Label("Rooms Touched")
+    public int roomsTouched;
+}
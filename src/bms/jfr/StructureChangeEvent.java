@@ -0,0 +1,45 @@
+package bms.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event spanning the addition of a floor to a building, a
+ * room to a floor or a sensor to a room, whether or not it succeeded.
+ *
+ * Disabled unless a recording enables it, for example with the bms.jfc
+ * settings profile.
+ */
+@Name("bms.StructureChange")
+@Label("Structure Change")
+@Category({"Building Management", "Structure"})
+@Description("Floor, room or sensor added to the model")
+@Enabled(false)
+@StackTrace(false)
+public class StructureChangeEvent extends Event {
+
+    /** operation performed: addFloor, addRoom, addRooms or addSensor */
+    @Label("Operation")
+    public String operation;
+
+    /** number of the floor added to or added, or 0 if not known */
+    @Label("Floor Number")
+    public int floorNumber;
+
+    /** number of the room added to or added, or 0 if not applicable */
+    @Label("Room Number")
+    public int roomNumber;
+
+    /** simple class name of the sensor added, or null */
+    @Label("Sensor Type")
+    public String sensorType;
+
+    /** whether the change was made, rather than rejected by an exception */
+    @Label("Succeeded")
+    public boolean succeeded;
+}
@@ -0,0 +1,49 @@
+package bms.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event spanning one call to a TimedItemManager's
+ * elapseOneMinute() or elapseMinutes(), including its tick listeners.
+ *
+ * Disabled unless a recording enables it, for example with the bms.jfc
+ * settings profile.
+ */
+@Name("bms.Tick")
+@Label("Tick")
+@Category({"Building Management", "Simulation"})
+@Description("Timed items elapsing and tick listeners being notified")
+@Enabled(false)
+@StackTrace(false)
+public class TickEvent extends Event {
+
+    /** minutes elapsed on the manager once the tick completed */
+    @Label("Minute")
+    public int minute;
+
+    /** number of minutes elapsed by the tick */
+    @Label("Minutes Elapsed")
+    public int minutes;
+
+    /** number of timed items ticked */
+    @Label("Items")
+    public int items;
+
+    /** number of tick listeners notified */
+    @Label("Listeners")
+    public int listeners;
+
+    /** number of sensors whose reading changed */
+    @Label("Changed Sensors")
+    public int changedSensors;
+
+    /** whether the items were ticked on a fork-join pool */
+    @Label("Parallel")
+    public boolean parallel;
+}
@@ -0,0 +1,226 @@
+package bms.log;
+
+import bms.sensors.HazardSensor;
+import bms.sensors.SensorChangeSet;
+import bms.sensors.TimedSensor;
+import bms.util.TickListener;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Append-only binary log of sensor readings, split into segment files which
+ * are rolled once they reach a maximum size.
+ *
+ * Each record is a fixed {@link #RECORD_BYTES} bytes: the minute at which the
+ * reading was taken, the sensor id, the reading and the hazard level, each as
+ * a big-endian int. Records are written in non-decreasing order of minute.
+ *
+ * When registered as a tick listener with the TimedItemManager, the log
+ * writes every changed sensor once per tick in a single batched write.
+ * Logs are read back with {@link ReadingLogReader}.
+ */
+public class ReadingLog implements TickListener, Closeable {
+
+    /** size of one record in bytes */
+    public static final int RECORD_BYTES = 16;
+
+    /** file name suffix of segment files */
+    static final String SEGMENT_SUFFIX = ".seg";
+
+    /** directory holding the segment files */
+    private final Path directory;
+
+    /** maximum size of each segment in bytes, a multiple of RECORD_BYTES */
+    private final long maxSegmentBytes;
+
+    /** buffer holding the records of the batch being written */
+    private ByteBuffer batch;
+
+    /** channel of the segment currently being written */
+    private FileChannel segment;
+
+    /** number of bytes written to the current segment */
+    private long segmentBytes;
+
+    /** sequence number of the current segment */
+    private int segmentNumber;
+
+    /**
+     * Opens a reading log in the given directory, creating the directory if
+     * necessary. New records are written to a new segment following any
+     * segments already in the directory.
+     *
+     * @param directory directory to hold the segment files
+     * @param maxSegmentBytes maximum size of each segment file in bytes
+     * @throws IllegalArgumentException if maxSegmentBytes is smaller than one
+     * record
+     * @throws IOException if the directory or first segment cannot be created
+     */
+    public ReadingLog(Path directory, long maxSegmentBytes)
+            throws IllegalArgumentException, IOException {
+        if (maxSegmentBytes < RECORD_BYTES) {
+            throw new IllegalArgumentException();
+        }
+        this.directory = directory;
+        this.maxSegmentBytes = maxSegmentBytes - maxSegmentBytes % RECORD_BYTES;
+        batch = ByteBuffer.allocateDirect(RECORD_BYTES * 1024)
+                .order(ByteOrder.BIG_ENDIAN);
+
+        Files.createDirectories(directory);
+        segmentNumber = nextSegmentNumber(directory);
+        openSegment();
+    }
+
+    /**
+     * Returns one more than the highest sequence number of the segments in
+     * the given directory, so that numbering carries on past segments which
+     * have been deleted.
+     */
+    private static int nextSegmentNumber(Path directory) throws IOException {
+        int next = 0;
+        for (Path path : ReadingLogReader.listSegments(directory)) {
+            String name = path.getFileName().toString();
+            try {
+                next = Math.max(next, Integer.parseInt(name.substring(0,
+                        name.length() - SEGMENT_SUFFIX.length())) + 1);
+            } catch (NumberFormatException e) {
+                // not a segment written by a reading log
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Returns the file name of the segment with the given sequence number.
+     *
+     * @param segmentNumber sequence number of the segment
+     * @return segment file name
+     */
+    static String segmentName(int segmentNumber) {
+        return String.format("%010d", segmentNumber) + SEGMENT_SUFFIX;
+    }
+
+    private void openSegment() throws IOException {
+        segment = FileChannel.open(directory.resolve(
+                segmentName(segmentNumber)),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        segmentBytes = 0;
+    }
+
+    private void rollSegment() throws IOException {
+        segment.close();
+        segmentNumber++;
+        openSegment();
+    }
+
+    /**
+     * Writes a record for every timed sensor in the change set.
+     *
+     * @param minute minute at which the readings were taken
+     * @param changes sensors whose readings changed
+     */
+    @Override
+    public void tickCompleted(int minute, SensorChangeSet changes) {
+        try {
+            append(minute, changes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes a record for every timed sensor in the change set, in as few
+     * writes as the segment size allows. Composite sensors are not recorded,
+     * as they are derived from the timed sensors which are.
+     *
+     * @param minute minute at which the readings were taken
+     * @param changes sensors to record
+     * @throws IOException if the records cannot be written
+     */
+    public void append(int minute, SensorChangeSet changes)
+            throws IOException {
+        ensureBatchCapacity(changes.size());
+        batch.clear();
+        for (int i = 0; i < changes.size(); i++) {
+            if (changes.get(i) instanceof TimedSensor) {
+                putRecord(minute, (TimedSensor) changes.get(i));
+            }
+        }
+        writeBatch();
+    }
+
+    /**
+     * Writes a single record holding the current state of the given sensor.
+     * This can be used to log the initial readings of sensors, which are not
+     * reported as changes.
+     *
+     * @param minute minute at which the reading was taken
+     * @param sensor sensor to record
+     * @throws IOException if the record cannot be written
+     */
+    public void append(int minute, TimedSensor sensor) throws IOException {
+        batch.clear();
+        putRecord(minute, sensor);
+        writeBatch();
+    }
+
+    private void ensureBatchCapacity(int records) {
+        if (batch.capacity() < records * RECORD_BYTES) {
+            batch = ByteBuffer.allocateDirect(Math.max(records * RECORD_BYTES,
+                    batch.capacity() * 2)).order(ByteOrder.BIG_ENDIAN);
+        }
+    }
+
+    private void putRecord(int minute, TimedSensor sensor) {
+        int hazardLevel = 0;
+        if (sensor instanceof HazardSensor) {
+            hazardLevel = ((HazardSensor) sensor).getHazardLevel();
+        }
+        batch.putInt(minute);
+        batch.putInt(sensor.getSensorId());
+        batch.putInt(sensor.getCurrentReading());
+        batch.putInt(hazardLevel);
+    }
+
+    /**
+     * Writes the records held in the batch buffer, rolling segments whenever
+     * the current segment is full.
+     */
+    private void writeBatch() throws IOException {
+        batch.flip();
+        int end = batch.limit();
+        while (batch.position() < end) {
+            if (segmentBytes == maxSegmentBytes) {
+                rollSegment();
+            }
+            long room = maxSegmentBytes - segmentBytes;
+            batch.limit((int) Math.min(end, batch.position() + room));
+            while (batch.hasRemaining()) {
+                segmentBytes += segment.write(batch);
+            }
+            batch.limit(end);
+        }
+    }
+
+    /**
+     * Forces any written records to the storage device.
+     *
+     * @throws IOException if the segment cannot be synced
+     */
+    public void flush() throws IOException {
+        segment.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        segment.close();
+    }
+}
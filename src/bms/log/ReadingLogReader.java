@@ -0,0 +1,155 @@
+package bms.log;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads the records of a {@link ReadingLog} by memory-mapping its segment
+ * files, so that replaying or querying the log does not copy records onto
+ * the heap.
+ *
+ * The reader sees the segments and records that existed when it was opened.
+ */
+public class ReadingLogReader implements Closeable {
+
+    /** mapped contents of each segment, in order */
+    private final List<MappedByteBuffer> segments;
+
+    /**
+     * Opens the reading log in the given directory for reading.
+     *
+     * @param directory directory holding the segment files
+     * @throws IOException if the segments cannot be mapped
+     */
+    public ReadingLogReader(Path directory) throws IOException {
+        segments = new ArrayList<MappedByteBuffer>();
+        for (Path path : listSegments(directory)) {
+            try (FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.READ)) {
+                long size = channel.size()
+                        - channel.size() % ReadingLog.RECORD_BYTES;
+                segments.add(channel.map(FileChannel.MapMode.READ_ONLY,
+                        0, size));
+            }
+        }
+    }
+
+    /**
+     * Returns the segment files in the given directory in order.
+     *
+     * @param directory directory holding the segment files
+     * @return paths of the segment files, or an empty list if the directory
+     * does not exist
+     * @throws IOException if the directory cannot be listed
+     */
+    static List<Path> listSegments(Path directory) throws IOException {
+        List<Path> paths = new ArrayList<Path>();
+        if (!Files.isDirectory(directory)) {
+            return paths;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(
+                directory, "*" + ReadingLog.SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                paths.add(path);
+            }
+        }
+        Collections.sort(paths);
+        return paths;
+    }
+
+    /**
+     * Returns the total number of records in the log.
+     *
+     * @return number of records
+     */
+    public long size() {
+        long records = 0;
+        for (MappedByteBuffer segment : segments) {
+            records += segment.limit() / ReadingLog.RECORD_BYTES;
+        }
+        return records;
+    }
+
+    /**
+     * Visits every record in the log in order.
+     *
+     * @param visitor visitor to receive the records
+     */
+    public void replay(ReadingLogVisitor visitor) {
+        replay(Integer.MIN_VALUE, Integer.MAX_VALUE, visitor);
+    }
+
+    /**
+     * Visits, in order, every record taken between the given minutes.
+     * Segments outside the range are skipped, and the first record of the
+     * range within a segment is found by binary search.
+     *
+     * @param fromMinute first minute to include
+     * @param toMinute last minute to include
+     * @param visitor visitor to receive the records
+     */
+    public void replay(int fromMinute, int toMinute,
+                       ReadingLogVisitor visitor) {
+        for (MappedByteBuffer segment : segments) {
+            int records = segment.limit() / ReadingLog.RECORD_BYTES;
+            if (records == 0 || minuteAt(segment, records - 1) < fromMinute) {
+                continue;
+            }
+            if (minuteAt(segment, 0) > toMinute) {
+                return;
+            }
+            for (int i = firstAtOrAfter(segment, records, fromMinute);
+                    i < records; i++) {
+                int offset = i * ReadingLog.RECORD_BYTES;
+                int minute = segment.getInt(offset);
+                if (minute > toMinute) {
+                    return;
+                }
+                visitor.visit(minute, segment.getInt(offset + 4),
+                        segment.getInt(offset + 8),
+                        segment.getInt(offset + 12));
+            }
+        }
+    }
+
+    private static int minuteAt(MappedByteBuffer segment, int record) {
+        return segment.getInt(record * ReadingLog.RECORD_BYTES);
+    }
+
+    /**
+     * Returns the index of the first record in the segment taken at or after
+     * the given minute.
+     */
+    private static int firstAtOrAfter(MappedByteBuffer segment, int records,
+                                      int minute) {
+        int low = 0;
+        int high = records;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (minuteAt(segment, middle) < minute) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Releases the reader's reference to the mapped segments.
+     * The mappings themselves are released when they are garbage collected.
+     */
+    @Override
+    public void close() {
+        segments.clear();
+    }
+}
@@ -0,0 +1,18 @@
+package bms.log;
+
+/**
+ * Receives the records read back from a reading log.
+ */
+public interface ReadingLogVisitor {
+
+    /**
+     * Called once for each record, in the order the records were written.
+     *
+     * @param minute minute at which the reading was taken
+     * @param sensorId id of the sensor
+     * @param reading sensor reading
+     * @param hazardLevel hazard level of the sensor, 0 for sensors which do
+     *                    not report hazards
+     */
+    void visit(int minute, int sensorId, int reading, int hazardLevel);
+}
@@ -0,0 +1,122 @@
+package bms.net;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Client which sends readings to an {@link IngestServer} as fast as possible,
+ * for measuring ingest throughput over loopback.
+ *
+ * Readings are sent round-robin to the given sensor type in every room
+ * numbered from 1 to roomsPerFloor on every floor from 1 to floors, in
+ * building 0.
+ */
+public class IngestLoadGenerator {
+
+    /** address of the server */
+    private final InetSocketAddress address;
+
+    /** number of floors addressed */
+    private final int floors;
+
+    /** number of rooms addressed on each floor */
+    private final int roomsPerFloor;
+
+    /** type code of the sensors addressed */
+    private final byte sensorType;
+
+    /** number of records sent in each frame */
+    private final int recordsPerFrame;
+
+    /**
+     * Creates a load generator.
+     *
+     * @param address address of the server
+     * @param floors number of floors to address, from floor 1
+     * @param roomsPerFloor number of rooms to address on each floor, from
+     *                      room 1
+     * @param sensorType simple class name of the sensors to address
+     * @param recordsPerFrame number of records in each frame
+     * @throws IllegalArgumentException if any count is less than one, or
+     * recordsPerFrame would exceed the maximum frame size
+     */
+    public IngestLoadGenerator(InetSocketAddress address, int floors,
+                               int roomsPerFloor, String sensorType,
+                               int recordsPerFrame)
+            throws IllegalArgumentException {
+        if (floors < 1 || roomsPerFloor < 1 || recordsPerFrame < 1
+                || recordsPerFrame * IngestProtocol.RECORD_BYTES
+                > IngestProtocol.MAX_PAYLOAD_BYTES) {
+            throw new IllegalArgumentException();
+        }
+        this.address = address;
+        this.floors = floors;
+        this.roomsPerFloor = roomsPerFloor;
+        this.sensorType = IngestProtocol.typeCode(sensorType);
+        this.recordsPerFrame = recordsPerFrame;
+    }
+
+    /**
+     * Sends the given number of readings over one connection.
+     *
+     * @param readings number of readings to send
+     * @return time taken to send the readings, in nanoseconds
+     * @throws IOException if the connection fails
+     */
+    public long send(long readings) throws IOException {
+        ByteBuffer frame = ByteBuffer.allocateDirect(
+                IngestProtocol.HEADER_BYTES
+                        + recordsPerFrame * IngestProtocol.RECORD_BYTES);
+        long start = System.nanoTime();
+        try (SocketChannel channel = SocketChannel.open(address)) {
+            long sent = 0;
+            int floor = 1;
+            int room = 1;
+            while (sent < readings) {
+                int records = (int) Math.min(recordsPerFrame, readings - sent);
+                frame.clear();
+                frame.putInt(records * IngestProtocol.RECORD_BYTES);
+                for (int i = 0; i < records; i++) {
+                    IngestProtocol.putRecord(frame, 0, floor, room,
+                            sensorType, (int) ((sent + i) % 100));
+                    room++;
+                    if (room > roomsPerFloor) {
+                        room = 1;
+                        floor = floor % floors + 1;
+                    }
+                }
+                frame.flip();
+                while (frame.hasRemaining()) {
+                    channel.write(frame);
+                }
+                sent += records;
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Sends readings to a running ingest server and prints the throughput.
+     *
+     * @param args host, port, floors, rooms per floor, sensor type, total
+     *             readings and records per frame
+     * @throws IOException if the connection fails
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 7) {
+            System.err.println("usage: IngestLoadGenerator host port floors "
+                    + "roomsPerFloor sensorType readings recordsPerFrame");
+            return;
+        }
+        IngestLoadGenerator generator = new IngestLoadGenerator(
+                new InetSocketAddress(args[0], Integer.parseInt(args[1])),
+                Integer.parseInt(args[2]), Integer.parseInt(args[3]),
+                args[4], Integer.parseInt(args[6]));
+        long readings = Long.parseLong(args[5]);
+        long nanos = generator.send(readings);
+        System.out.printf("sent %d readings in %.3f s (%.0f readings/s)%n",
+                readings, nanos / 1e9, readings / (nanos / 1e9));
+    }
+}
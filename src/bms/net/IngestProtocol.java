@@ -0,0 +1,78 @@
+package bms.net;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Wire format used to push sensor readings to an {@link IngestServer}.
+ *
+ * A connection carries a sequence of frames. Each frame is a big-endian int
+ * giving the payload length in bytes, followed by a payload of one or more
+ * fixed-size records. Each record addresses one sensor and carries one
+ * reading:
+ *
+ * <pre>
+ * short building index   (position in the server's list of buildings)
+ * short floor number
+ * int   room number
+ * byte  sensor type      (index into SENSOR_TYPES)
+ * int   reading
+ * </pre>
+ */
+public final class IngestProtocol {
+
+    /** size of one record in bytes */
+    public static final int RECORD_BYTES = 2 + 2 + 4 + 1 + 4;
+
+    /** size of the frame length prefix in bytes */
+    public static final int HEADER_BYTES = 4;
+
+    /** largest payload a frame may carry */
+    public static final int MAX_PAYLOAD_BYTES = RECORD_BYTES * 4096;
+
+    /** simple class names of the sensor types, indexed by type code */
+    public static final String[] SENSOR_TYPES = {
+            "CarbonDioxideSensor",
+            "NoiseSensor",
+            "OccupancySensor",
+            "TemperatureSensor"
+    };
+
+    private IngestProtocol() {}
+
+    /**
+     * Returns the type code of the sensor type with the given simple class
+     * name.
+     *
+     * @param sensorType simple class name, eg. "NoiseSensor"
+     * @return type code
+     * @throws IllegalArgumentException if the sensor type is not supported
+     */
+    public static byte typeCode(String sensorType)
+            throws IllegalArgumentException {
+        for (int i = 0; i < SENSOR_TYPES.length; i++) {
+            if (SENSOR_TYPES[i].equals(sensorType)) {
+                return (byte) i;
+            }
+        }
+        throw new IllegalArgumentException();
+    }
+
+    /**
+     * Writes one record to the buffer at its current position.
+     *
+     * @param buffer buffer to write to
+     * @param building index of the building
+     * @param floor floor number
+     * @param room room number
+     * @param sensorType type code of the sensor
+     * @param reading reading to deliver
+     */
+    public static void putRecord(ByteBuffer buffer, int building, int floor,
+                                 int room, byte sensorType, int reading) {
+        buffer.putShort((short) building);
+        buffer.putShort((short) floor);
+        buffer.putInt(room);
+        buffer.put(sensorType);
+        buffer.putInt(reading);
+    }
+}
@@ -0,0 +1,338 @@
+package bms.net;
+
+import bms.building.Building;
+import bms.floor.Floor;
+import bms.room.Room;
+import bms.sensors.QueuedReadingSource;
+import bms.sensors.ReadingSource;
+import bms.sensors.Sensor;
+import bms.sensors.TimedSensor;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Non-blocking server which receives sensor readings over TCP and delivers
+ * them to the QueuedReadingSources of running timed sensors.
+ *
+ * A single thread multiplexes all connections with a Selector. Each
+ * connection has its own direct receive buffer, and records are decoded in
+ * place from that buffer (see {@link IngestProtocol}), so no objects are
+ * allocated per frame or per record. Readings addressed to a sensor that
+ * does not exist, is not fed by a QueuedReadingSource, or whose source is
+ * full, are counted as rejected and dropped.
+ *
+ * A connection which cannot be accepted, for example because the process
+ * has run out of file descriptors, is counted and dropped, and accepting is
+ * paused briefly before being retried; connections already open carry on
+ * being read. A failed select is likewise counted and retried. The selector
+ * loop only ends when the server is closed.
+ */
+public class IngestServer implements Closeable {
+
+    /** time for which accepting is paused after a failed accept */
+    private static final long ACCEPT_RETRY_MILLIS = 100;
+
+    /** buildings addressable by index */
+    private final List<Building> buildings;
+
+    /** channel accepting connections */
+    private final ServerSocketChannel serverChannel;
+
+    /** selector multiplexing all channels */
+    private final Selector selector;
+
+    /** thread running the selector loop */
+    private final Thread thread;
+
+    /** number of readings delivered to sensors */
+    private final AtomicLong accepted = new AtomicLong();
+
+    /** number of readings dropped */
+    private final AtomicLong rejected = new AtomicLong();
+
+    /** number of connections which could not be accepted */
+    private final AtomicLong failedAccepts = new AtomicLong();
+
+    /** number of selects which failed while the server was open */
+    private final AtomicLong failedSelects = new AtomicLong();
+
+    /** whether accepting is paused after a failed accept */
+    private boolean acceptPaused;
+
+    /** System.nanoTime() after which a paused accept resumes */
+    private long acceptResumeNanos;
+
+    /** whether the server has been closed */
+    private volatile boolean closed;
+
+    /**
+     * Creates a server for the given buildings, bound to the given address.
+     * The server does not receive readings until start() is called.
+     *
+     * @param buildings buildings addressable by index, in order
+     * @param address address to listen on; use port 0 for any free port
+     * @throws IOException if the server cannot be bound
+     */
+    public IngestServer(List<Building> buildings, InetSocketAddress address)
+            throws IOException {
+        this.buildings = new ArrayList<Building>(buildings);
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(address);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        thread = new Thread(this::run, "bms-ingest");
+        thread.setDaemon(true);
+    }
+
+    /**
+     * Starts receiving readings on a background thread.
+     */
+    public void start() {
+        thread.start();
+    }
+
+    /**
+     * Returns the address the server is listening on.
+     *
+     * @return local address
+     * @throws IOException if the address cannot be determined
+     */
+    public InetSocketAddress getLocalAddress() throws IOException {
+        return (InetSocketAddress) serverChannel.getLocalAddress();
+    }
+
+    /**
+     * Returns the number of readings delivered to sensors.
+     *
+     * @return accepted reading count
+     */
+    public long getAcceptedCount() {
+        return accepted.get();
+    }
+
+    /**
+     * Returns the number of readings dropped because their sensor could not
+     * take them.
+     *
+     * @return rejected reading count
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * Returns the number of connections which could not be accepted.
+     *
+     * @return failed accept count
+     */
+    public long getFailedAcceptCount() {
+        return failedAccepts.get();
+    }
+
+    /**
+     * Returns the number of times the selector failed to select, which the
+     * selector loop recovers from by selecting again.
+     *
+     * @return failed select count
+     */
+    public long getFailedSelectCount() {
+        return failedSelects.get();
+    }
+
+    private void run() {
+        while (!closed) {
+            try {
+                if (!acceptPaused) {
+                    selector.select();
+                } else {
+                    selector.select(ACCEPT_RETRY_MILLIS);
+                    resumeAcceptingIfDue();
+                }
+            } catch (IOException e) {
+                if (!closed) {
+                    failedSelects.incrementAndGet();
+                }
+                continue;
+            } catch (ClosedSelectorException e) {
+                return;
+            }
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                if (!key.isValid()) {
+                    continue;
+                }
+                if (key.isAcceptable()) {
+                    accept(key);
+                } else if (key.isReadable()) {
+                    read(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Accepts a pending connection. If it cannot be accepted the connection
+     * is dropped and accepting paused, since the cause, such as running out
+     * of file descriptors, would otherwise fail every retry straight away.
+     */
+    private void accept(SelectionKey key) {
+        SocketChannel channel = null;
+        try {
+            channel = serverChannel.accept();
+            if (channel == null) {
+                return;
+            }
+            channel.configureBlocking(false);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(
+                    IngestProtocol.HEADER_BYTES
+                            + IngestProtocol.MAX_PAYLOAD_BYTES);
+            channel.register(selector, SelectionKey.OP_READ, buffer);
+        } catch (IOException e) {
+            failedAccepts.incrementAndGet();
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException closeFailure) {
+                    // the connection is being discarded regardless
+                }
+            }
+            key.interestOps(0);
+            acceptPaused = true;
+            acceptResumeNanos = System.nanoTime()
+                    + ACCEPT_RETRY_MILLIS * 1_000_000;
+        }
+    }
+
+    private void resumeAcceptingIfDue() {
+        if (System.nanoTime() - acceptResumeNanos >= 0) {
+            acceptPaused = false;
+            serverChannel.keyFor(selector).interestOps(SelectionKey.OP_ACCEPT);
+        }
+    }
+
+    /**
+     * Reads what is available from a connection and decodes every complete
+     * frame, keeping any partial frame for the next read.
+     */
+    private void read(SelectionKey key) {
+        SocketChannel channel = (SocketChannel) key.channel();
+        ByteBuffer buffer = (ByteBuffer) key.attachment();
+        try {
+            int count = channel.read(buffer);
+            if (count < 0) {
+                closeChannel(key);
+                return;
+            }
+            buffer.flip();
+            while (buffer.remaining() >= IngestProtocol.HEADER_BYTES) {
+                int length = buffer.getInt(buffer.position());
+                if (length <= 0 || length > IngestProtocol.MAX_PAYLOAD_BYTES
+                        || length % IngestProtocol.RECORD_BYTES != 0) {
+                    closeChannel(key);
+                    return;
+                }
+                if (buffer.remaining() < IngestProtocol.HEADER_BYTES + length) {
+                    break;
+                }
+                buffer.position(buffer.position()
+                        + IngestProtocol.HEADER_BYTES);
+                decodeFrame(buffer, length);
+            }
+            buffer.compact();
+        } catch (IOException e) {
+            closeChannel(key);
+        }
+    }
+
+    private void decodeFrame(ByteBuffer buffer, int length) {
+        int end = buffer.position() + length;
+        while (buffer.position() < end) {
+            int building = buffer.getShort();
+            int floor = buffer.getShort();
+            int room = buffer.getInt();
+            int sensorType = buffer.get();
+            int reading = buffer.getInt();
+            if (deliver(building, floor, room, sensorType, reading)) {
+                accepted.incrementAndGet();
+            } else {
+                rejected.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Offers a reading to the addressed sensor.
+     *
+     * @return true if the sensor accepted the reading
+     */
+    private boolean deliver(int buildingIndex, int floorNumber,
+                            int roomNumber, int sensorType, int reading) {
+        if (buildingIndex < 0 || buildingIndex >= buildings.size()
+                || sensorType < 0
+                || sensorType >= IngestProtocol.SENSOR_TYPES.length
+                || reading < 0) {
+            return false;
+        }
+        Floor floor = buildings.get(buildingIndex)
+                .getFloorByNumber(floorNumber);
+        if (floor == null) {
+            return false;
+        }
+        Room room = floor.getRoomByNumber(roomNumber);
+        if (room == null) {
+            return false;
+        }
+        Sensor sensor = room.getSensor(IngestProtocol.SENSOR_TYPES[sensorType]);
+        if (!(sensor instanceof TimedSensor)) {
+            return false;
+        }
+        ReadingSource source = ((TimedSensor) sensor).getReadingSource();
+        return source instanceof QueuedReadingSource
+                && ((QueuedReadingSource) source).offer(reading);
+    }
+
+    private void closeChannel(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            // the connection is being discarded regardless
+        }
+    }
+
+    /**
+     * Stops the server and closes all of its connections.
+     *
+     * @throws IOException if the server channel cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        selector.wakeup();
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (SelectionKey key : selector.keys()) {
+            key.channel().close();
+        }
+        selector.close();
+        serverChannel.close();
+    }
+}
@@ -0,0 +1,352 @@
+package bms.net;
+
+import bms.building.Building;
+import bms.display.BuildingRenderer;
+import bms.floor.Floor;
+import bms.room.Room;
+import bms.sensors.Sensor;
+import bms.sensors.SensorChangeSet;
+import bms.util.TickListener;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Embedded HTTP server answering read-only JSON queries about a building.
+ *
+ * Supported requests are:
+ * <ul>
+ *     <li>{@code GET /building}</li>
+ *     <li>{@code GET /floor?floor=F}</li>
+ *     <li>{@code GET /room?floor=F&room=R}</li>
+ *     <li>{@code GET /sensor?floor=F&room=R&type=NoiseSensor}</li>
+ * </ul>
+ *
+ * Each successful response is cached under its path and validated
+ * parameters, so repeated queries do not walk the building again, and
+ * parameters a query does not use cannot add entries. The cache is replaced
+ * with an empty one after every tick in which a reading changed, when the
+ * server is registered as a tick listener, and whenever the version of the
+ * building's snapshot changes. A response rendered while the cache was
+ * replaced is stored in the discarded cache, so it is never served.
+ * Responses are serialised by a JSON BuildingRenderer into a StringBuilder
+ * reused by each handler thread.
+ */
+public class QueryServer implements TickListener, Closeable {
+
+    /**
+     * Writes the JSON response for a request.
+     */
+    private interface Responder {
+        /**
+         * Renders the JSON body for the request.
+         *
+         * @param params query parameters of the request
+         * @param renderer JSON renderer writing to the response buffer
+         * @return false if the requested element does not exist
+         * @throws IOException if rendering fails
+         */
+        boolean respond(Map<String, String> params, BuildingRenderer renderer)
+                throws IOException;
+    }
+
+    /** building being served */
+    private final Building building;
+
+    /** underlying HTTP server */
+    private final HttpServer server;
+
+    /** threads handling requests */
+    private final ExecutorService executor;
+
+    /** cache of responses rendered since the latest change */
+    private volatile ResponseCache cache;
+
+    /** buffer reused by each handler thread to serialise responses */
+    private final ThreadLocal<StringBuilder> buffers =
+            ThreadLocal.withInitial(() -> new StringBuilder(4096));
+
+    /** number of requests answered from the cache */
+    private final AtomicLong cacheHits = new AtomicLong();
+
+    /** number of requests which had to be serialised */
+    private final AtomicLong cacheMisses = new AtomicLong();
+
+    /**
+     * Creates a query server for the given building, bound to the given
+     * address. The server does not answer requests until start() is called.
+     *
+     * @param building building to serve
+     * @param address address to listen on; use port 0 for any free port
+     * @throws IOException if the server cannot be bound
+     */
+    public QueryServer(Building building, InetSocketAddress address)
+            throws IOException {
+        this.building = building;
+        cache = new ResponseCache(building.getSnapshot().getVersion());
+        server = HttpServer.create(address, 0);
+        executor = Executors.newFixedThreadPool(
+                Runtime.getRuntime().availableProcessors());
+        server.setExecutor(executor);
+        server.createContext("/building", exchange -> handle(exchange,
+                "/building", new String[0], this::respondBuilding));
+        server.createContext("/floor", exchange -> handle(exchange,
+                "/floor", new String[] {"floor"}, this::respondFloor));
+        server.createContext("/room", exchange -> handle(exchange,
+                "/room", new String[] {"floor", "room"}, this::respondRoom));
+        server.createContext("/sensor", exchange -> handle(exchange,
+                "/sensor", new String[] {"floor", "room", "type"},
+                this::respondSensor));
+    }
+
+    /**
+     * Starts answering requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Returns the address the server is listening on.
+     *
+     * @return local address
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /**
+     * Returns the number of requests answered from the cache.
+     *
+     * @return cache hit count
+     */
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    /**
+     * Returns the number of requests whose response had to be serialised.
+     *
+     * @return cache miss count
+     */
+    public long getCacheMisses() {
+        return cacheMisses.get();
+    }
+
+    /**
+     * Discards the cached responses, as sensor readings have changed.
+     *
+     * @param minute minute of the tick
+     * @param changes sensors whose readings changed
+     */
+    @Override
+    public void tickCompleted(int minute, SensorChangeSet changes) {
+        if (!changes.isEmpty()) {
+            cache = new ResponseCache(building.getSnapshot().getVersion());
+        }
+    }
+
+    /**
+     * Answers a request from the cache, or renders and caches it.
+     *
+     * @param path path of the request's context
+     * @param names names of the parameters the responder uses
+     * @param responder renders the response
+     */
+    private void handle(HttpExchange exchange, String path, String[] names,
+                        Responder responder) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            ResponseCache current = cache;
+            long version = building.getSnapshot().getVersion();
+            if (current.version != version) {
+                current = new ResponseCache(version);
+                cache = current;
+            }
+
+            Map<String, String> params;
+            String key;
+            try {
+                params = parseQuery(exchange.getRequestURI().getRawQuery());
+                key = cacheKey(path, names, params);
+            } catch (IllegalArgumentException e) {
+                exchange.sendResponseHeaders(400, -1);
+                return;
+            }
+            byte[] body = current.bodies.get(key);
+            if (body != null) {
+                cacheHits.incrementAndGet();
+            } else {
+                cacheMisses.incrementAndGet();
+                StringBuilder json = buffers.get();
+                json.setLength(0);
+                try {
+                    if (!responder.respond(params, new BuildingRenderer(json,
+                            BuildingRenderer.Format.JSON))) {
+                        exchange.sendResponseHeaders(404, -1);
+                        return;
+                    }
+                } catch (IllegalArgumentException e) {
+                    exchange.sendResponseHeaders(400, -1);
+                    return;
+                }
+                body = json.toString().getBytes(StandardCharsets.UTF_8);
+                if (building.getSnapshot().getVersion() == version) {
+                    current.bodies.put(key, body);
+                }
+            }
+
+            exchange.getResponseHeaders().set("Content-Type",
+                    "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> params = new HashMap<String, String>();
+        if (query == null || query.isEmpty()) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                params.put(pair.substring(0, equals),
+                        pair.substring(equals + 1));
+            }
+        }
+        return params;
+    }
+
+    /**
+     * Returns the key a response is cached under: the path followed by the
+     * value of each parameter the responder uses, with numbers in canonical
+     * form.
+     *
+     * @throws IllegalArgumentException if a parameter is missing, or a floor
+     * or room number is not an integer
+     */
+    private static String cacheKey(String path, String[] names,
+                                   Map<String, String> params)
+            throws IllegalArgumentException {
+        StringBuilder key = new StringBuilder(path);
+        for (String name : names) {
+            key.append('&');
+            if (name.equals("type")) {
+                String value = params.get(name);
+                if (value == null) {
+                    throw new IllegalArgumentException();
+                }
+                key.append(value);
+            } else {
+                key.append(intParam(params, name));
+            }
+        }
+        return key.toString();
+    }
+
+    private static int intParam(Map<String, String> params, String name)
+            throws IllegalArgumentException {
+        String value = params.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException();
+        }
+        return Integer.parseInt(value);
+    }
+
+    private boolean respondBuilding(Map<String, String> params,
+                                    BuildingRenderer renderer)
+            throws IOException {
+        renderer.renderSummary(building);
+        return true;
+    }
+
+    private boolean respondFloor(Map<String, String> params,
+                                 BuildingRenderer renderer)
+            throws IOException {
+        Floor floor = building.getFloorByNumber(intParam(params, "floor"));
+        if (floor == null) {
+            return false;
+        }
+        renderer.renderFloor(floor);
+        return true;
+    }
+
+    private boolean respondRoom(Map<String, String> params,
+                                BuildingRenderer renderer)
+            throws IOException {
+        Room room = findRoom(params);
+        if (room == null) {
+            return false;
+        }
+        renderer.renderRoom(room);
+        return true;
+    }
+
+    private boolean respondSensor(Map<String, String> params,
+                                  BuildingRenderer renderer)
+            throws IOException {
+        Room room = findRoom(params);
+        String type = params.get("type");
+        if (type == null) {
+            throw new IllegalArgumentException();
+        }
+        Sensor sensor = room == null ? null : room.getSensor(type);
+        if (sensor == null) {
+            return false;
+        }
+        renderer.renderSensor(sensor);
+        return true;
+    }
+
+    private Room findRoom(Map<String, String> params) {
+        Floor floor = building.getFloorByNumber(intParam(params, "floor"));
+        int roomNumber = intParam(params, "room");
+        return floor == null ? null : floor.getRoomByNumber(roomNumber);
+    }
+
+    /**
+     * Responses rendered at one version of the building and between the same
+     * two ticks.
+     */
+    private static class ResponseCache {
+
+        /** building snapshot version the responses were rendered at */
+        private final long version;
+
+        /** response bodies, by cache key */
+        private final Map<String, byte[]> bodies =
+                new ConcurrentHashMap<String, byte[]>();
+
+        private ResponseCache(long version) {
+            this.version = version;
+        }
+    }
+
+    /**
+     * Stops the server.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,163 @@
+package bms.replay;
+
+import bms.sensors.ArrayReadingSource;
+import bms.sensors.CarbonDioxideSensor;
+import bms.sensors.NoiseSensor;
+import bms.sensors.OccupancySensor;
+import bms.sensors.TemperatureSensor;
+import bms.sensors.TimedSensor;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Immutable description of a timed sensor's configuration and elapsed time,
+ * from which an identical sensor can be recreated.
+ */
+public class SensorSpec {
+
+    /** simple class name of the sensor, eg. "NoiseSensor" */
+    private final String sensorType;
+
+    /** readings the sensor cycles through */
+    private final int[] readings;
+
+    /** update frequency of the sensor in minutes */
+    private final int updateFrequency;
+
+    /** capacity for occupancy sensors, ideal value for CO2 sensors */
+    private final int firstParameter;
+
+    /** variation limit for CO2 sensors */
+    private final int secondParameter;
+
+    /** minutes elapsed on the sensor */
+    private final int timeElapsed;
+
+    private SensorSpec(String sensorType, int[] readings, int updateFrequency,
+                       int firstParameter, int secondParameter,
+                       int timeElapsed) {
+        this.sensorType = sensorType;
+        this.readings = readings;
+        this.updateFrequency = updateFrequency;
+        this.firstParameter = firstParameter;
+        this.secondParameter = secondParameter;
+        this.timeElapsed = timeElapsed;
+    }
+
+    /**
+     * Captures the configuration and elapsed time of the given sensor.
+     *
+     * @param sensor sensor to describe
+     * @return description of the sensor
+     * @throws IllegalArgumentException if the sensor is not one of the
+     * concrete timed sensor types, or its readings do not come from an
+     * ArrayReadingSource
+     */
+    public static SensorSpec of(TimedSensor sensor)
+            throws IllegalArgumentException {
+        if (!(sensor.getReadingSource() instanceof ArrayReadingSource)) {
+            throw new IllegalArgumentException();
+        }
+        int firstParameter = 0;
+        int secondParameter = 0;
+        if (sensor instanceof OccupancySensor) {
+            firstParameter = ((OccupancySensor) sensor).getCapacity();
+        } else if (sensor instanceof CarbonDioxideSensor) {
+            firstParameter = ((CarbonDioxideSensor) sensor).getIdealValue();
+            secondParameter =
+                    ((CarbonDioxideSensor) sensor).getVariationLimit();
+        } else if (!(sensor instanceof NoiseSensor)
+                && !(sensor instanceof TemperatureSensor)) {
+            throw new IllegalArgumentException();
+        }
+        return new SensorSpec(sensor.getClass().getSimpleName(),
+                sensor.getSensorReadings(), sensor.getUpdateFrequency(),
+                firstParameter, secondParameter, sensor.getTimeElapsed());
+    }
+
+    /**
+     * Returns the simple class name of the described sensor.
+     *
+     * @return sensor type, eg. "NoiseSensor"
+     */
+    public String getSensorType() {
+        return sensorType;
+    }
+
+    /**
+     * Returns the number of minutes elapsed on the described sensor.
+     *
+     * @return elapsed minutes
+     */
+    public int getTimeElapsed() {
+        return timeElapsed;
+    }
+
+    /**
+     * Creates a new sensor matching this description, registered with the
+     * current TimedItemManager and advanced to the described elapsed time.
+     *
+     * @return new sensor
+     * @throws IllegalStateException if the sensor type is unknown
+     */
+    public TimedSensor create() throws IllegalStateException {
+        TimedSensor sensor;
+        switch (sensorType) {
+            case "CarbonDioxideSensor":
+                sensor = new CarbonDioxideSensor(readings.clone(),
+                        updateFrequency, firstParameter, secondParameter);
+                break;
+            case "NoiseSensor":
+                sensor = new NoiseSensor(readings.clone(), updateFrequency);
+                break;
+            case "OccupancySensor":
+                sensor = new OccupancySensor(readings.clone(),
+                        updateFrequency, firstParameter);
+                break;
+            case "TemperatureSensor":
+                sensor = new TemperatureSensor(readings.clone());
+                break;
+            default:
+                throw new IllegalStateException();
+        }
+        sensor.elapseMinutes(timeElapsed);
+        return sensor;
+    }
+
+    /**
+     * Writes this description to the given output.
+     *
+     * @param out output to write to
+     * @throws IOException if writing fails
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeUTF(sensorType);
+        out.writeInt(readings.length);
+        for (int reading : readings) {
+            out.writeInt(reading);
+        }
+        out.writeInt(updateFrequency);
+        out.writeInt(firstParameter);
+        out.writeInt(secondParameter);
+        out.writeInt(timeElapsed);
+    }
+
+    /**
+     * Reads a description previously written by writeTo().
+     *
+     * @param in input to read from
+     * @return description read
+     * @throws IOException if reading fails
+     */
+    public static SensorSpec readFrom(DataInput in) throws IOException {
+        String sensorType = in.readUTF();
+        int[] readings = new int[in.readInt()];
+        for (int i = 0; i < readings.length; i++) {
+            readings[i] = in.readInt();
+        }
+        return new SensorSpec(sensorType, readings, in.readInt(),
+                in.readInt(), in.readInt(), in.readInt());
+    }
+}
@@ -0,0 +1,311 @@
+package bms.replay;
+
+import bms.building.Building;
+import bms.exceptions.DuplicateFloorException;
+import bms.exceptions.DuplicateRoomException;
+import bms.exceptions.DuplicateSensorException;
+import bms.exceptions.FireDrillException;
+import bms.exceptions.FloorTooSmallException;
+import bms.exceptions.InsufficientSpaceException;
+import bms.exceptions.NoFloorBelowException;
+import bms.floor.Floor;
+import bms.room.Room;
+import bms.room.RoomType;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A single recorded change to a simulated building: a run of ticks, a fire
+ * drill, or the addition of a floor, room or sensor.
+ */
+public class SimulationEvent {
+
+    /**
+     * Kinds of recorded change.
+     */
+    public enum Type {
+        /** one or more consecutive minutes elapsed */
+        TICK,
+        /** Building.fireDrill() was called */
+        FIRE_DRILL,
+        /** Building.cancelFireDrill() was called */
+        CANCEL_FIRE_DRILL,
+        /** Room.setFireDrill() was called on a single room */
+        ROOM_FIRE_DRILL,
+        /** a floor was added to the building */
+        ADD_FLOOR,
+        /** a room was added to a floor */
+        ADD_ROOM,
+        /** a sensor was added to a room */
+        ADD_SENSOR
+    }
+
+    /** kind of change */
+    private final Type type;
+
+    /** minutes elapsed, for TICK events */
+    private final int minutes;
+
+    /** floor number affected */
+    private final int floorNumber;
+
+    /** width of the added floor */
+    private final double width;
+
+    /** length of the added floor */
+    private final double length;
+
+    /** room number affected */
+    private final int roomNumber;
+
+    /** room type drilled or added, may be null */
+    private final RoomType roomType;
+
+    /** area of the added room */
+    private final double area;
+
+    /** whether the fire drill was started, for ROOM_FIRE_DRILL events */
+    private final boolean fireDrill;
+
+    /** sensor added, for ADD_SENSOR events */
+    private final SensorSpec sensor;
+
+    private SimulationEvent(Type type, int minutes, int floorNumber,
+                            double width, double length, int roomNumber,
+                            RoomType roomType, double area, boolean fireDrill,
+                            SensorSpec sensor) {
+        this.type = type;
+        this.minutes = minutes;
+        this.floorNumber = floorNumber;
+        this.width = width;
+        this.length = length;
+        this.roomNumber = roomNumber;
+        this.roomType = roomType;
+        this.area = area;
+        this.fireDrill = fireDrill;
+        this.sensor = sensor;
+    }
+
+    /**
+     * Creates an event for a run of consecutive ticks.
+     *
+     * @param minutes number of minutes elapsed
+     * @return tick event
+     */
+    public static SimulationEvent tick(int minutes) {
+        return new SimulationEvent(Type.TICK, minutes, 0, 0, 0, 0, null, 0,
+                false, null);
+    }
+
+    /**
+     * Creates an event for a building-wide fire drill.
+     *
+     * @param roomType type of room drilled, or null for all rooms
+     * @return fire drill event
+     */
+    public static SimulationEvent fireDrill(RoomType roomType) {
+        return new SimulationEvent(Type.FIRE_DRILL, 0, 0, 0, 0, 0, roomType, 0,
+                false, null);
+    }
+
+    /**
+     * Creates an event for a building-wide fire drill cancellation.
+     *
+     * @return cancellation event
+     */
+    public static SimulationEvent cancelFireDrill() {
+        return new SimulationEvent(Type.CANCEL_FIRE_DRILL, 0, 0, 0, 0, 0, null,
+                0, false, null);
+    }
+
+    /**
+     * Creates an event which sets the fire drill status of one room.
+     *
+     * @param floorNumber floor containing the room
+     * @param roomNumber room number
+     * @param fireDrill new fire drill status
+     * @return room fire drill event
+     */
+    public static SimulationEvent roomFireDrill(int floorNumber, int roomNumber,
+                                                boolean fireDrill) {
+        return new SimulationEvent(Type.ROOM_FIRE_DRILL, 0, floorNumber, 0, 0,
+                roomNumber, null, 0, fireDrill, null);
+    }
+
+    /**
+     * Creates an event for the addition of a floor.
+     *
+     * @param floor floor added
+     * @return add floor event
+     */
+    public static SimulationEvent addFloor(Floor floor) {
+        return new SimulationEvent(Type.ADD_FLOOR, 0, floor.getFloorNumber(),
+                floor.getWidth(), floor.getLength(), 0, null, 0, false, null);
+    }
+
+    /**
+     * Creates an event for the addition of a room.
+     *
+     * @param floorNumber floor the room was added to
+     * @param room room added
+     * @return add room event
+     */
+    public static SimulationEvent addRoom(int floorNumber, Room room) {
+        return new SimulationEvent(Type.ADD_ROOM, 0, floorNumber, 0, 0,
+                room.getRoomNumber(), room.getType(), room.getArea(), false,
+                null);
+    }
+
+    /**
+     * Creates an event for the addition of a sensor.
+     *
+     * @param floorNumber floor containing the room
+     * @param roomNumber room the sensor was added to
+     * @param sensor description of the sensor added
+     * @return add sensor event
+     */
+    public static SimulationEvent addSensor(int floorNumber, int roomNumber,
+                                            SensorSpec sensor) {
+        return new SimulationEvent(Type.ADD_SENSOR, 0, floorNumber, 0, 0,
+                roomNumber, null, 0, false, sensor);
+    }
+
+    /**
+     * Returns the kind of change.
+     *
+     * @return event type
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns the number of minutes elapsed by a TICK event.
+     *
+     * @return minutes elapsed, 0 for other events
+     */
+    public int getMinutes() {
+        return minutes;
+    }
+
+    /**
+     * Returns a tick event covering this event's minutes plus the given
+     * number of additional minutes.
+     *
+     * @param additionalMinutes minutes to add
+     * @return extended tick event
+     */
+    SimulationEvent extendTick(int additionalMinutes) {
+        return tick(minutes + additionalMinutes);
+    }
+
+    /**
+     * Applies this change to the given building. TICK events are not applied
+     * here, as they act on a TimedItemManager rather than a building.
+     *
+     * @param building building to change
+     * @throws IllegalStateException if the change cannot be applied to the
+     * building, for example because the floor or room it refers to is missing
+     */
+    public void apply(Building building) throws IllegalStateException {
+        try {
+            switch (type) {
+                case FIRE_DRILL:
+                    building.fireDrill(roomType);
+                    break;
+                case CANCEL_FIRE_DRILL:
+                    building.cancelFireDrill();
+                    break;
+                case ROOM_FIRE_DRILL:
+                    findRoom(building).setFireDrill(fireDrill);
+                    break;
+                case ADD_FLOOR:
+                    building.addFloor(new Floor(floorNumber, width, length));
+                    break;
+                case ADD_ROOM:
+                    findFloor(building).addRoom(
+                            new Room(roomNumber, roomType, area));
+                    break;
+                case ADD_SENSOR:
+                    findRoom(building).addSensor(sensor.create());
+                    break;
+                default:
+                    break;
+            }
+        } catch (FireDrillException | DuplicateFloorException
+                | NoFloorBelowException | FloorTooSmallException
+                | DuplicateRoomException | InsufficientSpaceException
+                | DuplicateSensorException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Floor findFloor(Building building) throws IllegalStateException {
+        Floor floor = building.getFloorByNumber(floorNumber);
+        if (floor == null) {
+            throw new IllegalStateException();
+        }
+        return floor;
+    }
+
+    private Room findRoom(Building building) throws IllegalStateException {
+        Room room = findFloor(building).getRoomByNumber(roomNumber);
+        if (room == null) {
+            throw new IllegalStateException();
+        }
+        return room;
+    }
+
+    /**
+     * Writes this event to the given output.
+     *
+     * @param out output to write to
+     * @throws IOException if writing fails
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeByte(type.ordinal());
+        out.writeInt(minutes);
+        out.writeInt(floorNumber);
+        out.writeDouble(width);
+        out.writeDouble(length);
+        out.writeInt(roomNumber);
+        out.writeByte(roomType == null ? -1 : roomType.ordinal());
+        out.writeDouble(area);
+        out.writeBoolean(fireDrill);
+        out.writeBoolean(sensor != null);
+        if (sensor != null) {
+            sensor.writeTo(out);
+        }
+    }
+
+    /**
+     * Reads an event previously written by writeTo().
+     *
+     * @param in input to read from
+     * @return event read
+     * @throws IOException if reading fails or the data is malformed
+     */
+    public static SimulationEvent readFrom(DataInput in) throws IOException {
+        try {
+            Type type = Type.values()[in.readByte()];
+            int minutes = in.readInt();
+            int floorNumber = in.readInt();
+            double width = in.readDouble();
+            double length = in.readDouble();
+            int roomNumber = in.readInt();
+            byte roomTypeOrdinal = in.readByte();
+            RoomType roomType = roomTypeOrdinal < 0
+                    ? null : RoomType.values()[roomTypeOrdinal];
+            double area = in.readDouble();
+            boolean fireDrill = in.readBoolean();
+            SensorSpec sensor = in.readBoolean()
+                    ? SensorSpec.readFrom(in) : null;
+            return new SimulationEvent(type, minutes, floorNumber, width,
+                    length, roomNumber, roomType, area, fireDrill, sensor);
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException(e);
+        }
+    }
+}
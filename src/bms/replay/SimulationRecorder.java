@@ -0,0 +1,217 @@
+package bms.replay;
+
+import bms.building.Building;
+import bms.exceptions.DuplicateFloorException;
+import bms.exceptions.DuplicateRoomException;
+import bms.exceptions.DuplicateSensorException;
+import bms.exceptions.FireDrillException;
+import bms.exceptions.FloorTooSmallException;
+import bms.exceptions.InsufficientSpaceException;
+import bms.exceptions.NoFloorBelowException;
+import bms.floor.Floor;
+import bms.room.Room;
+import bms.room.RoomType;
+import bms.sensors.SensorChangeSet;
+import bms.sensors.TimedSensor;
+import bms.util.TickListener;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records everything that happens to a live building so that it can later be
+ * reproduced exactly by a {@link ReplayEngine}.
+ *
+ * The recorder captures a snapshot of the building when it is created. It
+ * then records ticks by listening to the TimedItemManager, and records fire
+ * drills and structural changes made through its own methods, which apply
+ * each change to the live building and only record it if it succeeds.
+ */
+public class SimulationRecorder implements TickListener {
+
+    /** building being recorded */
+    private final Building building;
+
+    /** state of the building when recording started */
+    private final SimulationSnapshot snapshot;
+
+    /** changes recorded since the snapshot */
+    private final List<SimulationEvent> events;
+
+    /**
+     * Starts recording the given building. The recorder must also be
+     * registered as a tick listener with the TimedItemManager ticking the
+     * building's sensors for ticks to be recorded.
+     *
+     * @param building building to record
+     */
+    public SimulationRecorder(Building building) {
+        this.building = building;
+        snapshot = SimulationSnapshot.capture(building);
+        events = new ArrayList<SimulationEvent>();
+    }
+
+    /**
+     * Returns the state of the building when recording started.
+     *
+     * @return initial snapshot
+     */
+    public SimulationSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Returns a new list of the changes recorded so far, in order.
+     * Consecutive ticks are merged into a single event.
+     *
+     * @return recorded events
+     */
+    public List<SimulationEvent> getEvents() {
+        return new ArrayList<SimulationEvent>(events);
+    }
+
+    @Override
+    public void tickCompleted(int minute, SensorChangeSet changes) {
+        recordTicks(1);
+    }
+
+    /**
+     * Records that the given number of minutes elapsed, merging them into the
+     * previous event if it was also a run of ticks.
+     *
+     * @param minutes number of minutes elapsed
+     */
+    public void recordTicks(int minutes) {
+        int last = events.size() - 1;
+        if (last >= 0
+                && events.get(last).getType() == SimulationEvent.Type.TICK) {
+            events.set(last, events.get(last).extendTick(minutes));
+        } else {
+            events.add(SimulationEvent.tick(minutes));
+        }
+    }
+
+    /**
+     * Starts a fire drill in the building and records it.
+     *
+     * @param roomType type of room to drill, or null for all rooms
+     * @throws FireDrillException if the building has no floors or rooms
+     * @see Building#fireDrill(RoomType)
+     */
+    public void fireDrill(RoomType roomType) throws FireDrillException {
+        building.fireDrill(roomType);
+        events.add(SimulationEvent.fireDrill(roomType));
+    }
+
+    /**
+     * Cancels any fire drill in the building and records it.
+     *
+     * @see Building#cancelFireDrill()
+     */
+    public void cancelFireDrill() {
+        building.cancelFireDrill();
+        events.add(SimulationEvent.cancelFireDrill());
+    }
+
+    /**
+     * Adds a floor to the building and records it.
+     *
+     * @param floor floor to add, which must not yet contain rooms
+     * @throws IllegalArgumentException if the floor already contains rooms,
+     * or is invalid for the building
+     * @throws DuplicateFloorException if the floor number is taken
+     * @throws NoFloorBelowException if there is no floor below
+     * @throws FloorTooSmallException if the floor below is too small
+     * @see Building#addFloor(Floor)
+     */
+    public void addFloor(Floor floor)
+            throws IllegalArgumentException, DuplicateFloorException,
+            NoFloorBelowException, FloorTooSmallException {
+        if (floor.getRooms().size() != 0) {
+            throw new IllegalArgumentException();
+        }
+        building.addFloor(floor);
+        events.add(SimulationEvent.addFloor(floor));
+    }
+
+    /**
+     * Adds a room to a floor of the building and records it.
+     *
+     * @param floorNumber number of the floor to add the room to
+     * @param room room to add, which must not yet contain sensors
+     * @throws IllegalArgumentException if the floor does not exist, the room
+     * already contains sensors, or the room is too small
+     * @throws DuplicateRoomException if the room number is taken
+     * @throws InsufficientSpaceException if the floor has too little space
+     * @see Floor#addRoom(Room)
+     */
+    public void addRoom(int floorNumber, Room room)
+            throws IllegalArgumentException, DuplicateRoomException,
+            InsufficientSpaceException {
+        Floor floor = building.getFloorByNumber(floorNumber);
+        if (floor == null || room.getSensors().size() != 0) {
+            throw new IllegalArgumentException();
+        }
+        floor.addRoom(room);
+        events.add(SimulationEvent.addRoom(floorNumber, room));
+    }
+
+    /**
+     * Adds a sensor to a room of the building and records it.
+     *
+     * @param floorNumber number of the floor containing the room
+     * @param roomNumber number of the room to add the sensor to
+     * @param sensor sensor to add
+     * @throws IllegalArgumentException if the floor or room does not exist,
+     * or the sensor is not a concrete timed sensor type
+     * @throws DuplicateSensorException if the room already has a sensor of
+     * the same type
+     * @see Room#addSensor(bms.sensors.Sensor)
+     */
+    public void addSensor(int floorNumber, int roomNumber, TimedSensor sensor)
+            throws IllegalArgumentException, DuplicateSensorException {
+        Floor floor = building.getFloorByNumber(floorNumber);
+        Room room = floor == null ? null : floor.getRoomByNumber(roomNumber);
+        if (room == null) {
+            throw new IllegalArgumentException();
+        }
+        SensorSpec spec = SensorSpec.of(sensor);
+        room.addSensor(sensor);
+        events.add(SimulationEvent.addSensor(floorNumber, roomNumber, spec));
+    }
+
+    /**
+     * Writes the snapshot and recorded events to the given output.
+     *
+     * @param out output to write to
+     * @throws IOException if writing fails
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        snapshot.writeTo(out);
+        out.writeInt(events.size());
+        for (SimulationEvent event : events) {
+            event.writeTo(out);
+        }
+    }
+
+    /**
+     * Reads a recording previously written by writeTo() and prepares it for
+     * replay.
+     *
+     * @param in input to read from
+     * @return replay engine for the recording
+     * @throws IOException if reading fails or the data is malformed
+     */
+    public static ReplayEngine readReplay(DataInput in) throws IOException {
+        SimulationSnapshot snapshot = SimulationSnapshot.readFrom(in);
+        int count = in.readInt();
+        List<SimulationEvent> events = new ArrayList<SimulationEvent>();
+        for (int i = 0; i < count; i++) {
+            events.add(SimulationEvent.readFrom(in));
+        }
+        return new ReplayEngine(snapshot, events);
+    }
+}
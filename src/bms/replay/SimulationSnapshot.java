@@ -0,0 +1,124 @@
+package bms.replay;
+
+import bms.building.Building;
+import bms.floor.Floor;
+import bms.room.Room;
+import bms.sensors.Sensor;
+import bms.sensors.TimedSensor;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Saved state of a building: its floors, rooms, fire drill status and the
+ * configuration and elapsed time of each of its timed sensors.
+ *
+ * The state is held as the sequence of structural events which rebuilds the
+ * building from empty, so a snapshot is restored the same way a recorded
+ * simulation is replayed.
+ */
+public class SimulationSnapshot {
+
+    /** name of the building */
+    private final String name;
+
+    /** events which rebuild the building from empty */
+    private final List<SimulationEvent> events;
+
+    private SimulationSnapshot(String name, List<SimulationEvent> events) {
+        this.name = name;
+        this.events = events;
+    }
+
+    /**
+     * Captures the current state of the given building.
+     * Sensors which are not timed sensors are not captured.
+     *
+     * @param building building to capture
+     * @return snapshot of the building
+     */
+    public static SimulationSnapshot capture(Building building) {
+        List<SimulationEvent> events = new ArrayList<SimulationEvent>();
+        for (Floor floor : building.getFloors()) {
+            events.add(SimulationEvent.addFloor(floor));
+        }
+        for (Floor floor : building.getFloors()) {
+            for (Room room : floor.getRooms()) {
+                events.add(SimulationEvent.addRoom(floor.getFloorNumber(),
+                        room));
+                if (room.fireDrillOngoing()) {
+                    events.add(SimulationEvent.roomFireDrill(
+                            floor.getFloorNumber(), room.getRoomNumber(),
+                            true));
+                }
+                for (Sensor sensor : room.getSensors()) {
+                    if (sensor instanceof TimedSensor) {
+                        events.add(SimulationEvent.addSensor(
+                                floor.getFloorNumber(), room.getRoomNumber(),
+                                SensorSpec.of((TimedSensor) sensor)));
+                    }
+                }
+            }
+        }
+        return new SimulationSnapshot(building.getName(), events);
+    }
+
+    /**
+     * Creates a new building in the captured state. Its sensors register with
+     * the current TimedItemManager.
+     *
+     * @return restored building
+     * @throws IllegalStateException if the snapshot is inconsistent
+     */
+    public Building restore() throws IllegalStateException {
+        Building building = new Building(name);
+        for (SimulationEvent event : events) {
+            event.apply(building);
+        }
+        return building;
+    }
+
+    /**
+     * Returns the name of the captured building.
+     *
+     * @return building name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Writes this snapshot to the given output.
+     *
+     * @param out output to write to
+     * @throws IOException if writing fails
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeUTF(name);
+        out.writeInt(events.size());
+        for (SimulationEvent event : events) {
+            event.writeTo(out);
+        }
+    }
+
+    /**
+     * Reads a snapshot previously written by writeTo().
+     *
+     * @param in input to read from
+     * @return snapshot read
+     * @throws IOException if reading fails or the data is malformed
+     */
+    public static SimulationSnapshot readFrom(DataInput in)
+            throws IOException {
+        String name = in.readUTF();
+        int count = in.readInt();
+        List<SimulationEvent> events = new ArrayList<SimulationEvent>();
+        for (int i = 0; i < count; i++) {
+            events.add(SimulationEvent.readFrom(in));
+        }
+        return new SimulationSnapshot(name, events);
+    }
+}
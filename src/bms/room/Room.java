@@ -1,7 +1,10 @@
 package bms.room;
 
 import bms.exceptions.DuplicateSensorException;
+import bms.jfr.StructureChangeEvent;
+import bms.sensors.ComfortSensor;
 import bms.sensors.Sensor;
+import bms.util.StructureListener;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -15,6 +18,9 @@ import java.util.List;
  * Rooms also need to record whether a fire drill is currently taking place in
  * the room.
  * Rooms can have one or more sensors to monitor hazard levels in the room.
+ *
+ * Each change to a room's sensors or fire drill status publishes a new
+ * RoomSnapshot, which is passed on to the floor containing the room.
  */
 public class Room {
 
@@ -32,6 +38,12 @@ public class Room {
     private boolean firedrill;
     private List<Sensor> sensorArrayList;
 
+    /** latest published snapshot of the room */
+    private volatile RoomSnapshot snapshot;
+
+    /** listener given each new snapshot, or null */
+    private volatile StructureListener<RoomSnapshot> structureListener;
+
     /**
      * Creates a new room with the given room number.
      *
@@ -45,6 +57,7 @@ public class Room {
         this.area = area;
         firedrill = false;
         sensorArrayList = new ArrayList<Sensor>();
+        snapshot = new RoomSnapshot(this, false, new Sensor[0]);
     }
 
     /**
@@ -90,7 +103,7 @@ public class Room {
      * @return current status of fire drill
      */
     public boolean fireDrillOngoing() {
-        return firedrill;
+        return snapshot.fireDrillOngoing();
     }
 
     /**
@@ -104,7 +117,41 @@ public class Room {
      * @return list of all sensors in alphabetical order of class name
      */
     public List<Sensor> getSensors() {
-        return new ArrayList<Sensor>(sensorArrayList);
+        return new ArrayList<Sensor>(snapshot.getSensors());
+    }
+
+    /**
+     * Returns the latest snapshot of the room's structure.
+     * This is a single volatile read, and is safe to call while another
+     * thread is changing the room.
+     *
+     * @return latest room snapshot
+     */
+    public RoomSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Sets the listener given each new snapshot of the room. This is used by
+     * the floor containing the room to keep its own snapshot up to date.
+     *
+     * @param listener listener to notify, or null
+     */
+    public void setStructureListener(StructureListener<RoomSnapshot> listener) {
+        structureListener = listener;
+    }
+
+    /**
+     * Publishes a new snapshot of the room and passes it on to the listener.
+     * Callers must hold the room's lock, so that snapshots reach the
+     * listener in the order they were published.
+     */
+    private void publish(RoomSnapshot next) {
+        snapshot = next;
+        StructureListener<RoomSnapshot> listener = structureListener;
+        if (listener != null) {
+            listener.structureChanged(next);
+        }
     }
 
     /**
@@ -112,8 +159,28 @@ public class Room {
      *
      * @param fireDrill whether there is a fire drill ongoing
      */
-    public void setFireDrill(boolean fireDrill) {
+    public synchronized void setFireDrill(boolean fireDrill) {
+        if (this.firedrill != fireDrill) {
+            this.firedrill = fireDrill;
+            publish(snapshot.withFireDrill(fireDrill));
+        }
+    }
+
+    /**
+     * Changes the status of the fire drill without passing the room's new
+     * snapshot on to its listener. This lets a floor drill many rooms and
+     * then publish a single snapshot holding all of their new snapshots.
+     *
+     * @param fireDrill whether there is a fire drill ongoing
+     * @return true if the status changed
+     */
+    public synchronized boolean updateFireDrill(boolean fireDrill) {
+        if (this.firedrill == fireDrill) {
+            return false;
+        }
         this.firedrill = fireDrill;
+        snapshot = snapshot.withFireDrill(fireDrill);
+        return true;
     }
 
     /**
@@ -128,7 +195,7 @@ public class Room {
     public Sensor getSensor(String sensorType) {
 
         Sensor result = null;
-        for (Sensor s : sensorArrayList) {
+        for (Sensor s : snapshot.getSensors()) {
             Class sensor = s.getClass();
             String sName = sensor.getSimpleName();
             if (sName.equals(sensorType)) {
@@ -149,6 +216,27 @@ public class Room {
      * type as a sensor already in this room
      */
     public void addSensor(Sensor sensor) throws DuplicateSensorException {
+        StructureChangeEvent event = new StructureChangeEvent();
+        event.begin();
+        try {
+            insertSensor(sensor);
+            event.succeeded = true;
+        } finally {
+            if (event.shouldCommit()) {
+                event.operation = "addSensor";
+                event.roomNumber = roomNumber;
+                event.sensorType = sensor == null ? null
+                        : sensor.getClass().getSimpleName();
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Checks and adds a sensor to the room, as described by addSensor().
+     */
+    private synchronized void insertSensor(Sensor sensor)
+            throws DuplicateSensorException {
 
         boolean duplicateSensor = false;
 
@@ -172,14 +260,39 @@ public class Room {
             sensorArrayList.add(sensor);
             sensorArrayList.sort(Comparator.comparing(o ->
                     o.getClass().getSimpleName()));
+            publish(new RoomSnapshot(this, firedrill,
+                    sensorArrayList.toArray(new Sensor[0])));
+        }
+    }
+
+    /**
+     * Returns the comfort level of the room, which is the average of the
+     * comfort levels reported by its comfort sensors, rounded to the nearest
+     * integer.
+     *
+     * @return level of comfort in the room, 0 to 100; or 0 if the room has
+     * no comfort sensors
+     */
+    public int getComfortLevel() {
+        int total = 0;
+        int count = 0;
+        for (Sensor s : snapshot.getSensors()) {
+            if (s instanceof ComfortSensor) {
+                total += ((ComfortSensor) s).getComfortLevel();
+                count++;
+            }
+        }
+        if (count == 0) {
+            return 0;
         }
+        return Math.round((float) total / count);
     }
 
     @Override
     public String toString() {
         String strArea = String.format("%.2f", area);
         return "Room #" + roomNumber +": type=" + roomType + ", area=" +
-                strArea + "m^2, sensors=" + sensorArrayList.size();
+                strArea + "m^2, sensors=" + snapshot.getSensors().size();
     }
 
 
@@ -0,0 +1,102 @@
+package bms.room;
+
+import bms.sensors.Sensor;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable view of the structure of a room at one point in time: its
+ * sensors and whether a fire drill is in progress.
+ *
+ * The sensors themselves are live objects whose readings continue to change;
+ * only the set of sensors is fixed by the snapshot. Snapshots which differ
+ * only in their fire drill status share the same list of sensors.
+ */
+public final class RoomSnapshot {
+
+    /** room this is a snapshot of */
+    private final Room room;
+
+    /** whether a fire drill was in progress */
+    private final boolean fireDrill;
+
+    /** sensors in the room, in alphabetical order of class name */
+    private final List<Sensor> sensors;
+
+    RoomSnapshot(Room room, boolean fireDrill, Sensor[] sensors) {
+        this(room, fireDrill,
+                Collections.unmodifiableList(Arrays.asList(sensors)));
+    }
+
+    private RoomSnapshot(Room room, boolean fireDrill, List<Sensor> sensors) {
+        this.room = room;
+        this.fireDrill = fireDrill;
+        this.sensors = sensors;
+    }
+
+    /**
+     * Returns a snapshot with the given fire drill status, sharing this
+     * snapshot's list of sensors, so that the change can be told apart from
+     * a change to the room's structure.
+     */
+    RoomSnapshot withFireDrill(boolean fireDrill) {
+        return new RoomSnapshot(room, fireDrill, sensors);
+    }
+
+    /**
+     * Returns the room this is a snapshot of.
+     *
+     * @return live room
+     */
+    public Room getRoom() {
+        return room;
+    }
+
+    /**
+     * Returns the room number of the room.
+     *
+     * @return the room number on the floor
+     */
+    public int getRoomNumber() {
+        return room.getRoomNumber();
+    }
+
+    /**
+     * Returns the type of the room.
+     *
+     * @return the room type
+     */
+    public RoomType getType() {
+        return room.getType();
+    }
+
+    /**
+     * Returns area of the room.
+     *
+     * @return the room area in square metres
+     */
+    public double getArea() {
+        return room.getArea();
+    }
+
+    /**
+     * Returns whether a fire drill was in progress when the snapshot was
+     * taken.
+     *
+     * @return status of fire drill
+     */
+    public boolean fireDrillOngoing() {
+        return fireDrill;
+    }
+
+    /**
+     * Returns the sensors in the room, in alphabetical order of class name.
+     *
+     * @return unmodifiable list of sensors
+     */
+    public List<Sensor> getSensors() {
+        return sensors;
+    }
+}
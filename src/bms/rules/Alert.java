@@ -0,0 +1,79 @@
+package bms.rules;
+
+import bms.room.Room;
+import bms.sensors.TimedSensor;
+
+/**
+ * An alert raised by a rule for one sensor.
+ */
+public class Alert {
+
+    /** rule which raised the alert */
+    private final Rule rule;
+
+    /** sensor the alert was raised for */
+    private final TimedSensor sensor;
+
+    /** room containing the sensor */
+    private final Room room;
+
+    /** minute at which the alert was raised */
+    private final int minute;
+
+    /**
+     * Creates a new alert.
+     *
+     * @param rule rule which raised the alert
+     * @param sensor sensor the alert was raised for
+     * @param room room containing the sensor
+     * @param minute minute at which the alert was raised
+     */
+    public Alert(Rule rule, TimedSensor sensor, Room room, int minute) {
+        this.rule = rule;
+        this.sensor = sensor;
+        this.room = room;
+        this.minute = minute;
+    }
+
+    /**
+     * Returns the rule which raised the alert.
+     *
+     * @return rule
+     */
+    public Rule getRule() {
+        return rule;
+    }
+
+    /**
+     * Returns the sensor the alert was raised for.
+     *
+     * @return sensor
+     */
+    public TimedSensor getSensor() {
+        return sensor;
+    }
+
+    /**
+     * Returns the room containing the sensor.
+     *
+     * @return room
+     */
+    public Room getRoom() {
+        return room;
+    }
+
+    /**
+     * Returns the minute at which the alert was raised.
+     *
+     * @return minute, as counted by the TimedItemManager
+     */
+    public int getMinute() {
+        return minute;
+    }
+
+    @Override
+    public String toString() {
+        return rule.getName() + " in room " + room.getRoomNumber()
+                + " at minute " + minute;
+    }
+}
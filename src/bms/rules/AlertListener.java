@@ -0,0 +1,21 @@
+package bms.rules;
+
+/**
+ * Receives alerts as they are raised and cleared by a RuleEngine.
+ */
+public interface AlertListener {
+
+    /**
+     * Called when a rule raises an alert for a sensor.
+     *
+     * @param alert alert which was raised
+     */
+    void alertRaised(Alert alert);
+
+    /**
+     * Called when a previously raised alert is cleared.
+     *
+     * @param alert alert which was cleared
+     */
+    void alertCleared(Alert alert);
+}
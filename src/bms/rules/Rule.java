@@ -0,0 +1,167 @@
+package bms.rules;
+
+import bms.room.Room;
+import bms.room.RoomType;
+import bms.sensors.TimedSensor;
+
+/**
+ * An alerting rule declared over one type of sensor.
+ *
+ * A rule applies to every sensor of its sensor type, optionally only those
+ * in rooms of a given type or in one particular room. It raises an alert for
+ * a sensor once its trigger condition has held for the given number of
+ * consecutive readings. The alert then stays raised, and is not raised
+ * again, until the rule's clear condition holds, which allows a gap between
+ * the two conditions to stop alerts flapping around a threshold.
+ */
+public class Rule {
+
+    /** name of rule */
+    private final String name;
+
+    /** type of sensor the rule applies to */
+    private final Class<? extends TimedSensor> sensorType;
+
+    /** type of room the rule applies to, or null for any */
+    private final RoomType roomType;
+
+    /** room the rule applies to, or null for any */
+    private final Room room;
+
+    /** condition which raises the alert */
+    private final SensorCondition trigger;
+
+    /** condition which clears a raised alert */
+    private final SensorCondition clear;
+
+    /** number of consecutive readings for which trigger must hold */
+    private final int consecutiveReadings;
+
+    /**
+     * Creates a rule over all sensors of the given type in rooms of the
+     * given type.
+     *
+     * @param name name of the rule, used in alerts
+     * @param sensorType type of sensor the rule applies to
+     * @param roomType type of room the rule applies to; null for all rooms
+     * @param trigger condition which raises an alert
+     * @param clear condition which clears a raised alert
+     * @param consecutiveReadings number of consecutive readings for which
+     *                            trigger must hold before the alert is raised
+     * @throws IllegalArgumentException if consecutiveReadings is less than 1
+     */
+    public Rule(String name, Class<? extends TimedSensor> sensorType,
+                RoomType roomType, SensorCondition trigger,
+                SensorCondition clear, int consecutiveReadings)
+            throws IllegalArgumentException {
+        this(name, sensorType, roomType, null, trigger, clear,
+                consecutiveReadings);
+    }
+
+    /**
+     * Creates a rule over the sensor of the given type in one room.
+     *
+     * @param name name of the rule, used in alerts
+     * @param sensorType type of sensor the rule applies to
+     * @param room room the rule applies to
+     * @param trigger condition which raises an alert
+     * @param clear condition which clears a raised alert
+     * @param consecutiveReadings number of consecutive readings for which
+     *                            trigger must hold before the alert is raised
+     * @throws IllegalArgumentException if room is null or
+     * consecutiveReadings is less than 1
+     */
+    public Rule(String name, Class<? extends TimedSensor> sensorType,
+                Room room, SensorCondition trigger, SensorCondition clear,
+                int consecutiveReadings) throws IllegalArgumentException {
+        this(name, sensorType, null, checkRoom(room), trigger, clear,
+                consecutiveReadings);
+    }
+
+    private Rule(String name, Class<? extends TimedSensor> sensorType,
+                 RoomType roomType, Room room, SensorCondition trigger,
+                 SensorCondition clear, int consecutiveReadings)
+            throws IllegalArgumentException {
+        if (consecutiveReadings < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.name = name;
+        this.sensorType = sensorType;
+        this.roomType = roomType;
+        this.room = room;
+        this.trigger = trigger;
+        this.clear = clear;
+        this.consecutiveReadings = consecutiveReadings;
+    }
+
+    private static Room checkRoom(Room room) throws IllegalArgumentException {
+        if (room == null) {
+            throw new IllegalArgumentException();
+        }
+        return room;
+    }
+
+    /**
+     * Returns the name of the rule.
+     *
+     * @return name of this rule
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the type of sensor the rule applies to.
+     *
+     * @return sensor type
+     */
+    public Class<? extends TimedSensor> getSensorType() {
+        return sensorType;
+    }
+
+    /**
+     * Returns the condition which raises an alert.
+     *
+     * @return trigger condition
+     */
+    public SensorCondition getTrigger() {
+        return trigger;
+    }
+
+    /**
+     * Returns the condition which clears a raised alert.
+     *
+     * @return clear condition
+     */
+    public SensorCondition getClear() {
+        return clear;
+    }
+
+    /**
+     * Returns the number of consecutive readings for which the trigger
+     * condition must hold before an alert is raised.
+     *
+     * @return number of consecutive readings
+     */
+    public int getConsecutiveReadings() {
+        return consecutiveReadings;
+    }
+
+    /**
+     * Returns whether the rule applies to sensors in the given room.
+     *
+     * @param candidate room containing a sensor of the rule's type
+     * @return true if the room is within the rule's scope
+     */
+    public boolean appliesTo(Room candidate) {
+        if (room != null) {
+            return room == candidate;
+        }
+        return roomType == null || roomType == candidate.getType();
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
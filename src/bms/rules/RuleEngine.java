@@ -0,0 +1,334 @@
+package bms.rules;
+
+import bms.building.Building;
+import bms.building.BuildingSnapshot;
+import bms.floor.FloorSnapshot;
+import bms.room.Room;
+import bms.room.RoomSnapshot;
+import bms.sensors.Sensor;
+import bms.sensors.SensorChangeSet;
+import bms.sensors.TimedSensor;
+import bms.util.TickListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Evaluates alerting rules against the sensors of a building as they change.
+ *
+ * Rules are compiled into a matcher for each concrete sensor class, listing
+ * the rules declared over that class or any of its supertypes, which is then
+ * narrowed to the rules whose room scope covers each sensor. After each tick
+ * only the sensors whose readings changed are evaluated, and only against
+ * their own rules.
+ *
+ * A sensor's readings only change when it updates, so a trigger condition
+ * which must hold for several consecutive readings is confirmed by a check
+ * scheduled for the minute of the last of those readings, rather than by
+ * re-evaluating unchanged sensors every tick. An alert is raised at most
+ * once until its rule's clear condition holds.
+ *
+ * The engine must be registered as a tick listener with the
+ * TimedItemManager that ticks the building's sensors.
+ */
+public class RuleEngine implements TickListener {
+
+    /** value of since when a rule's trigger does not hold for a sensor */
+    private static final int NOT_TRIGGERED = -1;
+
+    /** building whose sensors are evaluated */
+    private final Building building;
+
+    /** rules, in the order they were added */
+    private final List<Rule> rules;
+
+    /** listeners notified of raised and cleared alerts */
+    private final List<AlertListener> listeners;
+
+    /** rules declared over each concrete sensor class */
+    private final Map<Class<?>, int[]> matchers;
+
+    /** alerts currently raised, in the order they were raised */
+    private final Set<Alert> activeAlerts;
+
+    /** confirmations due, each holding minute, rule, sensor slot and since */
+    private final PriorityQueue<int[]> pending;
+
+    /** building structure version the sensor index was built at */
+    private long indexedVersion;
+
+    /** minute of the most recent tick */
+    private int currentMinute;
+
+    /** slot of each sensor in the building */
+    private final Map<Sensor, Integer> slotBySensor;
+
+    /** sensor in each slot */
+    private TimedSensor[] sensors;
+
+    /** room containing the sensor in each slot */
+    private Room[] sensorRooms;
+
+    /** rules applying to the sensor in each slot */
+    private int[][] sensorRules;
+
+    /** minute since which each rule's trigger has held, per sensor slot */
+    private int[][] since;
+
+    /** alert raised by each rule, per sensor slot, or null */
+    private Alert[][] raised;
+
+    /**
+     * Creates a rule engine with no rules for the given building.
+     *
+     * @param building building whose sensors are evaluated
+     */
+    public RuleEngine(Building building) {
+        this.building = building;
+        rules = new ArrayList<Rule>();
+        listeners = new ArrayList<AlertListener>();
+        matchers = new HashMap<Class<?>, int[]>();
+        activeAlerts = new LinkedHashSet<Alert>();
+        pending = new PriorityQueue<int[]>(
+                Comparator.comparingInt(check -> check[0]));
+        slotBySensor = new IdentityHashMap<Sensor, Integer>();
+        sensors = new TimedSensor[0];
+        since = new int[0][];
+        raised = new Alert[0][];
+        currentMinute = building.getTimedItemManager().getMinutesElapsed();
+        rebuild();
+    }
+
+    /**
+     * Adds a rule, and evaluates it immediately against every sensor it
+     * applies to.
+     *
+     * @param rule rule to add
+     */
+    public void addRule(Rule rule) {
+        rules.add(rule);
+        matchers.clear();
+        rebuild();
+        int index = rules.size() - 1;
+        for (int slot = 0; slot < sensors.length; slot++) {
+            if (applies(index, slot)) {
+                evaluate(index, slot);
+            }
+        }
+    }
+
+    /**
+     * Registers a listener to be notified of alerts.
+     *
+     * @param listener listener to notify
+     */
+    public void addAlertListener(AlertListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Returns the alerts which are currently raised, in the order they were
+     * raised.
+     *
+     * @return new list of raised alerts
+     */
+    public List<Alert> getActiveAlerts() {
+        return new ArrayList<Alert>(activeAlerts);
+    }
+
+    /**
+     * Indexes the building's sensors and compiles the rules for each one,
+     * carrying over the trigger state and pending confirmations of sensors
+     * which were already indexed.
+     */
+    private void rebuild() {
+        BuildingSnapshot snapshot = building.getSnapshot();
+        indexedVersion = snapshot.getStructureVersion();
+        int count = 0;
+        for (FloorSnapshot floor : snapshot.getFloors()) {
+            for (RoomSnapshot room : floor.getRooms()) {
+                for (Sensor sensor : room.getSensors()) {
+                    if (sensor instanceof TimedSensor) {
+                        count++;
+                    }
+                }
+            }
+        }
+        TimedSensor[] nextSensors = new TimedSensor[count];
+        Room[] nextRooms = new Room[count];
+        int[][] nextRules = new int[count][];
+        int slot = 0;
+        for (FloorSnapshot floor : snapshot.getFloors()) {
+            for (RoomSnapshot room : floor.getRooms()) {
+                for (Sensor sensor : room.getSensors()) {
+                    if (sensor instanceof TimedSensor) {
+                        nextSensors[slot] = (TimedSensor) sensor;
+                        nextRooms[slot] = room.getRoom();
+                        nextRules[slot] = compile((TimedSensor) sensor,
+                                room.getRoom());
+                        slot++;
+                    }
+                }
+            }
+        }
+
+        int[][] nextSince = new int[rules.size()][count];
+        Alert[][] nextRaised = new Alert[rules.size()][count];
+        int[] oldSlots = new int[count];
+        for (int s = 0; s < count; s++) {
+            Integer old = slotBySensor.get(nextSensors[s]);
+            oldSlots[s] = old == null ? -1 : old;
+        }
+        for (int r = 0; r < rules.size(); r++) {
+            for (int s = 0; s < count; s++) {
+                boolean carried = r < since.length && oldSlots[s] >= 0;
+                nextSince[r][s] = carried
+                        ? since[r][oldSlots[s]] : NOT_TRIGGERED;
+                nextRaised[r][s] = carried ? raised[r][oldSlots[s]] : null;
+            }
+        }
+
+        slotBySensor.clear();
+        for (int s = 0; s < count; s++) {
+            slotBySensor.put(nextSensors[s], s);
+        }
+        List<int[]> checks = new ArrayList<int[]>(pending);
+        pending.clear();
+        for (int[] check : checks) {
+            Integer next = slotBySensor.get(sensors[check[2]]);
+            if (next != null) {
+                check[2] = next;
+                pending.add(check);
+            }
+        }
+
+        sensors = nextSensors;
+        sensorRooms = nextRooms;
+        sensorRules = nextRules;
+        since = nextSince;
+        raised = nextRaised;
+    }
+
+    /**
+     * Returns the indices of the rules which apply to the given sensor.
+     */
+    private int[] compile(TimedSensor sensor, Room room) {
+        int[] candidates = matchers.get(sensor.getClass());
+        if (candidates == null) {
+            int[] matching = new int[rules.size()];
+            int count = 0;
+            for (int r = 0; r < rules.size(); r++) {
+                if (rules.get(r).getSensorType()
+                        .isAssignableFrom(sensor.getClass())) {
+                    matching[count++] = r;
+                }
+            }
+            candidates = Arrays.copyOf(matching, count);
+            matchers.put(sensor.getClass(), candidates);
+        }
+        int[] applicable = new int[candidates.length];
+        int count = 0;
+        for (int r : candidates) {
+            if (rules.get(r).appliesTo(room)) {
+                applicable[count++] = r;
+            }
+        }
+        return Arrays.copyOf(applicable, count);
+    }
+
+    private boolean applies(int rule, int slot) {
+        for (int r : sensorRules[slot]) {
+            if (r == rule) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Evaluates the sensors which changed in the tick, then confirms any
+     * triggers which have now held for enough readings.
+     *
+     * @param minute minute of the tick
+     * @param changes sensors whose readings changed
+     */
+    @Override
+    public void tickCompleted(int minute, SensorChangeSet changes) {
+        currentMinute = minute;
+        if (indexedVersion != building.getSnapshot().getStructureVersion()) {
+            rebuild();
+        }
+        for (int i = 0; i < changes.size(); i++) {
+            Integer slot = slotBySensor.get(changes.get(i));
+            if (slot == null) {
+                continue;
+            }
+            for (int rule : sensorRules[slot]) {
+                evaluate(rule, slot);
+            }
+        }
+        while (!pending.isEmpty() && pending.peek()[0] <= minute) {
+            int[] check = pending.poll();
+            int rule = check[1];
+            int slot = check[2];
+            if (raised[rule][slot] == null
+                    && since[rule][slot] == check[3]
+                    && rules.get(rule).getTrigger().test(sensors[slot])) {
+                raise(rule, slot);
+            }
+        }
+    }
+
+    /**
+     * Evaluates one rule against one sensor's current state.
+     */
+    private void evaluate(int rule, int slot) {
+        Rule declared = rules.get(rule);
+        TimedSensor sensor = sensors[slot];
+        if (raised[rule][slot] != null) {
+            if (!declared.getClear().test(sensor)) {
+                return;
+            }
+            Alert alert = raised[rule][slot];
+            raised[rule][slot] = null;
+            since[rule][slot] = NOT_TRIGGERED;
+            activeAlerts.remove(alert);
+            for (AlertListener listener : listeners) {
+                listener.alertCleared(alert);
+            }
+        }
+
+        if (!declared.getTrigger().test(sensor)) {
+            since[rule][slot] = NOT_TRIGGERED;
+            return;
+        }
+        if (since[rule][slot] == NOT_TRIGGERED) {
+            since[rule][slot] = currentMinute;
+            int due = currentMinute + (declared.getConsecutiveReadings() - 1)
+                    * sensor.getUpdateFrequency();
+            if (due <= currentMinute) {
+                raise(rule, slot);
+            } else {
+                pending.add(new int[] {due, rule, slot, currentMinute});
+            }
+        }
+    }
+
+    private void raise(int rule, int slot) {
+        Alert alert = new Alert(rules.get(rule), sensors[slot],
+                sensorRooms[slot], currentMinute);
+        raised[rule][slot] = alert;
+        activeAlerts.add(alert);
+        for (AlertListener listener : listeners) {
+            listener.alertRaised(alert);
+        }
+    }
+}
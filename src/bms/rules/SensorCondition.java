@@ -0,0 +1,102 @@
+package bms.rules;
+
+import bms.sensors.CarbonDioxideSensor;
+import bms.sensors.HazardSensor;
+import bms.sensors.NoiseSensor;
+import bms.sensors.Sensor;
+
+/**
+ * A test applied to a sensor's current state by a rule.
+ */
+@FunctionalInterface
+public interface SensorCondition {
+
+    /**
+     * Returns whether the condition holds for the sensor's current state.
+     *
+     * @param sensor sensor to test, of the type the rule is declared over
+     * @return true if the condition holds
+     */
+    boolean test(Sensor sensor);
+
+    /**
+     * Returns a condition which holds when the sensor's hazard level is at
+     * least the given level. Sensors which are not hazard sensors never
+     * satisfy it.
+     *
+     * @param level hazard level, 0 to 100
+     * @return hazard level condition
+     */
+    static SensorCondition hazardAtLeast(int level) {
+        return sensor -> sensor instanceof HazardSensor
+                && ((HazardSensor) sensor).getHazardLevel() >= level;
+    }
+
+    /**
+     * Returns a condition which holds when the sensor's hazard level is
+     * below the given level.
+     *
+     * @param level hazard level, 0 to 100
+     * @return hazard level condition
+     */
+    static SensorCondition hazardBelow(int level) {
+        return sensor -> sensor instanceof HazardSensor
+                && ((HazardSensor) sensor).getHazardLevel() < level;
+    }
+
+    /**
+     * Returns a condition which holds when the sensor's current reading is
+     * greater than the given value.
+     *
+     * @param value reading to compare against
+     * @return reading condition
+     */
+    static SensorCondition readingAbove(int value) {
+        return sensor -> sensor.getCurrentReading() > value;
+    }
+
+    /**
+     * Returns a condition which holds when the sensor's current reading is
+     * less than or equal to the given value.
+     *
+     * @param value reading to compare against
+     * @return reading condition
+     */
+    static SensorCondition readingAtMost(int value) {
+        return sensor -> sensor.getCurrentReading() <= value;
+    }
+
+    /**
+     * Returns a condition which holds when a noise sensor's relative loudness
+     * is greater than the given ratio.
+     *
+     * @param ratio relative loudness to compare against
+     * @return loudness condition
+     */
+    static SensorCondition louderThan(double ratio) {
+        return sensor -> sensor instanceof NoiseSensor
+                && ((NoiseSensor) sensor).calculateRelativeLoudness() > ratio;
+    }
+
+    /**
+     * Returns a condition which holds when a carbon dioxide sensor's reading
+     * is further from its ideal value than its variation limit.
+     *
+     * @return carbon dioxide variation condition
+     */
+    static SensorCondition outsideIdealRange() {
+        return sensor -> sensor instanceof CarbonDioxideSensor
+                && Math.abs(sensor.getCurrentReading()
+                - ((CarbonDioxideSensor) sensor).getIdealValue())
+                > ((CarbonDioxideSensor) sensor).getVariationLimit();
+    }
+
+    /**
+     * Returns a condition which holds when this condition does not.
+     *
+     * @return negated condition
+     */
+    default SensorCondition negate() {
+        return sensor -> !test(sensor);
+    }
+}
@@ -0,0 +1,58 @@
+package bms.sensors;
+
+/**
+ * A composite sensor giving a room's air quality index, from its carbon
+ * dioxide, temperature and occupancy sensors.
+ *
+ * The reading is the index from 0 (worst) to 100 (best), being the average
+ * comfort level of the three inputs rounded to the nearest integer. The
+ * hazard level is the highest hazard level of the three inputs.
+ */
+public class AirQualitySensor extends CompositeSensor
+        implements ComfortSensor {
+
+    /**
+     * Creates an air quality sensor from the given sensors.
+     *
+     * @param graph graph notifying the sensor of changed inputs
+     * @param carbonDioxide carbon dioxide sensor of the room
+     * @param temperature temperature sensor of the room
+     * @param occupancy occupancy sensor of the room
+     * @throws IllegalArgumentException if any sensor is null
+     */
+    public AirQualitySensor(CompositeSensorGraph graph,
+                            CarbonDioxideSensor carbonDioxide,
+                            TemperatureSensor temperature,
+                            OccupancySensor occupancy)
+            throws IllegalArgumentException {
+        super(graph, carbonDioxide, temperature, occupancy);
+    }
+
+    @Override
+    protected int computeReading() {
+        int total = 0;
+        for (int i = 0; i < getInputCount(); i++) {
+            total += ((ComfortSensor) getInput(i)).getComfortLevel();
+        }
+        return Math.round((float) total / getInputCount());
+    }
+
+    @Override
+    protected int computeHazardLevel() {
+        int max = 0;
+        for (int i = 0; i < getInputCount(); i++) {
+            max = Math.max(max, ((HazardSensor) getInput(i)).getHazardLevel());
+        }
+        return max;
+    }
+
+    /**
+     * Returns the air quality index, which is this sensor's reading.
+     *
+     * @return air quality index, 0 to 100
+     */
+    @Override
+    public int getComfortLevel() {
+        return getCurrentReading();
+    }
+}
@@ -0,0 +1,93 @@
+package bms.sensors;
+
+/**
+ * A reading source which cycles through a fixed array of readings, returning
+ * to the first reading after the last.
+ */
+public class ArrayReadingSource implements ReadingSource {
+
+    /** readings cycled through */
+    private final int[] readings;
+
+    /** index of the current reading */
+    private int index;
+
+    /**
+     * Creates a new source positioned at the first of the given readings.
+     *
+     * @param readings a non-empty array of non-negative readings
+     * @throws IllegalArgumentException if readings is null or empty, or any
+     * reading is less than zero
+     */
+    public ArrayReadingSource(int[] readings) throws IllegalArgumentException {
+        if (readings == null || readings.length == 0) {
+            throw new IllegalArgumentException();
+        }
+        for (int reading : readings) {
+            if (reading < 0) {
+                throw new IllegalArgumentException();
+            }
+        }
+        this.readings = readings;
+        index = 0;
+    }
+
+    @Override
+    public int getCurrentReading() {
+        return readings[index];
+    }
+
+    @Override
+    public void advance() {
+        index = (index + 1) % readings.length;
+    }
+
+    @Override
+    public void advance(int readings) {
+        index = (int) ((index + (long) readings) % this.readings.length);
+    }
+
+    /**
+     * Returns a new array containing the readings this source cycles through.
+     *
+     * @return copy of the readings
+     */
+    public int[] getReadings() {
+        return readings.clone();
+    }
+
+    /**
+     * Returns the number of readings this source cycles through.
+     *
+     * @return number of readings
+     */
+    public int getReadingCount() {
+        return readings.length;
+    }
+
+    /**
+     * Returns one of the readings this source cycles through, without
+     * copying the array.
+     *
+     * @param position position of the reading in the cycle, from 0
+     * @return reading at the given position
+     * @throws IndexOutOfBoundsException if position is out of range
+     */
+    public int getReading(int position) throws IndexOutOfBoundsException {
+        return readings[position];
+    }
+
+    @Override
+    public String toString() {
+        // each reading is at most 10 digits plus a separating comma
+        StringBuilder commaSeparatedList =
+                new StringBuilder(readings.length * 4);
+        for (int i = 0; i < readings.length; i++) {
+            if (i > 0) {
+                commaSeparatedList.append(',');
+            }
+            commaSeparatedList.append(readings[i]);
+        }
+        return commaSeparatedList.toString();
+    }
+}
@@ -6,7 +6,8 @@ import bms.util.TimedItem;
  * A sensor that measures levels of carbon dioxide (CO2) in the air,
  * in parts per million (ppm).
  */
-public class CarbonDioxideSensor extends TimedSensor implements HazardSensor, TimedItem {
+public class CarbonDioxideSensor extends TimedSensor
+        implements HazardSensor, ComfortSensor, TimedItem {
 
     /** ideal CO2 value of a Room in ppm */
     private int idealValue;
@@ -55,17 +56,53 @@ public class CarbonDioxideSensor extends TimedSensor implements HazardSensor, Ti
 
     @Override
     public int getHazardLevel() {
-        if (getCurrentReading() < 1000) {
+        return hazardLevel(getCurrentReading());
+    }
+
+    /**
+     * Returns the hazard level of the given carbon dioxide reading.
+     */
+    static int hazardLevel(int reading) {
+        if (reading < 1000) {
             return 0;
-        } else if (getCurrentReading() < 2000) {
+        } else if (reading < 2000) {
             return 25;
-        } else if (getCurrentReading() < 5000) {
+        } else if (reading < 5000) {
             return 50;
         } else {
             return 100;
         }
     }
 
+    /**
+     * Returns the comfort level of the current CO2 concentration, based on
+     * how far it is from the ideal value relative to the variation limit.
+     * A reading equal to the ideal value is fully comfortable (100), and
+     * comfort falls linearly to 0 as the reading moves to idealValue plus or
+     * minus variationLimit, or beyond.
+     *
+     * For example, with an ideal value of 600 and a variation limit of 100,
+     * a reading of 650 has a comfort level of 50.
+     *
+     * @return level of comfort at sensor location, 0 to 100
+     */
+    @Override
+    public int getComfortLevel() {
+        return comfortLevel(getCurrentReading(), idealValue, variationLimit);
+    }
+
+    /**
+     * Returns the comfort level of the given reading for a sensor with the
+     * given ideal value and variation limit.
+     */
+    static int comfortLevel(int reading, int idealValue, int variationLimit) {
+        int difference = Math.abs(reading - idealValue);
+        if (difference >= variationLimit) {
+            return 0;
+        }
+        return (int) Math.round(100 - (difference * 100.0) / variationLimit);
+    }
+
     /**
      * Returns the sensor's CO2 variation limit.
      *
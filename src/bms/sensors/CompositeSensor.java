@@ -0,0 +1,201 @@
+package bms.sensors;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A virtual sensor whose reading and hazard level are derived from other
+ * sensors, its inputs, rather than read from a device.
+ *
+ * Derived values are computed lazily on the first read after an input
+ * changes, and reused for every later read until an input changes again.
+ * The CompositeSensorGraph the sensor is created in marks it stale when one
+ * of its timed sensor inputs changes reading in a tick; a composite used as
+ * the input of other composites passes this on to them. Reading a composite
+ * therefore never re-evaluates inputs which have not changed.
+ *
+ * Composite sensors can be added to rooms like any other sensor, though
+ * they cannot be written to a building store. The graph adds each composite
+ * it marks stale to the tick's SensorChangeSet, so monitors of the room see
+ * it change like a timed sensor.
+ */
+public abstract class CompositeSensor implements HazardSensor {
+
+    /** sensors the values are derived from */
+    private final Sensor[] inputs;
+
+    /** composites which take this sensor as an input */
+    private final List<CompositeSensor> dependents;
+
+    /** id in the same space as timed sensors, keying change sets */
+    private final int sensorId;
+
+    /** number of times the inputs have changed */
+    private final AtomicInteger generation;
+
+    /** latest values computed, or null before the first read */
+    private final AtomicReference<Values> cached;
+
+    /**
+     * Creates a composite sensor of the given inputs, and connects it to the
+     * graph which tells it when they change.
+     *
+     * @param graph graph notifying the sensor of changed inputs
+     * @param inputs timed or composite sensors the values are derived from
+     * @throws IllegalArgumentException if there are no inputs, or an input is
+     * null or neither a timed nor a composite sensor
+     */
+    protected CompositeSensor(CompositeSensorGraph graph, Sensor... inputs)
+            throws IllegalArgumentException {
+        if (inputs.length == 0) {
+            throw new IllegalArgumentException();
+        }
+        for (Sensor input : inputs) {
+            if (!(input instanceof TimedSensor)
+                    && !(input instanceof CompositeSensor)) {
+                throw new IllegalArgumentException();
+            }
+        }
+        this.inputs = inputs.clone();
+        dependents = new CopyOnWriteArrayList<CompositeSensor>();
+        sensorId = TimedSensor.reserveSensorIds(1);
+        generation = new AtomicInteger();
+        cached = new AtomicReference<Values>();
+        for (Sensor input : this.inputs) {
+            if (input instanceof CompositeSensor) {
+                ((CompositeSensor) input).dependents.add(this);
+            }
+        }
+        graph.connect(this, this.inputs);
+    }
+
+    /**
+     * Returns the id of this sensor, which is unique among timed and
+     * composite sensors.
+     *
+     * @return the sensor's id
+     */
+    public int getSensorId() {
+        return sensorId;
+    }
+
+    /**
+     * Returns the number of inputs.
+     *
+     * @return number of inputs
+     */
+    public int getInputCount() {
+        return inputs.length;
+    }
+
+    /**
+     * Returns the input at the given position.
+     *
+     * @param index position of the input, in the order given on creation
+     * @return input sensor
+     */
+    public Sensor getInput(int index) {
+        return inputs[index];
+    }
+
+    /**
+     * Computes the reading from the current values of the inputs.
+     *
+     * @return derived reading
+     */
+    protected abstract int computeReading();
+
+    /**
+     * Computes the hazard level from the current values of the inputs.
+     *
+     * @return derived hazard level, 0 to 100
+     */
+    protected abstract int computeHazardLevel();
+
+    /**
+     * Returns the derived reading, recomputing it only if an input has
+     * changed since it was last computed.
+     *
+     * @return derived reading
+     */
+    @Override
+    public int getCurrentReading() {
+        return (int) (refresh() >> 32);
+    }
+
+    /**
+     * Returns the derived hazard level, recomputing it only if an input has
+     * changed since it was last computed.
+     *
+     * @return derived hazard level, 0 to 100
+     */
+    @Override
+    public int getHazardLevel() {
+        return (int) refresh();
+    }
+
+    /**
+     * Returns the cached values, recomputing them first if an input has
+     * changed since they were computed.
+     *
+     * The values are computed before being published, and tagged with the
+     * generation read beforehand, so a reader never sees values which are
+     * yet to be computed, and an input changing meanwhile leaves them stale
+     * for the next read. Of two reads computing at once, the values of the
+     * later generation are kept.
+     */
+    private long refresh() {
+        int current = generation.get();
+        Values seen = cached.get();
+        if (seen != null && seen.generation == current) {
+            return seen.values;
+        }
+        long next = ((long) computeReading() << 32)
+                | (computeHazardLevel() & 0xffffffffL);
+        Values computed = new Values(current, next);
+        while ((seen == null || seen.generation - current < 0)
+                && !cached.compareAndSet(seen, computed)) {
+            seen = cached.get();
+        }
+        return next;
+    }
+
+    /**
+     * Marks the cached values stale and adds the sensor to the change set,
+     * along with every composite depending on this one. A composite already
+     * in the change set has already passed this on during the tick.
+     *
+     * @param changes change set of the tick in which an input changed
+     */
+    void invalidate(SensorChangeSet changes) {
+        if (changes.mark(this)) {
+            generation.incrementAndGet();
+            for (CompositeSensor dependent : dependents) {
+                dependent.invalidate(changes);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + ": inputs=" + inputs.length;
+    }
+
+    /**
+     * Derived values, with the generation of the inputs they were computed
+     * from.
+     */
+    private static final class Values {
+        private final int generation;
+
+        /** reading in the high half and hazard level in the low half */
+        private final long values;
+
+        private Values(int generation, long values) {
+            this.generation = generation;
+            this.values = values;
+        }
+    }
+}
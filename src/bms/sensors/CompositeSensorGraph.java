@@ -0,0 +1,102 @@
+package bms.sensors;
+
+import bms.util.TickListener;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Records which composite sensors depend directly on each timed sensor, and
+ * after each tick marks the dependents of every changed sensor stale and
+ * adds them to the tick's change set.
+ *
+ * Dependents are held in a map keyed by sensor identity, so each tick costs
+ * time proportional to the number of changed sensors and the composites
+ * depending on them, however many composites exist.
+ *
+ * The graph must be registered as a tick listener with the TimedItemManager
+ * that ticks the input sensors. Since it marks changes, the manager notifies
+ * it before listeners which only read them.
+ */
+public class CompositeSensorGraph implements TickListener {
+
+    /** no dependents */
+    private static final CompositeSensor[] NONE = new CompositeSensor[0];
+
+    /** composites depending directly on each timed sensor */
+    private final Map<Sensor, CompositeSensor[]> dependents;
+
+    /** number of composites connected to the graph */
+    private int compositeCount;
+
+    /**
+     * Creates an empty graph.
+     */
+    public CompositeSensorGraph() {
+        dependents = new IdentityHashMap<Sensor, CompositeSensor[]>();
+    }
+
+    /**
+     * Records a new composite as a dependent of each of its timed sensor
+     * inputs.
+     *
+     * @param composite composite being created
+     * @param inputs composite's inputs
+     */
+    synchronized void connect(CompositeSensor composite, Sensor[] inputs) {
+        for (Sensor input : inputs) {
+            if (!(input instanceof TimedSensor)) {
+                continue;
+            }
+            CompositeSensor[] existing = dependents.getOrDefault(input, NONE);
+            CompositeSensor[] next = Arrays.copyOf(existing,
+                    existing.length + 1);
+            next[existing.length] = composite;
+            dependents.put(input, next);
+        }
+        compositeCount++;
+    }
+
+    /**
+     * Returns the number of composite sensors created in the graph.
+     *
+     * @return number of composites
+     */
+    public synchronized int getCompositeCount() {
+        return compositeCount;
+    }
+
+    /**
+     * Marks stale, and adds to the change set, every composite depending,
+     * directly or through other composites, on a sensor which changed in the
+     * tick.
+     *
+     * @param minute minutes elapsed on the manager
+     * @param changes sensors whose readings changed
+     */
+    @Override
+    public synchronized void tickCompleted(int minute,
+                                           SensorChangeSet changes) {
+        // composites appended to the set have no entry, so the loop need
+        // not stop at the timed sensors
+        for (int i = 0; i < changes.size(); i++) {
+            CompositeSensor[] changed = dependents.get(changes.get(i));
+            if (changed != null) {
+                for (CompositeSensor dependent : changed) {
+                    dependent.invalidate(changes);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns true, as the graph adds composites to the change set.
+     *
+     * @return true
+     */
+    @Override
+    public boolean marksChanges() {
+        return true;
+    }
+}
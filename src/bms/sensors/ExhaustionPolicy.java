@@ -0,0 +1,14 @@
+package bms.sensors;
+
+/**
+ * Determines what a streaming reading source does when it is asked to advance
+ * but no new readings have arrived.
+ */
+public enum ExhaustionPolicy {
+    /** keep reporting the most recent reading */
+    HOLD_LAST,
+    /** cycle again through the readings still held by the source */
+    LOOP,
+    /** throw an IllegalStateException */
+    FAIL
+}
@@ -0,0 +1,42 @@
+package bms.sensors;
+
+import java.util.List;
+
+/**
+ * A composite sensor reporting the highest reading and highest hazard level
+ * among its inputs, eg. the loudest noise sensor on a floor.
+ */
+public class MaximumSensor extends CompositeSensor {
+
+    /**
+     * Creates a sensor reporting the maximum of the given sensors.
+     *
+     * @param graph graph notifying the sensor of changed inputs
+     * @param inputs timed or composite hazard sensors to combine
+     * @throws IllegalArgumentException if there are no inputs, or an input is
+     * not a timed or composite hazard sensor
+     */
+    public MaximumSensor(CompositeSensorGraph graph,
+                         List<? extends HazardSensor> inputs)
+            throws IllegalArgumentException {
+        super(graph, inputs.toArray(new Sensor[0]));
+    }
+
+    @Override
+    protected int computeReading() {
+        int max = Integer.MIN_VALUE;
+        for (int i = 0; i < getInputCount(); i++) {
+            max = Math.max(max, getInput(i).getCurrentReading());
+        }
+        return max;
+    }
+
+    @Override
+    protected int computeHazardLevel() {
+        int max = 0;
+        for (int i = 0; i < getInputCount(); i++) {
+            max = Math.max(max, ((HazardSensor) getInput(i)).getHazardLevel());
+        }
+        return max;
+    }
+}
@@ -6,7 +6,7 @@ import bms.util.TimedItem;
  * A sensor that measures the noise levels in a room.
  */
 public class NoiseSensor extends TimedSensor
-        implements HazardSensor, Sensor, TimedItem {
+        implements HazardSensor, ComfortSensor, Sensor, TimedItem {
 
     /**
      * Creates a new noise sensor with the given sensor readings and
@@ -34,13 +34,28 @@ public class NoiseSensor extends TimedSensor
      * @return relative loudness of current reading to 70dB.
      */
     public double calculateRelativeLoudness() {
-        return Math.pow(2, ((getCurrentReading()-70.0)/10.0));
+        return relativeLoudness(getCurrentReading());
+    }
+
+    /**
+     * Returns the loudness of the given reading in decibels relative to
+     * 70.0 decibels, as a ratio.
+     */
+    static double relativeLoudness(int reading) {
+        return Math.pow(2, ((reading-70.0)/10.0));
     }
 
     @Override
     public int getHazardLevel() {
+        return hazardLevel(getCurrentReading());
+    }
+
+    /**
+     * Returns the hazard level of the given noise reading.
+     */
+    static int hazardLevel(int reading) {
 
-        double hazard = calculateRelativeLoudness()*100;
+        double hazard = relativeLoudness(reading)*100;
         if (hazard > 100) {
             return 100;
         } else {
@@ -48,6 +63,17 @@ public class NoiseSensor extends TimedSensor
         }
     }
 
+    /**
+     * Returns the comfort level of the current noise level, which is the
+     * inverse of its hazard level: 100 - getHazardLevel().
+     *
+     * @return level of comfort at sensor location, 0 to 100
+     */
+    @Override
+    public int getComfortLevel() {
+        return 100 - getHazardLevel();
+    }
+
     @Override
     public String toString() {
         return super.toString() + ", type=NoiseSensor";
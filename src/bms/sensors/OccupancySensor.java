@@ -6,7 +6,7 @@ import bms.util.TimedItem;
  * A sensor that measures the number of people in a room.
  */
 public class OccupancySensor extends TimedSensor
-        implements HazardSensor, Sensor, TimedItem {
+        implements HazardSensor, ComfortSensor, Sensor, TimedItem {
 
     /** maximum allowable number of people in the room which contains sensor */
     private int capacity;
@@ -45,9 +45,17 @@ public class OccupancySensor extends TimedSensor
 
     @Override
     public int getHazardLevel() {
+        return hazardLevel(getCurrentReading(), getCapacity());
+    }
 
-        float currentReading = (float) getCurrentReading();
-        float capacity = (float) getCapacity();
+    /**
+     * Returns the hazard level of the given occupancy reading for a room of
+     * the given capacity.
+     */
+    static int hazardLevel(int reading, int roomCapacity) {
+
+        float currentReading = (float) reading;
+        float capacity = (float) roomCapacity;
         float hazard = (currentReading / capacity) * 100;
 
         if (hazard >= 100) {
@@ -57,6 +65,18 @@ public class OccupancySensor extends TimedSensor
         }
     }
 
+    /**
+     * Returns the comfort level of the current occupancy, which falls as the
+     * room fills: 100 - getHazardLevel(). A room at or over capacity has a
+     * comfort level of 0.
+     *
+     * @return level of comfort at sensor location, 0 to 100
+     */
+    @Override
+    public int getComfortLevel() {
+        return 100 - getHazardLevel();
+    }
+
     @Override
     public String toString() {
         return super.toString() + ", " +
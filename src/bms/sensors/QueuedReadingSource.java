@@ -0,0 +1,186 @@
+package bms.sensors;
+
+/**
+ * A reading source fed from outside the simulation, such as a device feed.
+ *
+ * Readings are appended with offer() and consumed in order as the sensor
+ * advances. They are held in a fixed-capacity ring of ints, so neither
+ * ingesting nor consuming readings allocates. Consumed readings are kept in
+ * the ring until their space is needed, so that a source using
+ * {@link ExhaustionPolicy#LOOP} can cycle through them when no new readings
+ * arrive.
+ *
+ * Readings may be offered from one thread while the sensor is ticked on
+ * another.
+ */
+public class QueuedReadingSource implements ReadingSource {
+
+    /** ring of retained readings */
+    private final int[] buffer;
+
+    /** behaviour when advancing with no pending readings */
+    private final ExhaustionPolicy policy;
+
+    /** position of the oldest retained reading */
+    private long start;
+
+    /** position of the current reading */
+    private long current;
+
+    /** position after the newest reading */
+    private long end;
+
+    /** whether the source is cycling through retained readings */
+    private boolean looping;
+
+    /** position of the current reading while looping */
+    private long loopPosition;
+
+    /**
+     * Creates a new source holding only the given initial reading.
+     *
+     * @param capacity maximum number of readings retained, at least one
+     * @param policy behaviour when advancing with no pending readings
+     * @param initialReading reading reported before any others arrive
+     * @throws IllegalArgumentException if capacity is less than one, policy
+     * is null, or initialReading is less than zero
+     */
+    public QueuedReadingSource(int capacity, ExhaustionPolicy policy,
+                               int initialReading)
+            throws IllegalArgumentException {
+        if (capacity < 1 || policy == null || initialReading < 0) {
+            throw new IllegalArgumentException();
+        }
+        buffer = new int[capacity];
+        this.policy = policy;
+        buffer[0] = initialReading;
+        start = 0;
+        current = 0;
+        end = 1;
+        looping = false;
+    }
+
+    /**
+     * Appends a reading to the source.
+     *
+     * @param reading non-negative reading to append
+     * @return true if the reading was accepted; false if the source is full
+     * of readings which have not yet been consumed
+     * @throws IllegalArgumentException if reading is less than zero
+     */
+    public synchronized boolean offer(int reading)
+            throws IllegalArgumentException {
+        if (reading < 0) {
+            throw new IllegalArgumentException();
+        }
+        return append(reading);
+    }
+
+    /**
+     * Appends a batch of readings to the source, stopping at the first
+     * reading which does not fit.
+     *
+     * @param readings array holding the readings
+     * @param offset index of the first reading to append
+     * @param length number of readings to append
+     * @return number of readings accepted
+     * @throws IllegalArgumentException if any reading in the batch is less
+     * than zero, in which case none are appended
+     * @throws IndexOutOfBoundsException if the batch is outside the array
+     */
+    public synchronized int offer(int[] readings, int offset, int length)
+            throws IllegalArgumentException, IndexOutOfBoundsException {
+        if (offset < 0 || length < 0 || offset + length > readings.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        for (int i = offset; i < offset + length; i++) {
+            if (readings[i] < 0) {
+                throw new IllegalArgumentException();
+            }
+        }
+        int accepted = 0;
+        while (accepted < length && append(readings[offset + accepted])) {
+            accepted++;
+        }
+        return accepted;
+    }
+
+    /**
+     * Appends a validated reading, discarding the oldest consumed reading if
+     * the ring is full.
+     */
+    private boolean append(int reading) {
+        if (end - start == buffer.length) {
+            if (start == current) {
+                return false;
+            }
+            start++;
+            if (loopPosition < start) {
+                loopPosition = start;
+            }
+        }
+        buffer[(int) (end % buffer.length)] = reading;
+        end++;
+        return true;
+    }
+
+    /**
+     * Returns the number of readings which have arrived but not yet been
+     * consumed.
+     *
+     * @return number of pending readings
+     */
+    public synchronized int getPendingCount() {
+        return (int) (end - current - 1);
+    }
+
+    /**
+     * Returns the behaviour of this source when no new readings arrive.
+     *
+     * @return exhaustion policy
+     */
+    public ExhaustionPolicy getPolicy() {
+        return policy;
+    }
+
+    @Override
+    public synchronized int getCurrentReading() {
+        long position = looping ? loopPosition : current;
+        return buffer[(int) (position % buffer.length)];
+    }
+
+    @Override
+    public synchronized void advance() throws IllegalStateException {
+        if (current + 1 < end) {
+            current++;
+            looping = false;
+            return;
+        }
+        switch (policy) {
+            case LOOP:
+                if (!looping || loopPosition >= current) {
+                    looping = true;
+                    loopPosition = start;
+                } else {
+                    loopPosition++;
+                }
+                break;
+            case FAIL:
+                throw new IllegalStateException();
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (long i = current; i < end; i++) {
+            if (i > current) {
+                builder.append(',');
+            }
+            builder.append(buffer[(int) (i % buffer.length)]);
+        }
+        return builder.toString();
+    }
+}
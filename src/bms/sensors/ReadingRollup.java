@@ -0,0 +1,154 @@
+package bms.sensors;
+
+/**
+ * Fixed-capacity ring of minimum, maximum and average readings, aggregated
+ * over consecutive periods of a fixed number of minutes.
+ *
+ * Each period is stored as primitive columns, and the most recent period is
+ * updated in place as each minute's reading is added, so no work is done to
+ * maintain the rollup other than a constant amount per minute.
+ */
+public class ReadingRollup {
+
+    /** number of minutes aggregated into each period */
+    private final int periodMinutes;
+
+    /** minimum reading of each period */
+    private final int[] minimums;
+
+    /** maximum reading of each period */
+    private final int[] maximums;
+
+    /** sum of readings of each period */
+    private final long[] sums;
+
+    /** number of readings added to each period */
+    private final short[] counts;
+
+    /** index of the most recent period */
+    private int head;
+
+    /** number of periods which hold data */
+    private int size;
+
+    /**
+     * Creates a new, empty rollup.
+     *
+     * @param periodMinutes number of minutes aggregated into each period
+     * @param capacity maximum number of periods retained
+     * @throws IllegalArgumentException if periodMinutes or capacity is less
+     * than one, or periodMinutes is greater than Short.MAX_VALUE
+     */
+    public ReadingRollup(int periodMinutes, int capacity)
+            throws IllegalArgumentException {
+        if (periodMinutes < 1 || periodMinutes > Short.MAX_VALUE
+                || capacity < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.periodMinutes = periodMinutes;
+        minimums = new int[capacity];
+        maximums = new int[capacity];
+        sums = new long[capacity];
+        counts = new short[capacity];
+        head = capacity - 1;
+        size = 0;
+    }
+
+    /**
+     * Returns the number of bytes of heap used by the columns of a rollup with
+     * the given capacity.
+     *
+     * @param capacity number of periods retained
+     * @return approximate size of the rollup's data in bytes
+     */
+    public static long bytesRequired(int capacity) {
+        return (long) capacity * (4 + 4 + 8 + 2);
+    }
+
+    /**
+     * Adds one minute's reading to the most recent period, starting a new
+     * period if the current one is full.
+     *
+     * @param reading reading to add
+     */
+    public void add(int reading) {
+        if (size == 0 || counts[head] == periodMinutes) {
+            head = (head + 1) % minimums.length;
+            minimums[head] = reading;
+            maximums[head] = reading;
+            sums[head] = reading;
+            counts[head] = 1;
+            if (size < minimums.length) {
+                size++;
+            }
+        } else {
+            minimums[head] = Math.min(minimums[head], reading);
+            maximums[head] = Math.max(maximums[head], reading);
+            sums[head] += reading;
+            counts[head]++;
+        }
+    }
+
+    /**
+     * Returns the number of minutes aggregated into each period.
+     *
+     * @return period length in minutes
+     */
+    public int getPeriodMinutes() {
+        return periodMinutes;
+    }
+
+    /**
+     * Returns the number of periods which currently hold data.
+     *
+     * @return number of periods
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the minimum reading of a period.
+     *
+     * @param periodsAgo 0 for the most recent (possibly incomplete) period,
+     *                   1 for the period before it, and so on
+     * @return minimum reading in the period
+     * @throws IndexOutOfBoundsException if periodsAgo &gt;= size()
+     */
+    public int getMinimum(int periodsAgo) {
+        return minimums[indexOf(periodsAgo)];
+    }
+
+    /**
+     * Returns the maximum reading of a period.
+     *
+     * @param periodsAgo 0 for the most recent (possibly incomplete) period
+     * @return maximum reading in the period
+     * @throws IndexOutOfBoundsException if periodsAgo &gt;= size()
+     */
+    public int getMaximum(int periodsAgo) {
+        return maximums[indexOf(periodsAgo)];
+    }
+
+    /**
+     * Returns the average reading of a period.
+     *
+     * @param periodsAgo 0 for the most recent (possibly incomplete) period
+     * @return mean of the readings in the period
+     * @throws IndexOutOfBoundsException if periodsAgo &gt;= size()
+     */
+    public double getAverage(int periodsAgo) {
+        int index = indexOf(periodsAgo);
+        return (double) sums[index] / counts[index];
+    }
+
+    /**
+     * Converts a number of periods ago into an index into the columns.
+     */
+    private int indexOf(int periodsAgo) {
+        if (periodsAgo < 0 || periodsAgo >= size) {
+            throw new IndexOutOfBoundsException();
+        }
+        return (head - periodsAgo + minimums.length) % minimums.length;
+    }
+}
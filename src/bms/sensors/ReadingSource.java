@@ -0,0 +1,39 @@
+package bms.sensors;
+
+/**
+ * Supplies the sequence of readings reported by a timed sensor.
+ *
+ * A timed sensor reports its source's current reading, and asks the source to
+ * advance to its next reading each time the sensor's update frequency
+ * elapses.
+ */
+public interface ReadingSource {
+
+    /**
+     * Returns the reading the source is currently positioned at.
+     *
+     * @return current reading
+     */
+    int getCurrentReading();
+
+    /**
+     * Moves the source to its next reading.
+     *
+     * @throws IllegalStateException if the source has no next reading and is
+     * configured to fail when exhausted
+     */
+    void advance() throws IllegalStateException;
+
+    /**
+     * Moves the source forward by the given number of readings.
+     *
+     * @param readings number of readings to move forward by
+     * @throws IllegalStateException if the source runs out of readings and is
+     * configured to fail when exhausted
+     */
+    default void advance(int readings) throws IllegalStateException {
+        for (int i = 0; i < readings; i++) {
+            advance();
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package bms.sensors;
+
+import bms.util.TimedItem;
+import bms.util.TimedItemManager;
+
+import java.util.Arrays;
+
+/**
+ * A compact group of many sensors sharing one SensorConfig and one clock.
+ *
+ * Each sensor in the bank is identified by its index, and stores only its
+ * phase: the position in the configuration's cycle of readings at which it
+ * started. All sensors in the bank elapse time together, so the reading of
+ * any sensor is the configuration's reading at its phase plus the number of
+ * updates so far, and its hazard and comfort levels come from the
+ * configuration's precomputed tables. This takes two bytes per sensor.
+ *
+ * The bank also counts how many of its sensors are at each phase, so that
+ * aggregates over the whole bank take time proportional to the number of
+ * readings in the cycle rather than the number of sensors.
+ *
+ * The bank registers itself with the TimedItemManager as a single timed
+ * item, and stays registered until deregister() is called. Its sensors are
+ * not TimedSensors, so they do not appear in the manager's SensorChangeSet.
+ *
+ * Only sensors held in a bank get this compact form. Sensors added to rooms
+ * are TimedSensors, each a separate object with its own reading source,
+ * clock, id and type-specific fields, whether built directly or with
+ * SensorConfig.newSensor(); the most they share is the readings array.
+ * Banked sensors cannot be added to rooms, and are not seen by rule
+ * engines, analytics or the building's monitors. A bank is meant for large
+ * simulated populations of identical sensors, such as load tests, whose
+ * owner reads the bank's own aggregates each tick rather than expecting the
+ * building to.
+ */
+public class SensorBank implements TimedItem {
+
+    /** configuration shared by every sensor in the bank */
+    private final SensorConfig config;
+
+    /** starting position in the cycle of each sensor */
+    private char[] phases;
+
+    /** number of sensors at each starting position */
+    private final int[] phaseCounts;
+
+    /** number of sensors in the bank */
+    private int size;
+
+    /** minutes elapsed since the bank was created */
+    private int timeElapsed;
+
+    /** position in the cycle reached by a sensor with phase 0 */
+    private int offset;
+
+    /** manager the bank registered with when created */
+    private final TimedItemManager manager;
+
+    /**
+     * Creates an empty bank of sensors with the given configuration, and
+     * registers it with the TimedItemManager.
+     *
+     * @param config configuration shared by the bank's sensors
+     * @throws IllegalArgumentException if the configuration has more
+     * readings than a phase can address
+     */
+    public SensorBank(SensorConfig config) throws IllegalArgumentException {
+        if (config.getReadingCount() > Character.MAX_VALUE + 1) {
+            throw new IllegalArgumentException();
+        }
+        this.config = config;
+        phases = new char[16];
+        phaseCounts = new int[config.getReadingCount()];
+        manager = TimedItemManager.getInstance();
+        manager.registerTimedItem(this);
+    }
+
+    /**
+     * Deregisters this bank from the TimedItemManager it was registered with
+     * when created, so that its sensors' readings no longer change over
+     * time. This is done when the bank is no longer needed.
+     *
+     * @return true if the bank was still registered; false otherwise
+     */
+    public boolean deregister() {
+        return manager.deregisterTimedItem(this);
+    }
+
+    /**
+     * Adds a sensor to the bank which currently reports the reading at the
+     * given position in the configuration's cycle.
+     *
+     * @param startIndex position in the cycle of the new sensor's current
+     *                   reading
+     * @return index of the new sensor in the bank
+     * @throws IllegalArgumentException if startIndex is not a position in
+     * the cycle
+     */
+    public int add(int startIndex) throws IllegalArgumentException {
+        int count = config.getReadingCount();
+        if (startIndex < 0 || startIndex >= count) {
+            throw new IllegalArgumentException();
+        }
+        if (size == phases.length) {
+            phases = Arrays.copyOf(phases, size * 2);
+        }
+        int phase = Math.floorMod(startIndex - offset, count);
+        phases[size] = (char) phase;
+        phaseCounts[phase]++;
+        return size++;
+    }
+
+    /**
+     * Returns the number of sensors in the bank.
+     *
+     * @return number of sensors
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the configuration shared by the bank's sensors.
+     *
+     * @return shared configuration
+     */
+    public SensorConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Returns the number of minutes elapsed since the bank was created.
+     *
+     * @return minutes elapsed
+     */
+    public int getTimeElapsed() {
+        return timeElapsed;
+    }
+
+    private int cycleIndex(int sensor) {
+        if (sensor < 0 || sensor >= size) {
+            throw new IndexOutOfBoundsException();
+        }
+        return (phases[sensor] + offset) % config.getReadingCount();
+    }
+
+    /**
+     * Returns the current reading of the given sensor.
+     *
+     * @param sensor index of the sensor in the bank
+     * @return current reading
+     * @throws IndexOutOfBoundsException if there is no such sensor
+     */
+    public int getCurrentReading(int sensor) {
+        return config.getReading(cycleIndex(sensor));
+    }
+
+    /**
+     * Returns the current hazard level of the given sensor.
+     *
+     * @param sensor index of the sensor in the bank
+     * @return hazard level, 0 to 100
+     * @throws IndexOutOfBoundsException if there is no such sensor
+     */
+    public int getHazardLevel(int sensor) {
+        return config.getHazardLevel(cycleIndex(sensor));
+    }
+
+    /**
+     * Returns the current comfort level of the given sensor.
+     *
+     * @param sensor index of the sensor in the bank
+     * @return comfort level, 0 to 100
+     * @throws IndexOutOfBoundsException if there is no such sensor
+     */
+    public int getComfortLevel(int sensor) {
+        return config.getComfortLevel(cycleIndex(sensor));
+    }
+
+    /**
+     * Returns the sum of the current readings of every sensor in the bank,
+     * such as the total number of people counted by a bank of occupancy
+     * sensors.
+     *
+     * @return total of current readings
+     */
+    public long getTotalReading() {
+        int count = config.getReadingCount();
+        long total = 0;
+        for (int phase = 0; phase < count; phase++) {
+            total += (long) phaseCounts[phase]
+                    * config.getReading((phase + offset) % count);
+        }
+        return total;
+    }
+
+    /**
+     * Returns the highest current hazard level of any sensor in the bank.
+     *
+     * @return maximum hazard level, or 0 if the bank is empty
+     */
+    public int getMaxHazardLevel() {
+        int count = config.getReadingCount();
+        int max = 0;
+        for (int phase = 0; phase < count; phase++) {
+            if (phaseCounts[phase] > 0) {
+                max = Math.max(max,
+                        config.getHazardLevel((phase + offset) % count));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Returns the number of sensors whose current hazard level is at least
+     * the given level.
+     *
+     * @param level hazard level, 0 to 100
+     * @return number of sensors at or above the level
+     */
+    public int countAtOrAboveHazard(int level) {
+        int count = config.getReadingCount();
+        int result = 0;
+        for (int phase = 0; phase < count; phase++) {
+            if (config.getHazardLevel((phase + offset) % count) >= level) {
+                result += phaseCounts[phase];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Advances every sensor in the bank by one minute, moving each to its
+     * next reading every update frequency minutes.
+     */
+    @Override
+    public void elapseOneMinute() {
+        timeElapsed++;
+        if (timeElapsed % config.getUpdateFrequency() == 0) {
+            offset = (offset + 1) % config.getReadingCount();
+        }
+    }
+}
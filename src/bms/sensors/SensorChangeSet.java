@@ -0,0 +1,165 @@
+package bms.sensors;
+
+/**
+ * Records which timed sensors changed their reading during the most recent
+ * tick of the TimedItemManager, along with the composite sensors derived
+ * from them.
+ *
+ * Membership is kept in a bitset keyed by sensor id, alongside a dense array
+ * of the changed sensors themselves, so that callers can iterate over only the
+ * sensors which changed without allocating:
+ *
+ * <pre>
+ * for (int i = 0; i &lt; changes.size(); i++) {
+ *     Sensor sensor = changes.get(i);
+ * }
+ * </pre>
+ *
+ * Since the hazard level of a sensor is determined entirely by its current
+ * reading, a sensor whose hazard level changed is always in this set.
+ * A composite sensor is added by its CompositeSensorGraph once the timed
+ * sensors have ticked, when any of its inputs changed, so that listeners
+ * caching its values read them again; its derived values may nonetheless
+ * be unchanged.
+ *
+ * Sensors may be marked from several threads at once while a tick is spread
+ * across a pool; reading the set is only safe once the tick has completed.
+ */
+public class SensorChangeSet {
+
+    /** bitset of sensor ids which have been marked as changed */
+    private long[] changedBits;
+
+    /** changed sensors, in the order in which they were marked */
+    private Sensor[] changedSensors;
+
+    /** number of changed sensors held in changedSensors */
+    private int size;
+
+    /**
+     * Creates a new, empty change set.
+     */
+    public SensorChangeSet() {
+        changedBits = new long[1];
+        changedSensors = new Sensor[16];
+        size = 0;
+    }
+
+    /**
+     * Marks the given sensor as changed. Marking a sensor which is already
+     * in the set has no effect.
+     *
+     * @param sensor sensor whose reading changed
+     */
+    public void mark(TimedSensor sensor) {
+        add(sensor, sensor.getSensorId());
+    }
+
+    /**
+     * Marks the given composite sensor as changed, because one of its inputs
+     * changed.
+     *
+     * @param sensor composite sensor whose inputs changed
+     * @return true if the sensor was not already in the set
+     */
+    boolean mark(CompositeSensor sensor) {
+        return add(sensor, sensor.getSensorId());
+    }
+
+    private synchronized boolean add(Sensor sensor, int id) {
+        int word = id >>> 6;
+        if (word >= changedBits.length) {
+            long[] grown = new long[Math.max(word + 1,
+                    changedBits.length * 2)];
+            System.arraycopy(changedBits, 0, grown, 0, changedBits.length);
+            changedBits = grown;
+        }
+        long bit = 1L << id;
+        if ((changedBits[word] & bit) != 0) {
+            return false;
+        }
+        changedBits[word] |= bit;
+
+        if (size == changedSensors.length) {
+            Sensor[] grown = new Sensor[size * 2];
+            System.arraycopy(changedSensors, 0, grown, 0, size);
+            changedSensors = grown;
+        }
+        changedSensors[size] = sensor;
+        size++;
+        return true;
+    }
+
+    /**
+     * Returns whether the given sensor changed during the most recent tick.
+     *
+     * @param sensor sensor to check
+     * @return true if the sensor's reading changed; false otherwise
+     */
+    public boolean contains(TimedSensor sensor) {
+        return contains(sensor.getSensorId());
+    }
+
+    /**
+     * Returns whether the sensor with the given id changed during the most
+     * recent tick.
+     *
+     * @param sensorId id of the sensor to check
+     * @return true if the sensor's reading changed; false otherwise
+     */
+    public boolean contains(int sensorId) {
+        int word = sensorId >>> 6;
+        return word < changedBits.length
+                && (changedBits[word] & (1L << sensorId)) != 0;
+    }
+
+    /**
+     * Returns the number of sensors which changed.
+     *
+     * @return number of changed sensors
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns whether no sensors changed.
+     *
+     * @return true if the set is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the changed sensor at the given position.
+     *
+     * @param index position in the set, from 0 (inclusive) to size()
+     *              (exclusive)
+     * @return changed sensor at the given position
+     * @throws IndexOutOfBoundsException if index is out of range
+     */
+    public Sensor get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException();
+        }
+        return changedSensors[index];
+    }
+
+    /**
+     * Removes all sensors from the set.
+     * This takes time proportional to the number of changed sensors, not the
+     * total number of sensors.
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            Sensor sensor = changedSensors[i];
+            int id = sensor instanceof TimedSensor
+                    ? ((TimedSensor) sensor).getSensorId()
+                    : ((CompositeSensor) sensor).getSensorId();
+            changedBits[id >>> 6] = 0;
+            changedSensors[i] = null;
+        }
+        size = 0;
+    }
+}
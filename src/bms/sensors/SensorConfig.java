@@ -0,0 +1,375 @@
+package bms.sensors;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The immutable configuration shared by every sensor set up the same way:
+ * its type, the readings it cycles through, its update frequency and any
+ * type-specific parameters.
+ *
+ * Configurations are interned, so that however many sensors share one, its
+ * readings and its tables of the hazard and comfort level of each reading
+ * exist only once. Sensors created from a configuration with newSensor()
+ * share its readings array but are otherwise ordinary TimedSensors, so room
+ * sensors keep their full per-sensor size; only a SensorBank reduces each of
+ * its sensors to a two-byte phase.
+ */
+public final class SensorConfig {
+
+    /** interned configurations, each mapped to itself */
+    private static final ConcurrentMap<SensorConfig, SensorConfig> interned =
+            new ConcurrentHashMap<SensorConfig, SensorConfig>();
+
+    /** type of sensor */
+    private final Class<? extends TimedSensor> sensorType;
+
+    /** readings cycled through */
+    private final int[] readings;
+
+    /** minutes between readings */
+    private final int updateFrequency;
+
+    /** capacity of an occupancy sensor, otherwise 0 */
+    private final int capacity;
+
+    /** ideal value of a carbon dioxide sensor, otherwise 0 */
+    private final int idealValue;
+
+    /** variation limit of a carbon dioxide sensor, otherwise 0 */
+    private final int variationLimit;
+
+    /** hazard level of each reading */
+    private final byte[] hazardTable;
+
+    /** comfort level of each reading */
+    private final byte[] comfortTable;
+
+    private SensorConfig(Class<? extends TimedSensor> sensorType,
+                         int[] readings, int updateFrequency, int capacity,
+                         int idealValue, int variationLimit) {
+        this.sensorType = sensorType;
+        this.readings = readings;
+        this.updateFrequency = updateFrequency;
+        this.capacity = capacity;
+        this.idealValue = idealValue;
+        this.variationLimit = variationLimit;
+        hazardTable = new byte[readings.length];
+        comfortTable = new byte[readings.length];
+    }
+
+    /**
+     * Returns the interned configuration of the given sensor.
+     *
+     * @param sensor sensor to describe
+     * @return shared configuration
+     * @throws IllegalArgumentException if the sensor is not one of the four
+     * concrete timed sensor types, or its readings do not come from an
+     * ArrayReadingSource
+     */
+    public static SensorConfig of(TimedSensor sensor)
+            throws IllegalArgumentException {
+        if (!(sensor.getReadingSource() instanceof ArrayReadingSource)) {
+            throw new IllegalArgumentException();
+        }
+        int[] readings = sensor.getSensorReadings();
+        if (sensor instanceof OccupancySensor) {
+            return occupancy(readings, sensor.getUpdateFrequency(),
+                    ((OccupancySensor) sensor).getCapacity());
+        } else if (sensor instanceof CarbonDioxideSensor) {
+            return carbonDioxide(readings, sensor.getUpdateFrequency(),
+                    ((CarbonDioxideSensor) sensor).getIdealValue(),
+                    ((CarbonDioxideSensor) sensor).getVariationLimit());
+        } else if (sensor instanceof NoiseSensor) {
+            return noise(readings, sensor.getUpdateFrequency());
+        } else if (sensor instanceof TemperatureSensor) {
+            return temperature(readings);
+        }
+        throw new IllegalArgumentException();
+    }
+
+    /**
+     * Returns the configuration of the given sensor interned in the given
+     * pool rather than the shared one, so that it is discarded along with
+     * the pool. The configuration shares the sensor's readings instead of
+     * copying them.
+     *
+     * @param sensor sensor to describe
+     * @param pool configurations already described, each mapped to itself
+     * @return configuration shared by equal sensors described with the pool
+     * @throws IllegalArgumentException if the sensor is not one of the four
+     * concrete timed sensor types, or its readings do not come from an
+     * ArrayReadingSource
+     */
+    public static SensorConfig of(TimedSensor sensor,
+                                  Map<SensorConfig, SensorConfig> pool)
+            throws IllegalArgumentException {
+        if (!(sensor.getReadingSource() instanceof ArrayReadingSource)) {
+            throw new IllegalArgumentException();
+        }
+        int[] readings = sensor.getSensorReadings();
+        int frequency = sensor.getUpdateFrequency();
+        SensorConfig candidate;
+        if (sensor instanceof OccupancySensor) {
+            candidate = new SensorConfig(OccupancySensor.class, readings,
+                    frequency, ((OccupancySensor) sensor).getCapacity(), 0, 0);
+        } else if (sensor instanceof CarbonDioxideSensor) {
+            candidate = new SensorConfig(CarbonDioxideSensor.class, readings,
+                    frequency, 0,
+                    ((CarbonDioxideSensor) sensor).getIdealValue(),
+                    ((CarbonDioxideSensor) sensor).getVariationLimit());
+        } else if (sensor instanceof NoiseSensor) {
+            candidate = new SensorConfig(NoiseSensor.class, readings,
+                    frequency, 0, 0, 0);
+        } else if (sensor instanceof TemperatureSensor) {
+            candidate = new SensorConfig(TemperatureSensor.class, readings,
+                    1, 0, 0, 0);
+        } else {
+            throw new IllegalArgumentException();
+        }
+        return intern(candidate, pool);
+    }
+
+    /**
+     * Returns the interned configuration for occupancy sensors.
+     *
+     * @param readings a non-empty array of readings, which is copied
+     * @param updateFrequency minutes between readings, 1 to 5
+     * @param capacity maximum allowable number of people in the room
+     * @return shared configuration
+     * @throws IllegalArgumentException if any argument would be rejected by
+     * the OccupancySensor constructor
+     */
+    public static SensorConfig occupancy(int[] readings, int updateFrequency,
+                                         int capacity)
+            throws IllegalArgumentException {
+        if (capacity < 0) {
+            throw new IllegalArgumentException();
+        }
+        return intern(new SensorConfig(OccupancySensor.class,
+                checkReadings(readings, updateFrequency), updateFrequency,
+                capacity, 0, 0));
+    }
+
+    /**
+     * Returns the interned configuration for carbon dioxide sensors.
+     *
+     * @param readings a non-empty array of readings, which is copied
+     * @param updateFrequency minutes between readings, 1 to 5
+     * @param idealValue ideal CO2 value in ppm
+     * @param variationLimit acceptable range above and below ideal value
+     * @return shared configuration
+     * @throws IllegalArgumentException if any argument would be rejected by
+     * the CarbonDioxideSensor constructor
+     */
+    public static SensorConfig carbonDioxide(int[] readings,
+                                             int updateFrequency,
+                                             int idealValue,
+                                             int variationLimit)
+            throws IllegalArgumentException {
+        if (idealValue <= 0 || variationLimit <= 0
+                || idealValue - variationLimit < 0) {
+            throw new IllegalArgumentException();
+        }
+        return intern(new SensorConfig(CarbonDioxideSensor.class,
+                checkReadings(readings, updateFrequency), updateFrequency,
+                0, idealValue, variationLimit));
+    }
+
+    /**
+     * Returns the interned configuration for noise sensors.
+     *
+     * @param readings a non-empty array of readings, which is copied
+     * @param updateFrequency minutes between readings, 1 to 5
+     * @return shared configuration
+     * @throws IllegalArgumentException if any argument would be rejected by
+     * the NoiseSensor constructor
+     */
+    public static SensorConfig noise(int[] readings, int updateFrequency)
+            throws IllegalArgumentException {
+        return intern(new SensorConfig(NoiseSensor.class,
+                checkReadings(readings, updateFrequency), updateFrequency,
+                0, 0, 0));
+    }
+
+    /**
+     * Returns the interned configuration for temperature sensors, which
+     * always update every minute.
+     *
+     * @param readings a non-empty array of readings, which is copied
+     * @return shared configuration
+     * @throws IllegalArgumentException if readings would be rejected by the
+     * TemperatureSensor constructor
+     */
+    public static SensorConfig temperature(int[] readings)
+            throws IllegalArgumentException {
+        return intern(new SensorConfig(TemperatureSensor.class,
+                checkReadings(readings, 1), 1, 0, 0, 0));
+    }
+
+    private static int[] checkReadings(int[] readings, int updateFrequency)
+            throws IllegalArgumentException {
+        if (updateFrequency < 1 || updateFrequency > 5) {
+            throw new IllegalArgumentException();
+        }
+        return new ArrayReadingSource(readings).getReadings();
+    }
+
+    private static SensorConfig intern(SensorConfig candidate) {
+        return intern(candidate, interned);
+    }
+
+    /**
+     * Returns the equal configuration in the given pool, filling in the
+     * tables of the given one if it is the first of its kind.
+     */
+    private static SensorConfig intern(SensorConfig candidate,
+                                       Map<SensorConfig, SensorConfig> pool) {
+        SensorConfig existing = pool.get(candidate);
+        if (existing != null) {
+            return existing;
+        }
+        for (int i = 0; i < candidate.readings.length; i++) {
+            candidate.hazardTable[i] =
+                    (byte) candidate.hazardOf(candidate.readings[i]);
+            candidate.comfortTable[i] =
+                    (byte) candidate.comfortOf(candidate.readings[i]);
+        }
+        existing = pool.putIfAbsent(candidate, candidate);
+        return existing == null ? candidate : existing;
+    }
+
+    private int hazardOf(int reading) {
+        if (sensorType == OccupancySensor.class) {
+            return OccupancySensor.hazardLevel(reading, capacity);
+        } else if (sensorType == CarbonDioxideSensor.class) {
+            return CarbonDioxideSensor.hazardLevel(reading);
+        } else if (sensorType == NoiseSensor.class) {
+            return NoiseSensor.hazardLevel(reading);
+        }
+        return TemperatureSensor.hazardLevel(reading);
+    }
+
+    private int comfortOf(int reading) {
+        if (sensorType == CarbonDioxideSensor.class) {
+            return CarbonDioxideSensor.comfortLevel(reading, idealValue,
+                    variationLimit);
+        } else if (sensorType == TemperatureSensor.class) {
+            return TemperatureSensor.comfortLevel(reading);
+        }
+        return 100 - hazardOf(reading);
+    }
+
+    /**
+     * Returns the number of distinct configurations interned so far.
+     *
+     * @return number of interned configurations
+     */
+    public static int getInternedCount() {
+        return interned.size();
+    }
+
+    /**
+     * Creates a new sensor with this configuration, registered with the
+     * current TimedItemManager like any other sensor. The sensor shares this
+     * configuration's readings rather than copying them.
+     *
+     * @return new sensor of this configuration's type
+     */
+    public TimedSensor newSensor() {
+        if (sensorType == OccupancySensor.class) {
+            return new OccupancySensor(readings, updateFrequency, capacity);
+        } else if (sensorType == CarbonDioxideSensor.class) {
+            return new CarbonDioxideSensor(readings, updateFrequency,
+                    idealValue, variationLimit);
+        } else if (sensorType == NoiseSensor.class) {
+            return new NoiseSensor(readings, updateFrequency);
+        }
+        return new TemperatureSensor(readings);
+    }
+
+    /**
+     * Returns the type of sensor this configuration describes.
+     *
+     * @return sensor class
+     */
+    public Class<? extends TimedSensor> getSensorType() {
+        return sensorType;
+    }
+
+    /**
+     * Returns the number of readings cycled through.
+     *
+     * @return number of readings
+     */
+    public int getReadingCount() {
+        return readings.length;
+    }
+
+    /**
+     * Returns the reading at the given position in the cycle.
+     *
+     * @param index position in the cycle
+     * @return reading at that position
+     */
+    public int getReading(int index) {
+        return readings[index];
+    }
+
+    /**
+     * Returns the precomputed hazard level of the reading at the given
+     * position in the cycle.
+     *
+     * @param index position in the cycle
+     * @return hazard level, 0 to 100
+     */
+    public int getHazardLevel(int index) {
+        return hazardTable[index];
+    }
+
+    /**
+     * Returns the precomputed comfort level of the reading at the given
+     * position in the cycle.
+     *
+     * @param index position in the cycle
+     * @return comfort level, 0 to 100
+     */
+    public int getComfortLevel(int index) {
+        return comfortTable[index];
+    }
+
+    /**
+     * Returns the number of minutes between readings.
+     *
+     * @return update frequency in minutes
+     */
+    public int getUpdateFrequency() {
+        return updateFrequency;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof SensorConfig)) {
+            return false;
+        }
+        SensorConfig other = (SensorConfig) obj;
+        return sensorType == other.sensorType
+                && updateFrequency == other.updateFrequency
+                && capacity == other.capacity
+                && idealValue == other.idealValue
+                && variationLimit == other.variationLimit
+                && Arrays.equals(readings, other.readings);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = sensorType.hashCode();
+        result = 31 * result + updateFrequency;
+        result = 31 * result + capacity;
+        result = 31 * result + idealValue;
+        result = 31 * result + variationLimit;
+        return 31 * result + Arrays.hashCode(readings);
+    }
+}
@@ -0,0 +1,224 @@
+package bms.sensors;
+
+/**
+ * Fixed-capacity history of the readings and hazard levels reported by a
+ * single sensor, one entry per minute, with 5-minute and hourly rollups.
+ *
+ * Readings and hazard levels are held in primitive ring buffers, so the
+ * memory used by a history is fixed when it is created. All histories draw
+ * from a shared memory budget; creating a history which would exceed the
+ * budget fails, so that enabling history across a very large number of
+ * sensors cannot exhaust the heap.
+ */
+public class SensorHistory {
+
+    /** number of minutes in a day, the default history capacity */
+    public static final int MINUTES_PER_DAY = 24 * 60;
+
+    /** number of minutes in each fine-grained rollup period */
+    public static final int FIVE_MINUTES = 5;
+
+    /** number of minutes in each coarse rollup period */
+    public static final int ONE_HOUR = 60;
+
+    /** total bytes which may be allocated to all histories */
+    private static long memoryBudget = Runtime.getRuntime().maxMemory() / 4;
+
+    /** bytes currently allocated to all histories */
+    private static long memoryReserved = 0;
+
+    /** readings of each minute, oldest overwritten first */
+    private final int[] readings;
+
+    /** hazard levels of each minute, 0 to 100 */
+    private final byte[] hazardLevels;
+
+    /** index of the most recent minute */
+    private int head;
+
+    /** number of minutes which hold data */
+    private int size;
+
+    /** 5-minute rollup of readings */
+    private final ReadingRollup fiveMinuteRollup;
+
+    /** hourly rollup of readings */
+    private final ReadingRollup hourlyRollup;
+
+    /** bytes reserved from the memory budget by this history */
+    private final long reservedBytes;
+
+    /**
+     * Creates a new, empty history which retains the given number of minutes,
+     * reserving its memory from the shared budget.
+     *
+     * @param capacity number of minutes retained
+     * @throws IllegalArgumentException if capacity is less than one
+     * @throws IllegalStateException if the history would exceed the memory
+     * budget
+     */
+    public SensorHistory(int capacity)
+            throws IllegalArgumentException, IllegalStateException {
+        if (capacity < 1) {
+            throw new IllegalArgumentException();
+        }
+        reservedBytes = bytesRequired(capacity);
+        reserve(reservedBytes);
+
+        readings = new int[capacity];
+        hazardLevels = new byte[capacity];
+        head = capacity - 1;
+        size = 0;
+        fiveMinuteRollup = new ReadingRollup(FIVE_MINUTES,
+                periodsFor(capacity, FIVE_MINUTES));
+        hourlyRollup = new ReadingRollup(ONE_HOUR,
+                periodsFor(capacity, ONE_HOUR));
+    }
+
+    /**
+     * Returns the number of bytes of heap used by the data of a history with
+     * the given capacity, including its rollups.
+     *
+     * @param capacity number of minutes retained
+     * @return approximate size of the history's data in bytes
+     */
+    public static long bytesRequired(int capacity) {
+        return (long) capacity * (4 + 1)
+                + ReadingRollup.bytesRequired(
+                        periodsFor(capacity, FIVE_MINUTES))
+                + ReadingRollup.bytesRequired(periodsFor(capacity, ONE_HOUR));
+    }
+
+    /**
+     * Sets the total number of bytes which may be allocated to all sensor
+     * histories. Histories which already exist are unaffected.
+     *
+     * @param bytes memory budget in bytes
+     */
+    public static synchronized void setMemoryBudget(long bytes) {
+        memoryBudget = bytes;
+    }
+
+    /**
+     * Returns the total number of bytes which may be allocated to all sensor
+     * histories.
+     *
+     * @return memory budget in bytes
+     */
+    public static synchronized long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Returns the number of bytes currently allocated to sensor histories.
+     *
+     * @return bytes reserved from the memory budget
+     */
+    public static synchronized long getMemoryReserved() {
+        return memoryReserved;
+    }
+
+    private static synchronized void reserve(long bytes) {
+        if (memoryReserved + bytes > memoryBudget) {
+            throw new IllegalStateException();
+        }
+        memoryReserved += bytes;
+    }
+
+    /**
+     * Returns the memory held by this history to the shared budget.
+     * The history must not be used after it has been released.
+     */
+    public void release() {
+        synchronized (SensorHistory.class) {
+            memoryReserved -= reservedBytes;
+        }
+    }
+
+    private static int periodsFor(int capacity, int periodMinutes) {
+        return (capacity + periodMinutes - 1) / periodMinutes;
+    }
+
+    /**
+     * Records one minute's reading and hazard level.
+     *
+     * @param reading sensor reading for the minute
+     * @param hazardLevel hazard level for the minute, 0 to 100
+     */
+    public void record(int reading, int hazardLevel) {
+        head = (head + 1) % readings.length;
+        readings[head] = reading;
+        hazardLevels[head] = (byte) hazardLevel;
+        if (size < readings.length) {
+            size++;
+        }
+        fiveMinuteRollup.add(reading);
+        hourlyRollup.add(reading);
+    }
+
+    /**
+     * Returns the number of minutes this history can retain.
+     *
+     * @return capacity in minutes
+     */
+    public int getCapacity() {
+        return readings.length;
+    }
+
+    /**
+     * Returns the number of minutes currently held.
+     *
+     * @return number of recorded minutes, at most getCapacity()
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the reading recorded a given number of minutes ago.
+     *
+     * @param minutesAgo 0 for the most recent minute, 1 for the minute
+     *                   before, and so on
+     * @return recorded reading
+     * @throws IndexOutOfBoundsException if minutesAgo &gt;= size()
+     */
+    public int getReading(int minutesAgo) {
+        return readings[indexOf(minutesAgo)];
+    }
+
+    /**
+     * Returns the hazard level recorded a given number of minutes ago.
+     *
+     * @param minutesAgo 0 for the most recent minute
+     * @return recorded hazard level, 0 to 100
+     * @throws IndexOutOfBoundsException if minutesAgo &gt;= size()
+     */
+    public int getHazardLevel(int minutesAgo) {
+        return hazardLevels[indexOf(minutesAgo)];
+    }
+
+    /**
+     * Returns the rollup of readings over 5-minute periods.
+     *
+     * @return 5-minute rollup
+     */
+    public ReadingRollup getFiveMinuteRollup() {
+        return fiveMinuteRollup;
+    }
+
+    /**
+     * Returns the rollup of readings over hourly periods.
+     *
+     * @return hourly rollup
+     */
+    public ReadingRollup getHourlyRollup() {
+        return hourlyRollup;
+    }
+
+    private int indexOf(int minutesAgo) {
+        if (minutesAgo < 0 || minutesAgo >= size) {
+            throw new IndexOutOfBoundsException();
+        }
+        return (head - minutesAgo + readings.length) % readings.length;
+    }
+}
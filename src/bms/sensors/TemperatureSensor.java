@@ -6,7 +6,13 @@ import bms.util.TimedItem;
  * A sensor that measures ambient temperature in a room.
  */
 public class TemperatureSensor extends TimedSensor
-        implements HazardSensor, Sensor, TimedItem {
+        implements HazardSensor, ComfortSensor, Sensor, TimedItem {
+
+    /** lowest temperature, in degrees Celsius, that is fully comfortable */
+    private static final int MIN_COMFORTABLE = 20;
+
+    /** highest temperature, in degrees Celsius, that is fully comfortable */
+    private static final int MAX_COMFORTABLE = 26;
 
     /**
      * Creates a new temperature sensor with the given sensor readings and
@@ -21,13 +27,46 @@ public class TemperatureSensor extends TimedSensor
 
     @Override
     public int getHazardLevel() {
-        if (getCurrentReading() >= 68) {
+        return hazardLevel(getCurrentReading());
+    }
+
+    /**
+     * Returns the hazard level of the given temperature reading.
+     */
+    static int hazardLevel(int reading) {
+        if (reading >= 68) {
             return 100;
         } else {
             return 0;
         }
     }
 
+    /**
+     * Returns the comfort level of the current temperature.
+     * Temperatures from 20 to 26 degrees inclusive are fully comfortable
+     * (100). Outside this range, comfort falls by 10 for every degree below
+     * 20 or above 26, to a minimum of 0.
+     *
+     * @return level of comfort at sensor location, 0 to 100
+     */
+    @Override
+    public int getComfortLevel() {
+        return comfortLevel(getCurrentReading());
+    }
+
+    /**
+     * Returns the comfort level of the given temperature reading.
+     */
+    static int comfortLevel(int reading) {
+        int distance = 0;
+        if (reading < MIN_COMFORTABLE) {
+            distance = MIN_COMFORTABLE - reading;
+        } else if (reading > MAX_COMFORTABLE) {
+            distance = reading - MAX_COMFORTABLE;
+        }
+        return Math.max(0, 100 - distance * 10);
+    }
+
     @Override
     public String toString() {
         return super.toString() + ", type=TemperatureSensor";
@@ -6,11 +6,15 @@ import bms.util.TimedItemManager;
 /**
  * An abstract class to represent a sensor that iterates through observed values
  * on a timer.
+ *
+ * The observed values come from a ReadingSource, which is either a fixed
+ * array of readings cycled through repeatedly, or a stream of readings fed
+ * from outside the simulation.
  */
 public abstract class TimedSensor implements Sensor, TimedItem {
 
-    /** array which contains readings from a given sensor */
-    private int[] sensorReadings;
+    /** source of the readings reported by this sensor */
+    private ReadingSource readingSource;
 
     /** update frequency of the given sensor*/
     private int updateFrequency;
@@ -18,9 +22,21 @@ public abstract class TimedSensor implements Sensor, TimedItem {
     /** how long the sensor has been running for */
     private int timeElapsed;
 
-    /** stores the current index of the sensorReadings array based on the
-     * time elapsed */
-    private int sensorReadingIndex;
+    /** id of the next sensor to be created */
+    private static int nextSensorId = 0;
+
+    /** reserved id to give the next sensor created on each thread, if any */
+    private static final ThreadLocal<Integer> threadSensorId =
+            new ThreadLocal<Integer>();
+
+    /** unique id of this sensor, used to key change tracking */
+    private final int sensorId;
+
+    /** manager this sensor is registered with */
+    private TimedItemManager manager;
+
+    /** history of past readings, or null if history is not enabled */
+    private volatile SensorHistory history;
 
     /**
      * Creates a new timed sensor, using the provided list of sensor readings.
@@ -49,30 +65,19 @@ public abstract class TimedSensor implements Sensor, TimedItem {
     public TimedSensor(int[] sensorReadings, int updateFrequency)
             throws IllegalArgumentException {
 
-        if (sensorReadings == null) {
+        // taken before anything can throw, so that a failed construction
+        // does not leave the id for the next sensor on this thread
+        Integer reserved = threadSensorId.get();
+        threadSensorId.remove();
+        if (updateFrequency < 1 || updateFrequency > 5) {
             throw new IllegalArgumentException();
         } else {
-
-            boolean readingsLessThanZero = false;
-
-            // checking sensorReadings for integers less than zero
-            for(int i : sensorReadings) {
-                if (i < 0) {
-                    readingsLessThanZero = true;
-                    break;
-                }
-            }
-
-            if (updateFrequency < 1 || updateFrequency > 5 ||
-                    readingsLessThanZero) {
-                throw new IllegalArgumentException();
-            } else {
-                this.sensorReadings = sensorReadings;
-                this.updateFrequency = updateFrequency;
-                timeElapsed = 0;
-                sensorReadingIndex = 0;
-                TimedItemManager.getInstance().registerTimedItem(this);
-            }
+            this.readingSource = new ArrayReadingSource(sensorReadings);
+            this.updateFrequency = updateFrequency;
+            timeElapsed = 0;
+            sensorId = reserved != null ? reserved : reserveSensorIds(1);
+            manager = TimedItemManager.getInstance();
+            manager.registerTimedItem(this);
         }
     }
 
@@ -96,40 +101,197 @@ public abstract class TimedSensor implements Sensor, TimedItem {
         return timeElapsed;
     }
 
+    /**
+     * Returns the unique id of this sensor. Ids are allocated densely from
+     * zero in order of construction, apart from sensors recreated with a
+     * reserved id; see setThreadSensorId().
+     *
+     * @return the sensor's id
+     */
+    public int getSensorId() {
+        return sensorId;
+    }
+
+    /**
+     * Reserves a block of consecutive sensor ids which no sensor will be
+     * given unless it is passed to setThreadSensorId().
+     *
+     * @param count number of ids to reserve
+     * @return first id of the block
+     */
+    public static synchronized int reserveSensorIds(int count) {
+        int first = nextSensorId;
+        nextSensorId += count;
+        return first;
+    }
+
+    /**
+     * Gives the next sensor created on the current thread the given id,
+     * rather than a new one. This lets a sensor which is recreated, such as
+     * one on a floor paged back in from a store, keep the id of the sensor
+     * it replaces; the id must come from reserveSensorIds(). The id is used
+     * up by the next sensor constructor on the thread even if it throws.
+     *
+     * @param sensorId reserved id to give the next sensor
+     */
+    public static void setThreadSensorId(int sensorId) {
+        threadSensorId.set(sensorId);
+    }
+
+    /**
+     * Returns the source of this sensor's readings.
+     *
+     * @return reading source
+     */
+    public ReadingSource getReadingSource() {
+        return readingSource;
+    }
+
+    /**
+     * Replaces the source of this sensor's readings, for example to feed the
+     * sensor from a QueuedReadingSource instead of its initial array.
+     * The sensor reports the new source's current reading immediately, and
+     * its update frequency and elapsed time are unchanged.
+     *
+     * @param readingSource new source of readings
+     * @throws IllegalArgumentException if readingSource is null
+     */
+    public void setReadingSource(ReadingSource readingSource)
+            throws IllegalArgumentException {
+        if (readingSource == null) {
+            throw new IllegalArgumentException();
+        }
+        int previousReading = getCurrentReading();
+        this.readingSource = readingSource;
+        if (getCurrentReading() != previousReading) {
+            manager.getChangedSensors().mark(this);
+        }
+    }
+
     @Override
     public int getCurrentReading() {
-        return sensorReadings[sensorReadingIndex];
+        return readingSource.getCurrentReading();
     }
 
     @Override
     public void elapseOneMinute() {
         timeElapsed += 1;
         if (timeElapsed % updateFrequency == 0){
-            sensorReadingIndex = (timeElapsed / updateFrequency)
-                    % sensorReadings.length;
+            int previousReading = getCurrentReading();
+            readingSource.advance();
+            if (getCurrentReading() != previousReading) {
+                manager.getChangedSensors().mark(this);
+            }
+        }
+        // read once, as a removed sensor's history may be disabled mid-tick
+        SensorHistory recording = history;
+        if (recording != null) {
+            int hazardLevel = 0;
+            if (this instanceof HazardSensor) {
+                hazardLevel = ((HazardSensor) this).getHazardLevel();
+            }
+            recording.record(getCurrentReading(), hazardLevel);
         }
     }
 
-    private String arrayString(){
+    /**
+     * Advances this sensor by the given number of minutes, moving directly to
+     * the reading it would have after that many calls to elapseOneMinute().
+     * If history is enabled, each minute is still recorded individually.
+     *
+     * @param minutes number of minutes to elapse
+     * @throws IllegalArgumentException if minutes is less than zero
+     */
+    public void elapseMinutes(int minutes) throws IllegalArgumentException {
+        if (minutes < 0) {
+            throw new IllegalArgumentException();
+        }
+        if (history != null) {
+            for (int i = 0; i < minutes; i++) {
+                elapseOneMinute();
+            }
+            return;
+        }
+        int previousReading = getCurrentReading();
+        int updates = (timeElapsed + minutes) / updateFrequency
+                - timeElapsed / updateFrequency;
+        timeElapsed += minutes;
+        readingSource.advance(updates);
+        if (getCurrentReading() != previousReading) {
+            manager.getChangedSensors().mark(this);
+        }
+    }
 
-        String commaSeparatedList = "";
+    /**
+     * Deregisters this sensor from the TimedItemManager it was registered
+     * with when created, so that its reading no longer changes over time,
+     * and disables its history, returning the history's memory to the
+     * budget. This is done when the room containing the sensor is removed.
+     *
+     * @return true if the sensor was still registered; false otherwise
+     */
+    public boolean deregister() {
+        boolean registered = manager.deregisterTimedItem(this);
+        disableHistory();
+        return registered;
+    }
 
-        // converts array of ints to a String of comma separated values
-        for (int i = 0; i < sensorReadings.length; i++) {
-            if (i == sensorReadings.length - 1) {
-                commaSeparatedList = commaSeparatedList + sensorReadings[i];
-            } else {
-                commaSeparatedList = commaSeparatedList +
-                        sensorReadings[i] + ",";
-            }
+    /**
+     * Returns a new array containing the readings this sensor cycles through.
+     * Modifying the returned array does not affect the sensor.
+     *
+     * @return copy of the sensor's readings
+     * @throws IllegalStateException if the sensor's readings do not come from
+     * an ArrayReadingSource
+     */
+    public int[] getSensorReadings() throws IllegalStateException {
+        if (!(readingSource instanceof ArrayReadingSource)) {
+            throw new IllegalStateException();
+        }
+        return ((ArrayReadingSource) readingSource).getReadings();
+    }
+
+    /**
+     * Starts recording this sensor's reading and hazard level every minute,
+     * retaining the given number of minutes. Any previously recorded history
+     * is discarded.
+     *
+     * @param capacity number of minutes of history to retain, for example
+     *                 SensorHistory.MINUTES_PER_DAY
+     * @throws IllegalArgumentException if capacity is less than one
+     * @throws IllegalStateException if enabling history would exceed the
+     * memory budget for sensor histories
+     */
+    public void enableHistory(int capacity)
+            throws IllegalArgumentException, IllegalStateException {
+        SensorHistory newHistory = new SensorHistory(capacity);
+        disableHistory();
+        history = newHistory;
+    }
+
+    /**
+     * Stops recording history for this sensor and releases its memory.
+     */
+    public void disableHistory() {
+        if (history != null) {
+            history.release();
+            history = null;
         }
-        return commaSeparatedList;
+    }
+
+    /**
+     * Returns the recorded history of this sensor.
+     *
+     * @return sensor history, or null if history is not enabled
+     */
+    public SensorHistory getHistory() {
+        return history;
     }
 
     @Override
     public String toString() {
         return "TimedSensor: freq=" + getUpdateFrequency() +
-                ", readings=" + arrayString();
+                ", readings=" + readingSource.toString();
     }
 }
 
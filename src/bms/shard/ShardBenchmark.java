@@ -0,0 +1,138 @@
+package bms.shard;
+
+import bms.building.Building;
+import bms.exceptions.DuplicateFloorException;
+import bms.exceptions.DuplicateRoomException;
+import bms.exceptions.DuplicateSensorException;
+import bms.exceptions.FloorTooSmallException;
+import bms.exceptions.InsufficientSpaceException;
+import bms.exceptions.NoFloorBelowException;
+import bms.floor.Floor;
+import bms.room.Room;
+import bms.room.RoomType;
+import bms.sensors.NoiseSensor;
+import bms.sensors.OccupancySensor;
+import bms.store.BuildingStore;
+import bms.util.TimedItemManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Measures how simulation throughput scales with the number of worker
+ * processes, by ticking the same generated estate with 1 to N workers.
+ *
+ * Every building has the given number of floors and rooms per floor, and
+ * each room has an occupancy and a noise sensor.
+ */
+public class ShardBenchmark {
+
+    /** area of each generated room, in square metres */
+    private static final double ROOM_AREA = 10;
+
+    /** maximum time to wait for the workers at a barrier */
+    private static final long TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+    private ShardBenchmark() {}
+
+    /**
+     * Writes a store for each of the given number of generated buildings.
+     *
+     * @param directory directory to write the stores to
+     * @param buildings number of buildings
+     * @param floors number of floors in each building
+     * @param roomsPerFloor number of rooms on each floor
+     * @return stores written
+     * @throws IOException if a store cannot be written
+     */
+    public static List<Path> writeEstate(Path directory, int buildings,
+                                         int floors, int roomsPerFloor)
+            throws IOException {
+        double side = Math.max(Math.max(Floor.getMinWidth(),
+                Floor.getMinLength()),
+                Math.ceil(Math.sqrt(roomsPerFloor * ROOM_AREA)) + 1);
+        List<Path> stores = new ArrayList<Path>();
+        TimedItemManager previous = TimedItemManager.getThreadManager();
+        TimedItemManager.setThreadManager(TimedItemManager.createManager());
+        try {
+            for (int b = 0; b < buildings; b++) {
+                Building building = new Building("Building " + b);
+                for (int f = 1; f <= floors; f++) {
+                    Floor floor = new Floor(f, side, side);
+                    building.addFloor(floor);
+                    for (int r = 1; r <= roomsPerFloor; r++) {
+                        Room room = new Room(r, RoomType.OFFICE, ROOM_AREA);
+                        floor.addRoom(room);
+                        room.addSensor(new OccupancySensor(
+                                new int[]{0, r % 7, (b + f) % 9, 4}, 1 + r % 3,
+                                8));
+                        room.addSensor(new NoiseSensor(
+                                new int[]{35, 50 + r % 20, 65}, 2));
+                    }
+                }
+                Path store = directory.resolve("building-" + b + ".bms");
+                BuildingStore.write(building, store);
+                stores.add(store);
+            }
+        } catch (NoFloorBelowException | FloorTooSmallException
+                | DuplicateFloorException | DuplicateRoomException
+                | InsufficientSpaceException | DuplicateSensorException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            TimedItemManager.setThreadManager(previous);
+        }
+        return stores;
+    }
+
+    /**
+     * Generates an estate, then ticks it with each number of workers from 1
+     * to the maximum and prints the throughput.
+     *
+     * @param args buildings, floors per building, rooms per floor, maximum
+     *             workers and minutes to simulate
+     * @throws IOException if the stores or segment cannot be written
+     * @throws TimeoutException if a worker stops responding
+     */
+    public static void main(String[] args)
+            throws IOException, TimeoutException {
+        if (args.length != 5) {
+            System.err.println("usage: ShardBenchmark buildings floors "
+                    + "roomsPerFloor maxWorkers minutes");
+            return;
+        }
+        int buildings = Integer.parseInt(args[0]);
+        int floors = Integer.parseInt(args[1]);
+        int roomsPerFloor = Integer.parseInt(args[2]);
+        int maxWorkers = Integer.parseInt(args[3]);
+        int minutes = Integer.parseInt(args[4]);
+        long sensors = 2L * buildings * floors * roomsPerFloor;
+
+        Path directory = Files.createTempDirectory("bms-shards");
+        for (int workers = 1; workers <= maxWorkers; workers++) {
+            // the workers tick the stores in place, so each run starts from
+            // a freshly written estate
+            List<Path> stores = writeEstate(Files.createDirectory(
+                    directory.resolve("run-" + workers)), buildings, floors,
+                    roomsPerFloor);
+            try (ShardLauncher launcher = ShardLauncher.launch(
+                    directory.resolve("run-" + workers).resolve("segment"),
+                    stores, workers, 1, TIMEOUT_NANOS)) {
+                ShardCoordinator coordinator = launcher.getCoordinator();
+                long start = System.nanoTime();
+                for (int i = 0; i < minutes; i++) {
+                    coordinator.elapseMinutes(1);
+                }
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.printf("%d workers: %d minutes in %.3f s "
+                                + "(%.0f sensor-minutes/s, max hazard %d)%n",
+                        workers, minutes, seconds, sensors * minutes / seconds,
+                        coordinator.getMaxHazardLevel());
+            }
+        }
+    }
+}
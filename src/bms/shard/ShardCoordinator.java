@@ -0,0 +1,119 @@
+package bms.shard;
+
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Drives the workers sharing a shard segment in lockstep, and aggregates the
+ * state they publish across the whole estate.
+ *
+ * Each call to elapseMinutes() is one barrier: the clock is moved forward,
+ * and the call returns once every worker has ticked its buildings up to it.
+ */
+public class ShardCoordinator {
+
+    /** segment shared with the workers */
+    private final ShardSegment segment;
+
+    /** maximum time to wait for the workers at a barrier */
+    private final long timeoutNanos;
+
+    /**
+     * Creates a coordinator for the workers sharing the given segment.
+     *
+     * @param segment segment shared with the workers
+     * @param timeoutNanos maximum time to wait for the workers at a barrier
+     * @throws IllegalArgumentException if timeoutNanos is not positive
+     */
+    public ShardCoordinator(ShardSegment segment, long timeoutNanos)
+            throws IllegalArgumentException {
+        if (timeoutNanos <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.segment = segment;
+        this.timeoutNanos = timeoutNanos;
+    }
+
+    /**
+     * Waits until every worker has reached the current clock minute.
+     *
+     * @throws TimeoutException if a worker does not reach it in time
+     */
+    public void awaitWorkers() throws TimeoutException {
+        segment.awaitWorkers(getMinute(), timeoutNanos);
+    }
+
+    /**
+     * Moves the shared clock forward and waits for every worker to tick its
+     * buildings up to it.
+     *
+     * @param minutes number of minutes to advance
+     * @throws IllegalArgumentException if minutes is less than 1, or the
+     * workers have been stopped
+     * @throws TimeoutException if a worker does not catch up in time
+     */
+    public void elapseMinutes(int minutes)
+            throws IllegalArgumentException, TimeoutException {
+        long minute = getMinute();
+        if (minutes < 1 || minute < 0) {
+            throw new IllegalArgumentException();
+        }
+        segment.setClock(minute + minutes);
+        awaitWorkers();
+    }
+
+    /**
+     * Returns the minute the shared clock has reached.
+     *
+     * @return current minute, or -1 if the workers have been stopped
+     */
+    public long getMinute() {
+        return segment.getClock();
+    }
+
+    /**
+     * Returns the highest hazard level in any building of the estate.
+     *
+     * @return maximum hazard level, 0 to 100
+     */
+    public int getMaxHazardLevel() {
+        int max = 0;
+        for (int i = 0; i < segment.getWorkerCount(); i++) {
+            max = Math.max(max, segment.getMaxHazardLevel(i));
+        }
+        return max;
+    }
+
+    /**
+     * Returns the number of rooms in the estate with a fire drill in
+     * progress.
+     *
+     * @return number of rooms with an ongoing fire drill
+     */
+    public int getFireDrillRoomCount() {
+        int total = 0;
+        for (int i = 0; i < segment.getWorkerCount(); i++) {
+            total += segment.getFireDrillRoomCount(i);
+        }
+        return total;
+    }
+
+    /**
+     * Returns the total occupancy of the estate.
+     *
+     * @return number of occupants
+     */
+    public int getOccupancy() {
+        int total = 0;
+        for (int i = 0; i < segment.getWorkerCount(); i++) {
+            total += segment.getOccupancy(i);
+        }
+        return total;
+    }
+
+    /**
+     * Tells every worker to stop once it has completed its current minute.
+     */
+    public void stop() {
+        segment.stop();
+    }
+}
@@ -0,0 +1,120 @@
+package bms.shard;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Starts a ShardWorker process for each shard of an estate on this machine,
+ * sharing a new segment file with a coordinator in this process.
+ *
+ * Building stores are dealt to the workers round-robin. Workers run on the
+ * same Java runtime and class path as this process.
+ */
+public class ShardLauncher implements Closeable {
+
+    /** maximum time to wait for a stopped worker to exit */
+    private static final long EXIT_SECONDS = 10;
+
+    /** segment shared with the workers */
+    private final ShardSegment segment;
+
+    /** coordinator driving the workers */
+    private final ShardCoordinator coordinator;
+
+    /** worker processes, by worker index */
+    private final List<Process> workers;
+
+    private ShardLauncher(ShardSegment segment, ShardCoordinator coordinator) {
+        this.segment = segment;
+        this.coordinator = coordinator;
+        this.workers = new ArrayList<Process>();
+    }
+
+    /**
+     * Starts the given number of worker processes and waits until each has
+     * opened its buildings and published their initial state.
+     *
+     * @param segmentFile file to create as the shared segment
+     * @param stores building stores to simulate
+     * @param workerCount number of worker processes
+     * @param maxResidentFloors maximum number of resident floors in each
+     *                          building
+     * @param timeoutNanos maximum time to wait for the workers at a barrier
+     * @return launcher for the running workers
+     * @throws IllegalArgumentException if workerCount is less than 1
+     * @throws IOException if the segment cannot be created or a worker
+     * cannot be started
+     * @throws TimeoutException if a worker does not start in time
+     */
+    public static ShardLauncher launch(Path segmentFile, List<Path> stores,
+                                       int workerCount, int maxResidentFloors,
+                                       long timeoutNanos)
+            throws IllegalArgumentException, IOException, TimeoutException {
+        ShardSegment segment = ShardSegment.create(segmentFile, workerCount);
+        ShardLauncher launcher = new ShardLauncher(segment,
+                new ShardCoordinator(segment, timeoutNanos));
+        try {
+            String java = Paths.get(System.getProperty("java.home"), "bin",
+                    "java").toString();
+            for (int i = 0; i < workerCount; i++) {
+                List<String> command = new ArrayList<String>();
+                command.add(java);
+                command.add("-cp");
+                command.add(System.getProperty("java.class.path"));
+                command.add(ShardWorker.class.getName());
+                command.add(segmentFile.toString());
+                command.add(Integer.toString(i));
+                command.add(Integer.toString(maxResidentFloors));
+                for (int j = i; j < stores.size(); j += workerCount) {
+                    command.add(stores.get(j).toString());
+                }
+                launcher.workers.add(new ProcessBuilder(command)
+                        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                        .redirectError(ProcessBuilder.Redirect.INHERIT)
+                        .start());
+            }
+            launcher.coordinator.awaitWorkers();
+        } catch (IOException | TimeoutException | RuntimeException e) {
+            launcher.close();
+            throw e;
+        }
+        return launcher;
+    }
+
+    /**
+     * Returns the coordinator driving the workers.
+     *
+     * @return coordinator
+     */
+    public ShardCoordinator getCoordinator() {
+        return coordinator;
+    }
+
+    /**
+     * Stops the workers, waits for their processes to exit, killing any
+     * which do not, and closes the segment.
+     *
+     * @throws IOException if the segment cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        coordinator.stop();
+        for (Process worker : workers) {
+            try {
+                if (!worker.waitFor(EXIT_SECONDS, TimeUnit.SECONDS)) {
+                    worker.destroyForcibly();
+                }
+            } catch (InterruptedException e) {
+                worker.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+        segment.close();
+    }
+}
@@ -0,0 +1,308 @@
+package bms.shard;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A file mapped into the memory of a coordinator and its worker processes,
+ * holding the shared simulation clock and each worker's progress and
+ * aggregated building state.
+ *
+ * The coordinator moves the clock forward; each worker waits for the clock
+ * to pass the minute it has completed, ticks its buildings up to the clock,
+ * then publishes its aggregates followed by the minute it reached. Every
+ * field is a long read with acquire and written with release semantics
+ * through a VarHandle view of the mapping, so a worker's aggregates are
+ * visible to any process that has seen its completed minute.
+ *
+ * The layout is a header line holding the magic number, worker count and
+ * clock, followed by one line per worker holding its completed minute,
+ * maximum hazard level, rooms in a fire drill and occupancy. Each line is
+ * 64 bytes so that workers never write to the same cache line.
+ */
+public class ShardSegment implements Closeable {
+
+    /** identifies a shard segment file */
+    private static final long MAGIC = 0x424d53534847L;
+
+    /** size of the header and of each worker's line */
+    private static final int LINE_BYTES = 64;
+
+    /** position of the worker count */
+    private static final int WORKERS = 8;
+
+    /** position of the clock */
+    private static final int CLOCK = 16;
+
+    /** offsets of the fields within a worker's line */
+    private static final int COMPLETED = 0;
+    private static final int MAX_HAZARD = 8;
+    private static final int FIRE_DRILL_ROOMS = 16;
+    private static final int OCCUPANCY = 24;
+
+    /** clock value telling workers to stop */
+    private static final long STOPPED = -1;
+
+    /** number of busy-wait iterations before parking while waiting */
+    private static final int SPINS = 1000;
+
+    /** time parked between checks once spinning gives up */
+    private static final long PARK_NANOS = 20_000;
+
+    /** atomic long view of the mapping */
+    private static final VarHandle LONGS =
+            MethodHandles.byteBufferViewVarHandle(long[].class,
+                    ByteOrder.nativeOrder());
+
+    /** channel of the mapped file */
+    private final FileChannel channel;
+
+    /** mapped contents of the file */
+    private final MappedByteBuffer buffer;
+
+    /** number of workers sharing the segment */
+    private final int workerCount;
+
+    private ShardSegment(FileChannel channel, MappedByteBuffer buffer,
+                         int workerCount) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.workerCount = workerCount;
+    }
+
+    /**
+     * Creates a new segment file for the given number of workers, replacing
+     * any existing file. The clock starts at minute zero, and no worker has
+     * completed any minute.
+     *
+     * @param file file to create
+     * @param workerCount number of workers
+     * @return new segment
+     * @throws IllegalArgumentException if workerCount is less than 1
+     * @throws IOException if the file cannot be created
+     */
+    public static ShardSegment create(Path file, int workerCount)
+            throws IllegalArgumentException, IOException {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException();
+        }
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE,
+                0, (long) LINE_BYTES * (workerCount + 1));
+        ShardSegment segment = new ShardSegment(channel, buffer, workerCount);
+        LONGS.setRelease(buffer, WORKERS, (long) workerCount);
+        LONGS.setRelease(buffer, CLOCK, 0L);
+        for (int i = 0; i < workerCount; i++) {
+            LONGS.setRelease(buffer, segment.line(i) + COMPLETED, -1L);
+        }
+        LONGS.setRelease(buffer, 0, MAGIC);
+        return segment;
+    }
+
+    /**
+     * Opens a segment file created by another process.
+     *
+     * @param file file to open
+     * @return segment
+     * @throws IllegalArgumentException if the file is not a shard segment
+     * @throws IOException if the file cannot be opened
+     */
+    public static ShardSegment open(Path file)
+            throws IllegalArgumentException, IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            if (channel.size() < LINE_BYTES * 2) {
+                throw new IllegalArgumentException();
+            }
+            MappedByteBuffer buffer = channel.map(
+                    FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            long workers = (long) LONGS.getAcquire(buffer, WORKERS);
+            if ((long) LONGS.getAcquire(buffer, 0) != MAGIC || workers < 1
+                    || (workers + 1) * LINE_BYTES > channel.size()) {
+                throw new IllegalArgumentException();
+            }
+            return new ShardSegment(channel, buffer, (int) workers);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the number of workers sharing the segment.
+     *
+     * @return number of workers
+     */
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    /**
+     * Returns the minute the clock has been moved to.
+     *
+     * @return clock minute, or -1 if the workers have been told to stop
+     */
+    public long getClock() {
+        return (long) LONGS.getAcquire(buffer, CLOCK);
+    }
+
+    /**
+     * Moves the clock to the given minute. Only the coordinator may call
+     * this.
+     *
+     * @param minute new clock minute
+     */
+    void setClock(long minute) {
+        LONGS.setRelease(buffer, CLOCK, minute);
+    }
+
+    /**
+     * Tells every worker to stop once it has completed its current minute.
+     */
+    void stop() {
+        LONGS.setRelease(buffer, CLOCK, STOPPED);
+    }
+
+    /**
+     * Waits until the clock is moved past the given minute or the workers
+     * are told to stop.
+     *
+     * @param minute minute the caller has completed
+     * @return new clock minute, or -1 if the workers have been told to stop
+     */
+    long awaitClockAfter(long minute) {
+        int spins = 0;
+        while (true) {
+            long clock = getClock();
+            if (clock == STOPPED || clock > minute) {
+                return clock;
+            }
+            spins = pause(spins);
+        }
+    }
+
+    /**
+     * Publishes a worker's aggregates and the minute it has completed.
+     *
+     * @param worker index of the worker
+     * @param minute minute the worker has completed
+     * @param maxHazardLevel highest hazard level in the worker's buildings
+     * @param fireDrillRooms number of rooms in a fire drill
+     * @param occupancy total occupancy of the worker's buildings
+     */
+    void publish(int worker, long minute, int maxHazardLevel,
+                 int fireDrillRooms, int occupancy) {
+        int line = line(worker);
+        LONGS.setRelease(buffer, line + MAX_HAZARD, (long) maxHazardLevel);
+        LONGS.setRelease(buffer, line + FIRE_DRILL_ROOMS,
+                (long) fireDrillRooms);
+        LONGS.setRelease(buffer, line + OCCUPANCY, (long) occupancy);
+        LONGS.setRelease(buffer, line + COMPLETED, minute);
+    }
+
+    /**
+     * Waits until every worker has completed at least the given minute.
+     *
+     * @param minute minute to wait for
+     * @param timeoutNanos maximum time to wait
+     * @throws TimeoutException if a worker has not completed the minute
+     * before the timeout
+     */
+    void awaitWorkers(long minute, long timeoutNanos)
+            throws TimeoutException {
+        long deadline = System.nanoTime() + timeoutNanos;
+        for (int i = 0; i < workerCount; i++) {
+            int spins = 0;
+            while (getCompletedMinute(i) < minute) {
+                if (System.nanoTime() - deadline > 0) {
+                    throw new TimeoutException("worker " + i
+                            + " has not completed minute " + minute);
+                }
+                spins = pause(spins);
+            }
+        }
+    }
+
+    /**
+     * Returns the last minute the given worker has completed.
+     *
+     * @param worker index of the worker
+     * @return completed minute, or -1 if the worker has not started
+     */
+    public long getCompletedMinute(int worker) {
+        return (long) LONGS.getAcquire(buffer, line(worker) + COMPLETED);
+    }
+
+    /**
+     * Returns the highest hazard level last published by the given worker.
+     *
+     * @param worker index of the worker
+     * @return maximum hazard level, 0 to 100
+     */
+    public int getMaxHazardLevel(int worker) {
+        return (int) (long) LONGS.getAcquire(buffer,
+                line(worker) + MAX_HAZARD);
+    }
+
+    /**
+     * Returns the number of rooms in a fire drill last published by the
+     * given worker.
+     *
+     * @param worker index of the worker
+     * @return number of rooms with an ongoing fire drill
+     */
+    public int getFireDrillRoomCount(int worker) {
+        return (int) (long) LONGS.getAcquire(buffer,
+                line(worker) + FIRE_DRILL_ROOMS);
+    }
+
+    /**
+     * Returns the occupancy last published by the given worker.
+     *
+     * @param worker index of the worker
+     * @return number of occupants
+     */
+    public int getOccupancy(int worker) {
+        return (int) (long) LONGS.getAcquire(buffer,
+                line(worker) + OCCUPANCY);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private int line(int worker) {
+        if (worker < 0 || worker >= workerCount) {
+            throw new IndexOutOfBoundsException();
+        }
+        return LINE_BYTES * (worker + 1);
+    }
+
+    /**
+     * Spins briefly, then parks, while waiting on another process.
+     *
+     * @return number of pauses so far
+     */
+    private static int pause(int spins) {
+        if (spins < SPINS) {
+            Thread.onSpinWait();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+        return spins + 1;
+    }
+}
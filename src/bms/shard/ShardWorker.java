@@ -0,0 +1,174 @@
+package bms.shard;
+
+import bms.store.PagedBuilding;
+import bms.util.TimedItemManager;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Simulates one shard of an estate: a set of buildings, opened as paged
+ * buildings from their stores and ticked by the worker's own
+ * TimedItemManager in step with the clock in a shard segment.
+ *
+ * A worker is normally run in its own process by ShardLauncher, but can also
+ * be run on a thread for testing.
+ */
+public class ShardWorker implements Runnable {
+
+    /** segment shared with the coordinator */
+    private final ShardSegment segment;
+
+    /** index of this worker in the segment */
+    private final int workerIndex;
+
+    /** manager ticking this worker's buildings */
+    private final TimedItemManager manager;
+
+    /** buildings simulated by this worker */
+    private final List<PagedBuilding> buildings;
+
+    /**
+     * Creates a worker simulating the buildings in the given stores.
+     *
+     * @param segment segment shared with the coordinator
+     * @param workerIndex index of this worker in the segment
+     * @param stores building stores written by BuildingStore.write()
+     * @param maxResidentFloors maximum number of resident floors in each
+     *                          building
+     * @throws IllegalArgumentException if workerIndex is not a worker of the
+     * segment, or a file is not a building store
+     * @throws IOException if a store cannot be opened
+     */
+    public ShardWorker(ShardSegment segment, int workerIndex,
+                       List<Path> stores, int maxResidentFloors)
+            throws IllegalArgumentException, IOException {
+        if (workerIndex < 0 || workerIndex >= segment.getWorkerCount()) {
+            throw new IllegalArgumentException();
+        }
+        this.segment = segment;
+        this.workerIndex = workerIndex;
+        manager = TimedItemManager.createManager();
+        buildings = new ArrayList<PagedBuilding>(stores.size());
+        TimedItemManager previous = TimedItemManager.getThreadManager();
+        TimedItemManager.setThreadManager(manager);
+        try {
+            for (Path store : stores) {
+                buildings.add(new PagedBuilding(store, maxResidentFloors));
+            }
+        } catch (IOException | RuntimeException e) {
+            try {
+                close();
+            } catch (IOException closeFailure) {
+                e.addSuppressed(closeFailure);
+            }
+            throw e;
+        } finally {
+            TimedItemManager.setThreadManager(previous);
+        }
+    }
+
+    /**
+     * Publishes the initial state of the worker's buildings, then ticks them
+     * up to each new clock minute until the coordinator stops the workers.
+     * The buildings are closed on return.
+     *
+     * @throws UncheckedIOException if a building's store could not be
+     * closed, so that its state may not have been saved
+     */
+    @Override
+    public void run() throws UncheckedIOException {
+        try {
+            simulate();
+        } catch (Throwable e) {
+            try {
+                close();
+            } catch (IOException closeFailure) {
+                e.addSuppressed(closeFailure);
+            }
+            throw e;
+        }
+        try {
+            close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void simulate() {
+        long minute = 0;
+        publish(minute);
+        while (true) {
+            long clock = segment.awaitClockAfter(minute);
+            if (clock < 0) {
+                return;
+            }
+            manager.elapseMinutes((int) (clock - minute));
+            minute = clock;
+            publish(minute);
+        }
+    }
+
+    private void publish(long minute) {
+        int maxHazard = 0;
+        int fireDrillRooms = 0;
+        int occupancy = 0;
+        for (PagedBuilding building : buildings) {
+            maxHazard = Math.max(maxHazard, building.getMaxHazardLevel());
+            fireDrillRooms += building.getFireDrillRoomCount();
+            occupancy += building.getOccupancy();
+        }
+        segment.publish(workerIndex, minute, maxHazard, fireDrillRooms,
+                occupancy);
+    }
+
+    /**
+     * Closes every building, carrying on past any which fail so that the
+     * other stores still close, then throws the first failure with any later
+     * ones suppressed.
+     */
+    private void close() throws IOException {
+        IOException failure = null;
+        for (PagedBuilding building : buildings) {
+            try {
+                building.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Runs a worker in this process until the coordinator stops it.
+     *
+     * @param args segment file, worker index, maximum resident floors per
+     *             building, then the building stores to simulate
+     * @throws IOException if the segment or a store cannot be opened
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("usage: ShardWorker segment workerIndex "
+                    + "maxResidentFloors store...");
+            System.exit(2);
+        }
+        List<Path> stores = new ArrayList<Path>();
+        for (int i = 3; i < args.length; i++) {
+            stores.add(Paths.get(args[i]));
+        }
+        try (ShardSegment segment = ShardSegment.open(Paths.get(args[0]))) {
+            new ShardWorker(segment, Integer.parseInt(args[1]), stores,
+                    Integer.parseInt(args[2])).run();
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package bms.store;
+
+import bms.building.Building;
+import bms.floor.Floor;
+import bms.room.Room;
+import bms.sensors.ArrayReadingSource;
+import bms.sensors.CarbonDioxideSensor;
+import bms.sensors.NoiseSensor;
+import bms.sensors.OccupancySensor;
+import bms.sensors.Sensor;
+import bms.sensors.TemperatureSensor;
+import bms.sensors.TimedSensor;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes buildings to a file laid out as fixed-size primitive records, which
+ * PagedBuilding maps into memory.
+ *
+ * The file holds a header, then tables of floor, room and sensor records,
+ * then the readings of every sensor:
+ *
+ * <pre>
+ * header  int magic, int version, int floors, int rooms, int sensors,
+ *         int floor table, int room table, int sensor table,
+ *         int name length, name bytes (UTF-8)
+ * floor   int number, double width, double length, int first room,
+ *         int room count
+ * room    int number, byte type, double area, byte fire drill,
+ *         int first sensor, int sensor count
+ * sensor  byte type, int update frequency, int parameter, int parameter,
+ *         int time elapsed, int reading index, int reading count,
+ *         int readings position
+ * </pre>
+ *
+ * Each sensor's time elapsed and reading index are updated in place as the
+ * store is ticked.
+ */
+public final class BuildingStore {
+
+    /** identifies a building store file */
+    static final int MAGIC = 0x424d5350;
+
+    /** version of the file layout */
+    static final int VERSION = 1;
+
+    /** position of the floor count in the header */
+    static final int FLOOR_COUNT = 8;
+
+    /** position of the room count in the header */
+    static final int ROOM_COUNT = 12;
+
+    /** position of the sensor count in the header */
+    static final int SENSOR_COUNT = 16;
+
+    /** position of the floor table offset in the header */
+    static final int FLOOR_TABLE = 20;
+
+    /** position of the room table offset in the header */
+    static final int ROOM_TABLE = 24;
+
+    /** position of the sensor table offset in the header */
+    static final int SENSOR_TABLE = 28;
+
+    /** position of the name length in the header */
+    static final int NAME = 32;
+
+    /** size of a floor record */
+    static final int FLOOR_BYTES = 28;
+
+    /** size of a room record */
+    static final int ROOM_BYTES = 22;
+
+    /** size of a sensor record */
+    static final int SENSOR_BYTES = 29;
+
+    /** offset of a room's fire drill flag within its record */
+    static final int ROOM_FIRE_DRILL = 13;
+
+    /** offset of a sensor's update frequency within its record */
+    static final int SENSOR_FREQUENCY = 1;
+
+    /** offset of a sensor's time elapsed within its record */
+    static final int SENSOR_TIME = 13;
+
+    /** offset of a sensor's reading index within its record */
+    static final int SENSOR_INDEX = 17;
+
+    /** offset of a sensor's reading count within its record */
+    static final int SENSOR_COUNT_OFFSET = 21;
+
+    /** offset of a sensor's readings position within its record */
+    static final int SENSOR_READINGS = 25;
+
+    /** sensor classes, indexed by type code */
+    static final String[] SENSOR_TYPES = {
+            "CarbonDioxideSensor",
+            "NoiseSensor",
+            "OccupancySensor",
+            "TemperatureSensor"
+    };
+
+    private BuildingStore() {}
+
+    /**
+     * Writes the given building, with the current state of all its sensors,
+     * to a new store file, replacing any existing file.
+     *
+     * @param building building to write
+     * @param file file to write to
+     * @throws IllegalArgumentException if a sensor is not one of the four
+     * concrete sensor types or does not take its readings from an array
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Building building, Path file)
+            throws IllegalArgumentException, IOException {
+        List<Floor> floors = building.getFloors();
+        List<Room> rooms = new ArrayList<Room>();
+        List<TimedSensor> sensors = new ArrayList<TimedSensor>();
+        long readingBytes = 0;
+        for (Floor floor : floors) {
+            for (Room room : floor.getRooms()) {
+                rooms.add(room);
+                for (Sensor sensor : room.getSensors()) {
+                    if (!(sensor instanceof TimedSensor)
+                            || !(((TimedSensor) sensor).getReadingSource()
+                            instanceof ArrayReadingSource)) {
+                        throw new IllegalArgumentException();
+                    }
+                    typeCode((TimedSensor) sensor);
+                    sensors.add((TimedSensor) sensor);
+                    readingBytes += (long) Integer.BYTES
+                            * ((TimedSensor) sensor).getSensorReadings().length;
+                }
+            }
+        }
+
+        byte[] name = building.getName().getBytes(StandardCharsets.UTF_8);
+        long floorTable = NAME + Integer.BYTES + name.length;
+        long roomTable = floorTable + (long) FLOOR_BYTES * floors.size();
+        long sensorTable = roomTable + (long) ROOM_BYTES * rooms.size();
+        long readingsStart = sensorTable
+                + (long) SENSOR_BYTES * sensors.size();
+        long size = readingsStart + readingBytes;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException();
+        }
+
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer buffer = channel.map(
+                    FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(floors.size())
+                    .putInt(rooms.size()).putInt(sensors.size())
+                    .putInt((int) floorTable).putInt((int) roomTable)
+                    .putInt((int) sensorTable).putInt(name.length).put(name);
+
+            int roomIndex = 0;
+            for (Floor floor : floors) {
+                int roomCount = floor.getRooms().size();
+                buffer.putInt(floor.getFloorNumber())
+                        .putDouble(floor.getWidth())
+                        .putDouble(floor.getLength())
+                        .putInt(roomIndex).putInt(roomCount);
+                roomIndex += roomCount;
+            }
+
+            int sensorIndex = 0;
+            for (Room room : rooms) {
+                int sensorCount = room.getSensors().size();
+                buffer.putInt(room.getRoomNumber())
+                        .put((byte) room.getType().ordinal())
+                        .putDouble(room.getArea())
+                        .put((byte) (room.fireDrillOngoing() ? 1 : 0))
+                        .putInt(sensorIndex).putInt(sensorCount);
+                sensorIndex += sensorCount;
+            }
+
+            int readingsPosition = (int) readingsStart;
+            for (TimedSensor sensor : sensors) {
+                int[] readings = sensor.getSensorReadings();
+                int current = sensor.getTimeElapsed()
+                        / sensor.getUpdateFrequency() % readings.length;
+                buffer.put(typeCode(sensor))
+                        .putInt(sensor.getUpdateFrequency())
+                        .putInt(firstParameter(sensor))
+                        .putInt(secondParameter(sensor))
+                        .putInt(sensor.getTimeElapsed())
+                        .putInt(current)
+                        .putInt(readings.length)
+                        .putInt(readingsPosition);
+                readingsPosition += Integer.BYTES * readings.length;
+            }
+            for (TimedSensor sensor : sensors) {
+                for (int reading : sensor.getSensorReadings()) {
+                    buffer.putInt(reading);
+                }
+            }
+            buffer.force();
+        }
+    }
+
+    private static byte typeCode(TimedSensor sensor)
+            throws IllegalArgumentException {
+        String type = sensor.getClass().getSimpleName();
+        for (int i = 0; i < SENSOR_TYPES.length; i++) {
+            if (SENSOR_TYPES[i].equals(type)) {
+                return (byte) i;
+            }
+        }
+        throw new IllegalArgumentException();
+    }
+
+    private static int firstParameter(TimedSensor sensor) {
+        if (sensor instanceof OccupancySensor) {
+            return ((OccupancySensor) sensor).getCapacity();
+        } else if (sensor instanceof CarbonDioxideSensor) {
+            return ((CarbonDioxideSensor) sensor).getIdealValue();
+        }
+        return 0;
+    }
+
+    private static int secondParameter(TimedSensor sensor) {
+        if (sensor instanceof CarbonDioxideSensor) {
+            return ((CarbonDioxideSensor) sensor).getVariationLimit();
+        }
+        return 0;
+    }
+}
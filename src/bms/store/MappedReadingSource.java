@@ -0,0 +1,45 @@
+package bms.store;
+
+import bms.sensors.ReadingSource;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads a sensor's current reading directly from its record in a building
+ * store, so that a materialised sensor always reports the state that the
+ * store's ticking has reached.
+ */
+class MappedReadingSource implements ReadingSource {
+
+    /** mapped store */
+    private final ByteBuffer buffer;
+
+    /** position of the sensor's current reading index */
+    private final int indexPosition;
+
+    /** position of the sensor's first reading */
+    private final int readingsPosition;
+
+    /** number of readings in the sensor's cycle */
+    private final int readingCount;
+
+    MappedReadingSource(ByteBuffer buffer, int indexPosition,
+                        int readingsPosition, int readingCount) {
+        this.buffer = buffer;
+        this.indexPosition = indexPosition;
+        this.readingsPosition = readingsPosition;
+        this.readingCount = readingCount;
+    }
+
+    @Override
+    public int getCurrentReading() {
+        return buffer.getInt(readingsPosition
+                + Integer.BYTES * buffer.getInt(indexPosition));
+    }
+
+    @Override
+    public void advance() {
+        buffer.putInt(indexPosition,
+                (buffer.getInt(indexPosition) + 1) % readingCount);
+    }
+}
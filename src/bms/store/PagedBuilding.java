@@ -0,0 +1,528 @@
+package bms.store;
+
+import bms.exceptions.DuplicateRoomException;
+import bms.exceptions.DuplicateSensorException;
+import bms.exceptions.InsufficientSpaceException;
+import bms.floor.Floor;
+import bms.room.Room;
+import bms.room.RoomType;
+import bms.sensors.SensorConfig;
+import bms.sensors.TimedSensor;
+import bms.util.TimedItem;
+import bms.util.TimedItemManager;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A building whose floors, rooms and sensors are kept in a memory-mapped
+ * file written by BuildingStore, and are only created as objects when they
+ * are first accessed.
+ *
+ * At most a fixed number of floors are resident at once; accessing another
+ * floor evicts the least recently accessed one. Sensors on resident floors
+ * are ordinary timed sensors, registered with the same TimedItemManager as
+ * the paged building, which read and advance their reading index in the
+ * file. The paged building ticks every other sensor by updating its record
+ * in place, so time passes for the whole building without any objects being
+ * created.
+ *
+ * Each sensor record is given one sensor id the first time its floor is
+ * loaded, and every sensor later created for the record reuses it, so
+ * change sets and logs keyed by sensor id see one sensor per record however
+ * often its floor is evicted and loaded again.
+ *
+ * Fire drill flags and elapsed times of resident floors are written back to
+ * the file when the floor is evicted, flushed or closed. Rooms and sensors
+ * added to or removed from a resident floor are not written back.
+ */
+public class PagedBuilding implements TimedItem, Closeable {
+
+    /** type code of occupancy sensors */
+    private static final byte OCCUPANCY_SENSOR = 2;
+
+    /** channel of the mapped file */
+    private final FileChannel channel;
+
+    /** mapped contents of the file */
+    private final MappedByteBuffer buffer;
+
+    /** manager the building and its resident sensors are registered with */
+    private final TimedItemManager manager;
+
+    /** name of the building */
+    private final String name;
+
+    /** number of floors in the building */
+    private final int floorCount;
+
+    /** positions of the floor, room and sensor tables */
+    private final int floorTable;
+    private final int roomTable;
+    private final int sensorTable;
+
+    /** index of the first sensor on each floor, plus one past the last */
+    private final int[] floorSensors;
+
+    /** configuration of each sensor, or null until first needed */
+    private final SensorConfig[] configs;
+
+    /**
+     * first of the ids reserved for each floor's sensors, in record order, or
+     * -1 if the floor has never been loaded
+     */
+    private final int[] sensorIds;
+
+    /** each resident floor by floor index, or null if not resident */
+    private final ResidentFloor[] resident;
+
+    /** maximum number of resident floors */
+    private final int maxResidentFloors;
+
+    /** resident floors by floor index, least recently accessed first */
+    private final LinkedHashMap<Integer, ResidentFloor> residentFloors;
+
+    /**
+     * Opens a building store written by BuildingStore.write(), and registers
+     * the paged building with the current TimedItemManager.
+     *
+     * @param file store to open
+     * @param maxResidentFloors maximum number of floors kept as objects
+     * @throws IllegalArgumentException if maxResidentFloors is less than 1,
+     * or the file is not a building store
+     * @throws IOException if the file cannot be opened
+     */
+    public PagedBuilding(Path file, int maxResidentFloors)
+            throws IllegalArgumentException, IOException {
+        if (maxResidentFloors < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.maxResidentFloors = maxResidentFloors;
+        channel = FileChannel.open(file, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    channel.size());
+            if (buffer.limit() < BuildingStore.NAME + Integer.BYTES
+                    || buffer.getInt(0) != BuildingStore.MAGIC
+                    || buffer.getInt(Integer.BYTES)
+                    != BuildingStore.VERSION) {
+                throw new IllegalArgumentException();
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+
+        floorCount = buffer.getInt(BuildingStore.FLOOR_COUNT);
+        floorTable = buffer.getInt(BuildingStore.FLOOR_TABLE);
+        roomTable = buffer.getInt(BuildingStore.ROOM_TABLE);
+        sensorTable = buffer.getInt(BuildingStore.SENSOR_TABLE);
+        byte[] nameBytes = new byte[buffer.getInt(BuildingStore.NAME)];
+        for (int i = 0; i < nameBytes.length; i++) {
+            nameBytes[i] = buffer.get(BuildingStore.NAME + Integer.BYTES + i);
+        }
+        name = new String(nameBytes, StandardCharsets.UTF_8);
+
+        floorSensors = new int[floorCount + 1];
+        for (int f = 0; f < floorCount; f++) {
+            int firstRoom = buffer.getInt(floorPosition(f) + 20);
+            floorSensors[f] = firstRoom
+                    < buffer.getInt(BuildingStore.ROOM_COUNT)
+                    ? buffer.getInt(roomPosition(firstRoom) + 14)
+                    : buffer.getInt(BuildingStore.SENSOR_COUNT);
+        }
+        floorSensors[floorCount] = buffer.getInt(BuildingStore.SENSOR_COUNT);
+
+        configs = new SensorConfig[floorSensors[floorCount]];
+        sensorIds = new int[floorCount];
+        Arrays.fill(sensorIds, -1);
+        resident = new ResidentFloor[floorCount];
+        residentFloors = new LinkedHashMap<Integer, ResidentFloor>(
+                16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<Integer, ResidentFloor> eldest) {
+                if (size() > PagedBuilding.this.maxResidentFloors) {
+                    evict(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        manager = TimedItemManager.getInstance();
+        manager.registerTimedItem(this);
+    }
+
+    /**
+     * Returns the name of the building.
+     *
+     * @return name of the building
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the numbers of the building's floors, in the order they were
+     * added to the building. No floors are loaded.
+     *
+     * @return floor numbers
+     */
+    public int[] getFloorNumbers() {
+        int[] numbers = new int[floorCount];
+        for (int f = 0; f < floorCount; f++) {
+            numbers[f] = buffer.getInt(floorPosition(f));
+        }
+        return numbers;
+    }
+
+    /**
+     * Returns the number of floors currently held as objects.
+     *
+     * @return number of resident floors
+     */
+    public synchronized int getResidentFloorCount() {
+        return residentFloors.size();
+    }
+
+    /**
+     * Returns the floor with the given number, loading it from the store if
+     * it is not resident. The returned floor stays usable after it is
+     * evicted, but its sensors stop ticking and report whichever reading the
+     * store has since reached.
+     *
+     * @param floorNumber number of the floor
+     * @return floor with the given number, or null if there is no such floor
+     */
+    public synchronized Floor getFloorByNumber(int floorNumber) {
+        for (int f = 0; f < floorCount; f++) {
+            if (buffer.getInt(floorPosition(f)) == floorNumber) {
+                ResidentFloor entry = residentFloors.get(f);
+                if (entry == null) {
+                    entry = load(f);
+                    residentFloors.put(f, entry);
+                }
+                return entry.floor;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the room with the given number on the given floor, loading the
+     * floor from the store if it is not resident.
+     *
+     * @param floorNumber number of the floor
+     * @param roomNumber number of the room on the floor
+     * @return room, or null if there is no such floor or room
+     */
+    public Room getRoomByNumber(int floorNumber, int roomNumber) {
+        Floor floor = getFloorByNumber(floorNumber);
+        return floor == null ? null : floor.getRoomByNumber(roomNumber);
+    }
+
+    /**
+     * Returns the highest hazard level reported by any sensor in the
+     * building, read from the sensor records without loading any floors.
+     *
+     * @return maximum hazard level, 0 to 100; or 0 if there are no sensors
+     */
+    public synchronized int getMaxHazardLevel() {
+        int max = 0;
+        for (int s = 0; s < configs.length; s++) {
+            max = Math.max(max, config(s).getHazardLevel(buffer.getInt(
+                    sensorPosition(s) + BuildingStore.SENSOR_INDEX)));
+        }
+        return max;
+    }
+
+    /**
+     * Returns the total reading of every occupancy sensor in the building,
+     * read from the sensor records without loading any floors.
+     *
+     * @return number of occupants
+     */
+    public synchronized int getOccupancy() {
+        int total = 0;
+        for (int s = 0; s < configs.length; s++) {
+            int position = sensorPosition(s);
+            if (buffer.get(position) == OCCUPANCY_SENSOR) {
+                total += config(s).getReading(buffer.getInt(
+                        position + BuildingStore.SENSOR_INDEX));
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Returns the number of rooms in the building with a fire drill in
+     * progress, without loading any floors.
+     *
+     * @return number of rooms with an ongoing fire drill
+     */
+    public synchronized int getFireDrillRoomCount() {
+        int count = 0;
+        for (int f = 0; f < floorCount; f++) {
+            ResidentFloor entry = resident[f];
+            int firstRoom = buffer.getInt(floorPosition(f) + 20);
+            int roomCount = buffer.getInt(floorPosition(f) + 24);
+            for (int r = 0; r < roomCount; r++) {
+                boolean drill = entry != null
+                        ? entry.rooms.get(r).fireDrillOngoing()
+                        : buffer.get(roomPosition(firstRoom + r)
+                        + BuildingStore.ROOM_FIRE_DRILL) != 0;
+                if (drill) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Advances every sensor on a floor that is not resident by one minute,
+     * directly in the mapped file. Sensors on resident floors are ticked by
+     * the manager themselves.
+     */
+    @Override
+    public synchronized void elapseOneMinute() {
+        for (int f = 0; f < floorCount; f++) {
+            if (resident[f] != null) {
+                continue;
+            }
+            for (int s = floorSensors[f]; s < floorSensors[f + 1]; s++) {
+                int position = sensorPosition(s);
+                int timeElapsed = buffer.getInt(
+                        position + BuildingStore.SENSOR_TIME) + 1;
+                buffer.putInt(position + BuildingStore.SENSOR_TIME,
+                        timeElapsed);
+                if (timeElapsed % buffer.getInt(
+                        position + BuildingStore.SENSOR_FREQUENCY) == 0) {
+                    int index = position + BuildingStore.SENSOR_INDEX;
+                    buffer.putInt(index, (buffer.getInt(index) + 1)
+                            % buffer.getInt(position
+                            + BuildingStore.SENSOR_COUNT_OFFSET));
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the state of every resident floor back to the file and forces
+     * the file's contents to storage.
+     */
+    public synchronized void flush() {
+        for (ResidentFloor entry : residentFloors.values()) {
+            writeBack(entry);
+        }
+        buffer.force();
+    }
+
+    /**
+     * Evicts every resident floor, deregisters the paged building from its
+     * manager and closes the file.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        for (ResidentFloor entry : residentFloors.values()) {
+            evict(entry);
+        }
+        residentFloors.clear();
+        manager.deregisterTimedItem(this);
+        buffer.force();
+        channel.close();
+    }
+
+    /**
+     * Creates the floor at the given index, with its rooms and sensors, from
+     * its records.
+     */
+    private ResidentFloor load(int f) {
+        int floorPosition = floorPosition(f);
+        Floor floor = new Floor(buffer.getInt(floorPosition),
+                buffer.getDouble(floorPosition + 4),
+                buffer.getDouble(floorPosition + 12));
+        int firstRoom = buffer.getInt(floorPosition + 20);
+        int roomCount = buffer.getInt(floorPosition + 24);
+        List<Room> rooms = new ArrayList<Room>(roomCount);
+        List<TimedSensor> sensors = new ArrayList<TimedSensor>(
+                floorSensors[f + 1] - floorSensors[f]);
+
+        if (sensorIds[f] < 0) {
+            sensorIds[f] = TimedSensor.reserveSensorIds(
+                    floorSensors[f + 1] - floorSensors[f]);
+        }
+
+        // rooms are given their sensors and drill flags before joining the
+        // floor, so the floor publishes one snapshot rather than one for
+        // every room and sensor
+        TimedItemManager previous = TimedItemManager.getThreadManager();
+        TimedItemManager.setThreadManager(manager);
+        try {
+            for (int r = firstRoom; r < firstRoom + roomCount; r++) {
+                int roomPosition = roomPosition(r);
+                Room room = new Room(buffer.getInt(roomPosition),
+                        RoomType.values()[buffer.get(roomPosition + 4)],
+                        buffer.getDouble(roomPosition + 5));
+                int firstSensor = buffer.getInt(roomPosition + 14);
+                int sensorCount = buffer.getInt(roomPosition + 18);
+                for (int s = firstSensor; s < firstSensor + sensorCount; s++) {
+                    TimedSensor sensor = loadSensor(s,
+                            sensorIds[f] + s - floorSensors[f]);
+                    sensors.add(sensor);
+                    room.addSensor(sensor);
+                }
+                room.updateFireDrill(buffer.get(roomPosition
+                        + BuildingStore.ROOM_FIRE_DRILL) != 0);
+                rooms.add(room);
+            }
+            floor.addRooms(rooms);
+        } catch (DuplicateRoomException | InsufficientSpaceException
+                | DuplicateSensorException e) {
+            for (TimedSensor sensor : sensors) {
+                sensor.deregister();
+            }
+            throw new IllegalStateException(e);
+        } finally {
+            TimedItemManager.setThreadManager(previous);
+        }
+        resident[f] = new ResidentFloor(f, floor, rooms, sensors);
+        return resident[f];
+    }
+
+    /**
+     * Creates the sensor with the given index from its record, positioned at
+     * the reading the record has reached, and gives it the given reserved
+     * id.
+     */
+    private TimedSensor loadSensor(int s, int sensorId) {
+        int position = sensorPosition(s);
+        // the record already holds the reading index the elapsed time leads
+        // to, so the sensor catches up before switching to the mapped source
+        SensorConfig config = config(s);
+        TimedSensor.setThreadSensorId(sensorId);
+        TimedSensor sensor = config.newSensor();
+        sensor.elapseMinutes(buffer.getInt(position
+                + BuildingStore.SENSOR_TIME));
+        sensor.setReadingSource(new MappedReadingSource(buffer,
+                position + BuildingStore.SENSOR_INDEX,
+                buffer.getInt(position + BuildingStore.SENSOR_READINGS),
+                buffer.getInt(position + BuildingStore.SENSOR_COUNT_OFFSET)));
+        return sensor;
+    }
+
+    /**
+     * Returns the interned configuration of the sensor with the given index,
+     * reading it from the sensor's record the first time it is needed.
+     */
+    private SensorConfig config(int s) {
+        if (configs[s] != null) {
+            return configs[s];
+        }
+        int position = sensorPosition(s);
+        int frequency = buffer.getInt(position
+                + BuildingStore.SENSOR_FREQUENCY);
+        int firstParameter = buffer.getInt(position + 5);
+        int secondParameter = buffer.getInt(position + 9);
+        int readingCount = buffer.getInt(position
+                + BuildingStore.SENSOR_COUNT_OFFSET);
+        int readingsPosition = buffer.getInt(position
+                + BuildingStore.SENSOR_READINGS);
+        int[] readings = new int[readingCount];
+        for (int i = 0; i < readingCount; i++) {
+            readings[i] = buffer.getInt(readingsPosition + Integer.BYTES * i);
+        }
+
+        switch (BuildingStore.SENSOR_TYPES[buffer.get(position)]) {
+            case "CarbonDioxideSensor":
+                configs[s] = SensorConfig.carbonDioxide(readings, frequency,
+                        firstParameter, secondParameter);
+                break;
+            case "NoiseSensor":
+                configs[s] = SensorConfig.noise(readings, frequency);
+                break;
+            case "OccupancySensor":
+                configs[s] = SensorConfig.occupancy(readings, frequency,
+                        firstParameter);
+                break;
+            default:
+                configs[s] = SensorConfig.temperature(readings);
+                break;
+        }
+        return configs[s];
+    }
+
+    /**
+     * Writes a resident floor's state back to its records and stops its
+     * sensors from ticking.
+     */
+    private void evict(ResidentFloor entry) {
+        writeBack(entry);
+        for (TimedSensor sensor : entry.sensors) {
+            sensor.deregister();
+        }
+        resident[entry.index] = null;
+    }
+
+    /**
+     * Writes the fire drill flags and elapsed times of a resident floor to
+     * its records.
+     */
+    private void writeBack(ResidentFloor entry) {
+        int firstRoom = buffer.getInt(floorPosition(entry.index) + 20);
+        for (int r = 0; r < entry.rooms.size(); r++) {
+            buffer.put(roomPosition(firstRoom + r)
+                    + BuildingStore.ROOM_FIRE_DRILL,
+                    (byte) (entry.rooms.get(r).fireDrillOngoing() ? 1 : 0));
+        }
+        for (int s = 0; s < entry.sensors.size(); s++) {
+            buffer.putInt(sensorPosition(floorSensors[entry.index] + s)
+                    + BuildingStore.SENSOR_TIME,
+                    entry.sensors.get(s).getTimeElapsed());
+        }
+    }
+
+    private int floorPosition(int f) {
+        return floorTable + BuildingStore.FLOOR_BYTES * f;
+    }
+
+    private int roomPosition(int r) {
+        return roomTable + BuildingStore.ROOM_BYTES * r;
+    }
+
+    private int sensorPosition(int s) {
+        return sensorTable + BuildingStore.SENSOR_BYTES * s;
+    }
+
+    /**
+     * A floor held as objects, with its rooms and sensors in record order.
+     */
+    private static class ResidentFloor {
+        private final int index;
+        private final Floor floor;
+        private final List<Room> rooms;
+        private final List<TimedSensor> sensors;
+
+        private ResidentFloor(int index, Floor floor, List<Room> rooms,
+                              List<TimedSensor> sensors) {
+            this.index = index;
+            this.floor = floor;
+            this.rooms = rooms;
+            this.sensors = sensors;
+        }
+    }
+}
@@ -0,0 +1,506 @@
+package bms.util;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A set of non-negative integers, stored as compressed chunks in the manner
+ * of a roaring bitmap.
+ *
+ * Values are split by their high 16 bits into chunks of up to 65536 values.
+ * A chunk holding at most 4096 values is a sorted array of their low 16 bits;
+ * a fuller chunk is a 65536-bit bitmap. Sparse sets therefore cost two bytes
+ * per value, dense sets one bit per value, and intersections only visit
+ * chunks present in both sets.
+ */
+public class CompressedBitmap {
+
+    /** largest number of values held in an array chunk */
+    private static final int ARRAY_LIMIT = 4096;
+
+    /** number of longs in a bitmap chunk */
+    private static final int WORDS = 1024;
+
+    /** high 16 bits of the values in each chunk, in ascending order */
+    private char[] keys;
+
+    /** chunks, in the same order as their keys */
+    private Chunk[] chunks;
+
+    /** number of chunks in use */
+    private int size;
+
+    /**
+     * Creates an empty bitmap.
+     */
+    public CompressedBitmap() {
+        keys = new char[4];
+        chunks = new Chunk[4];
+        size = 0;
+    }
+
+    /**
+     * Adds a value to the set.
+     *
+     * @param value value to add
+     * @return true if the value was not already in the set
+     * @throws IllegalArgumentException if value is negative
+     */
+    public boolean add(int value) throws IllegalArgumentException {
+        if (value < 0) {
+            throw new IllegalArgumentException();
+        }
+        char key = (char) (value >>> 16);
+        int i = find(key);
+        if (i < 0) {
+            i = -i - 1;
+            insert(i, key, new ArrayChunk());
+        }
+        int before = chunks[i].cardinality();
+        chunks[i] = chunks[i].add((char) value);
+        return chunks[i].cardinality() != before;
+    }
+
+    /**
+     * Removes a value from the set.
+     *
+     * @param value value to remove
+     * @return true if the value was in the set
+     */
+    public boolean remove(int value) {
+        int i = value < 0 ? -1 : find((char) (value >>> 16));
+        if (i < 0) {
+            return false;
+        }
+        int before = chunks[i].cardinality();
+        chunks[i] = chunks[i].remove((char) value);
+        if (chunks[i].cardinality() == 0) {
+            System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+            System.arraycopy(chunks, i + 1, chunks, i, size - i - 1);
+            chunks[--size] = null;
+            return true;
+        }
+        return chunks[i].cardinality() != before;
+    }
+
+    /**
+     * Returns whether the set contains the given value.
+     *
+     * @param value value to look for
+     * @return true if the value is in the set
+     */
+    public boolean contains(int value) {
+        int i = value < 0 ? -1 : find((char) (value >>> 16));
+        return i >= 0 && chunks[i].contains((char) value);
+    }
+
+    /**
+     * Returns the number of values in the set.
+     *
+     * @return cardinality of the set
+     */
+    public int getCardinality() {
+        int total = 0;
+        for (int i = 0; i < size; i++) {
+            total += chunks[i].cardinality();
+        }
+        return total;
+    }
+
+    /**
+     * Returns whether the set is empty.
+     *
+     * @return true if the set holds no values
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns a new set holding the values in both this set and the other.
+     *
+     * @param other set to intersect with
+     * @return intersection of the two sets
+     */
+    public CompressedBitmap and(CompressedBitmap other) {
+        CompressedBitmap result = new CompressedBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                result.append(keys[i], chunks[i].and(other.chunks[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a new set holding the values in either this set or the other.
+     *
+     * @param other set to unite with
+     * @return union of the two sets
+     */
+    public CompressedBitmap or(CompressedBitmap other) {
+        CompressedBitmap result = new CompressedBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+                result.append(keys[i], chunks[i].copy());
+                i++;
+            } else if (i == size || keys[i] > other.keys[j]) {
+                result.append(other.keys[j], other.chunks[j].copy());
+                j++;
+            } else {
+                result.append(keys[i], chunks[i].or(other.chunks[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a new set holding the values in this set but not the other.
+     *
+     * @param other set of values to exclude
+     * @return difference of the two sets
+     */
+    public CompressedBitmap andNot(CompressedBitmap other) {
+        CompressedBitmap result = new CompressedBitmap();
+        for (int i = 0; i < size; i++) {
+            int j = other.find(keys[i]);
+            result.append(keys[i], j < 0 ? chunks[i].copy()
+                    : chunks[i].andNot(other.chunks[j]));
+        }
+        return result;
+    }
+
+    /**
+     * Performs the given action on each value in the set, in ascending
+     * order.
+     *
+     * @param action action to perform
+     */
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < size; i++) {
+            chunks[i].forEach(keys[i] << 16, action);
+        }
+    }
+
+    /**
+     * Returns the values in the set in ascending order.
+     *
+     * @return new array of the set's values
+     */
+    public int[] toArray() {
+        int[] values = new int[getCardinality()];
+        int[] next = {0};
+        forEach(value -> values[next[0]++] = value);
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+
+    private int find(char key) {
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private void insert(int index, char key, Chunk chunk) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            chunks = Arrays.copyOf(chunks, size * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(chunks, index, chunks, index + 1, size - index);
+        keys[index] = key;
+        chunks[index] = chunk;
+        size++;
+    }
+
+    /**
+     * Adds a chunk after every existing chunk, unless it is empty.
+     */
+    private void append(char key, Chunk chunk) {
+        if (chunk.cardinality() > 0) {
+            insert(size, key, chunk);
+        }
+    }
+
+    /**
+     * Returns the smallest chunk holding the values set in the given words.
+     */
+    private static Chunk fromWords(long[] words) {
+        int cardinality = 0;
+        for (long word : words) {
+            cardinality += Long.bitCount(word);
+        }
+        if (cardinality > ARRAY_LIMIT) {
+            return new BitmapChunk(words, cardinality);
+        }
+        ArrayChunk chunk = new ArrayChunk();
+        chunk.values = new char[cardinality];
+        for (int w = 0; w < WORDS; w++) {
+            long word = words[w];
+            while (word != 0) {
+                chunk.values[chunk.count++] =
+                        (char) (w * 64 + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+        return chunk;
+    }
+
+    /**
+     * The low 16 bits of the values sharing one key.
+     */
+    private abstract static class Chunk {
+
+        abstract int cardinality();
+
+        abstract boolean contains(char low);
+
+        /** Returns the chunk with the value added, converting if full. */
+        abstract Chunk add(char low);
+
+        /** Returns the chunk with the value removed, converting if sparse. */
+        abstract Chunk remove(char low);
+
+        /** Returns a new bitmap of the chunk's values. */
+        abstract long[] toWords();
+
+        abstract void forEach(int base, IntConsumer action);
+
+        abstract Chunk copy();
+
+        Chunk and(Chunk other) {
+            if (other instanceof ArrayChunk) {
+                return other.and(this);
+            }
+            long[] words = toWords();
+            long[] otherWords = ((BitmapChunk) other).words;
+            for (int w = 0; w < WORDS; w++) {
+                words[w] &= otherWords[w];
+            }
+            return fromWords(words);
+        }
+
+        Chunk or(Chunk other) {
+            long[] words = toWords();
+            other.forEach(0, low -> words[low >>> 6] |= 1L << low);
+            return fromWords(words);
+        }
+
+        Chunk andNot(Chunk other) {
+            long[] words = toWords();
+            other.forEach(0, low -> words[low >>> 6] &= ~(1L << low));
+            return fromWords(words);
+        }
+    }
+
+    /**
+     * A sorted array of up to ARRAY_LIMIT values.
+     */
+    private static class ArrayChunk extends Chunk {
+        private char[] values = new char[4];
+        private int count;
+
+        @Override
+        int cardinality() {
+            return count;
+        }
+
+        @Override
+        boolean contains(char low) {
+            return Arrays.binarySearch(values, 0, count, low) >= 0;
+        }
+
+        @Override
+        Chunk add(char low) {
+            int i = Arrays.binarySearch(values, 0, count, low);
+            if (i >= 0) {
+                return this;
+            }
+            if (count == ARRAY_LIMIT) {
+                long[] words = toWords();
+                words[low >>> 6] |= 1L << low;
+                return new BitmapChunk(words, count + 1);
+            }
+            i = -i - 1;
+            if (count == values.length) {
+                values = Arrays.copyOf(values,
+                        Math.min(ARRAY_LIMIT, count * 2));
+            }
+            System.arraycopy(values, i, values, i + 1, count - i);
+            values[i] = low;
+            count++;
+            return this;
+        }
+
+        @Override
+        Chunk remove(char low) {
+            int i = Arrays.binarySearch(values, 0, count, low);
+            if (i >= 0) {
+                System.arraycopy(values, i + 1, values, i, count - i - 1);
+                count--;
+            }
+            return this;
+        }
+
+        @Override
+        long[] toWords() {
+            long[] words = new long[WORDS];
+            for (int i = 0; i < count; i++) {
+                words[values[i] >>> 6] |= 1L << values[i];
+            }
+            return words;
+        }
+
+        @Override
+        void forEach(int base, IntConsumer action) {
+            for (int i = 0; i < count; i++) {
+                action.accept(base | values[i]);
+            }
+        }
+
+        @Override
+        Chunk copy() {
+            ArrayChunk copy = new ArrayChunk();
+            copy.values = Arrays.copyOf(values, Math.max(1, count));
+            copy.count = count;
+            return copy;
+        }
+
+        @Override
+        Chunk and(Chunk other) {
+            ArrayChunk result = new ArrayChunk();
+            result.values = new char[Math.max(1, count)];
+            for (int i = 0; i < count; i++) {
+                if (other.contains(values[i])) {
+                    result.values[result.count++] = values[i];
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Merges two array chunks without building a bitmap, unless the
+         * union may be too large for an array.
+         */
+        @Override
+        Chunk or(Chunk other) {
+            if (other instanceof BitmapChunk) {
+                return other.or(this);
+            }
+            ArrayChunk that = (ArrayChunk) other;
+            if (count + that.count > ARRAY_LIMIT) {
+                return super.or(other);
+            }
+            ArrayChunk result = new ArrayChunk();
+            result.values = new char[Math.max(1, count + that.count)];
+            int i = 0;
+            int j = 0;
+            while (i < count || j < that.count) {
+                char next;
+                if (j == that.count
+                        || (i < count && values[i] < that.values[j])) {
+                    next = values[i++];
+                } else if (i == count || values[i] > that.values[j]) {
+                    next = that.values[j++];
+                } else {
+                    next = values[i++];
+                    j++;
+                }
+                result.values[result.count++] = next;
+            }
+            return result;
+        }
+
+        @Override
+        Chunk andNot(Chunk other) {
+            ArrayChunk result = new ArrayChunk();
+            result.values = new char[Math.max(1, count)];
+            for (int i = 0; i < count; i++) {
+                if (!other.contains(values[i])) {
+                    result.values[result.count++] = values[i];
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * A bitmap of more than ARRAY_LIMIT values.
+     */
+    private static class BitmapChunk extends Chunk {
+        private final long[] words;
+        private int count;
+
+        private BitmapChunk(long[] words, int count) {
+            this.words = words;
+            this.count = count;
+        }
+
+        @Override
+        int cardinality() {
+            return count;
+        }
+
+        @Override
+        boolean contains(char low) {
+            return (words[low >>> 6] & (1L << low)) != 0;
+        }
+
+        @Override
+        Chunk add(char low) {
+            if (!contains(low)) {
+                words[low >>> 6] |= 1L << low;
+                count++;
+            }
+            return this;
+        }
+
+        @Override
+        Chunk remove(char low) {
+            if (contains(low)) {
+                words[low >>> 6] &= ~(1L << low);
+                count--;
+                if (count == ARRAY_LIMIT) {
+                    return fromWords(words);
+                }
+            }
+            return this;
+        }
+
+        @Override
+        long[] toWords() {
+            return words.clone();
+        }
+
+        @Override
+        void forEach(int base, IntConsumer action) {
+            for (int w = 0; w < WORDS; w++) {
+                long word = words[w];
+                while (word != 0) {
+                    action.accept(base | (w * 64
+                            + Long.numberOfTrailingZeros(word)));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        @Override
+        Chunk copy() {
+            return new BitmapChunk(words.clone(), count);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package bms.util;
+
+/**
+ * Receives the new immutable snapshot of a part of a building each time that
+ * part changes, so that the snapshot of the part containing it can be
+ * updated in turn.
+ *
+ * @param <S> type of snapshot published
+ */
+@FunctionalInterface
+public interface StructureListener<S> {
+
+    /**
+     * Called after a new snapshot has been published.
+     *
+     * @param snapshot the newly published snapshot
+     */
+    void structureChanged(S snapshot);
+}
@@ -0,0 +1,32 @@
+package bms.util;
+
+import bms.sensors.SensorChangeSet;
+
+/**
+ * Denotes a class which should be notified after every tick of the
+ * TimedItemManager, once all registered timed items have elapsed one minute.
+ */
+public interface TickListener {
+
+    /**
+     * Called after all timed items have been updated for a tick.
+     *
+     * @param minute number of minutes elapsed on the manager, including this
+     *               tick
+     * @param changes sensors whose readings changed during this tick; only
+     *                valid for the duration of the call
+     */
+    void tickCompleted(int minute, SensorChangeSet changes);
+
+    /**
+     * Returns whether the listener adds sensors to the change set it is
+     * given, such as composites derived from the sensors which changed. The
+     * manager notifies such listeners before the others, so that every
+     * listener reading the set sees their additions.
+     *
+     * @return true if the listener marks changes; false by default
+     */
+    default boolean marksChanges() {
+        return false;
+    }
+}
@@ -1,7 +1,14 @@
 package bms.util;
 
+import bms.jfr.TickEvent;
+import bms.sensors.SensorChangeSet;
+import bms.sensors.TimedSensor;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**Singleton class which manages all the timed items.
  * All classes that implement TimedItem must be registered with this manager,
@@ -17,23 +24,87 @@ public class TimedItemManager implements TimedItem {
     /** Singleton instance of the TimeItemManager.*/
     private static TimedItemManager timedItemManager = null;
 
-    /**Stores all registered TimedItems in a building.*/
+    /** Manager which replaces the singleton on the current thread, if any.*/
+    private static final ThreadLocal<TimedItemManager> threadManager =
+            new ThreadLocal<TimedItemManager>();
+
+    /**Stores all registered TimedItems in a building.
+     * Deregistered items leave a null in their slot until the list is
+     * compacted.*/
     private List<TimedItem> registeredTimedItems = new ArrayList<TimedItem>();
 
+    /** Slot of each registered item in registeredTimedItems.*/
+    private Map<TimedItem, Integer> itemSlots =
+            new IdentityHashMap<TimedItem, Integer>();
+
+    /** Number of null slots left in registeredTimedItems.*/
+    private int emptySlots = 0;
+
+    /** Listeners notified after each tick.*/
+    private List<TickListener> tickListeners = new ArrayList<TickListener>();
+
+    /** Sensors whose reading changed during the most recent tick.*/
+    private SensorChangeSet changedSensors = new SensorChangeSet();
+
+    /** Number of times elapseOneMinute() has been called on the manager.*/
+    private int minutesElapsed = 0;
+
+    /** Value of System.nanoTime() when the most recent tick started.*/
+    private long tickStartNanos = 0;
+
     private TimedItemManager() {}
 
     /**
-     * Returns the singleton instance of the timed item manager.
+     * Returns the singleton instance of the timed item manager, or the
+     * manager set for the current thread by setThreadManager(), if any.
      *
      * @return singleton instance of TimedItemManager Class
      */
     public static TimedItemManager getInstance() {
+        TimedItemManager scoped = threadManager.get();
+        if (scoped != null) {
+            return scoped;
+        }
         if (timedItemManager == null) {
             timedItemManager = new TimedItemManager();
         }
         return timedItemManager;
     }
 
+    /**
+     * Creates a new timed item manager which is independent of the
+     * singleton. Items registered with it are only ticked when it is ticked.
+     *
+     * @return new, empty timed item manager
+     */
+    public static TimedItemManager createManager() {
+        return new TimedItemManager();
+    }
+
+    /**
+     * Sets the manager returned by getInstance() on the current thread, so
+     * that timed items created by the thread register with it instead of the
+     * singleton. Passing null restores the singleton.
+     *
+     * @param manager manager to use on this thread, or null
+     */
+    public static void setThreadManager(TimedItemManager manager) {
+        if (manager == null) {
+            threadManager.remove();
+        } else {
+            threadManager.set(manager);
+        }
+    }
+
+
+    /**
+     * Returns the manager set for the current thread by setThreadManager().
+     *
+     * @return the current thread's manager, or null if it uses the singleton
+     */
+    public static TimedItemManager getThreadManager() {
+        return threadManager.get();
+    }
 
     /**
      * Registers a timed item with the manager.
@@ -42,16 +113,304 @@ public class TimedItemManager implements TimedItem {
      *
      * @param timedItem a timed item to register with the manager.
      */
-    public void registerTimedItem(TimedItem timedItem) {
+    public synchronized void registerTimedItem(TimedItem timedItem) {
+        itemSlots.put(timedItem, registeredTimedItems.size());
         registeredTimedItems.add(timedItem);
     }
 
     /**
-     * Calls elapseOneMinute() on each registered timed item.
+     * Deregisters a timed item, so that the manager no longer calls its
+     * elapseOneMinute() method.
+     * This takes constant time; the emptied slot is reclaimed when more than
+     * half of the slots are empty at the start of a tick. Items may be
+     * deregistered from another thread while the manager is ticking, in
+     * which case the item may still be ticked once more.
+     *
+     * @param timedItem a timed item registered with the manager
+     * @return true if the item was registered; false otherwise
+     */
+    public synchronized boolean deregisterTimedItem(TimedItem timedItem) {
+        Integer slot = itemSlots.remove(timedItem);
+        if (slot == null) {
+            return false;
+        }
+        registeredTimedItems.set(slot, null);
+        emptySlots++;
+        return true;
+    }
+
+    /**
+     * Removes the empty slots from the list of registered items if they
+     * make up more than half of it.
+     */
+    private synchronized void compactIfSparse() {
+        if (emptySlots * 2 <= registeredTimedItems.size()) {
+            return;
+        }
+        List<TimedItem> compacted =
+                new ArrayList<TimedItem>(itemSlots.size());
+        for (TimedItem item : registeredTimedItems) {
+            if (item != null) {
+                itemSlots.put(item, compacted.size());
+                compacted.add(item);
+            }
+        }
+        registeredTimedItems = compacted;
+        emptySlots = 0;
+    }
+
+    /**
+     * Registers a listener to be notified after each tick, once every
+     * registered timed item has elapsed one minute.
+     * Listeners are notified in the order they were added, except that
+     * listeners which mark changes are notified before all others; see
+     * TickListener.marksChanges().
+     *
+     * @param listener listener to notify
+     */
+    public void addTickListener(TickListener listener) {
+        if (!listener.marksChanges()) {
+            tickListeners.add(listener);
+            return;
+        }
+        int position = 0;
+        while (position < tickListeners.size()
+                && tickListeners.get(position).marksChanges()) {
+            position++;
+        }
+        tickListeners.add(position, listener);
+    }
+
+    /**
+     * Removes a previously registered tick listener.
+     *
+     * @param listener listener to remove
+     */
+    public void removeTickListener(TickListener listener) {
+        tickListeners.remove(listener);
+    }
+
+    /**
+     * Returns the sensors whose readings changed during the most recent call
+     * to elapseOneMinute().
+     * The returned set is reused and cleared at the start of every tick.
+     *
+     * @return sensors changed in the most recent tick
+     */
+    public SensorChangeSet getChangedSensors() {
+        return changedSensors;
+    }
+
+    /**
+     * Returns the number of minutes that have elapsed on the manager.
+     *
+     * @return number of calls to elapseOneMinute()
+     */
+    public int getMinutesElapsed() {
+        return minutesElapsed;
+    }
+
+    /**
+     * Returns the time at which the most recent tick started, so that tick
+     * listeners can measure how long after a reading changed they reacted.
+     *
+     * @return value of System.nanoTime() at the start of the latest tick
+     */
+    public long getTickStartNanos() {
+        return tickStartNanos;
+    }
+
+    /**
+     * Calls elapseOneMinute() on each registered timed item, then notifies
+     * each tick listener of the sensors which changed.
+     *
+     * If an item throws, such as a sensor whose queued readings have run
+     * out, the remaining items are still ticked and the listeners notified
+     * before the first exception is rethrown, with any later ones added to
+     * it as suppressed exceptions.
      */
     public void elapseOneMinute() {
+        TickEvent event = new TickEvent();
+        event.begin();
+        tickStartNanos = System.nanoTime();
+        compactIfSparse();
+        changedSensors.clear();
+        minutesElapsed += 1;
+        RuntimeException failure = null;
+        for (TimedItem registeredTimedItem : registeredTimedItems) {
+            if (registeredTimedItem != null) {
+                try {
+                    registeredTimedItem.elapseOneMinute();
+                } catch (RuntimeException e) {
+                    failure = failed(failure, e);
+                }
+            }
+        }
+        for (TickListener listener : tickListeners) {
+            listener.tickCompleted(minutesElapsed, changedSensors);
+        }
+        commit(event, 1, false);
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Calls elapseOneMinute() on each registered timed item, spreading the
+     * items across the threads of the given pool, then notifies each tick
+     * listener of the sensors which changed on the calling thread.
+     *
+     * Registered items must not share mutable state with one another, which
+     * holds for timed sensors since each owns its reading source. Items
+     * which throw are handled as by elapseOneMinute().
+     *
+     * @param pool pool to tick the items on
+     */
+    public void elapseOneMinute(ForkJoinPool pool) {
+        TickEvent event = new TickEvent();
+        event.begin();
+        tickStartNanos = System.nanoTime();
+        compactIfSparse();
+        changedSensors.clear();
+        minutesElapsed += 1;
+        TimedItem[] items = registeredTimedItems.toArray(new TimedItem[0]);
+        ParallelTick tick = new ParallelTick(items, 0, items.length);
+        pool.invoke(tick);
+        for (TickListener listener : tickListeners) {
+            listener.tickCompleted(minutesElapsed, changedSensors);
+        }
+        commit(event, 1, true);
+        if (tick.failure != null) {
+            throw tick.failure;
+        }
+    }
+
+    /**
+     * Advances every registered timed item by the given number of minutes.
+     * Timed sensors skip directly to their final reading rather than being
+     * ticked once per minute.
+     *
+     * Afterwards the change set holds the sensors whose final reading differs
+     * from their reading beforehand, and each tick listener is notified once
+     * for the whole span. Items which throw are handled as by
+     * elapseOneMinute().
+     *
+     * @param minutes number of minutes to elapse
+     * @throws IllegalArgumentException if minutes is less than zero
+     */
+    public void elapseMinutes(int minutes) throws IllegalArgumentException {
+        if (minutes < 0) {
+            throw new IllegalArgumentException();
+        }
+        if (minutes == 0) {
+            return;
+        }
+        TickEvent event = new TickEvent();
+        event.begin();
+        tickStartNanos = System.nanoTime();
+        compactIfSparse();
+        changedSensors.clear();
+        minutesElapsed += minutes;
+        RuntimeException failure = null;
         for (TimedItem registeredTimedItem : registeredTimedItems) {
-            registeredTimedItem.elapseOneMinute();
+            if (registeredTimedItem == null) {
+                continue;
+            }
+            try {
+                if (registeredTimedItem instanceof TimedSensor) {
+                    ((TimedSensor) registeredTimedItem).elapseMinutes(minutes);
+                } else {
+                    for (int i = 0; i < minutes; i++) {
+                        registeredTimedItem.elapseOneMinute();
+                    }
+                }
+            } catch (RuntimeException e) {
+                failure = failed(failure, e);
+            }
+        }
+        for (TickListener listener : tickListeners) {
+            listener.tickCompleted(minutesElapsed, changedSensors);
+        }
+        commit(event, minutes, false);
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Returns the first exception thrown during a tick, adding the given one
+     * to it as suppressed if it is not the first.
+     */
+    private static RuntimeException failed(RuntimeException first,
+                                           RuntimeException next) {
+        if (first == null) {
+            return next;
+        }
+        first.addSuppressed(next);
+        return first;
+    }
+
+    /**
+     * Fills in and commits a tick event, if a recording is collecting it.
+     */
+    private void commit(TickEvent event, int minutes, boolean parallel) {
+        if (event.shouldCommit()) {
+            event.minute = minutesElapsed;
+            event.minutes = minutes;
+            event.items = registeredTimedItems.size() - emptySlots;
+            event.listeners = tickListeners.size();
+            event.changedSensors = changedSensors.size();
+            event.parallel = parallel;
+            event.commit();
+        }
+    }
+
+    /**
+     * Ticks a range of timed items, splitting it in half until it is small
+     * enough to tick on one thread.
+     */
+    private static class ParallelTick extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        /** number of items ticked without splitting further */
+        private static final int THRESHOLD = 256;
+
+        private final TimedItem[] items;
+        private final int from;
+        private final int to;
+
+        /** first exception thrown by an item in the range, or null */
+        private RuntimeException failure;
+
+        ParallelTick(TimedItem[] items, int from, int to) {
+            this.items = items;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    if (items[i] != null) {
+                        try {
+                            items[i].elapseOneMinute();
+                        } catch (RuntimeException e) {
+                            failure = failed(failure, e);
+                        }
+                    }
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            ParallelTick lower = new ParallelTick(items, from, middle);
+            ParallelTick upper = new ParallelTick(items, middle, to);
+            invokeAll(lower, upper);
+            failure = lower.failure;
+            if (upper.failure != null) {
+                failure = failed(failure, upper.failure);
+            }
         }
     }
 }
@@ -5,6 +5,8 @@ import bms.exceptions.*;
 import bms.floor.Floor;
 import bms.room.Room;
 import bms.room.RoomType;
+import bms.sensors.TemperatureSensor;
+import bms.util.TimedItemManager;
 import org.junit.Test;
 
 import static java.lang.Boolean.FALSE;
@@ -150,4 +152,33 @@ public class BuildingTest {
     }
 
 
+
+    @Test
+    public void removeFloor() throws Exception {
+        Building testBuilding = new Building("Test");
+        Floor floor1 = new Floor(1,10,10);
+        Floor floor2 = new Floor(2,10,10);
+        testBuilding.addFloor(floor1);
+        testBuilding.addFloor(floor2);
+        Room room = new Room(1, RoomType.OFFICE, 6);
+        floor2.addRoom(room);
+        TemperatureSensor sensor = new TemperatureSensor(new int[]{20, 30});
+        room.addSensor(sensor);
+
+        try {
+            testBuilding.removeFloor(1);
+            fail();
+        } catch (NoFloorBelowException expected) {
+            assertEquals(2, testBuilding.getFloors().size());
+        }
+        assertSame(floor2, testBuilding.removeFloor(2));
+        assertNull(testBuilding.removeFloor(2));
+        assertNull(testBuilding.getFloorByNumber(2));
+        assertEquals(1, testBuilding.getSnapshot().getFloors().size());
+
+        TimedItemManager.getInstance().elapseOneMinute();
+        assertEquals(0, sensor.getTimeElapsed());
+        assertSame(room, floor2.getRoomByNumber(1));
+        testBuilding.addFloor(new Floor(2, 10, 10));
+    }
 }
@@ -50,4 +50,33 @@ public class TimedItemManagerTest {
 
 
     }
+
+    @Test
+    public void deregisteredItemsStopTicking() {
+        TimedItemManager manager = TimedItemManager.createManager();
+        TimedItemManager.setThreadManager(manager);
+        TimedSensor[] sensors = new TimedSensor[10];
+        try {
+            for (int i = 0; i < sensors.length; i++) {
+                sensors[i] = new NoiseSensor(new int[]{30, 40}, 1);
+            }
+        } finally {
+            TimedItemManager.setThreadManager(null);
+        }
+
+        for (int i = 0; i < 8; i++) {
+            assertTrue(sensors[i].deregister());
+        }
+        assertFalse(sensors[0].deregister());
+        manager.elapseOneMinute();
+        manager.elapseMinutes(2);
+        assertEquals(0, sensors[0].getTimeElapsed());
+        assertEquals(3, sensors[9].getTimeElapsed());
+
+        // slots are renumbered by compaction
+        assertTrue(sensors[9].deregister());
+        manager.elapseOneMinute();
+        assertEquals(3, sensors[9].getTimeElapsed());
+        assertEquals(4, sensors[8].getTimeElapsed());
+    }
 }
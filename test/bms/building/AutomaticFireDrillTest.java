@@ -0,0 +1,110 @@
+package bms.building;
+
+import bms.floor.Floor;
+import bms.room.Room;
+import bms.room.RoomType;
+import bms.sensors.NoiseSensor;
+import bms.sensors.TemperatureSensor;
+import bms.util.TimedItemManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AutomaticFireDrillTest {
+
+    private TimedItemManager manager;
+    private Building building;
+    private Room kitchen;
+    private Room office;
+    private Room study;
+    private Room upstairs;
+
+    @Before
+    public void setUp() throws Exception {
+        manager = TimedItemManager.createManager();
+        TimedItemManager.setThreadManager(manager);
+        building = new Building("Alarm");
+        Floor ground = new Floor(1, 10, 10);
+        building.addFloor(ground);
+        kitchen = new Room(1, RoomType.LABORATORY, 20);
+        office = new Room(2, RoomType.OFFICE, 20);
+        study = new Room(3, RoomType.STUDY, 20);
+        ground.addRoom(kitchen);
+        ground.addRoom(office);
+        ground.addRoom(study);
+        Floor upper = new Floor(2, 10, 10);
+        building.addFloor(upper);
+        upstairs = new Room(201, RoomType.OFFICE, 20);
+        upper.addRoom(upstairs);
+
+        kitchen.addSensor(new TemperatureSensor(new int[]{20, 70, 70}));
+        office.addSensor(new TemperatureSensor(new int[]{20, 20, 70}));
+        study.addSensor(new TemperatureSensor(new int[]{20, 70}));
+        // averaged with a quiet noise sensor, so never reaches the threshold
+        study.addSensor(new NoiseSensor(new int[]{10}, 1));
+    }
+
+    @After
+    public void tearDown() {
+        TimedItemManager.setThreadManager(null);
+    }
+
+    @Test
+    public void escalatesFromRoomToBuilding() {
+        AutomaticFireDrill trigger = new AutomaticFireDrill(building, 100, 2, 1);
+        manager.addTickListener(trigger);
+        assertEquals(0, trigger.getDrillCount());
+
+        manager.elapseOneMinute();
+        assertTrue(kitchen.fireDrillOngoing());
+        assertFalse(office.fireDrillOngoing());
+        assertFalse(study.fireDrillOngoing());
+        assertEquals(1, trigger.getDrillCount());
+        assertTrue(trigger.getLastLatencyNanos() > 0);
+
+        manager.elapseOneMinute();
+        assertTrue(office.fireDrillOngoing());
+        assertTrue(study.fireDrillOngoing());
+        assertTrue(upstairs.fireDrillOngoing());
+        assertTrue(trigger.isBuildingDrilled());
+        assertEquals(4, trigger.getDrillCount());
+        assertTrue(trigger.getMaxLatencyNanos()
+                >= trigger.getAverageLatencyNanos());
+    }
+
+    @Test
+    public void escalatesAgainAfterCancel() {
+        AutomaticFireDrill trigger = new AutomaticFireDrill(building, 100, 2, 1);
+        manager.addTickListener(trigger);
+        manager.elapseMinutes(2);
+        assertTrue(trigger.isBuildingDrilled());
+
+        building.cancelFireDrill();
+        manager.elapseOneMinute();
+        assertFalse(trigger.isBuildingDrilled());
+        assertFalse(kitchen.fireDrillOngoing());
+
+        // the kitchen and office become hazardous again
+        manager.elapseMinutes(2);
+        assertTrue(kitchen.fireDrillOngoing());
+        assertTrue(upstairs.fireDrillOngoing());
+        assertTrue(trigger.isBuildingDrilled());
+    }
+
+    @Test
+    public void hazardousOnCreation() throws Exception {
+        manager.elapseOneMinute();
+        AutomaticFireDrill trigger = new AutomaticFireDrill(building, 50, 3, 2);
+        assertTrue(kitchen.fireDrillOngoing());
+        assertTrue(study.fireDrillOngoing());
+        assertFalse(office.fireDrillOngoing());
+        assertEquals(0, trigger.getLastLatencyNanos());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidThreshold() {
+        new AutomaticFireDrill(building, 0, 1, 1);
+    }
+}
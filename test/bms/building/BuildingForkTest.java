@@ -0,0 +1,197 @@
+package bms.building;
+
+import bms.floor.Floor;
+import bms.room.Room;
+import bms.room.RoomType;
+import bms.sensors.ExhaustionPolicy;
+import bms.sensors.NoiseSensor;
+import bms.sensors.OccupancySensor;
+import bms.sensors.QueuedReadingSource;
+import bms.sensors.Sensor;
+import bms.sensors.SensorConfig;
+import bms.sensors.TimedSensor;
+import bms.util.TimedItemManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BuildingForkTest {
+
+    private TimedItemManager manager;
+    private Building building;
+
+    @Before
+    public void setUp() throws Exception {
+        manager = TimedItemManager.createManager();
+        TimedItemManager.setThreadManager(manager);
+        building = new Building("Live");
+        for (int f = 1; f <= 3; f++) {
+            Floor floor = new Floor(f, 20, 20);
+            building.addFloor(floor);
+            for (int r = 1; r <= 5; r++) {
+                Room room = new Room(f * 100 + r, RoomType.OFFICE, 30);
+                floor.addRoom(room);
+                room.addSensor(new OccupancySensor(
+                        new int[]{1, 2, 3, 4, 5, 6, 7}, r, 10));
+                room.addSensor(new NoiseSensor(new int[]{40, 50, 60}, 2));
+            }
+        }
+        manager.elapseMinutes(4);
+    }
+
+    @After
+    public void tearDown() {
+        TimedItemManager.setThreadManager(null);
+    }
+
+    private static List<Integer> readings(Building building) {
+        List<Integer> result = new ArrayList<Integer>();
+        for (Floor floor : building.getFloors()) {
+            for (Room room : floor.getRooms()) {
+                for (Sensor sensor : room.getSensors()) {
+                    result.add(sensor.getCurrentReading());
+                }
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void forkStartsFromForkedState() {
+        List<Integer> expected = readings(building);
+        Building fork = building.fork();
+        // the live building moves on before the fork is first used
+        manager.elapseMinutes(3);
+        assertEquals(expected, readings(fork));
+        assertEquals(3, fork.getFloors().size());
+        assertNotSame(building.getFloorByNumber(1), fork.getFloorByNumber(1));
+        assertEquals(4, ((TimedSensor) fork.getFloorByNumber(2)
+                .getRoomByNumber(203).getSensors().get(0)).getTimeElapsed());
+        assertNull(building.getForkManager());
+    }
+
+    @Test
+    public void forkTicksOnItsOwnManager() {
+        Building fork = building.fork();
+        TimedItemManager forkManager = fork.getForkManager();
+        forkManager.elapseMinutes(5);
+        manager.elapseMinutes(1);
+
+        // a building forked at the same time and advanced the same amount
+        // as the fork reports the same readings
+        Building reference = building.fork();
+        manager.elapseMinutes(4);
+        List<Integer> forked = readings(fork);
+        assertEquals(readings(building), forked);
+
+        forkManager.elapseOneMinute();
+        assertEquals(10, ((TimedSensor) fork.getFloorByNumber(1)
+                .getRoomByNumber(101).getSensors().get(0)).getTimeElapsed());
+        assertEquals(9, ((TimedSensor) building.getFloorByNumber(1)
+                .getRoomByNumber(101).getSensors().get(0)).getTimeElapsed());
+        assertNotNull(reference.getForkManager());
+    }
+
+    @Test
+    public void removedSensorsKeepTheirForkedState() {
+        List<Integer> expected = readings(building);
+        Building fork = building.fork();
+        building.getFloorByNumber(1).removeRoom(101);
+        manager.elapseMinutes(3);
+
+        assertEquals(expected, readings(fork));
+        for (Sensor sensor : fork.getFloorByNumber(1).getRoomByNumber(101)
+                .getSensors()) {
+            assertEquals(4, ((TimedSensor) sensor).getTimeElapsed());
+        }
+        // the copied floor is published once, not once per room and sensor
+        assertEquals(1, fork.getFloorByNumber(1).getSnapshot()
+                .getStructureVersion());
+    }
+
+    @Test
+    public void forksOfForksStartFromTheirParent() {
+        Building fork = building.fork();
+        fork.getForkManager().elapseMinutes(2);
+        Building second = fork.fork();
+        List<Integer> expected = readings(fork);
+        fork.getForkManager().elapseMinutes(3);
+        manager.elapseMinutes(5);
+
+        assertEquals(expected, readings(second));
+        assertEquals(6, ((TimedSensor) second.getFloorByNumber(2)
+                .getRoomByNumber(204).getSensors().get(1)).getTimeElapsed());
+    }
+
+    @Test
+    public void changesDoNotCross() throws Exception {
+        Building fork = building.fork();
+        building.getFloorByNumber(1).addRoom(
+                new Room(199, RoomType.STUDY, 20));
+        fork.fireDrill(RoomType.OFFICE);
+        fork.getFloorByNumber(3).removeRoom(301);
+
+        assertNull(fork.getFloorByNumber(1).getRoomByNumber(199));
+        assertNotNull(building.getFloorByNumber(3).getRoomByNumber(301));
+        assertFalse(building.getFloorByNumber(2).getRoomByNumber(201)
+                .fireDrillOngoing());
+        assertTrue(fork.getFloorByNumber(2).getRoomByNumber(201)
+                .fireDrillOngoing());
+
+        Building second = fork.fork();
+        assertTrue(second.getFloorByNumber(2).getRoomByNumber(201)
+                .fireDrillOngoing());
+        assertNull(second.getFloorByNumber(3).getRoomByNumber(301));
+    }
+
+    @Test
+    public void forksRunInParallel() throws Exception {
+        List<Building> forks = new ArrayList<Building>();
+        for (int i = 0; i < 4; i++) {
+            forks.add(building.fork());
+        }
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < forks.size(); i++) {
+            Building fork = forks.get(i);
+            int minutes = i + 1;
+            Thread thread = new Thread(() -> {
+                fork.getFloors();
+                fork.getForkManager().elapseMinutes(minutes);
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (int i = 0; i < forks.size(); i++) {
+            assertEquals(4 + i + 1, ((TimedSensor) forks.get(i)
+                    .getFloorByNumber(1).getRoomByNumber(102).getSensors()
+                    .get(1)).getTimeElapsed());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void queuedSensorsCannotBeCopied() throws Exception {
+        NoiseSensor sensor = (NoiseSensor) building.getFloorByNumber(1)
+                .getRoomByNumber(101).getSensor("NoiseSensor");
+        sensor.setReadingSource(new QueuedReadingSource(4,
+                ExhaustionPolicy.HOLD_LAST, 45));
+        // the fork fails as it is taken, not when it is first read
+        building.fork();
+    }
+
+    @Test
+    public void forksDoNotInternTheirConfigurations() {
+        int interned = SensorConfig.getInternedCount();
+        Building fork = building.fork();
+        List<Integer> expected = readings(building);
+        assertEquals(expected, readings(fork));
+        assertEquals(interned, SensorConfig.getInternedCount());
+    }
+}
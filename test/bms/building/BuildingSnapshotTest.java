@@ -0,0 +1,140 @@
+package bms.building;
+
+import bms.floor.Floor;
+import bms.floor.FloorSnapshot;
+import bms.room.Room;
+import bms.room.RoomSnapshot;
+import bms.room.RoomType;
+import bms.sensors.NoiseSensor;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class BuildingSnapshotTest {
+
+    @Test
+    public void changesCopyOnlyTheirPath() throws Exception {
+        Building building = new Building("Versions");
+        Floor ground = new Floor(1, 10, 10);
+        Floor upper = new Floor(2, 10, 10);
+        building.addFloor(ground);
+        building.addFloor(upper);
+        Room changed = new Room(1, RoomType.OFFICE, 10);
+        Room unchanged = new Room(2, RoomType.OFFICE, 10);
+        ground.addRoom(changed);
+        ground.addRoom(unchanged);
+        upper.addRoom(new Room(201, RoomType.STUDY, 10));
+
+        BuildingSnapshot before = building.getSnapshot();
+        changed.addSensor(new NoiseSensor(new int[]{30}, 1));
+        BuildingSnapshot after = building.getSnapshot();
+
+        assertEquals(before.getVersion() + 1, after.getVersion());
+        assertNotSame(before.getFloorByNumber(1), after.getFloorByNumber(1));
+        assertSame(before.getFloorByNumber(2), after.getFloorByNumber(2));
+        FloorSnapshot oldGround = before.getFloorByNumber(1);
+        FloorSnapshot newGround = after.getFloorByNumber(1);
+        assertSame(oldGround.getRoomByNumber(2), newGround.getRoomByNumber(2));
+        assertTrue(oldGround.getRoomByNumber(1).getSensors().isEmpty());
+        assertEquals(1, newGround.getRoomByNumber(1).getSensors().size());
+
+        building.fireDrill(RoomType.STUDY);
+        assertFalse(after.getFloorByNumber(2).getRoomByNumber(201)
+                .fireDrillOngoing());
+        assertTrue(building.getSnapshot().getFloorByNumber(2)
+                .getRoomByNumber(201).fireDrillOngoing());
+    }
+
+    @Test
+    public void structureVersionIgnoresFireDrills() throws Exception {
+        Building building = new Building("Structure");
+        Building other = new Building("Elsewhere");
+        Floor floor = new Floor(1, 10, 10);
+        building.addFloor(floor);
+        other.addFloor(new Floor(1, 10, 10));
+        Room room = new Room(1, RoomType.OFFICE, 10);
+        floor.addRoom(room);
+        long structure = building.getSnapshot().getStructureVersion();
+        long otherStructure = other.getSnapshot().getStructureVersion();
+
+        building.fireDrill(null);
+        assertTrue(room.fireDrillOngoing());
+        assertEquals(structure, building.getSnapshot().getStructureVersion());
+
+        room.addSensor(new NoiseSensor(new int[]{30}, 1));
+        assertEquals(structure + 1,
+                building.getSnapshot().getStructureVersion());
+        floor.removeRoom(1);
+        assertEquals(structure + 2,
+                building.getSnapshot().getStructureVersion());
+        assertEquals(otherStructure,
+                other.getSnapshot().getStructureVersion());
+    }
+
+    @Test
+    public void drillPublishesOneSnapshotPerFloor() throws Exception {
+        Building building = new Building("Drill");
+        Floor floor = new Floor(1, 10, 10);
+        building.addFloor(floor);
+        for (int i = 1; i <= 5; i++) {
+            floor.addRoom(new Room(i, RoomType.OFFICE, 10));
+        }
+        long version = building.getSnapshot().getVersion();
+
+        building.fireDrill(null);
+        assertEquals(version + 1, building.getSnapshot().getVersion());
+        for (RoomSnapshot room : building.getSnapshot().getFloors().get(0)
+                .getRooms()) {
+            assertTrue(room.fireDrillOngoing());
+        }
+        building.cancelFireDrill();
+        assertEquals(version + 2, building.getSnapshot().getVersion());
+        assertFalse(floor.getRoomByNumber(3).fireDrillOngoing());
+    }
+
+    @Test
+    public void readersSeeConsistentVersionsWhileWriting() throws Exception {
+        Building building = new Building("Concurrent");
+        Floor floor = new Floor(1, 100, 100);
+        building.addFloor(floor);
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+        Thread reader = new Thread(() -> {
+            try {
+                long lastVersion = -1;
+                while (!done.get()) {
+                    BuildingSnapshot snapshot = building.getSnapshot();
+                    assertTrue(snapshot.getVersion() >= lastVersion);
+                    lastVersion = snapshot.getVersion();
+                    FloorSnapshot floorSnapshot = snapshot.getFloors().get(0);
+                    int expected = 1;
+                    for (RoomSnapshot room : floorSnapshot.getRooms()) {
+                        assertEquals(expected++, room.getRoomNumber());
+                        room.getSensors().size();
+                    }
+                    building.getFloors().get(0).getRooms();
+                }
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        reader.start();
+        for (int i = 1; i <= 500; i++) {
+            Room room = new Room(i, RoomType.OFFICE, 10);
+            floor.addRoom(room);
+            room.addSensor(new NoiseSensor(new int[]{i}, 1));
+        }
+        done.set(true);
+        reader.join();
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        assertEquals(500, building.getSnapshot().getFloors().get(0)
+                .getRooms().size());
+        assertEquals(1001, building.getSnapshot().getVersion());
+    }
+}
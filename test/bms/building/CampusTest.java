@@ -0,0 +1,107 @@
+package bms.building;
+
+import bms.exceptions.DuplicateBuildingException;
+import bms.exceptions.FireDrillException;
+import bms.floor.Floor;
+import bms.room.Room;
+import bms.room.RoomType;
+import bms.sensors.OccupancySensor;
+import bms.sensors.TemperatureSensor;
+import bms.util.TimedItemManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class CampusTest {
+
+    private TimedItemManager manager;
+    private ForkJoinPool pool;
+    private Campus campus;
+
+    @Before
+    public void setUp() throws Exception {
+        manager = TimedItemManager.createManager();
+        TimedItemManager.setThreadManager(manager);
+        pool = new ForkJoinPool(4);
+        campus = new Campus("St Lucia", pool);
+        for (int b = 0; b < 10; b++) {
+            Building building = new Building("Building " + b);
+            Floor floor = new Floor(1, 10, 10);
+            building.addFloor(floor);
+            Room office = new Room(1, RoomType.OFFICE, 20);
+            Room study = new Room(2, RoomType.STUDY, 20);
+            floor.addRoom(office);
+            floor.addRoom(study);
+            office.addSensor(new OccupancySensor(new int[]{b, b + 1}, 1, 10));
+            study.addSensor(new TemperatureSensor(new int[]{20, 68}));
+            campus.addBuilding(building);
+        }
+        campus.addBuilding(new Building("Empty"));
+    }
+
+    @After
+    public void tearDown() {
+        TimedItemManager.setThreadManager(null);
+        pool.shutdown();
+    }
+
+    @Test(expected = DuplicateBuildingException.class)
+    public void duplicateNamesRejected() throws Exception {
+        campus.addBuilding(new Building("Building 3"));
+    }
+
+    @Test
+    public void lookupByName() {
+        assertEquals("Building 7",
+                campus.getBuilding("Building 7").getName());
+        assertNull(campus.getBuilding("Missing"));
+        assertEquals(11, campus.getBuildings().size());
+    }
+
+    @Test
+    public void fireDrillByRoomType() throws Exception {
+        campus.fireDrill(RoomType.STUDY);
+        for (Building building : campus.getBuildings()) {
+            for (Floor floor : building.getFloors()) {
+                assertTrue(floor.getRoomByNumber(2).fireDrillOngoing());
+                assertFalse(floor.getRoomByNumber(1).fireDrillOngoing());
+            }
+        }
+        campus.cancelFireDrill();
+        assertFalse(campus.getBuilding("Building 0").getFloors().get(0)
+                .getRoomByNumber(2).fireDrillOngoing());
+    }
+
+    @Test(expected = FireDrillException.class)
+    public void fireDrillWithoutRooms() throws Exception {
+        new Campus("Empty").fireDrill(null);
+    }
+
+    @Test
+    public void aggregatesFollowConcurrentTicks() {
+        assertEquals(45, campus.getOccupancy());
+        assertEquals(100, campus.getOccupancyCapacity());
+        assertEquals(90, campus.getMaxHazardLevel());
+
+        campus.elapseOneMinute();
+        assertEquals(1, manager.getMinutesElapsed());
+        assertEquals(20, manager.getChangedSensors().size());
+        assertEquals(55, campus.getOccupancy());
+        assertEquals(100, campus.getMaxHazardLevel());
+    }
+
+    @Test
+    public void ticksTheManagersOfItsBuildings() throws Exception {
+        TimedItemManager forkManager = TimedItemManager.createManager();
+        Campus forks = new Campus("Forks", pool);
+        forks.addBuilding(campus.getBuilding("Building 0").fork(forkManager));
+
+        forks.elapseOneMinute();
+        assertEquals(1, forkManager.getMinutesElapsed());
+        assertEquals(0, manager.getMinutesElapsed());
+    }
+}
@@ -0,0 +1,64 @@
+package bms.building;
+
+import bms.floor.Floor;
+import bms.room.Room;
+import bms.room.RoomType;
+import bms.sensors.CarbonDioxideSensor;
+import bms.sensors.TemperatureSensor;
+import bms.util.TimedItemManager;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ComfortMonitorTest {
+
+    @Test
+    public void sensorComfortLevels() {
+        assertEquals(100, new TemperatureSensor(new int[]{23})
+                .getComfortLevel());
+        assertEquals(70, new TemperatureSensor(new int[]{17})
+                .getComfortLevel());
+        assertEquals(50, new CarbonDioxideSensor(new int[]{650}, 1, 600, 100)
+                .getComfortLevel());
+        assertEquals(0, new CarbonDioxideSensor(new int[]{450}, 1, 600, 100)
+                .getComfortLevel());
+    }
+
+    @Test
+    public void aggregatesFollowTicks() throws Exception {
+        Building building = new Building("Comfort");
+        Floor floor = new Floor(1, 10, 10);
+        building.addFloor(floor);
+        Room room1 = new Room(1, RoomType.OFFICE, 20);
+        Room room2 = new Room(2, RoomType.OFFICE, 20);
+        floor.addRoom(room1);
+        floor.addRoom(room2);
+        room1.addSensor(new TemperatureSensor(new int[]{23, 30}));
+        room2.addSensor(new CarbonDioxideSensor(new int[]{600}, 1, 600, 100));
+
+        ComfortMonitor monitor = new ComfortMonitor(building);
+        assertEquals(100, monitor.getRoomComfort(room1));
+        assertEquals(100, monitor.getBuildingComfort());
+
+        TimedItemManager.getInstance().addTickListener(monitor);
+        try {
+            TimedItemManager.getInstance().elapseOneMinute();
+        } finally {
+            TimedItemManager.getInstance().removeTickListener(monitor);
+        }
+        assertEquals(60, monitor.getRoomComfort(room1));
+        assertEquals(room1.getComfortLevel(), monitor.getRoomComfort(room1));
+        assertEquals(80, monitor.getFloorComfort(1));
+        assertEquals(80, monitor.getBuildingComfort());
+
+        floor.removeRoom(2);
+        assertEquals(60, monitor.getFloorComfort(1));
+        assertEquals(60, monitor.getBuildingComfort());
+        try {
+            monitor.getRoomComfort(room2);
+            fail();
+        } catch (IllegalArgumentException expected) {
+            // the room is no longer in the building
+        }
+    }
+}
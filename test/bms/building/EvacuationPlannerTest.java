@@ -0,0 +1,71 @@
+package bms.building;
+
+import bms.floor.Floor;
+import bms.room.Room;
+import bms.room.RoomType;
+import bms.sensors.TemperatureSensor;
+import bms.util.TimedItemManager;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class EvacuationPlannerTest {
+
+    @Test
+    public void routesAvoidHazardousRooms() throws Exception {
+        Building building = new Building("Evacuate");
+        Floor ground = new Floor(1, 10, 10);
+        building.addFloor(ground);
+        ground.addRoom(new Room(101, RoomType.OFFICE, 50));
+        ground.addRoom(new Room(102, RoomType.OFFICE, 50));
+        Floor upper = new Floor(2, 10, 10);
+        building.addFloor(upper);
+        upper.addRoom(new Room(201, RoomType.OFFICE, 50));
+        upper.addRoom(new Room(202, RoomType.OFFICE, 50));
+        TemperatureSensor fire = new TemperatureSensor(new int[]{20, 90});
+        ground.getRoomByNumber(101).addSensor(fire);
+
+        EvacuationPlanner planner = new EvacuationPlanner(building, 100, 4);
+        List<Room> route = planner.getRoute(2, 202);
+        assertEquals(upper.getRoomByNumber(202), route.get(0));
+        assertEquals(ground.getRoomByNumber(101), route.get(route.size() - 1));
+        assertTrue(planner.getRouteLength(2, 202)
+                > planner.getRouteLength(2, 201));
+
+        TimedItemManager.getInstance().addTickListener(planner);
+        try {
+            TimedItemManager.getInstance().elapseOneMinute();
+        } finally {
+            TimedItemManager.getInstance().removeTickListener(planner);
+        }
+        assertEquals(90, fire.getCurrentReading());
+        assertTrue(planner.getRoute(2, 202).isEmpty());
+        assertEquals(Double.POSITIVE_INFINITY,
+                planner.getRouteLength(2, 201), 0);
+        assertEquals(1, planner.getRoute(1, 102).size());
+        assertEquals(1, planner.getRoute(1, 101).size());
+    }
+
+    @Test
+    public void routesOutOfHazardousRooms() throws Exception {
+        Building building = new Building("Evacuate");
+        Floor ground = new Floor(1, 10, 10);
+        building.addFloor(ground);
+        ground.addRoom(new Room(101, RoomType.OFFICE, 50));
+        ground.addRoom(new Room(102, RoomType.OFFICE, 50));
+        Floor upper = new Floor(2, 10, 10);
+        building.addFloor(upper);
+        upper.addRoom(new Room(201, RoomType.OFFICE, 50));
+        upper.addRoom(new Room(202, RoomType.OFFICE, 50));
+        upper.getRoomByNumber(201).addSensor(
+                new TemperatureSensor(new int[]{90}));
+
+        EvacuationPlanner planner = new EvacuationPlanner(building, 100, 4);
+        assertEquals(Arrays.asList(upper.getRoomByNumber(201),
+                ground.getRoomByNumber(101)), planner.getRoute(2, 201));
+        assertTrue(planner.getRoute(2, 202).isEmpty());
+    }
+}
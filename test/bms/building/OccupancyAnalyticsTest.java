@@ -0,0 +1,125 @@
+package bms.building;
+
+import bms.floor.Floor;
+import bms.room.Room;
+import bms.room.RoomType;
+import bms.sensors.OccupancySensor;
+import bms.util.TimedItemManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class OccupancyAnalyticsTest {
+
+    private TimedItemManager manager;
+    private Building building;
+    private Room office;
+    private Room lab;
+    private Room study;
+
+    @Before
+    public void setUp() throws Exception {
+        manager = TimedItemManager.createManager();
+        TimedItemManager.setThreadManager(manager);
+        building = new Building("Analytics");
+        Floor ground = new Floor(1, 10, 10);
+        building.addFloor(ground);
+        office = new Room(1, RoomType.OFFICE, 20);
+        lab = new Room(2, RoomType.LABORATORY, 20);
+        ground.addRoom(office);
+        ground.addRoom(lab);
+        Floor upper = new Floor(2, 10, 10);
+        building.addFloor(upper);
+        study = new Room(201, RoomType.STUDY, 20);
+        upper.addRoom(study);
+        office.addSensor(new OccupancySensor(new int[]{2, 8}, 1, 10));
+        lab.addSensor(new OccupancySensor(new int[]{5}, 1, 10));
+        study.addSensor(new OccupancySensor(new int[]{3, 30}, 5, 20));
+    }
+
+    @After
+    public void tearDown() {
+        TimedItemManager.setThreadManager(null);
+    }
+
+    @Test
+    public void windowsAndPeaks() {
+        OccupancyAnalytics analytics = new OccupancyAnalytics(building);
+        manager.addTickListener(analytics);
+        assertEquals(10, analytics.getBuildingOccupancy());
+        assertEquals(7, analytics.getFloorOccupancy(1));
+
+        // office alternates 8, 2, 8 ... from minute 1
+        for (int i = 0; i < 14; i++) {
+            manager.elapseOneMinute();
+        }
+        assertEquals(2, analytics.getRoomOccupancy(office));
+        assertEquals(8, analytics.getRoomPeakOccupancy(office));
+        // minutes 0 to 14 read 2, 8, 2, ..., 2: seven eights and eight twos
+        assertEquals((7 * 8 + 8 * 2) / 15.0,
+                analytics.getRoomAverageOccupancy(office), 1e-9);
+        // study reads 3 for minutes 0 to 4 and 9 to 14, 30 for 5 to 9
+        assertEquals(30, analytics.getFloorPeakOccupancy(2));
+        assertEquals((10 * 3 + 5 * 30) / 15.0,
+                analytics.getFloorAverageOccupancy(2), 1e-9);
+        assertEquals(1.5, analytics.getPeakUtilisation(RoomType.STUDY), 1e-9);
+        assertEquals(0.5, analytics.getPeakUtilisation(RoomType.LABORATORY),
+                1e-9);
+
+        manager.elapseOneMinute();
+        assertEquals(5, analytics.getRoomAverageOccupancy(lab), 1e-9);
+        assertEquals(8 + 5 + 30, analytics.getBuildingOccupancy());
+    }
+
+    @Test
+    public void mostUtilisedRooms() {
+        OccupancyAnalytics analytics = new OccupancyAnalytics(building);
+        manager.addTickListener(analytics);
+        assertEquals(Arrays.asList(lab, office),
+                analytics.getMostUtilisedRooms(2));
+        for (int i = 0; i < 5; i++) {
+            manager.elapseOneMinute();
+        }
+        assertEquals(Arrays.asList(study, office, lab),
+                analytics.getMostUtilisedRooms(5));
+        assertEquals(1.5, analytics.getRoomUtilisation(study), 1e-9);
+        assertTrue(analytics.getMostUtilisedRooms(0).isEmpty());
+    }
+
+    @Test
+    public void historyKeptAcrossStructuralChanges() throws Exception {
+        OccupancyAnalytics analytics = new OccupancyAnalytics(building);
+        manager.addTickListener(analytics);
+        manager.elapseOneMinute();
+        building.fireDrill(null);
+        manager.elapseOneMinute();
+        assertEquals(8, analytics.getRoomPeakOccupancy(office));
+        assertEquals(2, analytics.getRoomOccupancy(office));
+    }
+
+    @Test
+    public void removalsLeaveTheSeries() throws Exception {
+        OccupancyAnalytics analytics = new OccupancyAnalytics(building);
+        manager.addTickListener(analytics);
+        building.getFloorByNumber(1).removeRoom(2);
+        manager.elapseOneMinute();
+        assertEquals(8, analytics.getFloorOccupancy(1));
+        assertEquals(11, analytics.getBuildingOccupancy());
+        assertEquals(Arrays.asList(office, study),
+                analytics.getMostUtilisedRooms(5));
+
+        building.removeFloor(2);
+        assertEquals(8, analytics.getBuildingOccupancy());
+        assertEquals(Arrays.asList(office), analytics.getMostUtilisedRooms(5));
+        try {
+            analytics.getFloorOccupancy(2);
+            fail();
+        } catch (IllegalArgumentException expected) {
+            // the floor is no longer in the building
+        }
+    }
+}
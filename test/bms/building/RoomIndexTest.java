@@ -0,0 +1,180 @@
+package bms.building;
+
+import bms.floor.Floor;
+import bms.room.Room;
+import bms.room.RoomType;
+import bms.sensors.CarbonDioxideSensor;
+import bms.sensors.NoiseSensor;
+import bms.sensors.TemperatureSensor;
+import bms.util.TimedItemManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RoomIndexTest {
+
+    private Building building;
+    private RoomIndex index;
+
+    @Before
+    public void setUp() throws Exception {
+        TimedItemManager.setThreadManager(TimedItemManager.createManager());
+        building = new Building("Indexed");
+        RoomType[] types = RoomType.values();
+        for (int f = 1; f <= 12; f++) {
+            Floor floor = new Floor(f, 40, 40);
+            building.addFloor(floor);
+            for (int r = 1; r <= 20; r++) {
+                Room room = new Room(f * 100 + r, types[(f + r) % types.length],
+                        10 + (f * r) % 50);
+                floor.addRoom(room);
+                if (r % 2 == 0) {
+                    room.addSensor(new TemperatureSensor(new int[]{20}));
+                }
+                if (r % 3 == 0) {
+                    room.addSensor(new CarbonDioxideSensor(
+                            new int[]{500}, 1, 600, 200));
+                }
+            }
+        }
+        index = new RoomIndex(building);
+    }
+
+    @After
+    public void tearDown() {
+        TimedItemManager.setThreadManager(null);
+    }
+
+    private static final Comparator<Room> BY_NUMBER =
+            Comparator.comparingInt(Room::getRoomNumber);
+
+    private List<Room> sorted(List<Room> rooms) {
+        List<Room> result = new ArrayList<Room>(rooms);
+        result.sort(BY_NUMBER);
+        return result;
+    }
+
+    /** The nested loop the index replaces. */
+    private List<Room> scan(RoomType type, double areaAbove, int lowest,
+                            int highest) {
+        List<Room> result = new ArrayList<Room>();
+        for (Floor floor : building.getFloors()) {
+            if (floor.getFloorNumber() < lowest
+                    || floor.getFloorNumber() > highest) {
+                continue;
+            }
+            for (Room room : floor.getRooms()) {
+                if (room.getType() == type && room.getArea() > areaAbove
+                        && room.getSensor("TemperatureSensor") != null
+                        && room.getSensor("CarbonDioxideSensor") == null) {
+                    result.add(room);
+                }
+            }
+        }
+        result.sort(BY_NUMBER);
+        return result;
+    }
+
+    private RoomQuery laboratories() {
+        return new RoomQuery().ofType(RoomType.LABORATORY).withAreaAbove(30)
+                .withSensor("TemperatureSensor")
+                .withoutSensor("CarbonDioxideSensor").onFloors(3, 10);
+    }
+
+    @Test
+    public void matchesNestedLoop() {
+        List<Room> expected = scan(RoomType.LABORATORY, 30, 3, 10);
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, sorted(index.find(laboratories())));
+        assertEquals(240, index.count(new RoomQuery()));
+        assertEquals(0, index.count(new RoomQuery().withSensor("NoiseSensor")));
+        assertEquals(20, index.count(new RoomQuery().onFloors(4, 4)));
+        assertEquals(0, index.count(new RoomQuery().onFloors(5, 4)));
+    }
+
+    @Test
+    public void areaBoundsAreExact() {
+        for (double bound : new double[]{10, 15.5, 16, 31, 32, 59}) {
+            int above = 0;
+            int atMost = 0;
+            for (Floor floor : building.getFloors()) {
+                for (Room room : floor.getRooms()) {
+                    above += room.getArea() > bound ? 1 : 0;
+                    atMost += room.getArea() <= bound ? 1 : 0;
+                }
+            }
+            assertEquals(above, index.count(new RoomQuery()
+                    .withAreaAbove(bound)));
+            assertEquals(atMost, index.count(new RoomQuery()
+                    .withAreaAtMost(bound)));
+        }
+    }
+
+    @Test
+    public void followsChanges() throws Exception {
+        index.count(new RoomQuery());
+        Floor third = building.getFloorByNumber(3);
+        Room added = new Room(399, RoomType.LABORATORY, 45);
+        third.addRoom(added);
+        added.addSensor(new TemperatureSensor(new int[]{21}));
+        assertEquals(scan(RoomType.LABORATORY, 30, 3, 10),
+                sorted(index.find(laboratories())));
+        assertTrue(index.find(laboratories()).contains(added));
+
+        added.addSensor(new CarbonDioxideSensor(new int[]{500}, 1, 600, 200));
+        assertFalse(index.find(laboratories()).contains(added));
+        third.removeRoom(399);
+        third.removeRoom(301);
+        assertEquals(239, index.count(new RoomQuery()));
+        assertEquals(scan(RoomType.LABORATORY, 30, 3, 10),
+                sorted(index.find(laboratories())));
+
+        building.getFloorByNumber(5).fireDrill(RoomType.STUDY);
+        List<Room> drilled = new ArrayList<Room>();
+        for (Room room : building.getFloorByNumber(5).getRooms()) {
+            if (room.fireDrillOngoing()) {
+                drilled.add(room);
+            }
+        }
+        drilled.sort(BY_NUMBER);
+        assertEquals(drilled, sorted(index.find(new RoomQuery()
+                .withFireDrill(true))));
+        assertEquals(239 - drilled.size(), index.count(new RoomQuery()
+                .withFireDrill(false)));
+
+        building.removeFloor(12);
+        assertEquals(219, index.count(new RoomQuery()));
+        assertEquals(0, index.count(new RoomQuery().onFloors(12, 12)));
+        building.cancelFireDrill();
+        assertEquals(0, index.count(new RoomQuery().withFireDrill(true)));
+    }
+
+    @Test
+    public void followsMovesAndForgottenChanges() throws Exception {
+        index.count(new RoomQuery());
+        Room moved = building.getFloorByNumber(3).removeRoom(302);
+        building.getFloorByNumber(4).addRoom(moved);
+        assertEquals(240, index.count(new RoomQuery()));
+        assertEquals(19, index.count(new RoomQuery().onFloors(3, 3)));
+        assertEquals(21, index.count(new RoomQuery().onFloors(4, 4)));
+        assertTrue(index.find(new RoomQuery().onFloors(4, 4))
+                .contains(moved));
+
+        // more changes than the floor remembers fall back to a full compare
+        Room toggled = building.getFloorByNumber(6).getRoomByNumber(601);
+        for (int i = 0; i < 301; i++) {
+            toggled.setFireDrill(i % 2 == 0);
+        }
+        assertEquals(List.of(toggled), index.find(new RoomQuery()
+                .withFireDrill(true)));
+        toggled.setFireDrill(false);
+        assertEquals(0, index.count(new RoomQuery().withFireDrill(true)));
+    }
+}
@@ -0,0 +1,110 @@
+package bms.display;
+
+import bms.building.Building;
+import bms.floor.Floor;
+import bms.room.Room;
+import bms.room.RoomType;
+import bms.sensors.CarbonDioxideSensor;
+import bms.sensors.OccupancySensor;
+import bms.sensors.TemperatureSensor;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BuildingRendererTest {
+
+    private Building building;
+    private Room room1;
+    private TemperatureSensor sensor;
+
+    @Before
+    public void setUp() throws Exception {
+        building = new Building("Render");
+        Floor floor = new Floor(1, 10, 10);
+        building.addFloor(floor);
+        room1 = new Room(1, RoomType.OFFICE, 20);
+        floor.addRoom(room1);
+        floor.addRoom(new Room(2, RoomType.STUDY, 20));
+        sensor = new TemperatureSensor(new int[]{20, 21});
+        room1.addSensor(sensor);
+    }
+
+    @Test
+    public void rendersText() throws Exception {
+        StringBuilder out = new StringBuilder();
+        new BuildingRenderer(out, BuildingRenderer.Format.TEXT)
+                .renderBuilding(building);
+        assertEquals("Building: name=\"Render\", floors=1\n"
+                + "\tFloor #1: width=10.00m, length=10.00m, rooms=2\n"
+                + "\t\tRoom #1: type=OFFICE, area=20.00m^2, sensors=1\n"
+                + "\t\t\tTimedSensor: freq=1, readings=20,21, "
+                + "type=TemperatureSensor\n"
+                + "\t\tRoom #2: type=STUDY, area=20.00m^2, sensors=0\n",
+                out.toString());
+    }
+
+    @Test
+    public void rendersOnlyChangedRoomsAsJson() throws Exception {
+        StringBuilder out = new StringBuilder();
+        BuildingRenderer renderer =
+                new BuildingRenderer(out, BuildingRenderer.Format.JSON);
+        renderer.renderBuilding(building);
+
+        out.setLength(0);
+        renderer.renderChanges(building);
+        assertEquals("{\"changes\":[]}", out.toString());
+
+        sensor.elapseOneMinute();
+        out.setLength(0);
+        renderer.renderChanges(building);
+        assertEquals("{\"changes\":[{\"floor\":1,\"room\":{\"room\":1,"
+                + "\"type\":\"OFFICE\",\"area\":20.0,\"fireDrill\":false,"
+                + "\"maxHazard\":0,\"occupancy\":0,\"sensors\":[{\"type\":"
+                + "\"TemperatureSensor\",\"reading\":21,\"hazard\":0}]}}]}",
+                out.toString());
+    }
+
+    @Test
+    public void textMatchesToString() throws Exception {
+        Floor floor = new Floor(2, 9.995, 7.125);
+        building.addFloor(floor);
+        Room room = new Room(3, RoomType.LABORATORY, 5.005);
+        floor.addRoom(room);
+        OccupancySensor occupancy =
+                new OccupancySensor(new int[]{1, 2, 3}, 2, 5);
+        CarbonDioxideSensor carbonDioxide =
+                new CarbonDioxideSensor(new int[]{700}, 3, 600, 150);
+        room.addSensor(occupancy);
+        room.addSensor(carbonDioxide);
+
+        StringBuilder out = new StringBuilder();
+        new BuildingRenderer(out, BuildingRenderer.Format.TEXT)
+                .renderFloor(floor);
+        assertEquals(floor + "\n"
+                + "\t" + room + "\n"
+                + "\t\t" + room.getSensors().get(0) + "\n"
+                + "\t\t" + room.getSensors().get(1) + "\n",
+                out.toString());
+    }
+
+    @Test
+    public void forgetsRemovedRooms() throws Exception {
+        StringBuilder out = new StringBuilder();
+        BuildingRenderer renderer =
+                new BuildingRenderer(out, BuildingRenderer.Format.JSON);
+        renderer.renderBuilding(building);
+
+        Floor floor = building.getFloorByNumber(1);
+        floor.removeRoom(1);
+        out.setLength(0);
+        renderer.renderChanges(building);
+        assertEquals("{\"changes\":[]}", out.toString());
+
+        // a room seen again after being forgotten is rendered in full
+        floor.addRoom(room1);
+        out.setLength(0);
+        renderer.renderChanges(building);
+        assertTrue(out.toString().contains("\"room\":1,"));
+    }
+}
@@ -0,0 +1,106 @@
+package bms.floor;
+
+import bms.building.Building;
+import bms.room.Room;
+import bms.room.RoomType;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FloorLayoutTest {
+
+    private Floor floor;
+
+    @Before
+    public void setUp() throws Exception {
+        floor = new Floor(1, 20, 20);
+        floor.addRoom(new Room(1, RoomType.OFFICE, 25));
+        floor.addRoom(new Room(2, RoomType.OFFICE, 25));
+        floor.addRoom(new Room(3, RoomType.STUDY, 100));
+    }
+
+    @Test
+    public void roomsDoNotOverlapAndFitTheFloor() {
+        Rectangle bounds = new Rectangle(0, 0, 20, 20);
+        for (Room room : floor.getRooms()) {
+            Rectangle placement =
+                    floor.getRoomPlacement(room.getRoomNumber());
+            assertTrue(bounds.contains(placement));
+            assertEquals(room.getArea(),
+                    placement.getWidth() * placement.getLength(), 0.001);
+            for (Room other : floor.getRooms()) {
+                if (other != room) {
+                    assertFalse(placement.overlaps(
+                            floor.getRoomPlacement(other.getRoomNumber())));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void spatialQueries() {
+        Rectangle first = floor.getRoomPlacement(1);
+        assertSame(floor.getRoomByNumber(1),
+                floor.getRoomAt(first.getCentreX(), first.getCentreY()));
+        assertTrue(floor.getAdjacentRooms(1)
+                .contains(floor.getRoomByNumber(2)));
+        assertEquals(2, floor.getRoomsWithin(1, 10).size());
+        assertEquals(1, floor.getRoomsInside(first).size());
+    }
+
+    @Test
+    public void repacksWhenShelvesCannotFit() throws Exception {
+        Floor full = new Floor(1, 10, 10);
+        full.addRoom(new Room(101, RoomType.STUDY, 20));
+        full.addRoom(new Room(102, RoomType.STUDY, 20));
+        full.addRoom(new Room(103, RoomType.STUDY, 15));
+        full.addRoom(new Room(104, RoomType.LABORATORY, 45));
+
+        double total = 0;
+        for (Room room : full.getRooms()) {
+            Rectangle placement = full.getRoomPlacement(room.getRoomNumber());
+            assertTrue(new Rectangle(0, 0, 10, 10).contains(placement));
+            total += placement.getWidth() * placement.getLength();
+        }
+        assertEquals(100, total, 0.001);
+    }
+
+    @Test
+    public void repacksOntoShelvesBeforeStrips() throws Exception {
+        Floor full = new Floor(1, 10, 10);
+        for (int i = 1; i <= 4; i++) {
+            full.addRoom(new Room(100 + i, RoomType.STUDY, 9));
+        }
+        full.addRoom(new Room(105, RoomType.LABORATORY, 49));
+        full.addRoom(new Room(106, RoomType.OFFICE, 6));
+
+        Rectangle bounds = new Rectangle(0, 0, 10, 10);
+        for (Room room : full.getRooms()) {
+            Rectangle placement = full.getRoomPlacement(room.getRoomNumber());
+            assertTrue(bounds.contains(placement));
+            assertTrue(placement.getWidth() < 10);
+            for (Room other : full.getRooms()) {
+                if (other != room) {
+                    assertFalse(placement.overlaps(
+                            full.getRoomPlacement(other.getRoomNumber())));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void verticalAdjacency() throws Exception {
+        Building building = new Building("Stacked");
+        building.addFloor(floor);
+        Floor upper = new Floor(2, 20, 20);
+        building.addFloor(upper);
+        upper.addRoom(new Room(201, RoomType.OFFICE, 25));
+
+        List<Room> adjacent = building.getVerticallyAdjacentRooms(2, 201);
+        assertEquals(1, adjacent.size());
+        assertSame(floor.getRoomByNumber(1), adjacent.get(0));
+    }
+}
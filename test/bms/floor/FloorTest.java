@@ -4,6 +4,7 @@ import bms.exceptions.DuplicateRoomException;
 import bms.exceptions.InsufficientSpaceException;
 import bms.room.Room;
 import bms.room.RoomType;
+import bms.sensors.TemperatureSensor;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -78,6 +79,24 @@ public class FloorTest {
         floor.addRoom(roomToSmall);
     }
 
+    @Test
+    public void addRoomsAllOrNothing() throws Exception {
+        floor = new Floor(1,20,25);
+        Room first = new Room(10, RoomType.OFFICE, 100);
+        try {
+            floor.addRooms(List.of(first, new Room(11, RoomType.OFFICE, 450)));
+            fail();
+        } catch (InsufficientSpaceException expected) {
+        }
+        assertTrue(floor.getRooms().isEmpty());
+
+        Room second = new Room(11, RoomType.OFFICE, 400);
+        floor.addRooms(List.of(first, second));
+        assertEquals(List.of(first, second), floor.getRooms());
+        assertEquals(1, floor.getSnapshot().getStructureVersion());
+        assertNotNull(floor.getRoomPlacement(11));
+    }
+
 
     @Test
     public void getRooms() {
@@ -179,4 +198,74 @@ public class FloorTest {
     public void testToString() throws InsufficientSpaceException, DuplicateRoomException {
         assertEquals("Floor #1: width=20.00m, length=25.00m, rooms=3", floor.toString());
     }
-}
\ No newline at end of file
+
+    @Test (expected = InsufficientSpaceException.class)
+    public void firstRoomSpaceChecked() throws InsufficientSpaceException, DuplicateRoomException {
+        new Floor(1, 5, 5).addRoom(new Room(1, RoomType.OFFICE, 30));
+    }
+
+    @Test
+    public void concurrentRoomsNeverOverCommit() throws Exception {
+        Floor shared = new Floor(1, 100, 100);
+        int threads = 8;
+        int numbers = 2000;
+        List<Thread> workers = new ArrayList<Thread>();
+        for (int t = 0; t < threads; t++) {
+            int offset = t * 97;
+            workers.add(new Thread(() -> {
+                for (int i = 0; i < numbers; i++) {
+                    int number = (i + offset) % numbers + 1;
+                    try {
+                        shared.addRoom(new Room(number, RoomType.OFFICE, 7));
+                    } catch (DuplicateRoomException
+                            | InsufficientSpaceException e) {
+                        // expected once numbers or space run out
+                    }
+                }
+            }));
+        }
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        List<Room> rooms = shared.getRooms();
+        assertEquals(10000 / 7, rooms.size());
+        assertEquals(rooms.size() * 7, shared.occupiedArea(), 0.01);
+        boolean[] seen = new boolean[numbers + 1];
+        for (Room room : rooms) {
+            assertFalse(seen[room.getRoomNumber()]);
+            seen[room.getRoomNumber()] = true;
+            assertNotNull(shared.getRoomPlacement(room.getRoomNumber()));
+        }
+    }
+
+    @Test
+    public void removeRoomReclaimsArea() throws Exception {
+        TemperatureSensor sensor = new TemperatureSensor(new int[]{20});
+        sensor.enableHistory(60);
+        room2.addSensor(sensor);
+        assertSame(room2, floor.removeRoom(2));
+        assertNull(floor.removeRoom(2));
+        assertNull(floor.getRoomByNumber(2));
+        assertNull(floor.getRoomPlacement(2));
+        assertEquals(75, floor.occupiedArea(), 0.01);
+        assertEquals(2, floor.getRooms().size());
+        assertNull(sensor.getHistory());
+
+        Room large = new Room(2, RoomType.OFFICE, 425);
+        floor.addRoom(large);
+        assertEquals(500, floor.occupiedArea(), 0.01);
+        for (Room room : floor.getRooms()) {
+            Rectangle placement = floor.getRoomPlacement(room.getRoomNumber());
+            for (Room other : floor.getRooms()) {
+                if (other != room) {
+                    assertFalse(placement.overlaps(
+                            floor.getRoomPlacement(other.getRoomNumber())));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package bms.jfr;
+
+import bms.building.Building;
+import bms.exceptions.DuplicateRoomException;
+import bms.floor.Floor;
+import bms.room.Room;
+import bms.room.RoomType;
+import bms.sensors.NoiseSensor;
+import bms.util.TimedItemManager;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class JfrEventsTest {
+
+    private TimedItemManager manager;
+    private Path file;
+
+    @Before
+    public void setUp() throws Exception {
+        manager = TimedItemManager.createManager();
+        TimedItemManager.setThreadManager(manager);
+        file = Files.createTempFile("bms", ".jfr");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        TimedItemManager.setThreadManager(null);
+        Files.deleteIfExists(file);
+    }
+
+    private List<RecordedEvent> events(List<RecordedEvent> all, String name) {
+        List<RecordedEvent> result = new ArrayList<RecordedEvent>();
+        for (RecordedEvent event : all) {
+            if (event.getEventType().getName().equals(name)) {
+                result.add(event);
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void eventsAreDisabledByDefault() {
+        assertFalse(new TickEvent().isEnabled());
+        assertFalse(new FireDrillEvent().isEnabled());
+        assertFalse(new StructureChangeEvent().isEnabled());
+    }
+
+    @Test
+    public void profileRecordsSimulation() throws Exception {
+        Configuration configuration = Configuration.create(
+                Paths.get("src", "bms", "jfr", "bms.jfc"));
+        try (Recording recording = new Recording(configuration)) {
+            recording.start();
+            Building building = new Building("Recorded");
+            Floor floor = new Floor(1, 10, 10);
+            building.addFloor(floor);
+            Room office = new Room(101, RoomType.OFFICE, 20);
+            floor.addRoom(office);
+            floor.addRoom(new Room(102, RoomType.LABORATORY, 20));
+            try {
+                floor.addRoom(new Room(101, RoomType.STUDY, 20));
+                fail();
+            } catch (DuplicateRoomException expected) {
+            }
+            office.addSensor(new NoiseSensor(new int[]{40, 60}, 1));
+            manager.elapseOneMinute();
+            manager.elapseMinutes(3);
+            building.fireDrill(RoomType.OFFICE);
+            building.cancelFireDrill();
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> all = RecordingFile.readAllEvents(file);
+        List<RecordedEvent> ticks = events(all, "bms.Tick");
+        assertEquals(2, ticks.size());
+        assertEquals(1, ticks.get(0).getInt("minute"));
+        assertEquals(1, ticks.get(0).getInt("items"));
+        assertEquals(1, ticks.get(0).getInt("changedSensors"));
+        assertEquals(3, ticks.get(1).getInt("minutes"));
+
+        List<RecordedEvent> drills = events(all, "bms.FireDrill");
+        assertEquals(2, drills.size());
+        assertEquals("Recorded", drills.get(0).getString("building"));
+        assertEquals("OFFICE", drills.get(0).getString("roomType"));
+        assertEquals(1, drills.get(0).getInt("roomsTouched"));
+        assertTrue(drills.get(1).getBoolean("cancelled"));
+        assertEquals(2, drills.get(1).getInt("roomsTouched"));
+
+        List<RecordedEvent> changes = events(all, "bms.StructureChange");
+        assertEquals(5, changes.size());
+        assertEquals("addFloor", changes.get(0).getString("operation"));
+        assertEquals(102, changes.get(2).getInt("roomNumber"));
+        assertFalse(changes.get(3).getBoolean("succeeded"));
+        assertEquals("NoiseSensor", changes.get(4).getString("sensorType"));
+    }
+}
@@ -0,0 +1,82 @@
+package bms.log;
+
+import bms.sensors.NoiseSensor;
+import bms.sensors.SensorChangeSet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ReadingLogTest {
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("readinglog");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        for (Path segment : ReadingLogReader.listSegments(directory)) {
+            Files.deleteIfExists(segment);
+        }
+        Files.deleteIfExists(directory);
+    }
+
+    @Test
+    public void rollsSegmentsAndReplaysRange() throws IOException {
+        NoiseSensor sensor1 = new NoiseSensor(new int[]{40, 70}, 1);
+        NoiseSensor sensor2 = new NoiseSensor(new int[]{50, 90}, 1);
+        SensorChangeSet changes = new SensorChangeSet();
+        changes.mark(sensor1);
+        changes.mark(sensor2);
+
+        try (ReadingLog log = new ReadingLog(directory,
+                3 * ReadingLog.RECORD_BYTES)) {
+            for (int minute = 1; minute <= 4; minute++) {
+                log.append(minute, changes);
+            }
+        }
+        assertEquals(3, ReadingLogReader.listSegments(directory).size());
+
+        ReadingLogReader reader = new ReadingLogReader(directory);
+        assertEquals(8, reader.size());
+
+        List<Integer> minutes = new ArrayList<Integer>();
+        reader.replay(2, 3, (minute, sensorId, reading, hazardLevel) -> {
+            assertTrue(sensorId == sensor1.getSensorId()
+                    || sensorId == sensor2.getSensorId());
+            minutes.add(minute);
+        });
+        assertEquals(List.of(2, 2, 3, 3), minutes);
+    }
+
+    @Test
+    public void continuesNumberingAfterDeletedSegments() throws IOException {
+        NoiseSensor sensor = new NoiseSensor(new int[]{40, 70}, 1);
+        try (ReadingLog log = new ReadingLog(directory,
+                ReadingLog.RECORD_BYTES)) {
+            for (int minute = 1; minute <= 3; minute++) {
+                log.append(minute, sensor);
+            }
+        }
+        Files.delete(ReadingLogReader.listSegments(directory).get(0));
+
+        try (ReadingLog log = new ReadingLog(directory,
+                ReadingLog.RECORD_BYTES)) {
+            log.append(4, sensor);
+        }
+        List<Path> segments = ReadingLogReader.listSegments(directory);
+        assertEquals(3, segments.size());
+        assertEquals(ReadingLog.segmentName(3),
+                segments.get(2).getFileName().toString());
+    }
+}
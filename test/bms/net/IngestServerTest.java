@@ -0,0 +1,49 @@
+package bms.net;
+
+import bms.building.Building;
+import bms.floor.Floor;
+import bms.room.Room;
+import bms.room.RoomType;
+import bms.sensors.ExhaustionPolicy;
+import bms.sensors.NoiseSensor;
+import bms.sensors.QueuedReadingSource;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class IngestServerTest {
+
+    @Test
+    public void deliversReadingsOverLoopback() throws Exception {
+        Building building = new Building("Ingest");
+        Floor floor = new Floor(1, 10, 10);
+        building.addFloor(floor);
+        Room room = new Room(1, RoomType.OFFICE, 20);
+        floor.addRoom(room);
+        NoiseSensor sensor = new NoiseSensor(new int[]{0}, 1);
+        QueuedReadingSource source =
+                new QueuedReadingSource(64, ExhaustionPolicy.HOLD_LAST, 0);
+        sensor.setReadingSource(source);
+        room.addSensor(sensor);
+
+        try (IngestServer server = new IngestServer(List.of(building),
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))) {
+            server.start();
+            new IngestLoadGenerator(server.getLocalAddress(), 2, 1,
+                    "NoiseSensor", 3).send(10);
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (server.getAcceptedCount() + server.getRejectedCount() < 10
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(5, server.getAcceptedCount());
+            assertEquals(5, server.getRejectedCount());
+        }
+        assertEquals(5, source.getPendingCount());
+    }
+}
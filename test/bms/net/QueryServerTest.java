@@ -0,0 +1,70 @@
+package bms.net;
+
+import bms.building.Building;
+import bms.floor.Floor;
+import bms.room.Room;
+import bms.room.RoomType;
+import bms.sensors.OccupancySensor;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class QueryServerTest {
+
+    private static String get(QueryServer server, String path)
+            throws IOException {
+        URL url = new URL("http://127.0.0.1:"
+                + server.getAddress().getPort() + path);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        if (connection.getResponseCode() != 200) {
+            return String.valueOf(connection.getResponseCode());
+        }
+        try (InputStream in = connection.getInputStream()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    public void servesAndCachesQueries() throws Exception {
+        Building building = new Building("Query");
+        Floor floor = new Floor(1, 10, 10);
+        building.addFloor(floor);
+        Room room = new Room(7, RoomType.STUDY, 20);
+        floor.addRoom(room);
+        room.addSensor(new OccupancySensor(new int[]{5}, 1, 10));
+
+        QueryServer server = new QueryServer(building, new InetSocketAddress(
+                InetAddress.getLoopbackAddress(), 0));
+        server.start();
+        try {
+            assertEquals("{\"name\":\"Query\",\"floors\":1,\"fireDrill\":false,"
+                    + "\"maxHazard\":50,\"occupancy\":5}",
+                    get(server, "/building"));
+            get(server, "/building");
+            assertEquals(1, server.getCacheHits());
+            get(server, "/building?x=1");
+            get(server, "/building?x=2");
+            assertEquals(3, server.getCacheHits());
+            assertEquals(1, server.getCacheMisses());
+
+            assertEquals("{\"type\":\"OccupancySensor\",\"reading\":5,"
+                    + "\"hazard\":50}",
+                    get(server, "/sensor?floor=1&room=7&type=OccupancySensor"));
+            assertEquals("404", get(server, "/room?floor=1&room=8"));
+            assertEquals("400", get(server, "/room?floor=1"));
+
+            room.setFireDrill(true);
+            assertTrue(get(server, "/building").contains("\"fireDrill\":true"));
+        } finally {
+            server.close();
+        }
+    }
+}
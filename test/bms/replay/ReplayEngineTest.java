@@ -0,0 +1,92 @@
+package bms.replay;
+
+import bms.building.Building;
+import bms.floor.Floor;
+import bms.room.Room;
+import bms.room.RoomType;
+import bms.sensors.NoiseSensor;
+import bms.sensors.OccupancySensor;
+import bms.sensors.Sensor;
+import bms.util.TimedItemManager;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class ReplayEngineTest {
+
+    @Test
+    public void seeksToRecordedState() throws Exception {
+        Building building = new Building("Replay");
+        Floor floor = new Floor(1, 10, 10);
+        building.addFloor(floor);
+        Room room = new Room(101, RoomType.OFFICE, 20);
+        floor.addRoom(room);
+        room.addSensor(new NoiseSensor(new int[]{40, 50, 60}, 2));
+
+        SimulationRecorder recorder = new SimulationRecorder(building);
+        TimedItemManager.getInstance().addTickListener(recorder);
+        try {
+            for (int i = 0; i < 5; i++) {
+                TimedItemManager.getInstance().elapseOneMinute();
+            }
+            recorder.addRoom(1, new Room(102, RoomType.LABORATORY, 30));
+            recorder.addSensor(1, 102,
+                    new OccupancySensor(new int[]{3, 4}, 1, 10));
+            recorder.fireDrill(RoomType.LABORATORY);
+            for (int i = 0; i < 3; i++) {
+                TimedItemManager.getInstance().elapseOneMinute();
+            }
+        } finally {
+            TimedItemManager.getInstance().removeTickListener(recorder);
+        }
+
+        ReplayEngine engine = new ReplayEngine(recorder.getSnapshot(),
+                recorder.getEvents());
+        assertEquals(8, engine.getDuration());
+
+        Building replayed = engine.seek(4);
+        assertNull(replayed.getFloorByNumber(1).getRoomByNumber(102));
+        assertEquals(60, replayed.getFloorByNumber(1).getRoomByNumber(101)
+                .getSensor("NoiseSensor").getCurrentReading());
+
+        replayed = engine.seek(8);
+        Room laboratory = replayed.getFloorByNumber(1).getRoomByNumber(102);
+        assertTrue(laboratory.fireDrillOngoing());
+        assertEquals(room.getSensor("NoiseSensor").getCurrentReading(),
+                replayed.getFloorByNumber(1).getRoomByNumber(101)
+                        .getSensor("NoiseSensor").getCurrentReading());
+        Sensor live = building.getFloorByNumber(1).getRoomByNumber(102)
+                .getSensor("OccupancySensor");
+        assertEquals(live.getCurrentReading(),
+                laboratory.getSensor("OccupancySensor").getCurrentReading());
+
+        replayed = engine.seek(2);
+        assertNull(replayed.getFloorByNumber(1).getRoomByNumber(102));
+    }
+
+    @Test
+    public void recordingRoundTrips() throws Exception {
+        Building building = new Building("Saved");
+        building.addFloor(new Floor(1, 10, 10));
+        SimulationRecorder recorder = new SimulationRecorder(building);
+        recorder.addRoom(1, new Room(1, RoomType.STUDY, 10));
+        recorder.recordTicks(100000);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        recorder.writeTo(new DataOutputStream(bytes));
+        ReplayEngine engine = SimulationRecorder.readReplay(
+                new DataInputStream(new ByteArrayInputStream(
+                        bytes.toByteArray())));
+
+        assertEquals(100000, engine.getDuration());
+        assertNotNull(engine.seek(100000).getFloorByNumber(1)
+                .getRoomByNumber(1));
+        assertEquals(100000, engine.getTimedItemManager().getMinutesElapsed());
+    }
+}
@@ -0,0 +1,139 @@
+package bms.rules;
+
+import bms.building.Building;
+import bms.floor.Floor;
+import bms.room.Room;
+import bms.room.RoomType;
+import bms.sensors.CarbonDioxideSensor;
+import bms.sensors.TemperatureSensor;
+import bms.sensors.TimedSensor;
+import bms.util.TimedItemManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RuleEngineTest {
+
+    private TimedItemManager manager;
+    private Building building;
+    private Room lab;
+    private Room office;
+    private RuleEngine engine;
+    private List<String> events;
+
+    @Before
+    public void setUp() throws Exception {
+        manager = TimedItemManager.createManager();
+        TimedItemManager.setThreadManager(manager);
+        building = new Building("Rules");
+        Floor floor = new Floor(1, 10, 10);
+        building.addFloor(floor);
+        lab = new Room(1, RoomType.LABORATORY, 20);
+        office = new Room(2, RoomType.OFFICE, 20);
+        floor.addRoom(lab);
+        floor.addRoom(office);
+
+        engine = new RuleEngine(building);
+        manager.addTickListener(engine);
+        events = new ArrayList<String>();
+        engine.addAlertListener(new AlertListener() {
+            @Override
+            public void alertRaised(Alert alert) {
+                events.add("+" + alert.getRule() + "@" + alert.getMinute());
+            }
+
+            @Override
+            public void alertCleared(Alert alert) {
+                events.add("-" + alert.getRule());
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        TimedItemManager.setThreadManager(null);
+    }
+
+    private void tick(int minutes) {
+        for (int i = 0; i < minutes; i++) {
+            manager.elapseOneMinute();
+        }
+    }
+
+    @Test
+    public void consecutiveReadings() throws Exception {
+        office.addSensor(new CarbonDioxideSensor(
+                new int[]{600, 900, 950, 1000, 600}, 1, 600, 100));
+        SensorCondition outside = SensorCondition.outsideIdealRange();
+        engine.addRule(new Rule("co2", CarbonDioxideSensor.class,
+                (RoomType) null, outside, outside.negate(), 3));
+        tick(2);
+        assertTrue(events.isEmpty());
+        tick(1);
+        assertEquals("[+co2@3]", events.toString());
+        tick(1);
+        assertEquals("[+co2@3, -co2]", events.toString());
+        assertTrue(engine.getActiveAlerts().isEmpty());
+    }
+
+    @Test
+    public void unchangedReadingsStillConfirm() throws Exception {
+        office.addSensor(new CarbonDioxideSensor(
+                new int[]{900, 900, 900, 600}, 2, 600, 100));
+        SensorCondition outside = SensorCondition.outsideIdealRange();
+        engine.addRule(new Rule("co2", CarbonDioxideSensor.class,
+                office, outside, outside.negate(), 3));
+        tick(3);
+        assertTrue(events.isEmpty());
+        tick(1);
+        assertEquals("[+co2@4]", events.toString());
+    }
+
+    @Test
+    public void hysteresisAndDeduplication() throws Exception {
+        office.addSensor(new TemperatureSensor(new int[]{20, 31, 28, 24, 31}));
+        engine.addRule(new Rule("hot", TemperatureSensor.class,
+                RoomType.OFFICE, SensorCondition.readingAbove(30),
+                SensorCondition.readingAtMost(25), 1));
+        tick(4);
+        assertEquals("[+hot@1, -hot, +hot@4]", events.toString());
+        assertEquals(1, engine.getActiveAlerts().size());
+        assertSame(office, engine.getActiveAlerts().get(0).getRoom());
+    }
+
+    @Test
+    public void scopedBySensorAndRoomType() throws Exception {
+        TemperatureSensor labTemperature =
+                new TemperatureSensor(new int[]{20, 70});
+        lab.addSensor(labTemperature);
+        office.addSensor(new TemperatureSensor(new int[]{20, 70}));
+        engine.addRule(new Rule("lab fire", TemperatureSensor.class,
+                RoomType.LABORATORY, SensorCondition.hazardAtLeast(100),
+                SensorCondition.hazardBelow(100), 1));
+        engine.addRule(new Rule("any hazard", TimedSensor.class,
+                (RoomType) null, SensorCondition.hazardAtLeast(100),
+                SensorCondition.hazardBelow(100), 1));
+        tick(1);
+        assertEquals(3, engine.getActiveAlerts().size());
+        assertSame(labTemperature,
+                engine.getActiveAlerts().get(0).getSensor());
+    }
+
+    @Test
+    public void forksUseTheirOwnMinutes() throws Exception {
+        office.addSensor(new TemperatureSensor(new int[]{31}));
+        tick(5);
+        Building fork = building.fork();
+        RuleEngine forkEngine = new RuleEngine(fork);
+        forkEngine.addRule(new Rule("hot", TemperatureSensor.class,
+                RoomType.OFFICE, SensorCondition.readingAbove(30),
+                SensorCondition.readingAtMost(25), 1));
+        assertEquals(1, forkEngine.getActiveAlerts().size());
+        assertEquals(0, forkEngine.getActiveAlerts().get(0).getMinute());
+    }
+}
@@ -0,0 +1,144 @@
+package bms.sensors;
+
+import bms.building.Building;
+import bms.building.ComfortMonitor;
+import bms.exceptions.DuplicateSensorException;
+import bms.floor.Floor;
+import bms.room.Room;
+import bms.room.RoomType;
+import bms.util.TimedItemManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class CompositeSensorTest {
+
+    private TimedItemManager manager;
+    private CompositeSensorGraph graph;
+
+    /** Maximum sensor counting how often it is recomputed. */
+    private static class CountingSensor extends MaximumSensor {
+        private int computed;
+
+        CountingSensor(CompositeSensorGraph graph, HazardSensor... inputs) {
+            super(graph, Arrays.asList(inputs));
+        }
+
+        @Override
+        protected int computeReading() {
+            computed++;
+            return super.computeReading();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        manager = TimedItemManager.createManager();
+        TimedItemManager.setThreadManager(manager);
+        graph = new CompositeSensorGraph();
+        manager.addTickListener(graph);
+    }
+
+    @After
+    public void tearDown() {
+        TimedItemManager.setThreadManager(null);
+    }
+
+    @Test
+    public void airQualityCombinesInputs() throws DuplicateSensorException {
+        CarbonDioxideSensor carbonDioxide = new CarbonDioxideSensor(
+                new int[]{600, 1200}, 1, 600, 300);
+        TemperatureSensor temperature = new TemperatureSensor(
+                new int[]{22, 22});
+        OccupancySensor occupancy = new OccupancySensor(
+                new int[]{2, 8}, 1, 10);
+        AirQualitySensor airQuality = new AirQualitySensor(graph,
+                carbonDioxide, temperature, occupancy);
+
+        assertEquals(Math.round((carbonDioxide.getComfortLevel()
+                + temperature.getComfortLevel()
+                + occupancy.getComfortLevel()) / 3f),
+                airQuality.getCurrentReading());
+        manager.elapseOneMinute();
+        assertEquals(Math.max(carbonDioxide.getHazardLevel(),
+                occupancy.getHazardLevel()), airQuality.getHazardLevel());
+        assertEquals(airQuality.getCurrentReading(),
+                airQuality.getComfortLevel());
+
+        Room room = new Room(1, RoomType.OFFICE, 20);
+        room.addSensor(airQuality);
+        room.addSensor(carbonDioxide);
+        assertSame(airQuality, room.getSensor("AirQualitySensor"));
+    }
+
+    @Test
+    public void recomputesOnlyWhenInputsChange() {
+        NoiseSensor changing = new NoiseSensor(new int[]{40, 80}, 1);
+        NoiseSensor steady = new NoiseSensor(new int[]{60, 60}, 1);
+        CountingSensor floor = new CountingSensor(graph, changing, steady);
+        CountingSensor quiet = new CountingSensor(graph, steady);
+        CountingSensor building = new CountingSensor(graph, floor, quiet);
+
+        assertEquals(60, building.getCurrentReading());
+        assertEquals(60, building.getCurrentReading());
+        building.getHazardLevel();
+        assertEquals(1, building.computed);
+        assertEquals(1, floor.computed);
+        assertEquals(1, quiet.computed);
+
+        manager.elapseOneMinute();
+        assertEquals(80, building.getCurrentReading());
+        assertEquals(2, building.computed);
+        assertEquals(2, floor.computed);
+        assertEquals(1, quiet.computed);
+
+        // two changes between reads cost one recomputation, and the steady
+        // input never invalidates its composite
+        manager.elapseOneMinute();
+        manager.elapseOneMinute();
+        assertEquals(80, floor.getCurrentReading());
+        assertEquals(60, quiet.getCurrentReading());
+        assertEquals(3, floor.computed);
+        assertEquals(1, quiet.computed);
+        assertEquals(3, graph.getCompositeCount());
+    }
+
+    @Test
+    public void monitorsSeeCompositeChanges() throws Exception {
+        CarbonDioxideSensor carbonDioxide = new CarbonDioxideSensor(
+                new int[]{600, 1200}, 1, 600, 300);
+        AirQualitySensor airQuality = new AirQualitySensor(graph,
+                carbonDioxide, new TemperatureSensor(new int[]{22}),
+                new OccupancySensor(new int[]{2}, 1, 10));
+        Building building = new Building("Composite");
+        Floor floor = new Floor(1, 10, 10);
+        building.addFloor(floor);
+        Room room = new Room(1, RoomType.OFFICE, 20);
+        floor.addRoom(room);
+        room.addSensor(airQuality);
+
+        ComfortMonitor monitor = new ComfortMonitor(building);
+        int before = monitor.getRoomComfort(room);
+        // the graph is notified first however late it was added
+        manager.removeTickListener(graph);
+        manager.addTickListener(monitor);
+        manager.addTickListener(graph);
+        manager.elapseOneMinute();
+
+        assertTrue(manager.getChangedSensors().contains(
+                airQuality.getSensorId()));
+        assertEquals(airQuality.getComfortLevel(),
+                monitor.getRoomComfort(room));
+        assertNotEquals(before, monitor.getRoomComfort(room));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMissingInput() {
+        new AirQualitySensor(graph, null, new TemperatureSensor(new int[]{20}),
+                new OccupancySensor(new int[]{1}, 1, 5));
+    }
+}
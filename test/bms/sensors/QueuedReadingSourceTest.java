@@ -0,0 +1,83 @@
+package bms.sensors;
+
+import bms.util.TimedItemManager;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class QueuedReadingSourceTest {
+
+    @Test
+    public void sensorConsumesOfferedReadings() {
+        QueuedReadingSource source =
+                new QueuedReadingSource(4, ExhaustionPolicy.HOLD_LAST, 10);
+        NoiseSensor sensor = new NoiseSensor(new int[]{0}, 1);
+        sensor.setReadingSource(source);
+        assertEquals(2, source.offer(new int[]{20, 30}, 0, 2));
+
+        assertEquals(10, sensor.getCurrentReading());
+        sensor.elapseOneMinute();
+        assertEquals(20, sensor.getCurrentReading());
+        sensor.elapseOneMinute();
+        sensor.elapseOneMinute();
+        assertEquals(30, sensor.getCurrentReading());
+    }
+
+    @Test
+    public void rejectsWhenFullOfPendingReadings() {
+        QueuedReadingSource source =
+                new QueuedReadingSource(3, ExhaustionPolicy.HOLD_LAST, 1);
+        assertEquals(2, source.offer(new int[]{2, 3, 4}, 0, 3));
+        assertFalse(source.offer(5));
+        source.advance();
+        assertTrue(source.offer(5));
+        assertEquals("2,3,5", source.toString());
+    }
+
+    @Test
+    public void loopsOverRetainedReadings() {
+        QueuedReadingSource source =
+                new QueuedReadingSource(3, ExhaustionPolicy.LOOP, 1);
+        source.offer(new int[]{2, 3}, 0, 2);
+        source.advance(2);
+        assertEquals(3, source.getCurrentReading());
+        source.advance();
+        assertEquals(1, source.getCurrentReading());
+        source.advance();
+        assertEquals(2, source.getCurrentReading());
+        source.offer(9);
+        source.advance();
+        assertEquals(9, source.getCurrentReading());
+    }
+
+    @Test (expected = IllegalStateException.class)
+    public void failsWhenExhausted() {
+        new QueuedReadingSource(2, ExhaustionPolicy.FAIL, 1).advance();
+    }
+
+    @Test
+    public void exhaustedSensorsDoNotStopTheTick() {
+        TimedItemManager manager = TimedItemManager.createManager();
+        TimedItemManager.setThreadManager(manager);
+        try {
+            NoiseSensor failing = new NoiseSensor(new int[]{0}, 1);
+            failing.setReadingSource(
+                    new QueuedReadingSource(2, ExhaustionPolicy.FAIL, 1));
+            NoiseSensor other = new NoiseSensor(new int[]{40, 50}, 1);
+            List<Integer> minutes = new ArrayList<Integer>();
+            manager.addTickListener((minute, changes) -> minutes.add(minute));
+            try {
+                manager.elapseOneMinute();
+                fail();
+            } catch (IllegalStateException expected) {
+            }
+            assertEquals(50, other.getCurrentReading());
+            assertEquals("[1]", minutes.toString());
+        } finally {
+            TimedItemManager.setThreadManager(null);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package bms.sensors;
+
+import bms.util.TimedItemManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SensorBankTest {
+
+    private TimedItemManager manager;
+
+    @Before
+    public void setUp() {
+        manager = TimedItemManager.createManager();
+        TimedItemManager.setThreadManager(manager);
+    }
+
+    @After
+    public void tearDown() {
+        TimedItemManager.setThreadManager(null);
+    }
+
+    @Test
+    public void configurationsAreInterned() {
+        SensorConfig first = SensorConfig.occupancy(new int[]{1, 5, 9}, 2, 10);
+        SensorConfig second = SensorConfig.occupancy(new int[]{1, 5, 9}, 2, 10);
+        assertSame(first, second);
+        assertNotSame(first, SensorConfig.occupancy(new int[]{1, 5, 9}, 2, 11));
+        assertEquals(50, first.getHazardLevel(1));
+        assertEquals(10, first.getComfortLevel(2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidConfiguration() {
+        SensorConfig.carbonDioxide(new int[]{600}, 1, 100, 200);
+    }
+
+    @Test
+    public void tablesMatchSensors() {
+        int[] readings = {400, 650, 1200, 2500, 6000};
+        SensorConfig config = SensorConfig.carbonDioxide(readings, 1, 600, 100);
+        CarbonDioxideSensor sensor = (CarbonDioxideSensor) config.newSensor();
+        for (int i = 0; i < readings.length; i++) {
+            assertEquals(sensor.getHazardLevel(), config.getHazardLevel(i));
+            assertEquals(sensor.getComfortLevel(), config.getComfortLevel(i));
+            manager.elapseOneMinute();
+        }
+        assertEquals(600, sensor.getIdealValue());
+    }
+
+    @Test
+    public void bankTracksEverySensor() {
+        SensorConfig config = SensorConfig.occupancy(new int[]{2, 8, 12}, 2, 10);
+        SensorBank bank = new SensorBank(config);
+        for (int i = 0; i < 3000; i++) {
+            bank.add(i % 3);
+        }
+        assertEquals(3000, bank.size());
+        assertEquals(1000L * (2 + 8 + 12), bank.getTotalReading());
+        assertEquals(100, bank.getMaxHazardLevel());
+        assertEquals(1000, bank.countAtOrAboveHazard(100));
+
+        manager.elapseOneMinute();
+        assertEquals(2, bank.getCurrentReading(0));
+        manager.elapseOneMinute();
+        assertEquals(8, bank.getCurrentReading(0));
+        assertEquals(2, bank.getCurrentReading(2));
+        assertEquals(80, bank.getHazardLevel(0));
+
+        int late = bank.add(0);
+        assertEquals(2, bank.getCurrentReading(late));
+        manager.elapseMinutes(2);
+        assertEquals(8, bank.getCurrentReading(late));
+        assertEquals(12, bank.getCurrentReading(0));
+    }
+
+    @Test
+    public void deregisteredBanksStopTicking() {
+        SensorBank bank = new SensorBank(
+                SensorConfig.noise(new int[]{40, 50, 60}, 1));
+        bank.add(0);
+        manager.elapseOneMinute();
+        assertTrue(bank.deregister());
+        assertFalse(bank.deregister());
+        manager.elapseMinutes(2);
+        assertEquals(1, bank.getTimeElapsed());
+        assertEquals(50, bank.getCurrentReading(0));
+    }
+}
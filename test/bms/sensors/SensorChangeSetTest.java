@@ -0,0 +1,44 @@
+package bms.sensors;
+
+import bms.util.TimedItemManager;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SensorChangeSetTest {
+
+    @Test
+    public void onlyChangedSensorsMarked() {
+        NoiseSensor changing = new NoiseSensor(new int[]{50, 60}, 1);
+        NoiseSensor constant = new NoiseSensor(new int[]{50, 50}, 1);
+        NoiseSensor slow = new NoiseSensor(new int[]{50, 60}, 2);
+
+        TimedItemManager.getInstance().elapseOneMinute();
+        SensorChangeSet changes =
+                TimedItemManager.getInstance().getChangedSensors();
+
+        assertTrue(changes.contains(changing));
+        assertFalse(changes.contains(constant));
+        assertFalse(changes.contains(slow));
+
+        TimedItemManager.getInstance().elapseOneMinute();
+        assertTrue(changes.contains(changing));
+        assertTrue(changes.contains(slow));
+        assertFalse(changes.contains(constant));
+    }
+
+    @Test
+    public void markIsIdempotentAndClearable() {
+        SensorChangeSet changes = new SensorChangeSet();
+        TemperatureSensor sensor = new TemperatureSensor(new int[]{20});
+
+        changes.mark(sensor);
+        changes.mark(sensor);
+        assertEquals(1, changes.size());
+        assertSame(sensor, changes.get(0));
+
+        changes.clear();
+        assertTrue(changes.isEmpty());
+        assertFalse(changes.contains(sensor));
+    }
+}
@@ -0,0 +1,52 @@
+package bms.sensors;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SensorHistoryTest {
+
+    @Test
+    public void recordsReadingsAndHazards() {
+        TemperatureSensor sensor = new TemperatureSensor(new int[]{20, 70, 30});
+        sensor.enableHistory(2);
+
+        sensor.elapseOneMinute();
+        sensor.elapseOneMinute();
+        sensor.elapseOneMinute();
+
+        SensorHistory history = sensor.getHistory();
+        assertEquals(2, history.size());
+        assertEquals(20, history.getReading(0));
+        assertEquals(30, history.getReading(1));
+        assertEquals(0, history.getHazardLevel(0));
+        sensor.disableHistory();
+    }
+
+    @Test
+    public void fiveMinuteRollup() {
+        SensorHistory history = new SensorHistory(10);
+        for (int i = 1; i <= 7; i++) {
+            history.record(i, 0);
+        }
+        ReadingRollup rollup = history.getFiveMinuteRollup();
+        assertEquals(2, rollup.size());
+        assertEquals(1, rollup.getMinimum(1));
+        assertEquals(5, rollup.getMaximum(1));
+        assertEquals(3.0, rollup.getAverage(1), 0.001);
+        assertEquals(6.5, rollup.getAverage(0), 0.001);
+        history.release();
+    }
+
+    @Test (expected = IllegalStateException.class)
+    public void exceedsMemoryBudget() {
+        long budget = SensorHistory.getMemoryBudget();
+        SensorHistory.setMemoryBudget(SensorHistory.getMemoryReserved()
+                + SensorHistory.bytesRequired(10) - 1);
+        try {
+            new SensorHistory(10);
+        } finally {
+            SensorHistory.setMemoryBudget(budget);
+        }
+    }
+}
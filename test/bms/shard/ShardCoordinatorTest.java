@@ -0,0 +1,120 @@
+package bms.shard;
+
+import bms.store.PagedBuilding;
+import bms.util.TimedItemManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ShardCoordinatorTest {
+
+    private static final long TIMEOUT = TimeUnit.SECONDS.toNanos(30);
+
+    private Path directory;
+    private List<Path> stores;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("shards");
+        stores = ShardBenchmark.writeEstate(directory, 3, 2, 4);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (Path file : Files.list(directory).toArray(Path[]::new)) {
+            Files.delete(file);
+        }
+        Files.delete(directory);
+    }
+
+    /** Ticks copies of the stores in this process to find the expected state. */
+    private int[] expected(int minutes) throws Exception {
+        TimedItemManager manager = TimedItemManager.createManager();
+        TimedItemManager.setThreadManager(manager);
+        List<PagedBuilding> buildings = new ArrayList<PagedBuilding>();
+        try {
+            for (int i = 0; i < stores.size(); i++) {
+                Path copy = directory.resolve("copy-" + i);
+                Files.copy(stores.get(i), copy);
+                buildings.add(new PagedBuilding(copy, 1));
+            }
+        } finally {
+            TimedItemManager.setThreadManager(null);
+        }
+        manager.elapseMinutes(minutes);
+        int maxHazard = 0;
+        int occupancy = 0;
+        for (PagedBuilding building : buildings) {
+            maxHazard = Math.max(maxHazard, building.getMaxHazardLevel());
+            occupancy += building.getOccupancy();
+            building.close();
+        }
+        return new int[]{maxHazard, occupancy};
+    }
+
+    @Test
+    public void workersTickInLockstep() throws Exception {
+        int[] expected = expected(5);
+        Path file = directory.resolve("segment");
+        try (ShardSegment segment = ShardSegment.create(file, 2)) {
+            List<Thread> threads = new ArrayList<Thread>();
+            for (int i = 0; i < 2; i++) {
+                List<Path> shard = i == 0
+                        ? Arrays.asList(stores.get(0), stores.get(2))
+                        : Arrays.asList(stores.get(1));
+                Thread thread = new Thread(new ShardWorker(
+                        ShardSegment.open(file), i, shard, 1));
+                thread.start();
+                threads.add(thread);
+            }
+
+            ShardCoordinator coordinator = new ShardCoordinator(segment,
+                    TIMEOUT);
+            coordinator.awaitWorkers();
+            coordinator.elapseMinutes(2);
+            coordinator.elapseMinutes(3);
+            assertEquals(5, coordinator.getMinute());
+            assertEquals(5, segment.getCompletedMinute(0));
+            assertEquals(5, segment.getCompletedMinute(1));
+            assertEquals(expected[0], coordinator.getMaxHazardLevel());
+            assertEquals(expected[1], coordinator.getOccupancy());
+            assertEquals(0, coordinator.getFireDrillRoomCount());
+
+            coordinator.stop();
+            for (Thread thread : threads) {
+                thread.join(TimeUnit.NANOSECONDS.toMillis(TIMEOUT));
+                assertFalse(thread.isAlive());
+            }
+        }
+    }
+
+    @Test
+    public void launchesWorkerProcesses() throws Exception {
+        int[] expected = expected(4);
+        try (ShardLauncher launcher = ShardLauncher.launch(
+                directory.resolve("segment"), stores, 2, 1, TIMEOUT)) {
+            ShardCoordinator coordinator = launcher.getCoordinator();
+            for (int i = 0; i < 4; i++) {
+                coordinator.elapseMinutes(1);
+            }
+            assertEquals(expected[0], coordinator.getMaxHazardLevel());
+            assertEquals(expected[1], coordinator.getOccupancy());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsOtherFiles() throws Exception {
+        Path file = directory.resolve("segment");
+        Files.write(file, new byte[256]);
+        ShardSegment.open(file);
+    }
+}
@@ -0,0 +1,166 @@
+package bms.store;
+
+import bms.building.Building;
+import bms.floor.Floor;
+import bms.room.Room;
+import bms.room.RoomType;
+import bms.sensors.CarbonDioxideSensor;
+import bms.sensors.NoiseSensor;
+import bms.sensors.OccupancySensor;
+import bms.sensors.Sensor;
+import bms.sensors.TimedSensor;
+import bms.util.TimedItemManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.*;
+
+public class PagedBuildingTest {
+
+    private TimedItemManager manager;
+    private Building building;
+    private Path file;
+
+    @Before
+    public void setUp() throws Exception {
+        manager = TimedItemManager.createManager();
+        TimedItemManager.setThreadManager(manager);
+        building = new Building("Paged");
+        for (int f = 1; f <= 3; f++) {
+            Floor floor = new Floor(f, 10, 10);
+            building.addFloor(floor);
+            for (int r = 1; r <= 4; r++) {
+                Room room = new Room(f * 100 + r, RoomType.OFFICE, 20);
+                floor.addRoom(room);
+                room.addSensor(new OccupancySensor(
+                        new int[]{r, f, r + f, 3}, r, 10));
+                room.addSensor(new NoiseSensor(new int[]{40, 55 + f, 70}, 2));
+            }
+        }
+        building.getFloorByNumber(2).getRoomByNumber(201).addSensor(
+                new CarbonDioxideSensor(new int[]{500, 900}, 3, 600, 300));
+        manager.elapseMinutes(5);
+        file = Files.createTempFile("building", ".bms");
+        BuildingStore.write(building, file);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        TimedItemManager.setThreadManager(null);
+        Files.deleteIfExists(file);
+    }
+
+    private void assertMatches(Room expected, Room actual) {
+        assertEquals(expected.getRoomNumber(), actual.getRoomNumber());
+        assertEquals(expected.getSensors().size(), actual.getSensors().size());
+        for (int i = 0; i < expected.getSensors().size(); i++) {
+            TimedSensor sensor = (TimedSensor) expected.getSensors().get(i);
+            Sensor paged = actual.getSensors().get(i);
+            assertEquals(sensor.getClass(), paged.getClass());
+            assertEquals(sensor.getCurrentReading(), paged.getCurrentReading());
+        }
+    }
+
+    @Test
+    public void floorsAreLoadedOnDemand() throws Exception {
+        try (PagedBuilding paged = new PagedBuilding(file, 2)) {
+            assertEquals("Paged", paged.getName());
+            assertArrayEquals(new int[]{1, 2, 3}, paged.getFloorNumbers());
+            assertEquals(0, paged.getResidentFloorCount());
+            assertNull(paged.getFloorByNumber(4));
+
+            Room room = paged.getRoomByNumber(2, 201);
+            assertEquals(1, paged.getResidentFloorCount());
+            assertMatches(building.getFloorByNumber(2).getRoomByNumber(201),
+                    room);
+            assertEquals(5, ((TimedSensor) room.getSensors().get(0))
+                    .getTimeElapsed());
+            assertNull(paged.getRoomByNumber(2, 299));
+        }
+    }
+
+    @Test
+    public void unloadedFloorsKeepTicking() throws Exception {
+        try (PagedBuilding paged = new PagedBuilding(file, 2)) {
+            paged.getFloorByNumber(1);
+            manager.elapseMinutes(7);
+            for (int f = 1; f <= 3; f++) {
+                for (int r = 1; r <= 4; r++) {
+                    assertMatches(building.getFloorByNumber(f)
+                                    .getRoomByNumber(f * 100 + r),
+                            paged.getRoomByNumber(f, f * 100 + r));
+                }
+            }
+            manager.elapseOneMinute();
+            assertMatches(building.getFloorByNumber(1).getRoomByNumber(102),
+                    paged.getRoomByNumber(1, 102));
+        }
+    }
+
+    @Test
+    public void evictedFloorsAreWrittenBack() throws Exception {
+        try (PagedBuilding paged = new PagedBuilding(file, 2)) {
+            Floor first = paged.getFloorByNumber(1);
+            first.fireDrill(RoomType.OFFICE);
+            paged.getFloorByNumber(2);
+            paged.getFloorByNumber(3);
+            assertEquals(2, paged.getResidentFloorCount());
+
+            manager.elapseMinutes(3);
+            Floor reloaded = paged.getFloorByNumber(1);
+            assertNotSame(first, reloaded);
+            assertTrue(reloaded.getRoomByNumber(103).fireDrillOngoing());
+            assertEquals(8, ((TimedSensor) reloaded.getRoomByNumber(103)
+                    .getSensors().get(0)).getTimeElapsed());
+        }
+        try (PagedBuilding reopened = new PagedBuilding(file, 1)) {
+            assertTrue(reopened.getRoomByNumber(1, 101).fireDrillOngoing());
+            assertFalse(reopened.getRoomByNumber(2, 201).fireDrillOngoing());
+        }
+    }
+
+    @Test
+    public void reloadedSensorsKeepTheirIds() throws Exception {
+        try (PagedBuilding paged = new PagedBuilding(file, 1)) {
+            Room first = paged.getRoomByNumber(1, 102);
+            assertEquals(1, paged.getFloorByNumber(1).getSnapshot()
+                    .getStructureVersion());
+            paged.getFloorByNumber(2);
+            Room reloaded = paged.getRoomByNumber(1, 102);
+            assertNotSame(first, reloaded);
+            for (int i = 0; i < first.getSensors().size(); i++) {
+                assertEquals(((TimedSensor) first.getSensors().get(i))
+                                .getSensorId(),
+                        ((TimedSensor) reloaded.getSensors().get(i))
+                                .getSensorId());
+            }
+            assertNotEquals(((TimedSensor) first.getSensors().get(0))
+                            .getSensorId(),
+                    ((TimedSensor) first.getSensors().get(1))
+                            .getSensorId());
+        }
+    }
+
+    @Test
+    public void failedSensorsUseUpReservedIds() {
+        int reserved = TimedSensor.reserveSensorIds(1);
+        TimedSensor.setThreadSensorId(reserved);
+        try {
+            new NoiseSensor(new int[]{40}, 0);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        assertNotEquals(reserved,
+                new NoiseSensor(new int[]{40}, 1).getSensorId());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsOtherFiles() throws Exception {
+        Files.write(file, new byte[64]);
+        new PagedBuilding(file, 1);
+    }
+}
@@ -0,0 +1,101 @@
+package bms.util;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+public class CompressedBitmapTest {
+
+    private static int[] toArray(TreeSet<Integer> set) {
+        return set.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static void fill(CompressedBitmap bitmap, TreeSet<Integer> expected,
+                             Random random, int count, int bound) {
+        for (int i = 0; i < count; i++) {
+            int value = random.nextInt(bound);
+            assertEquals(expected.add(value), bitmap.add(value));
+        }
+    }
+
+    @Test
+    public void matchesSetAcrossChunkKinds() {
+        Random random = new Random(7);
+        CompressedBitmap bitmap = new CompressedBitmap();
+        // dense in the first chunk, sparse in later ones
+        TreeSet<Integer> expected = new TreeSet<Integer>();
+        fill(bitmap, expected, random, 20000, 1 << 16);
+        fill(bitmap, expected, random, 300, 1 << 20);
+        assertArrayEquals(toArray(expected), bitmap.toArray());
+        assertEquals(expected.size(), bitmap.getCardinality());
+
+        for (int i = 0; i < 30000; i++) {
+            int value = random.nextInt(1 << 16);
+            assertEquals(expected.remove(value), bitmap.remove(value));
+        }
+        assertArrayEquals(toArray(expected), bitmap.toArray());
+        for (int value = 0; value < 1 << 16; value += 97) {
+            assertEquals(expected.contains(value), bitmap.contains(value));
+        }
+        assertFalse(bitmap.contains(-1));
+    }
+
+    @Test
+    public void setOperations() {
+        Random random = new Random(11);
+        CompressedBitmap first = new CompressedBitmap();
+        CompressedBitmap second = new CompressedBitmap();
+        TreeSet<Integer> a = new TreeSet<Integer>();
+        TreeSet<Integer> b = new TreeSet<Integer>();
+        fill(first, a, random, 9000, 3 << 16);
+        fill(second, b, random, 500, 3 << 16);
+        fill(second, b, random, 9000, 1 << 16);
+
+        TreeSet<Integer> and = new TreeSet<Integer>(a);
+        and.retainAll(b);
+        TreeSet<Integer> or = new TreeSet<Integer>(a);
+        or.addAll(b);
+        TreeSet<Integer> andNot = new TreeSet<Integer>(a);
+        andNot.removeAll(b);
+
+        assertArrayEquals(toArray(and), first.and(second).toArray());
+        assertArrayEquals(toArray(and), second.and(first).toArray());
+        assertArrayEquals(toArray(or), first.or(second).toArray());
+        assertArrayEquals(toArray(andNot), first.andNot(second).toArray());
+        assertEquals(a.size(), first.getCardinality());
+    }
+
+    private static CompressedBitmap range(int from, int to, int step) {
+        CompressedBitmap bitmap = new CompressedBitmap();
+        for (int value = from; value < to; value += step) {
+            bitmap.add(value);
+        }
+        return bitmap;
+    }
+
+    @Test
+    public void arrayUnions() {
+        assertArrayEquals(new int[]{0, 2, 3, 4, 6, 8, 9},
+                range(0, 10, 3).or(range(0, 10, 2)).toArray());
+        // overlapping arrays whose union still fits in an array
+        assertArrayEquals(range(0, 4000, 1).toArray(),
+                range(0, 3000, 1).or(range(1000, 4000, 1)).toArray());
+        // disjoint arrays whose union needs a bitmap
+        CompressedBitmap union = range(0, 8000, 2).or(range(1, 8000, 2));
+        assertEquals(8000, union.getCardinality());
+        assertArrayEquals(range(0, 8000, 1).toArray(), union.toArray());
+    }
+
+    @Test
+    public void emptiedBitmap() {
+        CompressedBitmap bitmap = new CompressedBitmap();
+        bitmap.add(70000);
+        assertTrue(bitmap.remove(70000));
+        assertFalse(bitmap.remove(70000));
+        assertTrue(bitmap.isEmpty());
+        assertEquals(0, bitmap.toArray().length);
+    }
+}